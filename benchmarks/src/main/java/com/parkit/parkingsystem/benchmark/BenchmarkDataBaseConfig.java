@@ -0,0 +1,107 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.Migration;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Database configuration pointing at an in-memory H2 database in MySQL mode, with the schema of the
+ * application's migrations, applied by {@link SchemaMigrator}.
+ * Each instance gets its own database, so benchmark trials never see each other's tickets.
+ */
+public class BenchmarkDataBaseConfig extends DataBaseConfig {
+
+    // MySQL online DDL clauses, which H2 does not parse: its DDL never runs alongside the benchmark anyway
+    private static final Pattern ONLINE_DDL = Pattern.compile(",? algorithm=\\w+(,? lock=\\w+)?;$", Pattern.MULTILINE);
+
+    private final String url;
+
+    /**
+     * Constructor for BenchmarkDataBaseConfig. Migrates the schema and replaces the parking spots
+     * created by the migrations with the given ones.
+     *
+     * @param name      Name of the in-memory database.
+     * @param carSpots  Number of car spots, numbered from 1.
+     * @param bikeSpots Number of bike spots, numbered after the car spots.
+     */
+    public BenchmarkDataBaseConfig(String name, int carSpots, int bikeSpots) throws SQLException {
+        this.url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (Connection con = DriverManager.getConnection(url);
+             Statement st = con.createStatement()) {
+            // H2 has no named locks; the migrator is alone on a new in-memory database
+            st.execute("create alias GET_LOCK for \"" + BenchmarkDataBaseConfig.class.getName() + ".getLock\"");
+            st.execute("create alias RELEASE_LOCK for \"" + BenchmarkDataBaseConfig.class.getName() + ".releaseLock\"");
+        }
+
+        List<Migration> migrations;
+        try {
+            migrations = SchemaMigrator.loadMigrations(script -> ONLINE_DDL.matcher(script).replaceAll(";"));
+        } catch (IOException e) {
+            throw new SQLException("Error loading schema migrations", e);
+        }
+        if (!new SchemaMigrator(this).migrate(migrations)) {
+            throw new SQLException("Error migrating benchmark database " + name);
+        }
+
+        try (Connection con = DriverManager.getConnection(url)) {
+            try (Statement st = con.createStatement()) {
+                st.execute("delete from parking");
+            }
+            try (PreparedStatement ps = con.prepareStatement(
+                    "insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)")) {
+                for (int spot = 1; spot <= carSpots + bikeSpots; spot++) {
+                    ps.setInt(1, spot);
+                    ps.setString(2, spot <= carSpots ? "CAR" : "BIKE");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Stands in for the MySQL function of the same name, which the schema migrator takes its lock with.
+     *
+     * @param lockName       Name of the lock.
+     * @param timeoutSeconds Time to wait for the lock.
+     * @return 1, the lock being always free.
+     */
+    public static int getLock(String lockName, int timeoutSeconds) {
+        return 1;
+    }
+
+    /**
+     * Stands in for the MySQL function of the same name, which the schema migrator releases its lock with.
+     *
+     * @param lockName Name of the lock.
+     * @return 1, as if the lock was released.
+     */
+    public static int releaseLock(String lockName) {
+        return 1;
+    }
+
+    @Override
+    protected Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+
+    /**
+     * Closes the connection pool and drops the database.
+     */
+    public void drop() throws SQLException {
+        shutdown();
+        try (Connection con = DriverManager.getConnection(url);
+             Statement st = con.createStatement()) {
+            st.execute("shutdown");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.parkit.parkingsystem.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suite, reporting throughput and allocation rate for each benchmark.
+ * The end-to-end flow runs once per gate count in {@link #GATE_THREADS}. With arguments,
+ * the runner behaves as the standard JMH command line instead (e.g. {@code -prof gc Fare}).
+ */
+public class BenchmarkRunner {
+
+    static final int[] GATE_THREADS = {1, 2, 4, 8};
+
+    /**
+     * Runs the suite and writes the results to benchmark-results-*.json files.
+     *
+     * @param args JMH command line options, or none to run the whole suite.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            Main.main(args);
+            return;
+        }
+
+        run(base("suite").include(FareCalculatorBenchmark.class.getSimpleName())
+                .include(FareBatchBenchmark.class.getSimpleName())
+                .include(ParkingSpotDAOBenchmark.class.getSimpleName())
+                .include(TicketDAOBenchmark.class.getSimpleName()));
+        for (int threads : GATE_THREADS) {
+            run(base("flow-" + threads + "-gates").include(ParkingServiceBenchmark.class.getSimpleName()).threads(threads));
+        }
+    }
+
+    private static ChainedOptionsBuilder base(String name) {
+        // The GC profiler adds gc.alloc.rate and gc.alloc.rate.norm (bytes per operation) to every result
+        return new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("benchmark-results-" + name + ".json");
+    }
+
+    private static void run(ChainedOptionsBuilder options) throws RunnerException {
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link FareCalculatorService#calculateFares}, re-pricing a batch of historical tickets,
+ * below and above the size from which the batch is split across cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.properties")
+@State(Scope.Thread)
+public class FareBatchBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int tickets;
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private long[] inTimes;
+    private long[] outTimes;
+    private byte[] parkingTypes;
+    private boolean[] discounts;
+    private double[] fares;
+
+    /**
+     * Creates a batch of cars and bikes parked from a few minutes to a few days, a third of them discounted.
+     */
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        inTimes = new long[tickets];
+        outTimes = new long[tickets];
+        parkingTypes = new byte[tickets];
+        discounts = new boolean[tickets];
+        fares = new double[tickets];
+        for (int i = 0; i < tickets; i++) {
+            outTimes[i] = now - i * 1000L;
+            inTimes[i] = outTimes[i] - (i % 4000) * 60_000L;
+            parkingTypes[i] = (byte) (i % 5 == 0 ? ParkingType.BIKE.ordinal() : ParkingType.CAR.ordinal());
+            discounts[i] = i % 3 == 0;
+        }
+    }
+
+    /**
+     * Prices the whole batch.
+     *
+     * @return The fares, so the computation is not optimized away.
+     */
+    @Benchmark
+    public double[] calculateFares() {
+        fareCalculatorService.calculateFares(inTimes, outTimes, parkingTypes, discounts, fares);
+        return fares;
+    }
+}
@@ -0,0 +1,87 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.CompactTicket;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link FareCalculatorService#calculateFare}, with and without the recurring user discount.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.properties")
+@State(Scope.Thread)
+public class FareCalculatorBenchmark {
+
+    @Param({"CAR", "BIKE"})
+    private ParkingType parkingType;
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private Ticket ticket;
+    private CompactTicket compactTicket;
+    private long outTime;
+
+    /**
+     * Creates a ticket of a vehicle parked for an hour and a half.
+     */
+    @Setup
+    public void setUp() {
+        outTime = System.currentTimeMillis();
+        ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(outTime - 90 * 60 * 1000));
+        ticket.setOutTime(new Date(outTime));
+        compactTicket = CompactTicket.of(ticket);
+    }
+
+    /**
+     * Prices the ticket at the full rate.
+     *
+     * @return The price, so the computation is not optimized away.
+     */
+    @Benchmark
+    public double calculateFare() {
+        fareCalculatorService.calculateFare(ticket);
+        return ticket.getPrice();
+    }
+
+    /**
+     * Prices the ticket with the recurring user discount.
+     *
+     * @return The price, so the computation is not optimized away.
+     */
+    @Benchmark
+    public double calculateFareWithDiscount() {
+        fareCalculatorService.calculateFare(ticket, true);
+        return ticket.getPrice();
+    }
+
+    /**
+     * Closes and prices the compact form of the ticket, as an exit served from the open ticket index does.
+     *
+     * @return The closed ticket, so the computation is not optimized away.
+     */
+    @Benchmark
+    public CompactTicket calculateCompactFare() {
+        return fareCalculatorService.calculateFare(compactTicket, outTime, false);
+    }
+}
@@ -0,0 +1,142 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotStore;
+import com.parkit.parkingsystem.dao.InMemoryTicketStore;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketIdAllocator;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.dao.VisitCountCache;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end benchmark of a vehicle entering then leaving through {@link ParkingService}, wired as
+ * InteractiveShell wires it, against an embedded database or the in-memory stores. {@link BenchmarkRunner}
+ * runs it at several thread counts, each thread acting as one gate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.properties")
+@State(Scope.Benchmark)
+public class ParkingServiceBenchmark {
+
+    // jdbc: DAOs, one statement at a time; jdbc-transactional: one transaction per entry and exit; memory: in-memory stores
+    @Param({"jdbc", "jdbc-transactional", "memory"})
+    private String storage;
+
+    @Param({"100"})
+    private int spotsPerType;
+
+    private BenchmarkDataBaseConfig dataBaseConfig;
+    private ParkingSpotStore parkingSpotStore;
+    private TicketStore ticketStore;
+    private ParkingTransactionDAO parkingTransactionDAO;
+    private final AtomicInteger gates = new AtomicInteger();
+
+    /**
+     * Creates the database and the DAOs, or the in-memory stores, shared by every gate.
+     */
+    @Setup
+    public void setUp() throws SQLException {
+        if ("memory".equals(storage)) {
+            parkingSpotStore = InMemoryParkingSpotStore.withFreeSpots(spotsPerType, spotsPerType);
+            ticketStore = new InMemoryTicketStore();
+            return;
+        }
+        dataBaseConfig = new BenchmarkDataBaseConfig("flow" + System.nanoTime(), spotsPerType, spotsPerType);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO(dataBaseConfig);
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+        parkingSpotDAO.loadAvailabilityIndex();
+        ticketDAO.loadOpenTicketIndex();
+        ticketDAO.enableIdAllocator(TicketIdAllocator.DEFAULT_BLOCK_SIZE);
+        ticketDAO.enableVisitCountCache(VisitCountCache.DEFAULT_MAX_SIZE);
+        ticketDAO.enableRollups(TicketRollups.DEFAULT_FLUSH_INTERVAL_MILLIS, TicketRollups.DEFAULT_QUEUE_CAPACITY);
+        if ("jdbc-transactional".equals(storage)) {
+            parkingTransactionDAO = new ParkingTransactionDAO(dataBaseConfig, parkingSpotDAO, ticketDAO);
+        }
+        parkingSpotStore = parkingSpotDAO;
+        ticketStore = ticketDAO;
+    }
+
+    /**
+     * Drops the database.
+     */
+    @TearDown
+    public void tearDown() throws SQLException {
+        if (ticketStore instanceof TicketDAO && ((TicketDAO) ticketStore).getRollups() != null) {
+            ((TicketDAO) ticketStore).getRollups().shutdown();
+        }
+        if (dataBaseConfig != null) {
+            dataBaseConfig.drop();
+        }
+    }
+
+    /**
+     * Parks a car and lets it leave.
+     *
+     * @param gate The gate of the calling thread.
+     */
+    @Benchmark
+    public void entryExitCycle(Gate gate) {
+        gate.nextVehicle();
+        gate.parkingService.processIncomingVehicle();
+        gate.parkingService.processExitingVehicle();
+    }
+
+    /**
+     * One gate: a parking service reading scripted input, cycling through its own vehicles.
+     */
+    @State(Scope.Thread)
+    public static class Gate {
+
+        private static final int VEHICLES_PER_GATE = 1000;
+
+        private ScriptedInputReader inputReader;
+        private ParkingService parkingService;
+        private String[] regNumbers;
+        private int next;
+
+        /**
+         * Creates the parking service of this gate.
+         *
+         * @param benchmark The shared stores.
+         */
+        @Setup
+        public void setUp(ParkingServiceBenchmark benchmark) {
+            int gate = benchmark.gates.getAndIncrement();
+            regNumbers = new String[VEHICLES_PER_GATE];
+            for (int vehicle = 0; vehicle < VEHICLES_PER_GATE; vehicle++) {
+                regNumbers[vehicle] = String.format("G%02d-%05d", gate, vehicle);
+            }
+            inputReader = new ScriptedInputReader(1, regNumbers[0]);
+            parkingService = new ParkingService(inputReader, benchmark.parkingSpotStore, benchmark.ticketStore,
+                    benchmark.parkingTransactionDAO);
+        }
+
+        private void nextVehicle() {
+            inputReader.setVehicleRegNumber(regNumbers[next]);
+            next = (next + 1) % VEHICLES_PER_GATE;
+        }
+    }
+}
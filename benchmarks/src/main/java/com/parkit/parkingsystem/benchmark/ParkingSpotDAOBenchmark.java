@@ -0,0 +1,82 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link ParkingSpotDAO} against an embedded database, with and without the availability index.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.properties")
+@State(Scope.Benchmark)
+public class ParkingSpotDAOBenchmark {
+
+    @Param({"false", "true"})
+    private boolean availabilityIndex;
+
+    @Param({"1000"})
+    private int spotsPerType;
+
+    private BenchmarkDataBaseConfig dataBaseConfig;
+    private ParkingSpotDAO parkingSpotDAO;
+
+    /**
+     * Creates a database with the given number of spots per parking type.
+     */
+    @Setup
+    public void setUp() throws SQLException {
+        dataBaseConfig = new BenchmarkDataBaseConfig("spots" + System.nanoTime(), spotsPerType, spotsPerType);
+        parkingSpotDAO = new ParkingSpotDAO(dataBaseConfig);
+        if (availabilityIndex) {
+            parkingSpotDAO.loadAvailabilityIndex();
+        }
+    }
+
+    /**
+     * Drops the database.
+     */
+    @TearDown
+    public void tearDown() throws SQLException {
+        dataBaseConfig.drop();
+    }
+
+    /**
+     * Looks up the next free car spot.
+     *
+     * @return The spot number.
+     */
+    @Benchmark
+    public int getNextAvailableSlot() {
+        return parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+    }
+
+    /**
+     * Claims the next free car spot and gives it back, as an entry followed by an exit would.
+     *
+     * @return Whether the spot was given back.
+     */
+    @Benchmark
+    public boolean claimAndReleaseSlot() {
+        int spot = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+        return spot > 0 && parkingSpotDAO.updateParking(new ParkingSpot(spot, ParkingType.CAR, true));
+    }
+}
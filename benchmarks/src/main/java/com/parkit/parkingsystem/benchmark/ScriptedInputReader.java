@@ -0,0 +1,42 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.util.InputReaderUtil;
+
+/**
+ * Input reader answering the prompts of the parking service with fixed values instead of reading the console.
+ */
+public class ScriptedInputReader extends InputReaderUtil {
+
+    private final int selection;
+    private String vehicleRegNumber;
+
+    /**
+     * Constructor for ScriptedInputReader.
+     *
+     * @param selection        The menu selection returned for every prompt (1 for CAR, 2 for BIKE).
+     * @param vehicleRegNumber The registration number returned until changed.
+     */
+    public ScriptedInputReader(int selection, String vehicleRegNumber) {
+        this.selection = selection;
+        this.vehicleRegNumber = vehicleRegNumber;
+    }
+
+    /**
+     * Changes the registration number returned to the next prompts.
+     *
+     * @param vehicleRegNumber The registration number.
+     */
+    public void setVehicleRegNumber(String vehicleRegNumber) {
+        this.vehicleRegNumber = vehicleRegNumber;
+    }
+
+    @Override
+    public int readSelection() {
+        return selection;
+    }
+
+    @Override
+    public String readVehicleRegistrationNumber() {
+        return vehicleRegNumber;
+    }
+}
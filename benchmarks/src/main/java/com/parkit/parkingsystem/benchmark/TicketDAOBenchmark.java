@@ -0,0 +1,144 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.VisitCountCache;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link TicketDAO} against an embedded database holding a history of tickets,
+ * with and without the open ticket index and the visit count cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.properties")
+@State(Scope.Benchmark)
+public class TicketDAOBenchmark {
+
+    @Param({"false", "true"})
+    private boolean indexes;
+
+    @Param({"1000"})
+    private int vehicles;
+
+    @Param({"10"})
+    private int visitsPerVehicle;
+
+    private BenchmarkDataBaseConfig dataBaseConfig;
+    private TicketDAO ticketDAO;
+    private String[] regNumbers;
+
+    /**
+     * Creates a database where every vehicle has closed tickets and one open ticket.
+     */
+    @Setup
+    public void setUp() throws SQLException {
+        dataBaseConfig = new BenchmarkDataBaseConfig("tickets" + System.nanoTime(), vehicles, 0);
+        ticketDAO = new TicketDAO(dataBaseConfig);
+        regNumbers = new String[vehicles];
+        for (int vehicle = 0; vehicle < vehicles; vehicle++) {
+            regNumbers[vehicle] = String.format("V%06d", vehicle);
+        }
+
+        long now = System.currentTimeMillis();
+        for (int vehicle = 0; vehicle < vehicles; vehicle++) {
+            for (int visit = 0; visit < visitsPerVehicle; visit++) {
+                boolean open = visit == visitsPerVehicle - 1;
+                Ticket ticket = newTicket(vehicle, new Date(now - (visitsPerVehicle - visit) * 3_600_000L));
+                if (!open) {
+                    ticket.setOutTime(new Date(ticket.getInTime().getTime() + 1_800_000L));
+                }
+                ticketDAO.saveTicket(ticket);
+            }
+        }
+
+        if (indexes) {
+            ticketDAO.loadOpenTicketIndex();
+            ticketDAO.enableVisitCountCache(VisitCountCache.DEFAULT_MAX_SIZE);
+        }
+    }
+
+    /**
+     * Drops the database.
+     */
+    @TearDown
+    public void tearDown() throws SQLException {
+        dataBaseConfig.drop();
+    }
+
+    /**
+     * Saves a new open ticket.
+     *
+     * @param vehicle The vehicle picked by the calling thread.
+     * @return Whether the ticket was saved.
+     */
+    @Benchmark
+    public boolean saveTicket(VehicleCursor vehicle) {
+        return ticketDAO.saveTicket(newTicket(vehicle.next(vehicles), new Date()));
+    }
+
+    /**
+     * Finds the open ticket of a vehicle, as an exit does.
+     *
+     * @param vehicle The vehicle picked by the calling thread.
+     * @return The ticket.
+     */
+    @Benchmark
+    public Ticket getOpenTicket(VehicleCursor vehicle) {
+        return ticketDAO.getOpenTicket(regNumbers[vehicle.next(vehicles)]);
+    }
+
+    /**
+     * Counts the tickets of a vehicle, as entries and exits do to spot recurring users.
+     *
+     * @param vehicle The vehicle picked by the calling thread.
+     * @return The ticket count.
+     */
+    @Benchmark
+    public int getNbTicket(VehicleCursor vehicle) {
+        return ticketDAO.getNbTicket(regNumbers[vehicle.next(vehicles)]);
+    }
+
+    private Ticket newTicket(int vehicle, Date inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(vehicle + 1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(regNumbers[vehicle]);
+        ticket.setPrice(0);
+        ticket.setInTime(inTime);
+        return ticket;
+    }
+
+    /**
+     * Walks through the vehicles, each thread on its own.
+     */
+    @State(Scope.Thread)
+    public static class VehicleCursor {
+
+        private int next;
+
+        int next(int vehicles) {
+            int vehicle = next;
+            next = (next + 1) % vehicles;
+            return vehicle;
+        }
+    }
+}
@@ -1,14 +1,39 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.export.TicketExporter;
+import com.parkit.parkingsystem.service.GateServer;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.tariff.TariffReplay;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
         logger.info("Initializing Parking System");
+        if (args.length > 0 && "--gate-server".equals(args[0])) {
+            // Serve the gates over HTTP instead of the console: --gate-server [port] [concurrency]
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : GateServer.DEFAULT_PORT;
+            int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : DataBaseConfig.POOL_MAX_SIZE;
+            GateServer.runServer(port, concurrency);
+            return;
+        }
+        if (args.length > 1 && "--replay-tariff".equals(args[0])) {
+            // Compare the revenue of a candidate tariff over the ticket history: --replay-tariff candidate [current]
+            TariffReplay.runReplay(Paths.get(args[1]), args.length > 2 ? Paths.get(args[2]) : null);
+            return;
+        }
+        if (args.length > 3 && "--export-tickets".equals(args[0])) {
+            // Export the tickets that came in between two days: --export-tickets 2024-01-01 2024-12-31 tickets.csv.gz
+            TicketExporter.runExport(LocalDate.parse(args[1]), LocalDate.parse(args[2]), Paths.get(args[3]));
+            return;
+        }
         InteractiveShell.loadInterface();
     }
 }
@@ -0,0 +1,471 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of JDBC connections used behind {@link DataBaseConfig}.
+ * Connections handed out by {@link #borrow()} are proxies: calling {@code close()} on them
+ * returns the physical connection to the pool instead of closing it.
+ * Each pooled connection keeps a {@link StatementCache} so the DAO queries are only prepared once.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    /**
+     * Opens a new physical connection when the pool needs one.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws ClassNotFoundException, SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutNanos;
+    private final long validationIntervalNanos;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    // One permit per connection that may exist at the same time
+    private final Semaphore permits;
+    // Most recently returned connections first, so the tail holds the longest idle ones
+    private final Deque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong borrowTimeNanos = new AtomicLong();
+    private final AtomicLong maxBorrowTimeNanos = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor for ConnectionPool.
+     *
+     * @param connectionFactory        Factory used to open new physical connections.
+     * @param maxSize                  Maximum number of connections, idle and active together.
+     * @param maxWaitMillis            How long {@link #borrow()} waits for a free connection before failing.
+     * @param idleTimeoutMillis        Idle connections older than this are closed by the evictor.
+     * @param validationIntervalMillis Connections idle for less than this are handed out without validation.
+     * @param validationTimeoutSeconds Timeout passed to {@link Connection#isValid(int)} on borrow.
+     * @param statementCacheSize       Maximum number of prepared statements cached per connection, 0 to disable.
+     */
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long maxWaitMillis,
+                          long idleTimeoutMillis, long validationIntervalMillis, int validationTimeoutSeconds,
+                          int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis);
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionPeriod = Math.max(1000L, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none is idle and the pool is not full.
+     * The caller must close the returned connection to give it back.
+     *
+     * @return A pooled connection.
+     * @throws SQLTimeoutException if no connection became free within the max wait time.
+     */
+    public Connection borrow() throws ClassNotFoundException, SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + maxWaitMillis + " ms waiting for a DB connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a DB connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled == null) {
+                pooled = new PooledConnection(connectionFactory.create());
+                createdCount.incrementAndGet();
+            }
+            activeCount.incrementAndGet();
+            recordBorrowTime(System.nanoTime() - start);
+            return pooled.lease();
+        } catch (ClassNotFoundException | SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops the evictor.
+     * Connections still borrowed are closed when they are given back.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool counters.
+     *
+     * @return The current pool metrics.
+     */
+    public Metrics getMetrics() {
+        long borrows = borrowCount.get();
+        return new Metrics(activeCount.get(), idleCount.get(), permits.getQueueLength(), maxSize,
+                createdCount.get(), destroyedCount.get(), borrows, timeoutCount.get(),
+                borrows == 0 ? 0 : borrowTimeNanos.get() / borrows, maxBorrowTimeNanos.get(),
+                statementHits.get(), statementMisses.get(), statementEvictions.get());
+    }
+
+    private PooledConnection takeIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            long idleNanos = System.nanoTime() - pooled.lastUsedNanos;
+            if (idleNanos > idleTimeoutNanos) {
+                destroy(pooled);
+            } else if (idleNanos > validationIntervalNanos && !isValid(pooled)) {
+                logger.info("Discarding broken DB connection");
+                destroy(pooled);
+            } else {
+                return pooled;
+            }
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        activeCount.decrementAndGet();
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                destroy(pooled);
+                return;
+            }
+            // Never let an unfinished transaction leak into the next borrower
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.lastUsedNanos = System.nanoTime();
+            idleConnections.offerFirst(pooled);
+            idleCount.incrementAndGet();
+            // close() may have drained the idle deque between the check above and the push
+            if (closed && idleConnections.remove(pooled)) {
+                idleCount.decrementAndGet();
+                destroy(pooled);
+            }
+        } catch (SQLException e) {
+            logger.error("Error while returning connection to the pool", e);
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.nanoTime();
+        Iterator<PooledConnection> oldestFirst = idleConnections.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            PooledConnection pooled = oldestFirst.next();
+            if (now - pooled.lastUsedNanos <= idleTimeoutNanos) {
+                break;
+            }
+            // A borrower may have taken it in the meantime, in which case remove fails
+            if (idleConnections.remove(pooled)) {
+                idleCount.decrementAndGet();
+                destroy(pooled);
+            }
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        destroyedCount.incrementAndGet();
+        try {
+            pooled.physical.close();
+            logger.info("Closing DB connection");
+        } catch (SQLException e) {
+            logger.error("Error while closing connection", e);
+        }
+    }
+
+    private void recordBorrowTime(long nanos) {
+        borrowCount.incrementAndGet();
+        borrowTimeNanos.addAndGet(nanos);
+        long max;
+        do {
+            max = maxBorrowTimeNanos.get();
+        } while (nanos > max && !maxBorrowTimeNanos.compareAndSet(max, nanos));
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private final class PooledConnection {
+
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementHits, statementMisses, statementEvictions)
+                    : null;
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Handler behind the proxy given to one borrower. Once closed, the handle can no longer be used
+     * even though the physical connection lives on in the pool.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        private boolean released;
+
+        private LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    if (released) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (isCacheablePrepare(method, args)) {
+                        int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : StatementCache.NO_GENERATED_KEYS_FLAG;
+                        return pooled.statementCache.prepare((Connection) proxy, (String) args[0], autoGeneratedKeys);
+                    }
+                    try {
+                        return method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+
+        private boolean isCacheablePrepare(Method method, Object[] args) {
+            if (pooled.statementCache == null || !"prepareStatement".equals(method.getName())) {
+                return false;
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            return parameterTypes.length == 1
+                    || (parameterTypes.length == 2 && parameterTypes[1] == int.class && args[1] != null);
+        }
+    }
+
+    /**
+     * Immutable snapshot of the pool counters.
+     */
+    public static final class Metrics {
+
+        private final int active;
+        private final int idle;
+        private final int waiters;
+        private final int maxSize;
+        private final long created;
+        private final long destroyed;
+        private final long borrows;
+        private final long timeouts;
+        private final long averageBorrowNanos;
+        private final long maxBorrowNanos;
+        private final long statementHits;
+        private final long statementMisses;
+        private final long statementEvictions;
+
+        private Metrics(int active, int idle, int waiters, int maxSize, long created, long destroyed,
+                        long borrows, long timeouts, long averageBorrowNanos, long maxBorrowNanos,
+                        long statementHits, long statementMisses, long statementEvictions) {
+            this.active = active;
+            this.idle = idle;
+            this.waiters = waiters;
+            this.maxSize = maxSize;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.borrows = borrows;
+            this.timeouts = timeouts;
+            this.averageBorrowNanos = averageBorrowNanos;
+            this.maxBorrowNanos = maxBorrowNanos;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+            this.statementEvictions = statementEvictions;
+        }
+
+        /**
+         * @return Number of connections currently borrowed.
+         */
+        public int getActive() {
+            return active;
+        }
+
+        /**
+         * @return Number of connections waiting in the pool.
+         */
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * @return Number of threads waiting for a connection.
+         */
+        public int getWaiters() {
+            return waiters;
+        }
+
+        /**
+         * @return Maximum number of connections the pool may hold.
+         */
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * @return Number of physical connections opened since startup.
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * @return Number of physical connections closed since startup.
+         */
+        public long getDestroyed() {
+            return destroyed;
+        }
+
+        /**
+         * @return Number of successful borrows since startup.
+         */
+        public long getBorrows() {
+            return borrows;
+        }
+
+        /**
+         * @return Number of borrows that gave up after the max wait time.
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * @return Average time spent in borrow, in nanoseconds.
+         */
+        public long getAverageBorrowNanos() {
+            return averageBorrowNanos;
+        }
+
+        /**
+         * @return Longest time spent in borrow, in nanoseconds.
+         */
+        public long getMaxBorrowNanos() {
+            return maxBorrowNanos;
+        }
+
+        /**
+         * @return Number of prepared statements served from a connection's statement cache.
+         */
+        public long getStatementHits() {
+            return statementHits;
+        }
+
+        /**
+         * @return Number of prepared statements that had to be parsed by the driver.
+         */
+        public long getStatementMisses() {
+            return statementMisses;
+        }
+
+        /**
+         * @return Number of cached statements closed to make room for newer ones.
+         */
+        public long getStatementEvictions() {
+            return statementEvictions;
+        }
+
+        @Override
+        public String toString() {
+            return "active=" + active + ", idle=" + idle + ", waiters=" + waiters + ", max=" + maxSize
+                    + ", created=" + created + ", destroyed=" + destroyed + ", borrows=" + borrows
+                    + ", timeouts=" + timeouts + ", avgBorrowUs=" + averageBorrowNanos / 1000
+                    + ", maxBorrowUs=" + maxBorrowNanos / 1000 + ", statementHits=" + statementHits
+                    + ", statementMisses=" + statementMisses + ", statementEvictions=" + statementEvictions;
+        }
+    }
+}
@@ -9,11 +9,79 @@ public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    // Connection pool defaults
+    public static final int POOL_MAX_SIZE = 10;
+    public static final long POOL_MAX_WAIT_MILLIS = 5_000;
+    public static final long POOL_IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    public static final long POOL_VALIDATION_INTERVAL_MILLIS = 500;
+    public static final int POOL_VALIDATION_TIMEOUT_SECONDS = 2;
+    public static final int POOL_STATEMENT_CACHE_SIZE = 32;
+
+    private volatile ConnectionPool connectionPool;
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection gives it back to the pool.
+     *
+     * @return A pooled connection to the database.
+     */
     public Connection getConnection() throws ClassNotFoundException, SQLException {
+        return getConnectionPool().borrow();
+    }
+
+    /**
+     * Opens a new physical connection. The pool calls this only when it has no idle connection left;
+     * subclasses override it to target another database.
+     *
+     * @return A new connection to the database.
+     */
+    protected Connection openConnection() throws ClassNotFoundException, SQLException {
         logger.info("Create DB connection");
         Class.forName("com.mysql.cj.jdbc.Driver");
+        // Server-side prepares pay off because the pool keeps statements open per connection;
+        // cursor fetch lets statements with a fetch size stream large results instead of buffering them
         return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod?serverTimezone=UTC", "parkit", "OpenClassRoomIlyace");
+                "jdbc:mysql://localhost:3306/prod?serverTimezone=UTC&useServerPrepStmts=true&useCursorFetch=true", "parkit", "OpenClassRoomIlyace");
+    }
+
+    /**
+     * Creates the pool used by this configuration. Subclasses may override it to change the pool settings.
+     *
+     * @return A new connection pool.
+     */
+    protected ConnectionPool createConnectionPool() {
+        return new ConnectionPool(this::openConnection, POOL_MAX_SIZE, POOL_MAX_WAIT_MILLIS,
+                POOL_IDLE_TIMEOUT_MILLIS, POOL_VALIDATION_INTERVAL_MILLIS, POOL_VALIDATION_TIMEOUT_SECONDS,
+                POOL_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Gets the connection pool, creating it on first use.
+     *
+     * @return The connection pool of this configuration.
+     */
+    public ConnectionPool getConnectionPool() {
+        ConnectionPool pool = connectionPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = connectionPool;
+                if (pool == null) {
+                    pool = createConnectionPool();
+                    connectionPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Closes the connection pool and every idle connection it holds.
+     */
+    public synchronized void shutdown() {
+        if (connectionPool != null) {
+            logger.info("Closing connection pool: {}", connectionPool.getMetrics());
+            connectionPool.close();
+            connectionPool = null;
+        }
     }
 
     public void closeConnection(Connection con) {
@@ -0,0 +1,225 @@
+package com.parkit.parkingsystem.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * One versioned SQL migration, parsed from a script named {@code V<version>__<description>.sql}.
+ * Statements end with a semicolon at the end of a line; lines starting with {@code --} are comments.
+ * A statement preceded by the comment {@code -- @batch} is a batched statement: it must change a limited
+ * number of rows, e.g. with {@code limit 1000}, and is run again, one transaction each time, until it changes
+ * no row, so large tables are migrated without long locks.
+ * A statement preceded by {@code -- @if index NAME on TABLE} or {@code -- @unless column NAME on TABLE}
+ * (index or column, if or unless) is a conditional statement: it only runs if the index or column exists,
+ * respectively does not exist. DDL such as {@code create index} cannot be run twice, so this is how a script
+ * that stopped halfway runs again without failing on what it already did.
+ */
+public final class Migration {
+
+    private static final Pattern NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String BATCH_DIRECTIVE = "-- @batch";
+    private static final Pattern CONDITION_DIRECTIVE = Pattern.compile("-- @(if|unless) (index|column) (\\w+) on (\\w+)");
+
+    private final int version;
+    private final String description;
+    private final long checksum;
+    private final List<Statement> statements;
+
+    private Migration(int version, String description, long checksum, List<Statement> statements) {
+        this.version = version;
+        this.description = description;
+        this.checksum = checksum;
+        this.statements = statements;
+    }
+
+    /**
+     * Parses a migration script.
+     *
+     * @param name   The script file name, e.g. "V2__ticket_rollup.sql".
+     * @param script The script text.
+     * @return The migration.
+     * @throws IllegalArgumentException if the name does not follow the convention, or the script ends
+     *                                  with an unterminated statement or a dangling directive.
+     */
+    public static Migration parse(String name, String script) {
+        Matcher matcher = NAME.matcher(name);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Migration name must look like V1__description.sql: " + name);
+        }
+        // Line endings do not change the checksum, so a checkout on another OS does not look like an edit
+        String text = script.replace("\r\n", "\n");
+        CRC32 crc = new CRC32();
+        crc.update(text.getBytes(StandardCharsets.UTF_8));
+
+        List<Statement> statements = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+        boolean batched = false;
+        Condition condition = null;
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.equals(BATCH_DIRECTIVE)) {
+                batched = true;
+                continue;
+            }
+            Matcher directive = CONDITION_DIRECTIVE.matcher(trimmed);
+            if (directive.matches()) {
+                condition = new Condition(directive.group(2).equals("index"), directive.group(3), directive.group(4),
+                        directive.group(1).equals("if"));
+                continue;
+            }
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            sql.append(sql.length() == 0 ? "" : "\n").append(line);
+            if (trimmed.endsWith(";")) {
+                statements.add(new Statement(sql.substring(0, sql.length() - 1).trim(), batched, condition));
+                sql.setLength(0);
+                batched = false;
+                condition = null;
+            }
+        }
+        if (sql.length() > 0 || batched || condition != null) {
+            throw new IllegalArgumentException("Migration " + name + " ends without a semicolon after its last statement");
+        }
+        return new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), crc.getValue(),
+                Collections.unmodifiableList(statements));
+    }
+
+    /**
+     * Gets the version, from the script name.
+     *
+     * @return The version.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the description, from the script name.
+     *
+     * @return The description, with spaces for underscores.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets the checksum of the script, used to detect a script edited after it was applied.
+     *
+     * @return The CRC32 of the script, with line endings normalized.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Gets the statements of the script, in order.
+     *
+     * @return The statements.
+     */
+    public List<Statement> getStatements() {
+        return statements;
+    }
+
+    /**
+     * One statement of a migration.
+     */
+    public static final class Statement {
+
+        private final String sql;
+        private final boolean batched;
+        private final Condition condition;
+
+        private Statement(String sql, boolean batched, Condition condition) {
+            this.sql = sql;
+            this.batched = batched;
+            this.condition = condition;
+        }
+
+        /**
+         * Gets the SQL text, without the final semicolon.
+         *
+         * @return The SQL.
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Indicates whether the statement is run again until it changes no row.
+         *
+         * @return true for a batched statement.
+         */
+        public boolean isBatched() {
+            return batched;
+        }
+
+        /**
+         * Gets the condition the statement runs under.
+         *
+         * @return The condition, or null if the statement always runs.
+         */
+        public Condition getCondition() {
+            return condition;
+        }
+    }
+
+    /**
+     * Condition of a statement on the existence of an index or a column.
+     */
+    public static final class Condition {
+
+        private final boolean index;
+        private final String name;
+        private final String table;
+        private final boolean ifExists;
+
+        private Condition(boolean index, String name, String table, boolean ifExists) {
+            this.index = index;
+            this.name = name;
+            this.table = table;
+            this.ifExists = ifExists;
+        }
+
+        /**
+         * Indicates whether the condition is on an index rather than a column.
+         *
+         * @return true for an index; false for a column.
+         */
+        public boolean isIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the name of the index or column.
+         *
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the table of the index or column.
+         *
+         * @return The table name.
+         */
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * Indicates whether the statement runs when the index or column exists, or when it does not.
+         *
+         * @return true for {@code @if}; false for {@code @unless}.
+         */
+        public boolean isIfExists() {
+            return ifExists;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Brings a database schema up to date by applying, in version order, the migrations listed in
+ * {@code db/migration/migrations.txt} on the classpath. Applied versions are recorded with the checksum
+ * of their script in the schema_version table and never applied twice; a script changed after it was
+ * applied stops the migration. A named database lock keeps two starting applications from migrating at once.
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    public static final String MIGRATION_DIRECTORY = "db/migration/";
+    public static final String MIGRATION_LIST = MIGRATION_DIRECTORY + "migrations.txt";
+    public static final String LOCK_NAME = "parkit.schema_migration";
+    public static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private final DataBaseConfig dataBaseConfig;
+
+    /**
+     * Constructor for SchemaMigrator.
+     *
+     * @param dataBaseConfig Configuration used to obtain connections.
+     */
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    /**
+     * Loads the migrations bundled with the application.
+     *
+     * @return The migrations, in version order.
+     * @throws IOException if a listed script cannot be read.
+     * @throws IllegalArgumentException if a script cannot be parsed or the versions are not in increasing order.
+     */
+    public static List<Migration> loadMigrations() throws IOException {
+        return loadMigrations(UnaryOperator.identity());
+    }
+
+    /**
+     * Loads the migrations bundled with the application, rewriting each script first, e.g. to strip
+     * MySQL-only clauses for another database. Checksums are those of the rewritten scripts.
+     *
+     * @param dialect Rewrites the text of a script.
+     * @return The migrations, in version order.
+     * @throws IOException if a listed script cannot be read.
+     * @throws IllegalArgumentException if a script cannot be parsed or the versions are not in increasing order.
+     */
+    public static List<Migration> loadMigrations(UnaryOperator<String> dialect) throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(open(MIGRATION_LIST), StandardCharsets.UTF_8))) {
+            String name;
+            while ((name = reader.readLine()) != null) {
+                name = name.trim();
+                if (name.isEmpty() || name.startsWith("#")) {
+                    continue;
+                }
+                Migration migration = Migration.parse(name, dialect.apply(read(MIGRATION_DIRECTORY + name)));
+                if (!migrations.isEmpty() && migration.getVersion() <= migrations.get(migrations.size() - 1).getVersion()) {
+                    throw new IllegalArgumentException("Migration " + name + " is listed after a later version");
+                }
+                migrations.add(migration);
+            }
+        }
+        return migrations;
+    }
+
+    /**
+     * Applies the bundled migrations that the database has not applied yet.
+     *
+     * @return true if the schema is up to date; false if an error occurred.
+     */
+    public boolean migrate() {
+        List<Migration> migrations;
+        try {
+            migrations = loadMigrations();
+        } catch (Exception ex) {
+            logger.error("Error loading schema migrations", ex);
+            return false;
+        }
+        return migrate(migrations);
+    }
+
+    /**
+     * Applies the given migrations that the database has not applied yet, in order. DDL statements commit
+     * on their own in MySQL, so a migration that fails halfway is not rolled back: it is retried from its
+     * first statement on the next start. Scripts use {@code if not exists}, or an {@code @if}/{@code @unless}
+     * condition for DDL that has no such clause, so statements that already ran are skipped.
+     *
+     * @param migrations The migrations, in version order.
+     * @return true if the schema is up to date; false if an error occurred.
+     */
+    public boolean migrate(List<Migration> migrations) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            if (!lock(con)) {
+                logger.error("Timed out waiting for another application to migrate the schema");
+                return false;
+            }
+            try {
+                Map<Integer, Long> applied = getAppliedVersions(con);
+                for (Migration migration : migrations) {
+                    Long checksum = applied.get(migration.getVersion());
+                    if (checksum == null) {
+                        apply(con, migration);
+                    } else if (checksum != migration.getChecksum()) {
+                        logger.error("Migration V{} was changed after it was applied, schema left at its current version",
+                                migration.getVersion());
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                unlock(con);
+            }
+
+        } catch (Exception ex) {
+            logger.error("Error migrating schema", ex);
+            return false;
+        }
+    }
+
+    private static boolean lock(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_SCHEMA_LOCK)) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void unlock(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.RELEASE_SCHEMA_LOCK)) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        }
+    }
+
+    private static Map<Integer, Long> getAppliedVersions(Connection con) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement statement = con.createStatement()) {
+            statement.execute(DBConstants.CREATE_SCHEMA_VERSION);
+            try (ResultSet rs = statement.executeQuery(DBConstants.GET_SCHEMA_VERSIONS)) {
+                while (rs.next()) {
+                    applied.put(rs.getInt(1), rs.getLong(2));
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Runs the statements of a migration, then records its version.
+     */
+    private static void apply(Connection con, Migration migration) throws SQLException {
+        logger.info("Applying migration V{} {}", migration.getVersion(), migration.getDescription());
+        long start = System.currentTimeMillis();
+        try (Statement statement = con.createStatement()) {
+            for (Migration.Statement sql : migration.getStatements()) {
+                Migration.Condition condition = sql.getCondition();
+                if (condition != null && !holds(con, condition)) {
+                    logger.info("Migration V{} skipped a statement: {} {} on {} {}", migration.getVersion(),
+                            condition.isIndex() ? "index" : "column", condition.getName(), condition.getTable(),
+                            condition.isIfExists() ? "is missing" : "exists");
+                    continue;
+                }
+                if (!sql.isBatched()) {
+                    statement.execute(sql.getSql());
+                    continue;
+                }
+                // Auto-commit makes each run its own short transaction, so the table stays usable in between
+                long rows = 0;
+                int changed;
+                while ((changed = statement.executeUpdate(sql.getSql())) > 0) {
+                    rows += changed;
+                }
+                logger.info("Migration V{} changed {} rows in batches", migration.getVersion(), rows);
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_SCHEMA_VERSION)) {
+            ps.setInt(1, migration.getVersion());
+            ps.setString(2, migration.getDescription());
+            ps.setLong(3, migration.getChecksum());
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            ps.execute();
+        }
+        logger.info("Applied migration V{} in {} ms", migration.getVersion(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Checks whether the index or column of a condition exists, through the JDBC metadata of the current database.
+     */
+    private static boolean holds(Connection con, Migration.Condition condition) throws SQLException {
+        DatabaseMetaData metaData = con.getMetaData();
+        String table = metaData.storesUpperCaseIdentifiers()
+                ? condition.getTable().toUpperCase(Locale.ROOT) : condition.getTable();
+        boolean exists = false;
+        try (ResultSet rs = condition.isIndex()
+                ? metaData.getIndexInfo(con.getCatalog(), null, table, false, true)
+                : metaData.getColumns(con.getCatalog(), null, table, null)) {
+            String label = condition.isIndex() ? "INDEX_NAME" : "COLUMN_NAME";
+            while (!exists && rs.next()) {
+                exists = condition.getName().equalsIgnoreCase(rs.getString(label));
+            }
+        }
+        return exists == condition.isIfExists();
+    }
+
+    private static InputStream open(String resource) throws IOException {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new FileNotFoundException("Missing classpath resource " + resource);
+        }
+        return in;
+    }
+
+    private static String read(String resource) throws IOException {
+        try (InputStream in = open(resource)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements attached to one pooled connection and keyed by SQL text.
+ * Statements handed out are proxies: closing them only resets their parameters, pending batch,
+ * warnings and tuning so the next caller preparing the same SQL on this connection skips the parse.
+ * A pooled connection is used by one borrower at a time, so the cache is not synchronized.
+ */
+class StatementCache {
+
+    private static final Logger logger = LogManager.getLogger("StatementCache");
+
+    /**
+     * Marker for a statement prepared without the auto-generated keys flag.
+     */
+    static final int NO_GENERATED_KEYS_FLAG = -1;
+
+    private final Connection physical;
+    private final Map<String, CachedStatement> statements;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Constructor for StatementCache.
+     *
+     * @param physical  The physical connection statements are prepared on.
+     * @param maxSize   Maximum number of statements kept open on the connection.
+     * @param hits      Pool-wide counter of statements served from a cache.
+     * @param misses    Pool-wide counter of statements that had to be prepared.
+     * @param evictions Pool-wide counter of statements closed to make room.
+     */
+    StatementCache(Connection physical, int maxSize, AtomicLong hits, AtomicLong misses, AtomicLong evictions) {
+        this.physical = physical;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                evictions.incrementAndGet();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached statement for the given SQL, preparing and caching it on a miss.
+     * If the cached statement is still open in the caller's hands, an uncached one is prepared instead.
+     *
+     * @param owner             The connection proxy returned by {@link PreparedStatement#getConnection()}.
+     * @param sql               The SQL text to prepare.
+     * @param autoGeneratedKeys The JDBC generated keys flag, or {@link #NO_GENERATED_KEYS_FLAG}.
+     * @return A prepared statement ready for parameter binding.
+     */
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == NO_GENERATED_KEYS_FLAG ? sql : autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && cached.evicted && !cached.inUse) {
+            // Dropped after a failed reset, prepare a fresh one in its place
+            statements.remove(key);
+            cached = null;
+        }
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+            return cached.checkout(owner);
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement ps = autoGeneratedKeys == NO_GENERATED_KEYS_FLAG
+                ? physical.prepareStatement(sql)
+                : physical.prepareStatement(sql, autoGeneratedKeys);
+        if (cached != null) {
+            return ps;
+        }
+        cached = new CachedStatement(ps, ps.getFetchSize(), ps.getMaxRows(), ps.getQueryTimeout());
+        statements.put(key, cached);
+        return cached.checkout(owner);
+    }
+
+    /**
+     * Gets the number of statements currently cached.
+     *
+     * @return The cache size.
+     */
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * A physical statement kept open between borrowers.
+     */
+    private static final class CachedStatement {
+
+        private final PreparedStatement physical;
+        private final int defaultFetchSize;
+        private final int defaultMaxRows;
+        private final int defaultQueryTimeout;
+        private boolean inUse;
+        private boolean evicted;
+        // Set when the borrower changed fetch size, max rows or query timeout
+        private boolean tuned;
+
+        private CachedStatement(PreparedStatement physical, int defaultFetchSize, int defaultMaxRows,
+                                int defaultQueryTimeout) {
+            this.physical = physical;
+            this.defaultFetchSize = defaultFetchSize;
+            this.defaultMaxRows = defaultMaxRows;
+            this.defaultQueryTimeout = defaultQueryTimeout;
+        }
+
+        private PreparedStatement checkout(Connection owner) {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new CheckoutHandler(this, owner));
+        }
+
+        private void checkin() {
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            try {
+                physical.clearParameters();
+                // A batch abandoned halfway must not run under the next borrower's executeBatch
+                physical.clearBatch();
+                physical.clearWarnings();
+                if (tuned) {
+                    physical.setFetchSize(defaultFetchSize);
+                    physical.setMaxRows(defaultMaxRows);
+                    physical.setQueryTimeout(defaultQueryTimeout);
+                    tuned = false;
+                }
+            } catch (SQLException e) {
+                logger.error("Error while clearing cached statement", e);
+                evicted = true;
+                closeQuietly();
+            }
+        }
+
+        private void evict() {
+            evicted = true;
+            // A statement still in the caller's hands is closed when it is checked back in
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                logger.error("Error while closing prepared statement", e);
+            }
+        }
+    }
+
+    /**
+     * Handler behind the proxy given to one caller of {@code prepareStatement}.
+     */
+    private static final class CheckoutHandler implements InvocationHandler {
+
+        private final CachedStatement cached;
+        private final Connection owner;
+        private boolean released;
+
+        private CheckoutHandler(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        cached.checkin();
+                    }
+                    return null;
+                case "isClosed":
+                    return released || cached.physical.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + cached.physical;
+                default:
+                    if (released) {
+                        throw new SQLException("Prepared statement has already been closed");
+                    }
+                    if (isTuningSetter(method.getName())) {
+                        cached.tuned = true;
+                    }
+                    try {
+                        return method.invoke(cached.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+
+        private static boolean isTuningSetter(String name) {
+            return "setFetchSize".equals(name) || "setMaxRows".equals(name)
+                    || "setLargeMaxRows".equals(name) || "setQueryTimeout".equals(name);
+        }
+    }
+}
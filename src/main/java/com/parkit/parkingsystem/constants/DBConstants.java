@@ -4,9 +4,39 @@ public class DBConstants {
 
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
+    public static final String LOCK_AVAILABLE_PARKING_SPOTS = "select PARKING_NUMBER from parking where AVAILABLE = true and TYPE = ? order by PARKING_NUMBER limit ? for update skip locked";
+    public static final String GET_ALL_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE from parking";
 
-    public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
-    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME  limit 1";
-    public static final String GET_NB_TICKET = "SELECT COUNT(*) FROM ticket WHERE VEHICLE_REG_NUMBER = ?";
+    public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME, TYPE) values(?,?,?,?,?,?)";
+    public static final String SAVE_TICKET_WITH_ID = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME, TYPE, ID) values(?,?,?,?,?,?,?)";
+    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME is null";
+    public static final String GET_TICKET = "select PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, TYPE from ticket where VEHICLE_REG_NUMBER=? order by IN_TIME desc limit 1";
+    public static final String GET_OPEN_TICKET = "select PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, TYPE from ticket where VEHICLE_REG_NUMBER=? and OUT_TIME is null order by IN_TIME desc limit 1";
+    public static final String GET_OPEN_TICKETS = "select PARKING_NUMBER, ID, PRICE, IN_TIME, VEHICLE_REG_NUMBER, TYPE from ticket where OUT_TIME is null order by IN_TIME";
+    public static final String GET_NB_TICKET = "SELECT (SELECT COUNT(*) FROM ticket WHERE VEHICLE_REG_NUMBER = ?) + COALESCE((SELECT TICKET_COUNT FROM vehicle_history WHERE VEHICLE_REG_NUMBER = ?), 0)";
+    // Read one table after the other, each in the order of its IN_TIME index, so neither range is sorted
+    public static final String GET_TICKETS_BETWEEN = "select ID, PARKING_NUMBER, TYPE, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket where IN_TIME >= ? and IN_TIME < ? order by IN_TIME";
+    public static final String GET_ARCHIVED_TICKETS_BETWEEN = "select ID, PARKING_NUMBER, TYPE, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket_history where IN_TIME >= ? and IN_TIME < ? order by IN_TIME";
+    // Closed tickets per vehicle in the order of each table's vehicle index, so visit numbers are counted while streaming,
+    // without a window over both tables; visits in the ticket table follow the vehicle's archived ones
+    public static final String GET_ARCHIVED_CLOSED_TICKETS = "select TYPE, IN_TIME, OUT_TIME, VEHICLE_REG_NUMBER, 0 from ticket_history order by VEHICLE_REG_NUMBER, IN_TIME";
+    public static final String GET_CLOSED_TICKETS = "select t.TYPE, t.IN_TIME, t.OUT_TIME, t.VEHICLE_REG_NUMBER, coalesce(v.TICKET_COUNT, 0) from ticket t left join vehicle_history v on v.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER where t.OUT_TIME is not null order by t.VEHICLE_REG_NUMBER, t.IN_TIME";
+
+    public static final String UPSERT_TICKET_ROLLUP = "insert into ticket_rollup(GRANULARITY, BUCKET_START, TYPE, TICKET_COUNT, TOTAL_PRICE, TOTAL_DURATION_MILLIS, DISCOUNT_COUNT) values(?,?,?,?,?,?,?) on duplicate key update TICKET_COUNT = TICKET_COUNT + values(TICKET_COUNT), TOTAL_PRICE = TOTAL_PRICE + values(TOTAL_PRICE), TOTAL_DURATION_MILLIS = TOTAL_DURATION_MILLIS + values(TOTAL_DURATION_MILLIS), DISCOUNT_COUNT = DISCOUNT_COUNT + values(DISCOUNT_COUNT)";
+    public static final String GET_TICKET_ROLLUPS = "select GRANULARITY, BUCKET_START, TYPE, TICKET_COUNT, TOTAL_PRICE, TOTAL_DURATION_MILLIS, DISCOUNT_COUNT from ticket_rollup";
+
+    public static final String GET_ARCHIVABLE_TICKETS = "select ID from ticket where OUT_TIME < ? order by ID limit ?";
+    public static final String ARCHIVE_TICKETS = "insert into ticket_history(ID, PARKING_NUMBER, TYPE, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) select ID, PARKING_NUMBER, TYPE, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket where ID <= ? and OUT_TIME < ?";
+    public static final String COUNT_ARCHIVED_TICKETS = "insert into vehicle_history(VEHICLE_REG_NUMBER, TICKET_COUNT) select VEHICLE_REG_NUMBER, count(*) from ticket where ID <= ? and OUT_TIME < ? group by VEHICLE_REG_NUMBER on duplicate key update TICKET_COUNT = TICKET_COUNT + values(TICKET_COUNT)";
+    public static final String DELETE_ARCHIVED_TICKETS = "delete from ticket where ID <= ? and OUT_TIME < ?";
+
+    public static final String CREATE_SCHEMA_VERSION = "create table if not exists schema_version(VERSION int PRIMARY KEY, DESCRIPTION varchar(100) NOT NULL, CHECKSUM bigint NOT NULL, APPLIED_AT DATETIME NOT NULL)";
+    public static final String GET_SCHEMA_VERSIONS = "select VERSION, CHECKSUM from schema_version";
+    public static final String SAVE_SCHEMA_VERSION = "insert into schema_version(VERSION, DESCRIPTION, CHECKSUM, APPLIED_AT) values(?,?,?,?)";
+    public static final String GET_SCHEMA_LOCK = "select get_lock(?, ?)";
+    public static final String RELEASE_SCHEMA_LOCK = "select release_lock(?)";
+
+    public static final String RESERVE_ID_BLOCK = "update id_sequence set NEXT_ID = NEXT_ID + ? where NAME = ?";
+    public static final String GET_ID_SEQUENCE = "select NEXT_ID from id_sequence where NAME = ?";
 }
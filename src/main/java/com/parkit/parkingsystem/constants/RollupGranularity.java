@@ -0,0 +1,34 @@
+package com.parkit.parkingsystem.constants;
+
+/**
+ * Size of the time buckets of ticket rollups. Buckets start on whole hours or days, UTC.
+ */
+public enum RollupGranularity {
+    HOUR(60 * 60 * 1000L),
+    DAY(24 * 60 * 60 * 1000L);
+
+    private final long millis;
+
+    RollupGranularity(long millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * Gets the length of a bucket.
+     *
+     * @return The length, in milliseconds.
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Gets the start of the bucket holding a time.
+     *
+     * @param timeMillis The time, in milliseconds since the epoch.
+     * @return The start of its bucket, in milliseconds since the epoch.
+     */
+    public long bucketStart(long timeMillis) {
+        return Math.floorDiv(timeMillis, millis) * millis;
+    }
+}
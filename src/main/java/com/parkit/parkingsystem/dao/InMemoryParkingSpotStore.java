@@ -0,0 +1,86 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parking spots kept in memory only, for edge deployments, load tests and benchmarks where the database
+ * round trip would dominate. Spot types sit in an array indexed by spot number and availability in a
+ * {@link ParkingSpotAvailabilityIndex}, so claims and releases are lock-free compare-and-sets.
+ * Nothing survives a restart.
+ */
+public class InMemoryParkingSpotStore implements ParkingSpotStore {
+
+    // Type of each spot, by spot number; null for numbers without a spot
+    private final ParkingType[] spotTypes;
+    private final ParkingSpotAvailabilityIndex availabilityIndex;
+
+    /**
+     * Constructor for InMemoryParkingSpotStore.
+     *
+     * @param parkingSpots The spots of the parking, with their initial availability.
+     */
+    public InMemoryParkingSpotStore(List<ParkingSpot> parkingSpots) {
+        int maxSpotNumber = 0;
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            if (parkingSpot.getId() <= 0 || parkingSpot.getParkingType() == null) {
+                throw new IllegalArgumentException("Invalid parking spot: " + parkingSpot.getId());
+            }
+            maxSpotNumber = Math.max(maxSpotNumber, parkingSpot.getId());
+        }
+        spotTypes = new ParkingType[maxSpotNumber + 1];
+        availabilityIndex = new ParkingSpotAvailabilityIndex(maxSpotNumber);
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            spotTypes[parkingSpot.getId()] = parkingSpot.getParkingType();
+            availabilityIndex.setAvailable(parkingSpot.getParkingType(), parkingSpot.getId(), parkingSpot.isAvailable());
+        }
+    }
+
+    /**
+     * Creates a store of free spots numbered from 1, the car spots first, as in the default database.
+     *
+     * @param carSpots  Number of car spots.
+     * @param bikeSpots Number of bike spots.
+     * @return The store.
+     */
+    public static InMemoryParkingSpotStore withFreeSpots(int carSpots, int bikeSpots) {
+        List<ParkingSpot> parkingSpots = new ArrayList<>(carSpots + bikeSpots);
+        for (int spot = 1; spot <= carSpots + bikeSpots; spot++) {
+            parkingSpots.add(new ParkingSpot(spot, spot <= carSpots ? ParkingType.CAR : ParkingType.BIKE, true));
+        }
+        return new InMemoryParkingSpotStore(parkingSpots);
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return availabilityIndex.lowestAvailable(parkingType);
+    }
+
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        return availabilityIndex.claimLowestAvailable(parkingType);
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        int spotNumber = parkingSpot.getId();
+        if (spotNumber <= 0 || spotNumber >= spotTypes.length || spotTypes[spotNumber] == null) {
+            return false;
+        }
+        availabilityIndex.setAvailable(spotTypes[spotNumber], spotNumber, parkingSpot.isAvailable());
+        return true;
+    }
+
+    /**
+     * Counts the free spots of a type.
+     *
+     * @param parkingType The type of parking.
+     * @return The number of available spots.
+     */
+    public int countAvailable(ParkingType parkingType) {
+        return availabilityIndex.countAvailable(parkingType);
+    }
+}
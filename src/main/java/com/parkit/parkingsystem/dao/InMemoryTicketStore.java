@@ -0,0 +1,96 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tickets kept in memory only, for edge deployments, load tests and benchmarks where the database
+ * round trip would dominate. Only the latest ticket and the ticket count of each vehicle are kept,
+ * which is all the service layer reads. Each vehicle is updated atomically within its bin of a
+ * {@link ConcurrentHashMap}, so gates handling different vehicles do not contend.
+ * Stored tickets are copies. Nothing survives a restart.
+ */
+public class InMemoryTicketStore implements TicketStore {
+
+    private final ConcurrentMap<String, VehicleTickets> vehicles = new ConcurrentHashMap<>();
+    private final AtomicInteger lastTicketId = new AtomicInteger();
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        if (vehicleRegNumber == null) {
+            return false;
+        }
+        ticket.setId(lastTicketId.incrementAndGet());
+        Ticket stored = OpenTicketIndex.copyOf(ticket);
+        vehicles.merge(vehicleRegNumber, new VehicleTickets(stored, 1),
+                (previous, added) -> new VehicleTickets(stored, previous.count + 1));
+        return true;
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        VehicleTickets tickets = vehicles.get(vehicleRegNumber);
+        return tickets == null ? null : OpenTicketIndex.copyOf(tickets.latest);
+    }
+
+    @Override
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        VehicleTickets tickets = vehicles.get(vehicleRegNumber);
+        return tickets == null || tickets.latest.getOutTime() != null ? null : OpenTicketIndex.copyOf(tickets.latest);
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        if (vehicleRegNumber == null) {
+            return false;
+        }
+        boolean[] updated = new boolean[1];
+        vehicles.computeIfPresent(vehicleRegNumber, (key, tickets) -> {
+            // Like the database update, only an open ticket is closed: a concurrent exit that got there first wins
+            if (tickets.latest.getId() != ticket.getId() || tickets.latest.getOutTime() != null) {
+                return tickets;
+            }
+            Ticket stored = OpenTicketIndex.copyOf(tickets.latest);
+            stored.setPrice(ticket.getPrice());
+            stored.setOutTime(ticket.getOutTime() == null ? null : new Date(ticket.getOutTime().getTime()));
+            updated[0] = true;
+            return new VehicleTickets(stored, tickets.count);
+        });
+        return updated[0];
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        VehicleTickets tickets = vehicles.get(vehicleRegNumber);
+        return tickets == null ? 0 : tickets.count;
+    }
+
+    /**
+     * Gets the number of vehicles with at least one ticket.
+     *
+     * @return The vehicle count.
+     */
+    public int size() {
+        return vehicles.size();
+    }
+
+    /**
+     * The latest ticket of a vehicle and its number of tickets. Replaced, never modified.
+     */
+    private static final class VehicleTickets {
+
+        private final Ticket latest;
+        private final int count;
+
+        private VehicleTickets(Ticket latest, int count) {
+            this.latest = latest;
+            this.count = count;
+        }
+    }
+}
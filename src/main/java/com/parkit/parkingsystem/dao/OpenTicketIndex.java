@@ -0,0 +1,182 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.CompactTicket;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.LongObjectHashMap;
+import com.parkit.parkingsystem.util.RegistrationCodec;
+import com.parkit.parkingsystem.util.RegistrationInterner;
+
+import java.util.Date;
+
+/**
+ * In-memory index of the tickets still open (no out time), keyed by vehicle registration number.
+ * Entries are held as {@link CompactTicket}s, one immutable object per open ticket; the tickets callers get
+ * are built from them, so callers can modify those without touching the index.
+ * Plates are keyed by the {@code long} of a {@link RegistrationInterner}, in segments of primitive hash maps
+ * each behind its own lock, so the index holds no String or boxed key per vehicle. Plates the interner
+ * cannot pack are only interned while their vehicle has an open ticket.
+ */
+public class OpenTicketIndex {
+
+    private static final int SEGMENTS = 16;
+
+    private final RegistrationInterner interner = new RegistrationInterner();
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * Constructor for OpenTicketIndex.
+     */
+    public OpenTicketIndex() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Adds or replaces the open ticket of a vehicle.
+     *
+     * @param ticket The open ticket, with its ID, parking spot and in time set.
+     */
+    public void put(Ticket ticket) {
+        put(ticket.getVehicleRegNumber(), CompactTicket.of(ticket));
+    }
+
+    /**
+     * Adds or replaces the open ticket of a vehicle.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @param ticket           The open ticket.
+     */
+    public void put(String vehicleRegNumber, CompactTicket ticket) {
+        long key = ticket.getVehicleRegNumber() != RegistrationCodec.NOT_ENCODABLE
+                ? ticket.getVehicleRegNumber() : interner.key(vehicleRegNumber);
+        Segment segment = segmentFor(key);
+        CompactTicket replaced;
+        synchronized (segment) {
+            replaced = segment.put(key, ticket);
+        }
+        if (replaced != null) {
+            // The replaced entry already held a reference to the key
+            interner.release(key);
+        }
+    }
+
+    /**
+     * Gets the open ticket of a vehicle.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return A copy of the open ticket, or null if the vehicle has none.
+     */
+    public Ticket get(String vehicleRegNumber) {
+        CompactTicket ticket = getCompact(vehicleRegNumber);
+        return ticket == null ? null : ticket.toTicket(vehicleRegNumber);
+    }
+
+    /**
+     * Gets the open ticket of a vehicle as held by the index, without allocating anything.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return The open ticket, or null if the vehicle has none.
+     */
+    public CompactTicket getCompact(String vehicleRegNumber) {
+        long key = interner.find(vehicleRegNumber);
+        if (key == RegistrationCodec.NOT_ENCODABLE) {
+            return null;
+        }
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    /**
+     * Removes the open ticket of a vehicle, if it is the given ticket.
+     *
+     * @param ticket The ticket being closed.
+     * @return true if the ticket was in the index; false otherwise.
+     */
+    public boolean remove(Ticket ticket) {
+        return remove(ticket.getVehicleRegNumber(), ticket.getId());
+    }
+
+    /**
+     * Removes the open ticket of a vehicle, if it has the given ID.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @param ticketId         The ID of the ticket being closed.
+     * @return true if the ticket was in the index; false otherwise.
+     */
+    public boolean remove(String vehicleRegNumber, int ticketId) {
+        if (vehicleRegNumber == null) {
+            return false;
+        }
+        long key = interner.find(vehicleRegNumber);
+        if (key == RegistrationCodec.NOT_ENCODABLE) {
+            return false;
+        }
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            CompactTicket open = segment.get(key);
+            if (open == null || open.getId() != ticketId) {
+                return false;
+            }
+            segment.remove(key);
+            interner.release(key);
+            return true;
+        }
+    }
+
+    /**
+     * Gets the number of open tickets.
+     *
+     * @return The index size.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the number of vehicles with an open ticket whose plate the registration codec cannot pack.
+     *
+     * @return The number of interned plates.
+     */
+    public int getInternedCount() {
+        return interner.getInternedCount();
+    }
+
+    private Segment segmentFor(long key) {
+        // High bits of the mixed key, the map slots use the low ones
+        return segments[LongObjectHashMap.mix(key) >>> 28];
+    }
+
+    static Ticket copyOf(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setId(ticket.getId());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        if (parkingSpot != null) {
+            copy.setParkingSpot(new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable()));
+        }
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTime(ticket.getInTime() == null ? null : new Date(ticket.getInTime().getTime()));
+        copy.setOutTime(ticket.getOutTime() == null ? null : new Date(ticket.getOutTime().getTime()));
+        return copy;
+    }
+
+    /**
+     * One slice of the index.
+     */
+    private static final class Segment extends LongObjectHashMap<CompactTicket> {
+
+        private Segment() {
+            super(1024);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory index of free parking spots, holding one bitmap per {@link ParkingType}.
+ * Bit {@code n} of a bitmap is set when spot number {@code n} of that type is available,
+ * so the lowest free spot is found by scanning words rather than querying the parking table.
+ * Bits are updated with compare-and-set, so the index can be shared between threads.
+ */
+public class ParkingSpotAvailabilityIndex {
+
+    private static final int WORD_SHIFT = 6;
+
+    private final int capacity;
+    private final AtomicLongArray[] bitmaps;
+
+    /**
+     * Constructor for ParkingSpotAvailabilityIndex. Every spot starts unavailable.
+     *
+     * @param maxSpotNumber The highest parking spot number the index must hold.
+     */
+    public ParkingSpotAvailabilityIndex(int maxSpotNumber) {
+        if (maxSpotNumber < 0) {
+            throw new IllegalArgumentException("Spot number must not be negative: " + maxSpotNumber);
+        }
+        this.capacity = maxSpotNumber + 1;
+        int words = (capacity + 63) >>> WORD_SHIFT;
+        this.bitmaps = new AtomicLongArray[ParkingType.values().length];
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = new AtomicLongArray(words);
+        }
+    }
+
+    /**
+     * Indicates whether the given spot number fits in this index.
+     *
+     * @param spotNumber The parking spot number.
+     * @return true if the index can hold the spot; false otherwise.
+     */
+    public boolean covers(int spotNumber) {
+        return spotNumber >= 0 && spotNumber < capacity;
+    }
+
+    /**
+     * Marks a spot as available or taken.
+     *
+     * @param parkingType The type of the spot.
+     * @param spotNumber  The parking spot number.
+     * @param available   true to mark the spot as free, false to mark it as taken.
+     * @throws IllegalArgumentException if the spot number is outside the index.
+     */
+    public void setAvailable(ParkingType parkingType, int spotNumber, boolean available) {
+        if (!covers(spotNumber)) {
+            throw new IllegalArgumentException("Spot number out of index range: " + spotNumber);
+        }
+        AtomicLongArray bitmap = bitmaps[parkingType.ordinal()];
+        int word = spotNumber >>> WORD_SHIFT;
+        long mask = 1L << spotNumber;
+        long current;
+        long updated;
+        do {
+            current = bitmap.get(word);
+            updated = available ? current | mask : current & ~mask;
+        } while (current != updated && !bitmap.compareAndSet(word, current, updated));
+    }
+
+    /**
+     * Indicates whether a spot is currently marked as available.
+     *
+     * @param parkingType The type of the spot.
+     * @param spotNumber  The parking spot number.
+     * @return true if the spot is free; false if it is taken or outside the index.
+     */
+    public boolean isAvailable(ParkingType parkingType, int spotNumber) {
+        if (!covers(spotNumber)) {
+            return false;
+        }
+        return (bitmaps[parkingType.ordinal()].get(spotNumber >>> WORD_SHIFT) & (1L << spotNumber)) != 0;
+    }
+
+    /**
+     * Finds the lowest available spot number of a given type without changing the index.
+     *
+     * @param parkingType The type of parking (e.g., CAR or BIKE).
+     * @return The lowest free spot number, or -1 if every spot of that type is taken.
+     */
+    public int lowestAvailable(ParkingType parkingType) {
+        AtomicLongArray bitmap = bitmaps[parkingType.ordinal()];
+        for (int word = 0; word < bitmap.length(); word++) {
+            long bits = bitmap.get(word);
+            if (bits != 0) {
+                return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Atomically finds the lowest available spot of a given type and marks it as taken.
+     * Two threads calling this concurrently never get the same spot.
+     *
+     * @param parkingType The type of parking (e.g., CAR or BIKE).
+     * @return The claimed spot number, or -1 if every spot of that type is taken.
+     */
+    public int claimLowestAvailable(ParkingType parkingType) {
+        AtomicLongArray bitmap = bitmaps[parkingType.ordinal()];
+        for (int word = 0; word < bitmap.length(); word++) {
+            long bits;
+            while ((bits = bitmap.get(word)) != 0) {
+                long lowest = bits & -bits;
+                if (bitmap.compareAndSet(word, bits, bits & ~lowest)) {
+                    return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(lowest);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the available spots of a given type.
+     *
+     * @param parkingType The type of parking (e.g., CAR or BIKE).
+     * @return The number of free spots.
+     */
+    public int countAvailable(ParkingType parkingType) {
+        AtomicLongArray bitmap = bitmaps[parkingType.ordinal()];
+        int count = 0;
+        for (int word = 0; word < bitmap.length(); word++) {
+            count += Long.bitCount(bitmap.get(word));
+        }
+        return count;
+    }
+}
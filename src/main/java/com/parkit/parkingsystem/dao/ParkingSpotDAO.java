@@ -3,6 +3,8 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.journal.JournalEvent;
+import com.parkit.parkingsystem.journal.TicketJournal;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,16 +12,35 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * DAO class for interacting with the parking spot data in the database.
  */
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotStore {
 
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+    // How many spots claimNextAvailableSlot tries before giving up under contention
+    public static final int MAX_CLAIM_ATTEMPTS = 5;
+
     private final DataBaseConfig dataBaseConfig;
 
+    // Null until loadAvailabilityIndex() is called, in which case lookups go to the database
+    private volatile ParkingSpotAvailabilityIndex availabilityIndex;
+    // Null until enableJournal() is called, in which case availability changes are not journaled
+    private volatile TicketJournal journal;
+
+    private final AtomicLong claimCount = new AtomicLong();
+    private final AtomicLong claimContentionCount = new AtomicLong();
+    private final AtomicLong claimRetryCount = new AtomicLong();
+    private final AtomicLong claimFailureCount = new AtomicLong();
+
     /**
      * Constructor for ParkingSpotDAO.
      *
@@ -29,16 +50,116 @@ public class ParkingSpotDAO {
         this.dataBaseConfig = dataBaseConfig;
     }
 
+    /**
+     * Loads every parking spot into an in-memory availability index.
+     * Once loaded, {@link #getNextAvailableSlot(ParkingType)} is answered from the index and
+     * {@link #updateParking(ParkingSpot)} keeps it in sync, so the parking table must only be
+     * changed through this DAO afterwards.
+     *
+     * @return true if the index was loaded; false if an error occurred and the DAO keeps querying the database.
+     */
+    public boolean loadAvailabilityIndex() {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_ALL_PARKING_SPOTS);
+             ResultSet rs = ps.executeQuery()) {
+
+            List<ParkingSpot> parkingSpots = new ArrayList<>();
+            int maxSpotNumber = 0;
+            while (rs.next()) {
+                ParkingSpot parkingSpot = new ParkingSpot(
+                        rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2));
+                parkingSpots.add(parkingSpot);
+                maxSpotNumber = Math.max(maxSpotNumber, parkingSpot.getId());
+            }
+
+            availabilityIndex = buildIndex(parkingSpots, maxSpotNumber);
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                journal(parkingSpot);
+            }
+            logger.info("Loaded availability index for {} parking spots", parkingSpots.size());
+            return true;
+
+        } catch (Exception ex) {
+            logger.error("Error loading parking availability index", ex);
+            TicketJournal target = journal;
+            if (target != null) {
+                // The journal misses the spots, it must not be replayed instead of this load
+                target.markIncomplete();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Builds the availability index from spots replayed from a {@link TicketJournal} instead of the database,
+     * without checking them against the parking table. Only restore from a journal that was closed cleanly,
+     * see {@link com.parkit.parkingsystem.journal.JournalState#isCleanlyClosed()}, when nothing else
+     * changed the parking table since.
+     *
+     * @param parkingSpots Every parking spot, e.g. {@link com.parkit.parkingsystem.journal.JournalState#getParkingSpots()}.
+     */
+    public void restoreAvailabilityIndex(List<ParkingSpot> parkingSpots) {
+        int maxSpotNumber = 0;
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            maxSpotNumber = Math.max(maxSpotNumber, parkingSpot.getId());
+        }
+        availabilityIndex = buildIndex(parkingSpots, maxSpotNumber);
+        logger.info("Restored availability index for {} parking spots from the journal", parkingSpots.size());
+    }
+
+    private static ParkingSpotAvailabilityIndex buildIndex(List<ParkingSpot> parkingSpots, int maxSpotNumber) {
+        ParkingSpotAvailabilityIndex index = new ParkingSpotAvailabilityIndex(maxSpotNumber);
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            index.setAvailable(parkingSpot.getParkingType(), parkingSpot.getId(), parkingSpot.isAvailable());
+        }
+        return index;
+    }
+
+    /**
+     * Records every committed availability change in the given journal, from now on.
+     * Enable it before {@link #loadAvailabilityIndex()} so the loaded spots are journaled too.
+     *
+     * @param journal The journal to append to.
+     */
+    public void enableJournal(TicketJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Gets the in-memory availability index.
+     *
+     * @return The index, or null if it has not been loaded.
+     */
+    public ParkingSpotAvailabilityIndex getAvailabilityIndex() {
+        return availabilityIndex;
+    }
+
     /**
      * Fetches the next available parking slot for a given parking type (CAR or BIKE).
+     * Answered from the availability index when it is loaded, from the database otherwise.
      *
      * @param parkingType The type of parking (e.g., CAR or BIKE).
      * @return The ID of the next available slot, or -1 if no slot is available or an error occurs.
      */
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType) {
+        ParkingSpotAvailabilityIndex index = availabilityIndex;
+        if (index != null) {
+            return index.lowestAvailable(parkingType);
+        }
+
         int result = -1;
-        try (Connection con = dataBaseConfig.getConnection();
-             PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT)) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            result = findNextAvailableSlot(con, parkingType);
+        } catch (Exception ex) {
+            logger.error("Error fetching next available slot", ex);
+        }
+        return result;
+    }
+
+    private int findNextAvailableSlot(Connection con, ParkingType parkingType) throws SQLException {
+        int result = -1;
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT)) {
 
             ps.setString(1, parkingType.toString());
             ResultSet rs = ps.executeQuery();
@@ -50,11 +171,209 @@ public class ParkingSpotDAO {
             // Clean up the result set and prepared statement
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+        }
+        return result;
+    }
 
+    /**
+     * Finds the next available parking slot for a given parking type and marks it as taken in one step.
+     * The spot is taken with a conditional update that only succeeds while the spot is still available,
+     * so two gates racing for the same spot never both get it: the loser retries with the next candidate,
+     * up to {@link #MAX_CLAIM_ATTEMPTS} times.
+     *
+     * @param parkingType The type of parking (e.g., CAR or BIKE).
+     * @return The ID of the claimed slot, or -1 if no slot could be claimed or an error occurs.
+     */
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            int claimed = claimNextAvailableSlot(con, parkingType);
+            if (claimed > 0) {
+                journal(new ParkingSpot(claimed, parkingType, false));
+            }
+            return claimed;
         } catch (Exception ex) {
-            logger.error("Error fetching next available slot", ex);
+            logger.error("Error claiming a {} spot", parkingType, ex);
+            return -1;
         }
-        return result;
+    }
+
+    /**
+     * Claims the next available slot on the given connection, which may be part of a larger transaction.
+     * If that transaction is rolled back, the caller must give the spot back to the index with
+     * {@link #syncAvailabilityIndex(ParkingSpot)}; if it is committed, the caller syncs the taken spot
+     * the same way so it is journaled.
+     */
+    int claimNextAvailableSlot(Connection con, ParkingType parkingType) throws SQLException {
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                claimRetryCount.incrementAndGet();
+            }
+            ParkingSpotAvailabilityIndex index = availabilityIndex;
+            // The index hands each candidate to one caller only, the database arbitrates with other processes
+            int candidate = index != null ? index.claimLowestAvailable(parkingType) : findNextAvailableSlot(con, parkingType);
+            if (candidate <= 0) {
+                return -1;
+            }
+
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)) {
+
+                ps.setInt(1, candidate);
+                if (ps.executeUpdate() == 1) {
+                    claimCount.incrementAndGet();
+                    return candidate;
+                }
+                // Someone else took the spot first; it stays marked as taken in the index
+                claimContentionCount.incrementAndGet();
+
+            } catch (SQLException ex) {
+                if (index != null) {
+                    index.setAvailable(parkingType, candidate, true);
+                }
+                throw ex;
+            }
+        }
+        claimFailureCount.incrementAndGet();
+        logger.warn("Gave up claiming a {} spot after {} attempts", parkingType, MAX_CLAIM_ATTEMPTS);
+        return -1;
+    }
+
+    /**
+     * Claims a block of available slots in one transaction on one connection.
+     * The candidates come from the availability index when it is loaded, or are locked with a single
+     * {@code select ... for update skip locked} otherwise, so gates leasing at once do not wait on each other;
+     * they are then taken with one batch of conditional updates. A candidate another process took first
+     * is left out of the block.
+     *
+     * @param parkingType The type of parking (e.g., CAR or BIKE).
+     * @param count       The maximum number of slots to claim.
+     * @return The IDs of the claimed slots, empty if no slot could be claimed or an error occurs.
+     */
+    @Override
+    public int[] claimAvailableSlots(ParkingType parkingType, int count) {
+        ParkingSpotAvailabilityIndex index = availabilityIndex;
+        int[] candidates = new int[0];
+        int[] claimed;
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                candidates = index != null ? claimFromIndex(index, parkingType, count) : lockAvailableSlots(con, parkingType, count);
+                claimed = claimSlots(con, candidates);
+                con.commit();
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+
+        } catch (Exception ex) {
+            logger.error("Error claiming a block of {} spots", parkingType, ex);
+            if (index != null) {
+                // The claim was rolled back: give the candidates back to the index
+                for (int candidate : candidates) {
+                    index.setAvailable(parkingType, candidate, true);
+                }
+            }
+            return new int[0];
+        }
+
+        for (int spot : claimed) {
+            journal(new ParkingSpot(spot, parkingType, false));
+        }
+        return claimed;
+    }
+
+    private static int[] claimFromIndex(ParkingSpotAvailabilityIndex index, ParkingType parkingType, int count) {
+        int[] candidates = new int[count];
+        int found = 0;
+        while (found < count) {
+            int candidate = index.claimLowestAvailable(parkingType);
+            if (candidate <= 0) {
+                break;
+            }
+            candidates[found++] = candidate;
+        }
+        return found == count ? candidates : Arrays.copyOf(candidates, found);
+    }
+
+    private int[] lockAvailableSlots(Connection con, ParkingType parkingType, int count) throws SQLException {
+        int[] candidates = new int[count];
+        int found = 0;
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.LOCK_AVAILABLE_PARKING_SPOTS)) {
+
+            ps.setString(1, parkingType.toString());
+            ps.setInt(2, count);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && found < count) {
+                    candidates[found++] = rs.getInt(1);
+                }
+            }
+        }
+        return found == count ? candidates : Arrays.copyOf(candidates, found);
+    }
+
+    private int[] claimSlots(Connection con, int[] candidates) throws SQLException {
+        if (candidates.length == 0) {
+            return candidates;
+        }
+        int[] updateCounts;
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)) {
+            for (int candidate : candidates) {
+                ps.setInt(1, candidate);
+                ps.addBatch();
+            }
+            updateCounts = ps.executeBatch();
+        }
+
+        int[] claimed = new int[candidates.length];
+        int taken = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (updateCounts[i] == 1 || updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                claimed[taken++] = candidates[i];
+            } else {
+                // Someone else took the spot first; it stays marked as taken in the index
+                claimContentionCount.incrementAndGet();
+            }
+        }
+        claimCount.addAndGet(taken);
+        return taken == claimed.length ? claimed : Arrays.copyOf(claimed, taken);
+    }
+
+    /**
+     * Gets the number of spots successfully claimed.
+     *
+     * @return The claim count.
+     */
+    public long getClaimCount() {
+        return claimCount.get();
+    }
+
+    /**
+     * Gets the number of claim attempts that lost the race for a spot to another gate.
+     *
+     * @return The contention count.
+     */
+    public long getClaimContentionCount() {
+        return claimContentionCount.get();
+    }
+
+    /**
+     * Gets the number of times a claim moved on to another candidate spot.
+     *
+     * @return The retry count.
+     */
+    public long getClaimRetryCount() {
+        return claimRetryCount.get();
+    }
+
+    /**
+     * Gets the number of claims abandoned after {@link #MAX_CLAIM_ATTEMPTS} attempts.
+     *
+     * @return The failure count.
+     */
+    public long getClaimFailureCount() {
+        return claimFailureCount.get();
     }
 
     /**
@@ -63,10 +382,28 @@ public class ParkingSpotDAO {
      * @param parkingSpot The ParkingSpot object containing the updated availability and ID.
      * @return true if the update was successful (one row affected), false otherwise.
      */
+    @Override
     public boolean updateParking(ParkingSpot parkingSpot) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            if (updateParking(con, parkingSpot)) {
+                syncAvailabilityIndex(parkingSpot);
+                return true;
+            }
+            return false;
+
+        } catch (Exception ex) {
+            logger.error("Error updating parking info", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Updates the availability of a spot on the given connection, without touching the availability index.
+     * The caller syncs the index with {@link #syncAvailabilityIndex(ParkingSpot)} once the write is committed.
+     */
+    boolean updateParking(Connection con, ParkingSpot parkingSpot) throws SQLException {
         // Update the availability for the given parking spot
-        try (Connection con = dataBaseConfig.getConnection();
-             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)) {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)) {
 
             ps.setBoolean(1, parkingSpot.isAvailable());
             ps.setInt(2, parkingSpot.getId());
@@ -75,11 +412,40 @@ public class ParkingSpotDAO {
             dataBaseConfig.closePreparedStatement(ps);
 
             return (updateRowCount == 1);
+        }
+    }
 
-        } catch (Exception ex) {
-            logger.error("Error updating parking info", ex);
-            return false;
+    /**
+     * Applies a committed availability change to the index, if it is loaded, and to the journal, if enabled.
+     */
+    void syncAvailabilityIndex(ParkingSpot parkingSpot) {
+        journal(parkingSpot);
+        ParkingSpotAvailabilityIndex index = availabilityIndex;
+        if (index == null) {
+            return;
+        }
+        if (parkingSpot.getParkingType() == null || !index.covers(parkingSpot.getId())) {
+            // A spot the index does not know about: fall back to the database rather than serve stale data
+            logger.warn("Parking spot {} is not in the availability index, disabling the index", parkingSpot.getId());
+            availabilityIndex = null;
+            return;
         }
+        index.setAvailable(parkingSpot.getParkingType(), parkingSpot.getId(), parkingSpot.isAvailable());
     }
 
+    /**
+     * Appends a committed availability change to the journal, if enabled. A journal failure does not fail
+     * the change, which is already in the database.
+     */
+    private void journal(ParkingSpot parkingSpot) {
+        TicketJournal target = journal;
+        if (target == null || parkingSpot.getParkingType() == null) {
+            return;
+        }
+        try {
+            target.append(JournalEvent.spotChanged(parkingSpot));
+        } catch (Exception ex) {
+            logger.error("Error journaling parking spot {}", parkingSpot.getId(), ex);
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.Arrays;
+
+/**
+ * Storage of the parking spots and their availability, as used by the service layer.
+ * {@link ParkingSpotDAO} keeps them in the database, {@link InMemoryParkingSpotStore} in memory.
+ * Implementations may be called from many threads at once.
+ */
+public interface ParkingSpotStore {
+
+    /**
+     * Fetches the next available parking slot for a given parking type, without taking it.
+     *
+     * @param parkingType The type of parking (e.g., CAR or BIKE).
+     * @return The ID of the next available slot, or -1 if no slot is available or an error occurs.
+     */
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * Finds the next available parking slot for a given parking type and marks it as taken in one step,
+     * so two callers never get the same spot.
+     *
+     * @param parkingType The type of parking (e.g., CAR or BIKE).
+     * @return The ID of the claimed slot, or -1 if no slot could be claimed or an error occurs.
+     */
+    int claimNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * Claims up to {@code count} available parking slots of a given type at once, marking them as taken.
+     * Stores with a cheaper bulk path than one claim per spot override this.
+     *
+     * @param parkingType The type of parking (e.g., CAR or BIKE).
+     * @param count       The maximum number of slots to claim.
+     * @return The IDs of the claimed slots, empty if no slot could be claimed or an error occurs.
+     */
+    default int[] claimAvailableSlots(ParkingType parkingType, int count) {
+        int[] spots = new int[count];
+        int claimed = 0;
+        while (claimed < count) {
+            int spot = claimNextAvailableSlot(parkingType);
+            if (spot <= 0) {
+                break;
+            }
+            spots[claimed++] = spot;
+        }
+        return claimed == count ? spots : Arrays.copyOf(spots, claimed);
+    }
+
+    /**
+     * Updates the availability status of a parking spot.
+     *
+     * @param parkingSpot The ParkingSpot object containing the updated availability and ID.
+     * @return true if the spot was updated; false otherwise.
+     */
+    boolean updateParking(ParkingSpot parkingSpot);
+}
@@ -0,0 +1,190 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.model.CompactTicket;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.BiFunction;
+
+/**
+ * DAO running the entry and exit of a vehicle as single transactions.
+ * The spot claim or release, the ticket write and the visit count read share one connection and
+ * are committed together, so a failing step leaves neither a taken spot without a ticket nor a
+ * closed ticket with its spot still taken. The in-memory indexes of {@link ParkingSpotDAO} and
+ * {@link TicketDAO} are only updated once the transaction is committed.
+ * The steps are not sent as one JDBC batch: a batch repeats a single statement, and each step here is a
+ * different statement needing the result of the one before it, the claimed spot for the insert and the
+ * updated row count before the spot is freed.
+ */
+public class ParkingTransactionDAO {
+
+    private static final Logger logger = LogManager.getLogger("ParkingTransactionDAO");
+
+    private final DataBaseConfig dataBaseConfig;
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+
+    /**
+     * Constructor for ParkingTransactionDAO.
+     *
+     * @param dataBaseConfig The database configuration object used for obtaining connections.
+     * @param parkingSpotDAO DAO of the parking spots, whose availability index is kept in sync.
+     * @param ticketDAO      DAO of the tickets, whose open ticket index and visit count cache are kept in sync.
+     * @throws IllegalStateException if write-behind is enabled on the ticket DAO.
+     */
+    public ParkingTransactionDAO(DataBaseConfig dataBaseConfig, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        // Tickets are written in the entry and exit transactions, never queued behind them
+        ticketDAO.enableTransactions();
+        this.dataBaseConfig = dataBaseConfig;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+    }
+
+    /**
+     * Records the entry of a vehicle: claims a spot if the ticket has none yet, saves the ticket
+     * and counts the tickets of the vehicle, in one transaction.
+     *
+     * @param ticket The new ticket. Its parking spot must have its type set, and either ID 0 to claim
+     *               the next available spot of that type, or the ID of a spot already claimed by the caller.
+     * @return The number of tickets of the vehicle, the new one included, 0 if no spot was available,
+     * or -1 if an error occurred. Nothing is written unless a positive count is returned.
+     */
+    public int enterVehicle(Ticket ticket) {
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        VisitCountCache cache = ticketDAO.getVisitCountCache();
+        int claimedSpot = 0;
+        boolean saving = false;
+        int counted = -1;
+        long stamp = 0;
+
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                if (parkingSpot.getId() == 0) {
+                    claimedSpot = parkingSpotDAO.claimNextAvailableSlot(con, parkingSpot.getParkingType());
+                    if (claimedSpot <= 0) {
+                        con.rollback();
+                        return 0;
+                    }
+                    parkingSpot.setId(claimedSpot);
+                    parkingSpot.setAvailable(false);
+                }
+                ticketDAO.onTicketSaving(ticket);
+                saving = true;
+                if (!ticketDAO.insertTicket(con, ticket)) {
+                    throw new SQLException("Ticket for vehicle " + vehicleRegNumber + " was not inserted");
+                }
+                if (cache == null || cache.get(vehicleRegNumber) < 0) {
+                    // Taken before the count is read, so a ticket of the vehicle saved meanwhile keeps it out of the cache
+                    stamp = cache != null ? cache.stamp(vehicleRegNumber) : 0;
+                    counted = ticketDAO.countTickets(con, vehicleRegNumber);
+                }
+                con.commit();
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+
+        } catch (Exception ex) {
+            logger.error("Error recording entry of vehicle {}", vehicleRegNumber, ex);
+            if (saving) {
+                ticketDAO.onTicketSaveFailed(ticket);
+            }
+            if (claimedSpot > 0) {
+                // The claim was rolled back: the spot is free again, in the index too
+                parkingSpotDAO.syncAvailabilityIndex(new ParkingSpot(claimedSpot, parkingSpot.getParkingType(), true));
+                parkingSpot.setId(0);
+            }
+            return -1;
+        }
+
+        if (claimedSpot > 0) {
+            parkingSpotDAO.syncAvailabilityIndex(parkingSpot);
+        }
+        // A cached count is incremented under its segment lock, so concurrent entries of a vehicle each add their ticket
+        int cached = ticketDAO.onTicketSaved(ticket, counted, stamp);
+        if (cached >= 0) {
+            return cached;
+        }
+        // Not counted in the transaction because the count was cached then, but it was evicted since
+        return counted >= 0 ? counted : ticketDAO.getNbTicket(vehicleRegNumber);
+    }
+
+    /**
+     * Records the exit of a vehicle: closes its open ticket, prices it and frees its spot, in one transaction.
+     * The ticket stays in compact form from the open ticket index to the update, which binds its fields directly.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @param outTime          The time the vehicle leaves, in milliseconds since the epoch.
+     * @param pricing          Closes and prices the ticket, given the open ticket and the number of tickets of
+     *                         the vehicle. Only called once the open ticket is found.
+     * @return The closed ticket, or null if the vehicle has no open ticket, its ticket was closed by a concurrent
+     * exit or an error occurred, in which case nothing was written.
+     */
+    public CompactTicket exitVehicle(String vehicleRegNumber, long outTime,
+                                     BiFunction<CompactTicket, Integer, CompactTicket> pricing) {
+        VisitCountCache cache = ticketDAO.getVisitCountCache();
+        CompactTicket ticket;
+        ParkingSpot parkingSpot;
+        int cachedCount;
+        long stamp = 0;
+        int nbTicket;
+
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                CompactTicket openTicket = ticketDAO.getOpenCompactTicket(con, vehicleRegNumber);
+                if (openTicket == null) {
+                    con.rollback();
+                    logger.info("No open ticket found for vehicle {}", vehicleRegNumber);
+                    return null;
+                }
+                cachedCount = cache != null ? cache.get(vehicleRegNumber) : -1;
+                if (cachedCount >= 0) {
+                    nbTicket = cachedCount;
+                } else {
+                    stamp = cache != null ? cache.stamp(vehicleRegNumber) : 0;
+                    nbTicket = ticketDAO.countTickets(con, vehicleRegNumber);
+                }
+
+                ticket = pricing.apply(openTicket, nbTicket);
+
+                parkingSpot = new ParkingSpot(ticket.getParkingNumber(), ticket.getParkingType(), true);
+                if (!ticketDAO.writeTicketUpdate(con, ticket)) {
+                    // The update only matches an open ticket: a concurrent exit of the vehicle closed it first
+                    con.rollback();
+                    logger.info("Ticket {} of vehicle {} was already closed by another exit", ticket.getId(), vehicleRegNumber);
+                    return null;
+                }
+                if (!parkingSpotDAO.updateParking(con, parkingSpot)) {
+                    throw new SQLException("Exit of vehicle " + vehicleRegNumber + " did not free its spot");
+                }
+                con.commit();
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+
+        } catch (Exception ex) {
+            logger.error("Error recording exit of vehicle {}", vehicleRegNumber, ex);
+            return null;
+        }
+
+        ticketDAO.onTicketUpdated(vehicleRegNumber, ticket);
+        parkingSpotDAO.syncAvailabilityIndex(parkingSpot);
+        if (cache != null && cachedCount < 0) {
+            cache.put(vehicleRegNumber, nbTicket, stamp);
+        }
+        return ticket;
+    }
+}
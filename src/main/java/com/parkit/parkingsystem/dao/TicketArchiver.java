@@ -0,0 +1,161 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves closed tickets older than a given age from the ticket table to the ticket_history table,
+ * so the gate queries on the ticket table keep the same cost as the years go by.
+ * Tickets move in small batches, one transaction each, with a pause between batches so the gates
+ * are never held up for long. Each batch also adds the moved tickets to the per-vehicle totals of the
+ * vehicle_history table, so recurring customers keep their discount.
+ */
+public class TicketArchiver implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiver");
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_BATCH_PAUSE_MILLIS = 100;
+    public static final long DEFAULT_RUN_INTERVAL_MILLIS = 60 * 60 * 1000L;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final long maxAgeMillis;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor for TicketArchiver.
+     *
+     * @param dataBaseConfig   Configuration used to obtain connections.
+     * @param maxAgeMillis     Age, counted from their out time, from which closed tickets are archived.
+     * @param batchSize        Maximum number of tickets moved in one transaction.
+     * @param batchPauseMillis Pause between two batches.
+     */
+    public TicketArchiver(DataBaseConfig dataBaseConfig, long maxAgeMillis, int batchSize, long batchPauseMillis) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.maxAgeMillis = maxAgeMillis;
+        this.batchSize = batchSize;
+        this.batchPauseMillis = batchPauseMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Archives the old tickets now, then again on a fixed interval, from a background thread.
+     *
+     * @param runIntervalMillis Time between the end of a run and the start of the next.
+     */
+    public void start(long runIntervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::archive, 0, runIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Moves every closed ticket older than the maximum age to the history table, batch by batch.
+     * Stops early once the archiver is closed.
+     *
+     * @return The number of tickets moved, or -1 if an error occurred, in which case the failed batch was rolled back.
+     */
+    public long archive() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - maxAgeMillis);
+        long archived = 0;
+        try {
+            int moved;
+            while (!closed && (moved = archiveBatch(cutoff)) > 0) {
+                archived += moved;
+                if (moved < batchSize) {
+                    break;
+                }
+                Thread.sleep(batchPauseMillis);
+            }
+            if (archived > 0) {
+                logger.info("Archived {} tickets closed before {}", archived, cutoff);
+            }
+            return archived;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return archived;
+        } catch (Exception ex) {
+            logger.error("Error archiving tickets after {} archived", archived, ex);
+            return -1;
+        }
+    }
+
+    /**
+     * Moves the oldest tickets closed before the cutoff, up to the batch size, in one transaction.
+     *
+     * @return The number of tickets moved.
+     */
+    private int archiveBatch(Timestamp cutoff) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                // Archived tickets are gone from the table, so the batch is every candidate up to the last ID found
+                int lastId = -1;
+                try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKETS)) {
+                    ps.setTimestamp(1, cutoff);
+                    ps.setInt(2, batchSize);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            lastId = rs.getInt(1);
+                        }
+                    }
+                }
+                if (lastId < 0) {
+                    con.rollback();
+                    return 0;
+                }
+                int moved = execute(con, DBConstants.ARCHIVE_TICKETS, lastId, cutoff);
+                execute(con, DBConstants.COUNT_ARCHIVED_TICKETS, lastId, cutoff);
+                if (execute(con, DBConstants.DELETE_ARCHIVED_TICKETS, lastId, cutoff) != moved) {
+                    throw new SQLException("Archived and deleted ticket counts differ up to ticket " + lastId);
+                }
+                con.commit();
+                return moved;
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static int execute(Connection con, String sql, int lastId, Timestamp cutoff) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setInt(1, lastId);
+            ps.setTimestamp(2, cutoff);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Stops the scheduled runs, letting a batch in progress commit.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+    }
+}
@@ -3,24 +3,51 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.journal.JournalEvent;
+import com.parkit.parkingsystem.journal.TicketJournal;
+import com.parkit.parkingsystem.model.CompactTicket;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.RegistrationCodec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * DAO class responsible for accessing and modifying ticket data in the database.
  */
-public class TicketDAO {
+public class TicketDAO implements TicketStore {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
     private final DataBaseConfig dataBaseConfig;
 
+    // Null until loadOpenTicketIndex() is called, in which case exits look tickets up in the database
+    private volatile OpenTicketIndex openTicketIndex;
+    // Null until enableVisitCountCache() is called, in which case every count queries the database
+    private volatile VisitCountCache visitCountCache;
+    // Null until enableWriteBehind() is called, in which case ticket writes commit one by one
+    private volatile TicketWriteBehind writeBehind;
+    // Null until enableJournal() is called, in which case committed ticket changes are not journaled
+    private volatile TicketJournal journal;
+    // Null until enableRollups() is called, in which case closed tickets are not added to hourly and daily totals
+    private volatile TicketRollups rollups;
+    // Null until enableIdAllocator() is called, in which case ticket IDs are generated by AUTO_INCREMENT
+    private volatile TicketIdAllocator idAllocator;
+    // Null until enableArchiver() is called, in which case closed tickets stay in the ticket table
+    private volatile TicketArchiver archiver;
+    // Set once a ParkingTransactionDAO writes through this DAO, which rules out write-behind
+    private boolean transactional;
+
     /**
      * Constructor for TicketDAO.
      *
@@ -31,28 +58,399 @@ public class TicketDAO {
     }
 
     /**
-     * Saves a new ticket in the database.
+     * Loads the tickets without an out time into an in-memory index keyed by registration number.
+     * Once loaded, {@link #getOpenTicket(String)} is answered from the index and
+     * {@link #saveTicket(Ticket)} and {@link #updateTicket(Ticket)} keep it in sync, so the ticket
+     * table must only be changed through this DAO afterwards.
+     *
+     * @return true if the index was loaded; false if an error occurred and exits keep querying the database.
+     */
+    public boolean loadOpenTicketIndex() {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+             ResultSet rs = ps.executeQuery()) {
+
+            OpenTicketIndex index = new OpenTicketIndex();
+            boolean journaled = journal != null;
+            if (journaled) {
+                // Replaying forgets the tickets journaled so far, some of which may have been closed since
+                try {
+                    journal.append(JournalEvent.openTicketsReloaded());
+                } catch (Exception ex) {
+                    logger.error("Error journaling the open ticket reload", ex);
+                }
+            }
+            while (rs.next()) {
+                // Rows go straight into compact tickets, without a Ticket, ParkingSpot and Date each
+                String vehicleRegNumber = rs.getString(5);
+                CompactTicket ticket = new CompactTicket(rs.getInt(2), rs.getInt(1),
+                        (byte) ParkingType.valueOf(rs.getString(6)).ordinal(), RegistrationCodec.encode(vehicleRegNumber),
+                        rs.getTimestamp(4).getTime(), CompactTicket.NO_OUT_TIME, rs.getDouble(3), false);
+                // Rows come oldest first, so the latest ticket of a vehicle wins
+                index.put(vehicleRegNumber, ticket);
+                if (journaled) {
+                    journal(() -> JournalEvent.ticketOpened(ticket.toTicket(vehicleRegNumber)), ticket.getId());
+                }
+            }
+            openTicketIndex = index;
+            logger.info("Loaded {} open tickets", index.size());
+            return true;
+
+        } catch (Exception ex) {
+            logger.error("Error loading open ticket index", ex);
+            TicketJournal target = journal;
+            if (target != null) {
+                // The journal misses the open tickets, it must not be replayed instead of this load
+                target.markIncomplete();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Builds the open ticket index from tickets replayed from a {@link TicketJournal} instead of the database,
+     * without checking them against the ticket table. Only restore from a journal that was closed cleanly,
+     * see {@link com.parkit.parkingsystem.journal.JournalState#isCleanlyClosed()}, when nothing else
+     * changed the ticket table since.
+     *
+     * @param openTickets The open tickets, e.g. {@link com.parkit.parkingsystem.journal.JournalState#getOpenTickets()}.
+     */
+    public void restoreOpenTicketIndex(Collection<Ticket> openTickets) {
+        OpenTicketIndex index = new OpenTicketIndex();
+        for (Ticket ticket : openTickets) {
+            index.put(ticket);
+        }
+        openTicketIndex = index;
+        logger.info("Restored {} open tickets from the journal", index.size());
+    }
+
+    /**
+     * Records every committed ticket insert and update in the given journal, from now on.
+     * Enable it before {@link #loadOpenTicketIndex()} so the loaded tickets are journaled too.
+     *
+     * @param journal The journal to append to.
+     */
+    public void enableJournal(TicketJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Caches ticket counts per vehicle so recurring customers are recognized without a COUNT query.
+     * Once enabled, each committed {@link #saveTicket(Ticket)} is written through to the cached count of its vehicle.
+     *
+     * @param maxSize Maximum number of vehicles kept in the cache.
+     */
+    public void enableVisitCountCache(int maxSize) {
+        visitCountCache = new VisitCountCache(maxSize);
+    }
+
+    /**
+     * Gets the visit count cache.
+     *
+     * @return The cache, or null if it is not enabled.
+     */
+    public VisitCountCache getVisitCountCache() {
+        return visitCountCache;
+    }
+
+    /**
+     * Keeps hourly and daily totals of closed tickets, starting from those in the ticket_rollup table.
+     * From now on, each closed ticket is queued to the totals once its update is committed.
+     *
+     * @param flushIntervalMillis Maximum time a closed ticket waits before it is added to the totals.
+     * @param queueCapacity       Maximum number of closed tickets waiting to be added.
+     * @return true if the rollups are enabled; false if the table could not be read, in which case they stay disabled.
+     */
+    public synchronized boolean enableRollups(long flushIntervalMillis, int queueCapacity) {
+        if (rollups != null) {
+            return true;
+        }
+        TicketRollups created = new TicketRollups(dataBaseConfig, flushIntervalMillis, queueCapacity);
+        if (!created.load()) {
+            created.shutdown();
+            return false;
+        }
+        rollups = created;
+        return true;
+    }
+
+    /**
+     * Gets the hourly and daily totals of closed tickets, for reports.
+     *
+     * @return The rollups, or null if they are not enabled.
+     */
+    public TicketRollups getRollups() {
+        return rollups;
+    }
+
+    /**
+     * Numbers new tickets from ID ranges reserved in the id_sequence table instead of AUTO_INCREMENT,
+     * so a ticket carries its ID from the moment it is saved, even while its insert waits in the write-behind
+     * queue, and inserts are batched without reading generated keys back.
+     * Enable it before saving any ticket, on every instance writing to the ticket table.
+     *
+     * @param blockSize Number of IDs reserved at a time.
+     */
+    public synchronized void enableIdAllocator(int blockSize) {
+        if (idAllocator == null) {
+            idAllocator = new TicketIdAllocator(dataBaseConfig, blockSize);
+        }
+    }
+
+    /**
+     * Queues ticket inserts and updates and commits them in JDBC batches from a background thread,
+     * so concurrent gates share one commit per batch instead of each paying for its own. A batch is written
+     * once it holds {@code maxBatchSize} writes or {@code flushIntervalMillis} after its first write, whichever
+     * comes first. At most {@code queueCapacity} writes can be pending; beyond that, callers wait for room.
+     * {@link #saveTicket(Ticket)} and {@link #updateTicket(Ticket)} still return once their write is committed.
+     * Entries and exits run by a {@link ParkingTransactionDAO} write in their own transaction, so write-behind
+     * cannot be enabled on a DAO used by one.
+     *
+     * @param maxBatchSize        Maximum number of writes committed together.
+     * @param flushIntervalMillis Maximum time a write waits before its batch is committed.
+     * @param queueCapacity       Maximum number of writes waiting to be committed.
+     * @throws IllegalStateException if a {@link ParkingTransactionDAO} writes through this DAO.
+     */
+    public synchronized void enableWriteBehind(int maxBatchSize, long flushIntervalMillis, int queueCapacity) {
+        if (transactional) {
+            throw new IllegalStateException("Entries and exits run in transactions on this DAO, write-behind cannot be enabled");
+        }
+        if (writeBehind == null) {
+            writeBehind = new TicketWriteBehind(this, dataBaseConfig, maxBatchSize, flushIntervalMillis, queueCapacity);
+        }
+    }
+
+    /**
+     * Reserves the DAO for entry and exit transactions, whose writes do not go through write-behind.
+     *
+     * @throws IllegalStateException if write-behind is enabled.
+     */
+    synchronized void enableTransactions() {
+        if (writeBehind != null) {
+            throw new IllegalStateException("Write-behind is enabled on this DAO, entries and exits cannot run in transactions");
+        }
+        transactional = true;
+    }
+
+    /**
+     * Commits every pending write and goes back to committing ticket writes one by one.
+     */
+    public synchronized void disableWriteBehind() {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+            writeBehind = null;
+        }
+    }
+
+    /**
+     * Moves closed tickets older than the given age to the ticket_history table, now and then on a fixed interval,
+     * from a background thread stopped by {@link #shutdown()}.
+     *
+     * @param maxAgeMillis      Age, counted from their out time, from which closed tickets are archived.
+     * @param batchSize         Maximum number of tickets moved in one transaction.
+     * @param batchPauseMillis  Pause between two batches.
+     * @param runIntervalMillis Time between the end of a run and the start of the next.
+     */
+    public synchronized void enableArchiver(long maxAgeMillis, int batchSize, long batchPauseMillis, long runIntervalMillis) {
+        if (archiver == null) {
+            TicketArchiver created = new TicketArchiver(dataBaseConfig, maxAgeMillis, batchSize, batchPauseMillis);
+            created.start(runIntervalMillis);
+            archiver = created;
+        }
+    }
+
+    /**
+     * Stops the archiver, commits every pending write, then adds the queued closed tickets to the totals
+     * and commits them, so nothing accepted before the call is lost. Then closes the journal, if enabled,
+     * which the spot DAO shares: call it once spots and tickets no longer change, before the connections
+     * are released. Ticket writes commit one by one afterwards, and are no longer added to the totals or journaled.
+     */
+    @Override
+    public synchronized void shutdown() {
+        if (archiver != null) {
+            archiver.close();
+            archiver = null;
+        }
+        // Pending updates close tickets, which queues them to the totals: flush them before the rollups
+        disableWriteBehind();
+        if (rollups != null) {
+            rollups.shutdown();
+            rollups = null;
+        }
+        // Closed after the last write, the journal vouches for the state it holds on the next start
+        TicketJournal target = journal;
+        if (target != null) {
+            journal = null;
+            try {
+                target.close();
+            } catch (Exception ex) {
+                logger.error("Error closing ticket journal", ex);
+            }
+        }
+    }
+
+    /**
+     * Saves a new ticket in the database and sets its generated ID on the ticket.
+     * With write-behind enabled, the ticket is committed with the batch it is queued in, and this method
+     * returns once that batch is committed; {@link #saveTicketAsync(Ticket)} returns at once.
      *
      * @param ticket The ticket to be saved.
      * @return true if the ticket was successfully saved; false otherwise.
      */
+    @Override
     public boolean saveTicket(Ticket ticket) {
-        try (Connection con = dataBaseConfig.getConnection();
-             PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET)) {
-
-            ps.setInt(1, ticket.getParkingSpot().getId());
-            ps.setString(2, ticket.getVehicleRegNumber());
-            ps.setDouble(3, ticket.getPrice());
-            ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
-            ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : new Timestamp(ticket.getOutTime().getTime()));
+        if (writeBehind != null) {
+            return saveTicketAsync(ticket).join();
+        }
 
-            // Execute the insert and return whether one row was inserted
-            return ps.executeUpdate() == 1;
+        onTicketSaving(ticket);
+        try (Connection con = dataBaseConfig.getConnection()) {
+            if (!insertTicket(con, ticket)) {
+                onTicketSaveFailed(ticket);
+                return false;
+            }
+            onTicketSaved(ticket);
+            return true;
 
         } catch (Exception ex) {
             logger.error("Error saving ticket", ex);
+            onTicketSaveFailed(ticket);
+            return false;
+        }
+    }
+
+    /**
+     * Inserts a ticket on the given connection and sets its ID, without touching the in-memory indexes.
+     * The caller calls {@link #onTicketSaving(Ticket)} first, then {@link #onTicketSaved(Ticket)} once the insert
+     * is committed or {@link #onTicketSaveFailed(Ticket)} if it is not.
+     */
+    boolean insertTicket(Connection con, Ticket ticket) throws SQLException {
+        if (!assignId(ticket)) {
+            return false;
+        }
+        if (ticket.getId() != 0) {
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET_WITH_ID)) {
+                bindSaveTicket(ps, ticket);
+                ps.setInt(7, ticket.getId());
+                return ps.executeUpdate() == 1;
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)) {
+
+            bindSaveTicket(ps, ticket);
+
+            // Execute the insert and return whether one row was inserted
+            if (ps.executeUpdate() != 1) {
+                return false;
+            }
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    ticket.setId(keys.getInt(1));
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Saves a new ticket and returns a future completed once the ticket is committed.
+     * Without write-behind, the ticket is saved before this method returns.
+     *
+     * @param ticket The ticket to be saved.
+     * @return A future completed with true if the ticket was saved; false otherwise.
+     */
+    public CompletableFuture<Boolean> saveTicketAsync(Ticket ticket) {
+        TicketWriteBehind queue = writeBehind;
+        if (queue != null) {
+            CompletableFuture<Boolean> done = assignId(ticket) ? queue.submitSave(ticket) : null;
+            return done != null ? done : CompletableFuture.completedFuture(false);
+        }
+        return CompletableFuture.completedFuture(saveTicket(ticket));
+    }
+
+    /**
+     * Sets an ID from the allocator on a new ticket, when the allocator is enabled.
+     *
+     * @return false if no ID could be reserved; true otherwise.
+     */
+    private boolean assignId(Ticket ticket) {
+        TicketIdAllocator allocator = idAllocator;
+        if (allocator == null || ticket.getId() != 0) {
+            return true;
+        }
+        int id = allocator.nextId();
+        if (id < 0) {
             return false;
         }
+        ticket.setId(id);
+        return true;
+    }
+
+    /**
+     * Binds the columns of {@link DBConstants#SAVE_TICKET}, which are the first columns of
+     * {@link DBConstants#SAVE_TICKET_WITH_ID}.
+     */
+    static void bindSaveTicket(PreparedStatement ps, Ticket ticket) throws SQLException {
+        ps.setInt(1, ticket.getParkingSpot().getId());
+        ps.setString(2, ticket.getVehicleRegNumber());
+        ps.setDouble(3, ticket.getPrice());
+        ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+        ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : new Timestamp(ticket.getOutTime().getTime()));
+        // Stored with the ticket so exits do not join the parking table to price it
+        ps.setString(6, ticket.getParkingSpot().getParkingType().name());
+    }
+
+    /**
+     * Marks a ticket as being saved in the visit count cache, before its insert is sent. The save then ends
+     * with {@link #onTicketSaved(Ticket)} once committed, or {@link #onTicketSaveFailed(Ticket)}.
+     */
+    void onTicketSaving(Ticket ticket) {
+        VisitCountCache cache = visitCountCache;
+        if (cache != null) {
+            cache.beginSave(ticket.getVehicleRegNumber());
+        }
+    }
+
+    /**
+     * Ends the save of a ticket whose insert was not committed.
+     */
+    void onTicketSaveFailed(Ticket ticket) {
+        VisitCountCache cache = visitCountCache;
+        if (cache != null) {
+            cache.abortSave(ticket.getVehicleRegNumber());
+        }
+    }
+
+    /**
+     * Brings the in-memory indexes up to date once a ticket insert is committed.
+     */
+    void onTicketSaved(Ticket ticket) {
+        onTicketSaved(ticket, -1, 0);
+    }
+
+    /**
+     * Brings the in-memory indexes up to date once a ticket insert is committed, caching the ticket count of
+     * its vehicle read in the same transaction when the vehicle is not cached yet.
+     *
+     * @param counted The number of tickets of the vehicle read with the saved one included, or -1 if none was read.
+     * @param stamp   The visit count cache stamp taken before the count was read.
+     * @return The cached ticket count of the vehicle, the saved one included, or -1 if the vehicle is not cached.
+     */
+    int onTicketSaved(Ticket ticket, int counted, long stamp) {
+        OpenTicketIndex index = openTicketIndex;
+        if (index != null && ticket.getOutTime() == null) {
+            index.put(ticket);
+        }
+        VisitCountCache cache = visitCountCache;
+        int cached = -1;
+        if (cache != null) {
+            // Write-through: the cached count, if any, now includes the saved ticket
+            cached = cache.increment(ticket.getVehicleRegNumber(), counted, stamp);
+        }
+        if (ticket.getOutTime() == null) {
+            journal(() -> JournalEvent.ticketOpened(ticket), ticket.getId());
+        }
+        return cached;
     }
 
     /**
@@ -61,11 +459,26 @@ public class TicketDAO {
      * @param vehicleRegNumber The vehicle registration number.
      * @return A Ticket object if found; null otherwise.
      */
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
         Ticket ticket = null;
 
-        try (Connection con = dataBaseConfig.getConnection();
-             PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET)) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            ticket = readTicket(con, DBConstants.GET_TICKET, vehicleRegNumber);
+        } catch (Exception ex) {
+            logger.error("Error fetching ticket", ex);
+        }
+
+        return ticket;
+    }
+
+    /**
+     * Reads the ticket of a vehicle with {@link DBConstants#GET_TICKET} or {@link DBConstants#GET_OPEN_TICKET}.
+     */
+    private Ticket readTicket(Connection con, String query, String vehicleRegNumber) throws SQLException {
+        Ticket ticket = null;
+
+        try (PreparedStatement ps = con.prepareStatement(query)) {
 
             ps.setString(1, vehicleRegNumber);
             try (ResultSet rs = ps.executeQuery()) {
@@ -87,60 +500,406 @@ public class TicketDAO {
                     ticket.setOutTime(rs.getTimestamp(5));
                 }
             }
+        }
 
-        } catch (Exception ex) {
-            logger.error("Error fetching ticket", ex);
+        return ticket;
+    }
+
+    /**
+     * Retrieves the open ticket of a vehicle, i.e. the one to close when it exits.
+     * Answered from the open ticket index when it is loaded, otherwise from the latest ticket of the vehicle
+     * without an out time in the database.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return A Ticket object if found; null otherwise.
+     */
+    @Override
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        OpenTicketIndex index = openTicketIndex;
+        if (index == null) {
+            awaitPendingWrites();
+            return readOpenTicket(vehicleRegNumber);
+        }
+        Ticket ticket = index.get(vehicleRegNumber);
+        if (ticket == null && awaitPendingWrites()) {
+            ticket = index.get(vehicleRegNumber);
         }
+        return ticket;
+    }
 
+    /**
+     * Retrieves the open ticket of a vehicle in compact form. Served from the open ticket index without
+     * allocating anything when the vehicle is found there, otherwise like {@link #getOpenTicket(String)}.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return The open ticket if found; null otherwise.
+     */
+    public CompactTicket getOpenCompactTicket(String vehicleRegNumber) {
+        OpenTicketIndex index = openTicketIndex;
+        CompactTicket ticket = index == null ? null : index.getCompact(vehicleRegNumber);
+        if (ticket != null) {
+            return ticket;
+        }
+        Ticket open = getOpenTicket(vehicleRegNumber);
+        return open == null ? null : CompactTicket.of(open);
+    }
+
+    /**
+     * Retrieves the open ticket of a vehicle, querying on the given connection when the index is not loaded.
+     */
+    Ticket getOpenTicket(Connection con, String vehicleRegNumber) throws SQLException {
+        OpenTicketIndex index = openTicketIndex;
+        if (index == null) {
+            awaitPendingWrites();
+            return readTicket(con, DBConstants.GET_OPEN_TICKET, vehicleRegNumber);
+        }
+        Ticket ticket = index.get(vehicleRegNumber);
+        if (ticket == null && awaitPendingWrites()) {
+            ticket = index.get(vehicleRegNumber);
+        }
         return ticket;
     }
 
+    /**
+     * Retrieves the open ticket of a vehicle in compact form, querying on the given connection when the index
+     * does not hold it.
+     */
+    CompactTicket getOpenCompactTicket(Connection con, String vehicleRegNumber) throws SQLException {
+        OpenTicketIndex index = openTicketIndex;
+        CompactTicket ticket = index == null ? null : index.getCompact(vehicleRegNumber);
+        if (ticket != null) {
+            return ticket;
+        }
+        Ticket open = getOpenTicket(con, vehicleRegNumber);
+        return open == null ? null : CompactTicket.of(open);
+    }
+
+    private Ticket readOpenTicket(String vehicleRegNumber) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            return readTicket(con, DBConstants.GET_OPEN_TICKET, vehicleRegNumber);
+        } catch (Exception ex) {
+            logger.error("Error fetching open ticket", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Commits the writes waiting in the write-behind queue, if any: the vehicle being looked up
+     * may have entered moments ago, its ticket not committed yet.
+     *
+     * @return true if there were pending writes; false otherwise.
+     */
+    private boolean awaitPendingWrites() {
+        TicketWriteBehind queue = writeBehind;
+        if (queue == null || !queue.hasPendingWrites()) {
+            return false;
+        }
+        queue.flush().join();
+        return true;
+    }
+
     /**
      * Updates the price and out time of an existing ticket in the database.
+     * Only an open ticket is updated, so of two concurrent exits of a vehicle only the first closes its ticket.
+     * With write-behind enabled, the update is committed with the batch it is queued in, and this method
+     * returns once that batch is committed; {@link #updateTicketAsync(Ticket)} returns at once.
      *
      * @param ticket The ticket containing updated information.
-     * @return true if the update was successful; false otherwise.
+     * @return true if the update was successful; false if the ticket was already closed or an error occurred.
      */
+    @Override
     public boolean updateTicket(Ticket ticket) {
-        try (Connection con = dataBaseConfig.getConnection();
-             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)) {
+        if (writeBehind != null) {
+            return updateTicketAsync(ticket).join();
+        }
+
+        try (Connection con = dataBaseConfig.getConnection()) {
+            if (!writeTicketUpdate(con, ticket)) {
+                return false;
+            }
+            onTicketUpdated(ticket);
+            return true;
+
+        } catch (Exception ex) {
+            logger.error("Error updating ticket", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Updates a ticket on the given connection, without touching the in-memory indexes.
+     * The caller calls {@link #onTicketUpdated(Ticket)} once the update is committed.
+     */
+    boolean writeTicketUpdate(Connection con, Ticket ticket) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)) {
+
+            bindUpdateTicket(ps, ticket);
+
+            // Return true if exactly one row was updated
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Updates a compact ticket on the given connection, without touching the in-memory indexes.
+     * The caller calls {@link #onTicketUpdated(String, CompactTicket)} once the update is committed.
+     */
+    boolean writeTicketUpdate(Connection con, CompactTicket ticket) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)) {
 
             ps.setDouble(1, ticket.getPrice());
-            ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+            ps.setTimestamp(2, new Timestamp(ticket.getOutTime()));
             ps.setInt(3, ticket.getId());
 
             // Return true if exactly one row was updated
             return ps.executeUpdate() == 1;
+        }
+    }
 
+    /**
+     * Updates an existing ticket and returns a future completed once the update is committed.
+     * Without write-behind, the ticket is updated before this method returns.
+     *
+     * @param ticket The ticket containing updated information.
+     * @return A future completed with true if the update was successful; false otherwise.
+     */
+    public CompletableFuture<Boolean> updateTicketAsync(Ticket ticket) {
+        TicketWriteBehind queue = writeBehind;
+        if (queue != null) {
+            CompletableFuture<Boolean> done = queue.submitUpdate(ticket);
+            return done != null ? done : CompletableFuture.completedFuture(false);
+        }
+        return CompletableFuture.completedFuture(updateTicket(ticket));
+    }
+
+    /**
+     * Binds the columns of {@link DBConstants#UPDATE_TICKET}.
+     */
+    static void bindUpdateTicket(PreparedStatement ps, Ticket ticket) throws SQLException {
+        ps.setDouble(1, ticket.getPrice());
+        ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+        ps.setInt(3, ticket.getId());
+    }
+
+    /**
+     * Brings the in-memory indexes up to date once a ticket update is committed.
+     */
+    void onTicketUpdated(Ticket ticket) {
+        onTicketUpdated(ticket.getVehicleRegNumber(), CompactTicket.of(ticket));
+    }
+
+    /**
+     * Brings the in-memory indexes up to date once the update of a compact ticket is committed.
+     */
+    void onTicketUpdated(String vehicleRegNumber, CompactTicket ticket) {
+        OpenTicketIndex index = openTicketIndex;
+        if (index != null) {
+            index.remove(vehicleRegNumber, ticket.getId());
+        }
+        TicketRollups totals = rollups;
+        if (totals != null) {
+            totals.record(ticket);
+        }
+        journal(() -> JournalEvent.ticketClosed(vehicleRegNumber, ticket), ticket.getId());
+    }
+
+    /**
+     * Appends a committed ticket change to the journal, if enabled. A journal failure does not fail
+     * the change, which is already in the database.
+     */
+    private void journal(Supplier<JournalEvent> event, int ticketId) {
+        TicketJournal target = journal;
+        if (target == null) {
+            return;
+        }
+        try {
+            target.append(event.get());
         } catch (Exception ex) {
-            logger.error("Error updating ticket", ex);
-            return false;
+            logger.error("Error journaling ticket {}", ticketId, ex);
         }
     }
 
     /**
      * Retrieves the total number of tickets associated with a specific vehicle.
-     * Useful to determine whether a user is a recurring customer.
+     * Useful to determine whether a user is a recurring customer. Archived tickets are counted from
+     * their per-vehicle total, without reading the history table.
+     * Answered from the visit count cache when it is enabled and holds the vehicle.
+     * With write-behind enabled, tickets of the vehicle still queued are committed first, so they are counted.
      *
      * @param vehicleRegNumber The vehicle registration number.
      * @return The number of tickets found in the database for this vehicle.
      */
+    @Override
     public int getNbTicket(String vehicleRegNumber) {
+        TicketWriteBehind queue = writeBehind;
+        if (queue != null && queue.hasPendingSave(vehicleRegNumber)) {
+            queue.flush().join();
+        }
+        VisitCountCache cache = visitCountCache;
+        if (cache != null) {
+            int cached = cache.get(vehicleRegNumber);
+            if (cached >= 0) {
+                return cached;
+            }
+        }
+
         int nbTicket = 0;
+        // Taken before the count is read, so a ticket saved meanwhile keeps the count out of the cache
+        long stamp = cache != null ? cache.stamp(vehicleRegNumber) : 0;
 
-        try (Connection con = dataBaseConfig.getConnection();
-             PreparedStatement ps = con.prepareStatement(DBConstants.GET_NB_TICKET)) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            nbTicket = countTickets(con, vehicleRegNumber);
+            if (cache != null) {
+                cache.put(vehicleRegNumber, nbTicket, stamp);
+            }
+
+        } catch (Exception ex) {
+            logger.error("Error fetching ticket count", ex);
+        }
+
+        return nbTicket;
+    }
+
+    /**
+     * Streams every closed ticket of the database, archived ones included, to a visitor: the archived tickets, then those
+     * of the ticket table. Each table is read through a forward-only cursor that fetches {@code fetchSize} rows at a time,
+     * in the order of its vehicle index, so the whole ticket history can be read in bounded memory without sorting it.
+     * No {@link Ticket} is created. Each ticket carries its visit number, its rank by in time among the closed tickets
+     * of the same vehicle, counted while streaming; in the ticket table it follows the vehicle's archived tickets.
+     *
+     * @param fetchSize The number of rows fetched from the database at a time.
+     * @param visitor   Receives each closed ticket, on the calling thread.
+     * @return The number of tickets visited, or -1 if an error occurred, including in the visitor.
+     */
+    public long forEachClosedTicket(int fetchSize, ClosedTicketVisitor visitor) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            long count = 0;
+            for (String query : new String[]{DBConstants.GET_ARCHIVED_CLOSED_TICKETS, DBConstants.GET_CLOSED_TICKETS}) {
+                // The statement is not cached by the pool: it carries its own fetch size
+                try (PreparedStatement ps = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    ps.setFetchSize(fetchSize);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        String vehicle = null;
+                        int visitNumber = 0;
+                        while (rs.next()) {
+                            String vehicleRegNumber = rs.getString(4);
+                            if (!vehicleRegNumber.equals(vehicle)) {
+                                // Rows of a vehicle are contiguous: start from the visits it has in the tables read before
+                                vehicle = vehicleRegNumber;
+                                visitNumber = rs.getInt(5);
+                            }
+                            visitor.visit(ParkingType.valueOf(rs.getString(1)), rs.getTimestamp(2).getTime(),
+                                    rs.getTimestamp(3).getTime(), ++visitNumber);
+                            count++;
+                        }
+                    }
+                }
+            }
+            return count;
+
+        } catch (Exception ex) {
+            logger.error("Error streaming closed tickets", ex);
+            return -1;
+        }
+    }
+
+    /**
+     * Streams the tickets that came in between two dates to a visitor: those of the ticket table, then the archived ones,
+     * each oldest first. Each table is read through a forward-only cursor that fetches {@code fetchSize} rows at a time,
+     * in the order of its in time index, so any number of tickets can be read in bounded memory without sorting them.
+     * No {@link Ticket} is created.
+     *
+     * @param from      The earliest in time, inclusive.
+     * @param to        The latest in time, exclusive.
+     * @param fetchSize The number of rows fetched from the database at a time.
+     * @param visitor   Receives each ticket, on the calling thread.
+     * @return The number of tickets visited, or -1 if an error occurred, including in the visitor.
+     */
+    public long forEachTicket(Date from, Date to, int fetchSize, TicketVisitor visitor) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            long count = 0;
+            for (String query : new String[]{DBConstants.GET_TICKETS_BETWEEN, DBConstants.GET_ARCHIVED_TICKETS_BETWEEN}) {
+                // The statement is not cached by the pool: it carries its own fetch size
+                try (PreparedStatement ps = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    ps.setTimestamp(1, new Timestamp(from.getTime()));
+                    ps.setTimestamp(2, new Timestamp(to.getTime()));
+                    ps.setFetchSize(fetchSize);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Timestamp outTime = rs.getTimestamp(7);
+                            visitor.visit(rs.getInt(1), rs.getInt(2), ParkingType.valueOf(rs.getString(3)), rs.getString(4),
+                                    rs.getDouble(5), rs.getTimestamp(6).getTime(),
+                                    outTime == null ? TicketVisitor.NO_OUT_TIME : outTime.getTime());
+                            count++;
+                        }
+                    }
+                }
+            }
+            return count;
+
+        } catch (Exception ex) {
+            logger.error("Error streaming tickets", ex);
+            return -1;
+        }
+    }
+
+    /**
+     * Receives the tickets streamed by {@link #forEachTicket(Date, Date, int, TicketVisitor)}.
+     */
+    @FunctionalInterface
+    public interface TicketVisitor {
+
+        // Out time of a ticket still open
+        long NO_OUT_TIME = Long.MIN_VALUE;
+
+        /**
+         * Visits one ticket.
+         *
+         * @param id               The ticket ID.
+         * @param parkingNumber    The number of the ticket's parking spot.
+         * @param parkingType      The type of the ticket's parking spot.
+         * @param vehicleRegNumber The vehicle registration number.
+         * @param price            The price, 0 while the ticket is open.
+         * @param inTime           In time, in milliseconds since the epoch.
+         * @param outTime          Out time, in milliseconds since the epoch, or {@link #NO_OUT_TIME}.
+         */
+        void visit(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber, double price,
+                   long inTime, long outTime);
+    }
+
+    /**
+     * Receives the closed tickets streamed by {@link #forEachClosedTicket(int, ClosedTicketVisitor)}.
+     */
+    @FunctionalInterface
+    public interface ClosedTicketVisitor {
+
+        /**
+         * Visits one closed ticket.
+         *
+         * @param parkingType The type of the ticket's parking spot.
+         * @param inTime      In time, in milliseconds since the epoch.
+         * @param outTime     Out time, in milliseconds since the epoch.
+         * @param visitNumber 1 for the first closed ticket of the vehicle, 2 for the second, and so on.
+         */
+        void visit(ParkingType parkingType, long inTime, long outTime, int visitNumber);
+    }
+
+    /**
+     * Counts the tickets of a vehicle in the database on the given connection, ignoring the visit count cache.
+     */
+    int countTickets(Connection con, String vehicleRegNumber) throws SQLException {
+        int nbTicket = 0;
+
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_NB_TICKET)) {
 
             ps.setString(1, vehicleRegNumber);
+            ps.setString(2, vehicleRegNumber);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     nbTicket = rs.getInt(1);
                 }
             }
-
-        } catch (Exception ex) {
-            logger.error("Error fetching ticket count", ex);
         }
 
         return nbTicket;
@@ -0,0 +1,130 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out ticket IDs from ranges reserved in the id_sequence table, so a ticket has its ID before it is
+ * inserted and inserts need no generated key round trip. Each reservation takes one short transaction for
+ * a whole block of IDs; IDs within a block are handed out with an atomic increment, without locking.
+ * IDs left in a block when the application stops are never used, so IDs are unique and increasing per
+ * instance, but not gap-free. Every instance writing tickets must use an allocator, or its AUTO_INCREMENT
+ * IDs may collide with reserved ones.
+ */
+public class TicketIdAllocator {
+
+    private static final Logger logger = LogManager.getLogger("TicketIdAllocator");
+
+    public static final String SEQUENCE_NAME = "ticket";
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int blockSize;
+
+    // Block IDs are taken from; replaced, under the lock of the allocator, once used up
+    private volatile Block block = new Block(0, 0);
+
+    /**
+     * Constructor for TicketIdAllocator. The first block is reserved on the first call to {@link #nextId()}.
+     *
+     * @param dataBaseConfig Configuration used to obtain connections.
+     * @param blockSize      Number of IDs reserved at a time.
+     */
+    public TicketIdAllocator(DataBaseConfig dataBaseConfig, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Gets a ticket ID no other caller or instance gets.
+     *
+     * @return The ID, or -1 if a new block was needed and could not be reserved.
+     */
+    public int nextId() {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id < current.end) {
+                return (int) id;
+            }
+            synchronized (this) {
+                // Another thread may have reserved a block while this one waited
+                if (block == current) {
+                    Block reserved = reserve();
+                    if (reserved == null) {
+                        return -1;
+                    }
+                    block = reserved;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the sequence forward by one block in its own transaction.
+     *
+     * @return The reserved block, or null if an error occurred.
+     */
+    private Block reserve() {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                long end;
+                try (PreparedStatement ps = con.prepareStatement(DBConstants.RESERVE_ID_BLOCK)) {
+                    ps.setInt(1, blockSize);
+                    ps.setString(2, SEQUENCE_NAME);
+                    if (ps.executeUpdate() != 1) {
+                        throw new SQLException("No " + SEQUENCE_NAME + " row in the id_sequence table");
+                    }
+                }
+                try (PreparedStatement ps = con.prepareStatement(DBConstants.GET_ID_SEQUENCE)) {
+                    ps.setString(1, SEQUENCE_NAME);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        end = rs.getLong(1);
+                    }
+                }
+                if (end - 1 > Integer.MAX_VALUE) {
+                    throw new SQLException("Ticket IDs exhausted, sequence at " + end);
+                }
+                con.commit();
+                logger.debug("Reserved ticket IDs {} to {}", end - blockSize, end - 1);
+                return new Block(end - blockSize, end);
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+
+        } catch (Exception ex) {
+            logger.error("Error reserving ticket IDs", ex);
+            return null;
+        }
+    }
+
+    /**
+     * A range of reserved IDs, from next included to end excluded.
+     */
+    private static final class Block {
+
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.constants.RollupGranularity;
+import com.parkit.parkingsystem.model.CompactTicket;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRollup;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hourly and daily totals of closed tickets by parking type, kept up to date as tickets close:
+ * ticket count, revenue, parking duration and discount count, bucketed by out time in UTC.
+ * Closing a ticket only queues it. A background thread adds the queued tickets to an in-memory
+ * cache and to the ticket_rollup table on a fixed interval, so reports read a few buckets
+ * instead of scanning the ticket table, and never hold up the gates.
+ */
+public class TicketRollups {
+
+    private static final Logger logger = LogManager.getLogger("TicketRollups");
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final DataBaseConfig dataBaseConfig;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<TicketRollup> queue;
+    // Totals by bucket, read by reports while the flusher thread adds to them
+    private final Map<BucketKey, TicketRollup> cache = new ConcurrentHashMap<>();
+    // Totals added to the cache but not committed to the table yet, only touched by the flusher thread
+    private final Map<BucketKey, TicketRollup> pending = new HashMap<>();
+    private final AtomicLong droppedTickets = new AtomicLong();
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for TicketRollups. Starts the flusher thread with an empty cache; call {@link #load()}
+     * to start from the totals already in the table.
+     *
+     * @param dataBaseConfig      Configuration used to obtain connections.
+     * @param flushIntervalMillis Maximum time a closed ticket waits before it is added to the totals.
+     * @param queueCapacity       Maximum number of closed tickets waiting to be added.
+     */
+    public TicketRollups(DataBaseConfig dataBaseConfig, long flushIntervalMillis, int queueCapacity) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::run, "ticket-rollups");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Loads the totals of the ticket_rollup table into the cache. Call it before recording any ticket.
+     *
+     * @return true if the totals were loaded; false if an error occurred.
+     */
+    public boolean load() {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_ROLLUPS);
+             ResultSet rs = ps.executeQuery()) {
+
+            int buckets = 0;
+            while (rs.next()) {
+                TicketRollup rollup = new TicketRollup(RollupGranularity.valueOf(rs.getString(1)),
+                        rs.getTimestamp(2, utcCalendar()).getTime(), ParkingType.valueOf(rs.getString(3)), rs.getLong(4),
+                        rs.getDouble(5), rs.getLong(6), rs.getLong(7));
+                cache.merge(BucketKey.of(rollup), rollup, TicketRollup::plus);
+                buckets++;
+            }
+            logger.info("Loaded {} ticket rollup buckets", buckets);
+            return true;
+
+        } catch (Exception ex) {
+            logger.error("Error loading ticket rollups", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Queues a closed ticket to be added to the totals of its hour and day. Does not block: if the queue
+     * is full, the ticket is left out of the totals and counted in {@link #getDroppedTicketCount()}.
+     *
+     * @param ticket The closed ticket, with its parking spot, in and out times, price and discount set.
+     * @return true if the ticket was queued; false otherwise.
+     */
+    public boolean record(Ticket ticket) {
+        return record(CompactTicket.of(ticket));
+    }
+
+    /**
+     * Queues a closed compact ticket to be added to the totals of its hour and day, like {@link #record(Ticket)}.
+     *
+     * @param ticket The closed ticket.
+     * @return true if the ticket was queued; false otherwise.
+     */
+    public boolean record(CompactTicket ticket) {
+        long outTime = ticket.getOutTime();
+        TicketRollup rollup = new TicketRollup(RollupGranularity.HOUR, RollupGranularity.HOUR.bucketStart(outTime),
+                ticket.getParkingType(), 1, ticket.getPrice(),
+                outTime - ticket.getInTime(), ticket.isDiscounted() ? 1 : 0);
+        if (queue.offer(rollup)) {
+            return true;
+        }
+        droppedTickets.incrementAndGet();
+        logger.error("Ticket rollup queue full, ticket {} left out of the totals", ticket.getId());
+        return false;
+    }
+
+    /**
+     * Gets the totals of the bucket holding a time.
+     *
+     * @param granularity The size of the bucket.
+     * @param parkingType The parking type.
+     * @param time        A time within the bucket.
+     * @return The totals, with a count of 0 if no ticket closed in the bucket.
+     */
+    public TicketRollup getRollup(RollupGranularity granularity, ParkingType parkingType, Date time) {
+        long bucketStart = granularity.bucketStart(time.getTime());
+        TicketRollup rollup = cache.get(new BucketKey(granularity, parkingType, bucketStart));
+        return rollup != null ? rollup : new TicketRollup(granularity, bucketStart, parkingType, 0, 0, 0, 0);
+    }
+
+    /**
+     * Gets the totals of the buckets between two times, in time order, reading one cache entry per bucket.
+     *
+     * @param granularity The size of the buckets.
+     * @param parkingType The parking type.
+     * @param from        A time within the first bucket.
+     * @param to          The end of the range, exclusive.
+     * @return The totals of the buckets in which tickets closed.
+     */
+    public List<TicketRollup> getRollups(RollupGranularity granularity, ParkingType parkingType, Date from, Date to) {
+        List<TicketRollup> rollups = new ArrayList<>();
+        for (long bucketStart = granularity.bucketStart(from.getTime()); bucketStart < to.getTime();
+             bucketStart += granularity.getMillis()) {
+            TicketRollup rollup = cache.get(new BucketKey(granularity, parkingType, bucketStart));
+            if (rollup != null) {
+                rollups.add(rollup);
+            }
+        }
+        return rollups;
+    }
+
+    /**
+     * Gets the number of closed tickets left out of the totals because the queue was full.
+     *
+     * @return The number of dropped tickets.
+     */
+    public long getDroppedTicketCount() {
+        return droppedTickets.get();
+    }
+
+    /**
+     * Adds the queued tickets to the totals, commits them and stops the flusher thread.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            flush();
+        }
+        flush();
+    }
+
+    /**
+     * Adds the queued tickets to the cache and commits the pending totals.
+     */
+    private void flush() {
+        TicketRollup hourly;
+        while ((hourly = queue.poll()) != null) {
+            add(hourly);
+            long dayStart = RollupGranularity.DAY.bucketStart(hourly.getBucketStart().getTime());
+            add(new TicketRollup(RollupGranularity.DAY, dayStart, hourly.getParkingType(), hourly.getTicketCount(),
+                    hourly.getTotalPrice(), hourly.getTotalDurationMillis(), hourly.getDiscountCount()));
+        }
+        if (!pending.isEmpty()) {
+            commitPending();
+        }
+    }
+
+    private void add(TicketRollup rollup) {
+        BucketKey key = BucketKey.of(rollup);
+        cache.merge(key, rollup, TicketRollup::plus);
+        pending.merge(key, rollup, TicketRollup::plus);
+    }
+
+    /**
+     * Adds the pending totals to the table in one transaction. On failure, they stay pending
+     * and are retried on the next flush.
+     */
+    private void commitPending() {
+        Calendar utc = utcCalendar();
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(DBConstants.UPSERT_TICKET_ROLLUP)) {
+                for (TicketRollup rollup : pending.values()) {
+                    ps.setString(1, rollup.getGranularity().name());
+                    ps.setTimestamp(2, new Timestamp(rollup.getBucketStart().getTime()), utc);
+                    ps.setString(3, rollup.getParkingType().name());
+                    ps.setLong(4, rollup.getTicketCount());
+                    ps.setDouble(5, rollup.getTotalPrice());
+                    ps.setLong(6, rollup.getTotalDurationMillis());
+                    ps.setLong(7, rollup.getDiscountCount());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                con.commit();
+                pending.clear();
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+
+        } catch (Exception ex) {
+            logger.error("Error committing {} ticket rollup buckets, retrying on the next flush", pending.size(), ex);
+        }
+    }
+
+    /**
+     * Gets a calendar binding bucket starts as UTC wall-clock times, whatever the time zone of the JVM.
+     * Calendars are not thread-safe, so each caller gets its own.
+     */
+    private static Calendar utcCalendar() {
+        return Calendar.getInstance(UTC);
+    }
+
+    /**
+     * Identifies one bucket of one parking type.
+     */
+    private static final class BucketKey {
+
+        private final RollupGranularity granularity;
+        private final ParkingType parkingType;
+        private final long bucketStart;
+
+        private BucketKey(RollupGranularity granularity, ParkingType parkingType, long bucketStart) {
+            this.granularity = granularity;
+            this.parkingType = parkingType;
+            this.bucketStart = bucketStart;
+        }
+
+        private static BucketKey of(TicketRollup rollup) {
+            return new BucketKey(rollup.getGranularity(), rollup.getParkingType(), rollup.getBucketStart().getTime());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return granularity == other.granularity && parkingType == other.parkingType
+                    && bucketStart == other.bucketStart;
+        }
+
+        @Override
+        public int hashCode() {
+            return (granularity.hashCode() * 31 + parkingType.hashCode()) * 31 + Long.hashCode(bucketStart);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Storage of the tickets, as used by the service layer.
+ * {@link TicketDAO} keeps them in the database, {@link InMemoryTicketStore} in memory.
+ * Implementations may be called from many threads at once.
+ */
+public interface TicketStore {
+
+    /**
+     * Saves a new ticket and sets its generated ID on the ticket.
+     *
+     * @param ticket The ticket to be saved.
+     * @return true if the ticket was saved; false otherwise.
+     */
+    boolean saveTicket(Ticket ticket);
+
+    /**
+     * Retrieves the most recent ticket associated with a vehicle registration number.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return A Ticket object if found; null otherwise.
+     */
+    Ticket getTicket(String vehicleRegNumber);
+
+    /**
+     * Retrieves the open ticket of a vehicle, i.e. the one to close when it exits.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return A Ticket object if found; null otherwise.
+     */
+    Ticket getOpenTicket(String vehicleRegNumber);
+
+    /**
+     * Updates the price and out time of an existing ticket, if it is still open.
+     *
+     * @param ticket The ticket containing updated information.
+     * @return true if the update was successful; false if the ticket was already closed or an error occurred.
+     */
+    boolean updateTicket(Ticket ticket);
+
+    /**
+     * Retrieves the total number of tickets associated with a specific vehicle.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return The number of tickets of this vehicle.
+     */
+    int getNbTicket(String vehicleRegNumber);
+
+    /**
+     * Commits the changes still pending and stops the background threads of the store, if any.
+     * Call it once no more tickets are processed, before the connections are released.
+     */
+    default void shutdown() {
+    }
+}
@@ -0,0 +1,400 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind queue for ticket inserts and updates, used by {@link TicketDAO} once enabled.
+ * A single background thread drains the queue and commits the writes in JDBC batches, one
+ * transaction per batch, in the order they were submitted. Each write gets a future completed
+ * after its batch commits, and the in-memory indexes of the DAO are only updated at that point.
+ * When a batch fails, its writes are retried one per transaction, so one bad write does not fail the others.
+ */
+class TicketWriteBehind {
+
+    private static final Logger logger = LogManager.getLogger("TicketWriteBehind");
+
+    private enum Kind { SAVE, UPDATE, FLUSH }
+
+    private final TicketDAO ticketDAO;
+    private final DataBaseConfig dataBaseConfig;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<PendingWrite> queue;
+    // Writes queued or taken by the flusher whose future is not completed yet
+    private final AtomicInteger unfinished = new AtomicInteger();
+    // Number of unfinished inserts per vehicle, so counts only wait for the vehicle they read
+    private final ConcurrentMap<String, Integer> unfinishedSaves = new ConcurrentHashMap<>();
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for TicketWriteBehind. Starts the flusher thread.
+     *
+     * @param ticketDAO           DAO whose indexes are updated after each commit.
+     * @param dataBaseConfig      Configuration used to obtain connections.
+     * @param maxBatchSize        Maximum number of writes committed together.
+     * @param flushIntervalMillis Maximum time a write waits before its batch is committed.
+     * @param queueCapacity       Maximum number of writes waiting to be committed.
+     */
+    TicketWriteBehind(TicketDAO ticketDAO, DataBaseConfig dataBaseConfig, int maxBatchSize,
+                      long flushIntervalMillis, int queueCapacity) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+        this.ticketDAO = ticketDAO;
+        this.dataBaseConfig = dataBaseConfig;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::run, "ticket-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues a ticket insert. Unless the ticket already has an ID, the generated ID is set on it before the future completes.
+     *
+     * @param ticket The ticket to insert.
+     * @return A future completed with the outcome of the insert, or null if the write could not be queued.
+     */
+    CompletableFuture<Boolean> submitSave(Ticket ticket) {
+        return submit(new PendingWrite(Kind.SAVE, ticket));
+    }
+
+    /**
+     * Queues a ticket update. The price and out time are captured now, later changes to the ticket are ignored.
+     *
+     * @param ticket The ticket to update.
+     * @return A future completed with the outcome of the update, or null if the write could not be queued.
+     */
+    CompletableFuture<Boolean> submitUpdate(Ticket ticket) {
+        Ticket snapshot = new Ticket();
+        snapshot.setId(ticket.getId());
+        snapshot.setParkingSpot(ticket.getParkingSpot());
+        snapshot.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        snapshot.setPrice(ticket.getPrice());
+        snapshot.setInTime(ticket.getInTime() == null ? null : new Date(ticket.getInTime().getTime()));
+        snapshot.setOutTime(new Date(ticket.getOutTime().getTime()));
+        snapshot.setDiscounted(ticket.isDiscounted());
+        return submit(new PendingWrite(Kind.UPDATE, snapshot));
+    }
+
+    /**
+     * Asks for every write queued so far to be committed now.
+     *
+     * @return A future completed once those writes are committed.
+     */
+    CompletableFuture<Boolean> flush() {
+        CompletableFuture<Boolean> done = submit(new PendingWrite(Kind.FLUSH, null));
+        return done != null ? done : CompletableFuture.completedFuture(false);
+    }
+
+    /**
+     * Indicates whether writes are waiting to be committed, including a batch the flusher is committing.
+     *
+     * @return true if some write has not completed yet; false otherwise.
+     */
+    boolean hasPendingWrites() {
+        return unfinished.get() > 0;
+    }
+
+    /**
+     * Indicates whether an insert of a ticket of the given vehicle has not completed yet.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return true if a ticket of the vehicle is waiting to be inserted; false otherwise.
+     */
+    boolean hasPendingSave(String vehicleRegNumber) {
+        return unfinishedSaves.containsKey(vehicleRegNumber);
+    }
+
+    /**
+     * Commits every pending write and stops the flusher thread.
+     */
+    void shutdown() {
+        running = false;
+        // Wakes the flusher if it is waiting for more writes to fill its batch
+        queue.offer(new PendingWrite(Kind.FLUSH, null));
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Boolean> submit(PendingWrite write) {
+        if (!running) {
+            return reject(write);
+        }
+        // Counted before the write is queued, so it is pending until the flusher completes it
+        unfinished.incrementAndGet();
+        write.done.whenComplete((outcome, e) -> unfinished.decrementAndGet());
+        if (write.kind == Kind.SAVE) {
+            // A successful save is ended by onTicketSaved, before its future completes
+            ticketDAO.onTicketSaving(write.ticket);
+            write.done.whenComplete((outcome, e) -> {
+                if (!Boolean.TRUE.equals(outcome)) {
+                    ticketDAO.onTicketSaveFailed(write.ticket);
+                }
+            });
+            String vehicleRegNumber = write.ticket.getVehicleRegNumber();
+            unfinishedSaves.merge(vehicleRegNumber, 1, Integer::sum);
+            write.done.whenComplete((outcome, e) ->
+                    unfinishedSaves.computeIfPresent(vehicleRegNumber, (plate, saves) -> saves == 1 ? null : saves - 1));
+        }
+        try {
+            // Waits while the queue is full, which bounds how many writes can be lost on a crash
+            while (!queue.offer(write, 100, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    return reject(write);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.done.complete(false);
+            return null;
+        }
+        // Shutdown may have drained the queue for the last time before the write got in: then nothing
+        // would complete its future. Either the flusher took the write and completes it, or it is taken back here
+        if (!running && queue.remove(write)) {
+            return reject(write);
+        }
+        return write.done;
+    }
+
+    private static CompletableFuture<Boolean> reject(PendingWrite write) {
+        logger.error("Ticket write-behind is shut down, write rejected");
+        // Nobody gets the future, completing it only stops it counting as pending
+        write.done.complete(false);
+        return null;
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collectBatch(batch);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                complete(batch, false);
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error in ticket write-behind", e);
+                complete(batch, false);
+            } finally {
+                batch.clear();
+            }
+        }
+        // Writes that raced with shutdown were never attempted
+        queue.drainTo(batch);
+        complete(batch, false);
+    }
+
+    /**
+     * Adds writes to the batch until it is full, the flush interval is over or a flush is requested.
+     */
+    private void collectBatch(List<PendingWrite> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < maxBatchSize && batch.get(batch.size() - 1).kind != Kind.FLUSH) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                return;
+            }
+            PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        boolean committed = commit(batch);
+        if (!committed && batch.size() > 1) {
+            // One failing write rolls the whole batch back: retry each write alone, so only that one fails
+            logger.info("Retrying the {} writes of the failed batch one by one", batch.size());
+            for (PendingWrite write : batch) {
+                if (write.kind != Kind.FLUSH) {
+                    commit(Collections.singletonList(write));
+                }
+            }
+            committed = true;
+        }
+        if (!committed) {
+            complete(batch, false);
+            return;
+        }
+
+        for (PendingWrite write : batch) {
+            if (write.kind == Kind.SAVE && write.succeeded) {
+                ticketDAO.onTicketSaved(write.ticket);
+            } else if (write.kind == Kind.UPDATE && write.succeeded) {
+                ticketDAO.onTicketUpdated(write.ticket);
+            }
+            write.done.complete(write.kind == Kind.FLUSH || write.succeeded);
+        }
+    }
+
+    /**
+     * Writes the batch in one transaction, setting the outcome of each write.
+     *
+     * @return true if the transaction was committed; false if it was rolled back, in which case no write succeeded.
+     */
+    private boolean commit(List<PendingWrite> batch) {
+        try (Connection con = dataBaseConfig.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                int from = 0;
+                while (from < batch.size()) {
+                    // Consecutive writes of the same kind go in one JDBC batch, keeping submission order
+                    Kind kind = batch.get(from).kind;
+                    int to = from;
+                    while (to < batch.size() && batch.get(to).kind == kind) {
+                        to++;
+                    }
+                    if (kind == Kind.SAVE) {
+                        executeSaves(con, batch.subList(from, to));
+                    } else if (kind == Kind.UPDATE) {
+                        executeUpdates(con, batch.subList(from, to));
+                    }
+                    from = to;
+                }
+                con.commit();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        } catch (Exception ex) {
+            logger.error("Error writing batch of {} tickets", batch.size(), ex);
+            for (PendingWrite write : batch) {
+                write.succeeded = false;
+                if (write.generatedId) {
+                    // The rolled back insert did not keep its generated ID
+                    write.ticket.setId(0);
+                    write.generatedId = false;
+                }
+            }
+            return false;
+        }
+    }
+
+    private void executeSaves(Connection con, List<PendingWrite> saves) throws SQLException {
+        // Tickets numbered by the ID allocator are inserted without reading generated keys back
+        int numbered = 0;
+        while (numbered < saves.size() && saves.get(numbered).ticket.getId() != 0) {
+            numbered++;
+        }
+        if (numbered > 0) {
+            executeNumberedSaves(con, saves.subList(0, numbered));
+            saves = saves.subList(numbered, saves.size());
+            if (saves.isEmpty()) {
+                return;
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)) {
+            for (PendingWrite save : saves) {
+                TicketDAO.bindSaveTicket(ps, save.ticket);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                for (int i = 0; i < saves.size(); i++) {
+                    PendingWrite save = saves.get(i);
+                    save.succeeded = isSuccess(counts[i]);
+                    if (save.succeeded && keys.next()) {
+                        save.ticket.setId(keys.getInt(1));
+                        save.generatedId = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private void executeNumberedSaves(Connection con, List<PendingWrite> saves) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET_WITH_ID)) {
+            for (PendingWrite save : saves) {
+                TicketDAO.bindSaveTicket(ps, save.ticket);
+                ps.setInt(7, save.ticket.getId());
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            for (int i = 0; i < saves.size(); i++) {
+                saves.get(i).succeeded = isSuccess(counts[i]);
+            }
+        }
+    }
+
+    private void executeUpdates(Connection con, List<PendingWrite> updates) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET)) {
+            for (PendingWrite update : updates) {
+                TicketDAO.bindUpdateTicket(ps, update.ticket);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            for (int i = 0; i < updates.size(); i++) {
+                updates.get(i).succeeded = isSuccess(counts[i]);
+            }
+        }
+    }
+
+    private static boolean isSuccess(int updateCount) {
+        // Drivers rewriting batches may only report that the statement succeeded
+        return updateCount == 1 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+
+    private static void complete(List<PendingWrite> batch, boolean outcome) {
+        for (PendingWrite write : batch) {
+            write.done.complete(outcome);
+        }
+    }
+
+    /**
+     * A queued write and the future of its caller.
+     */
+    private static final class PendingWrite {
+
+        private final Kind kind;
+        private final Ticket ticket;
+        private final CompletableFuture<Boolean> done = new CompletableFuture<>();
+        private boolean succeeded;
+        // Set when the ID of the ticket was generated by the insert, rather than by the ID allocator
+        private boolean generatedId;
+
+        private PendingWrite(Kind kind, Ticket ticket) {
+            this.kind = kind;
+            this.ticket = ticket;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.util.LongIntHashMap;
+import com.parkit.parkingsystem.util.LongObjectHashMap;
+import com.parkit.parkingsystem.util.RegistrationCodec;
+import com.parkit.parkingsystem.util.RegistrationInterner;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the number of tickets per vehicle registration number.
+ * The cache is split into segments, each a primitive map from the {@code long} key of a
+ * {@link RegistrationInterner} to the count, behind its own lock, so gates looking up different vehicles
+ * rarely wait on each other. Full segments evict with the CLOCK approximation of least recently used.
+ * A saved ticket is added to the cached count of its vehicle, and a count read from the database is only cached
+ * if no ticket of the vehicle was saved while it was read, nor is being saved, so the cache never holds a count
+ * that misses a ticket or counts one twice.
+ * Plates the interner cannot pack are only interned while their count is cached.
+ */
+public class VisitCountCache {
+
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+
+    private static final int SEGMENTS = 16;
+    private static final int VERSION_STRIPES = 1024;
+
+    private final RegistrationInterner interner = new RegistrationInterner();
+    private final Segment[] segments = new Segment[SEGMENTS];
+    // Bumped by every save of a vehicle hashing to the stripe, so counts read before it are not cached.
+    // Striped by plate rather than key, so stamps need no interned key
+    private final AtomicIntegerArray versions = new AtomicIntegerArray(VERSION_STRIPES);
+    // Saves begun and not ended yet per stripe: their ticket may be committed, so counts read meanwhile are not cached
+    private final AtomicIntegerArray savesInFlight = new AtomicIntegerArray(VERSION_STRIPES);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor for VisitCountCache.
+     *
+     * @param maxSize Maximum number of vehicles kept in the cache.
+     */
+    public VisitCountCache(int maxSize) {
+        if (maxSize < SEGMENTS) {
+            throw new IllegalArgumentException("Cache size must be at least " + SEGMENTS + ": " + maxSize);
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(interner, maxSize / SEGMENTS);
+        }
+    }
+
+    /**
+     * Gets the cached ticket count of a vehicle.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return The number of tickets, or -1 if the vehicle is not cached.
+     */
+    public int get(String vehicleRegNumber) {
+        long key = interner.find(vehicleRegNumber);
+        int count = LongIntHashMap.NO_VALUE;
+        if (key != RegistrationCodec.NOT_ENCODABLE) {
+            Segment segment = segmentFor(key);
+            synchronized (segment) {
+                count = segment.get(key);
+            }
+        }
+        if (count == LongIntHashMap.NO_VALUE) {
+            misses.incrementAndGet();
+            return -1;
+        }
+        hits.incrementAndGet();
+        return count;
+    }
+
+    /**
+     * Gets the stamp to pass to {@link #put(String, int, long)} with a count about to be read from the database.
+     * Take it before the query, so a ticket saved while the query runs keeps its result out of the cache.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return The stamp.
+     */
+    public long stamp(String vehicleRegNumber) {
+        return versions.get(stripeOf(vehicleRegNumber));
+    }
+
+    /**
+     * Caches the ticket count of a vehicle read from the database, unless a count is already cached or
+     * a ticket of the vehicle was saved since the stamp was taken or is being saved, in which case the count
+     * may be stale.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @param count            The number of tickets.
+     * @param stamp            The stamp taken by {@link #stamp(String)} before the count was read.
+     */
+    public void put(String vehicleRegNumber, int count, long stamp) {
+        long key = interner.key(vehicleRegNumber);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            // Checked under the lock, so a save bumping the version afterwards finds the count to drop
+            int stripe = stripeOf(vehicleRegNumber);
+            if (versions.get(stripe) == stamp && savesInFlight.get(stripe) == 0 && segment.putIfAbsent(key, count)) {
+                while (segment.size() > segment.maxSize) {
+                    segment.evictOne();
+                }
+                return;
+            }
+        }
+        interner.release(key);
+    }
+
+    /**
+     * Marks a ticket of the vehicle as being saved. Call it before the insert is sent, then end the save with
+     * {@link #increment(String, int, long)} once it is committed, or {@link #abortSave(String)} if it fails.
+     * Until then, counts read from the database are not cached for the vehicle, since they may or may not
+     * include the ticket.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     */
+    public void beginSave(String vehicleRegNumber) {
+        int stripe = stripeOf(vehicleRegNumber);
+        savesInFlight.incrementAndGet(stripe);
+        versions.incrementAndGet(stripe);
+    }
+
+    /**
+     * Ends the save of a ticket of the vehicle that was not committed. The cached count, if any, is unchanged.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     */
+    public void abortSave(String vehicleRegNumber) {
+        int stripe = stripeOf(vehicleRegNumber);
+        versions.incrementAndGet(stripe);
+        endSave(stripe);
+    }
+
+    /**
+     * Ends the save of a committed ticket by adding it to the cached count of its vehicle. A vehicle that is
+     * not cached stays uncached, and counts read from the database before the save are kept out of the cache.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @return The cached count, the saved ticket included, or -1 if the vehicle is not cached.
+     */
+    public int increment(String vehicleRegNumber) {
+        return increment(vehicleRegNumber, -1, 0);
+    }
+
+    /**
+     * Ends the save of a committed ticket by adding it to the cached count of its vehicle or, when the vehicle is
+     * not cached, by caching the count read in the transaction that saved it, unless another ticket of the vehicle
+     * was saved since the stamp was taken or is being saved. Either way, counts read from the database before
+     * the save are kept out of the cache.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @param counted          The number of tickets read with the saved one included, or -1 if none was read.
+     * @param stamp            The stamp taken by {@link #stamp(String)} before the count was read.
+     * @return The cached count, the saved ticket included, or -1 if the vehicle is not cached.
+     */
+    public int increment(String vehicleRegNumber, int counted, long stamp) {
+        int stripe = stripeOf(vehicleRegNumber);
+        long key = counted >= 0 ? interner.key(vehicleRegNumber) : interner.find(vehicleRegNumber);
+        if (key == RegistrationCodec.NOT_ENCODABLE) {
+            // Not cached, and no count to cache
+            versions.incrementAndGet(stripe);
+            endSave(stripe);
+            return -1;
+        }
+        Segment segment = segmentFor(key);
+        int cached = -1;
+        boolean stored = false;
+        synchronized (segment) {
+            // Bumped under the lock, so a put checking its stamp afterwards sees the save;
+            // the only save in flight must be this one, whose ticket the count includes
+            boolean unchanged = versions.getAndIncrement(stripe) == stamp && savesInFlight.get(stripe) == 1;
+            if (segment.addIfPresent(key, 1)) {
+                cached = segment.get(key);
+            } else if (counted >= 0 && unchanged && segment.putIfAbsent(key, counted)) {
+                cached = counted;
+                stored = true;
+                while (segment.size() > segment.maxSize) {
+                    segment.evictOne();
+                }
+            }
+        }
+        endSave(stripe);
+        if (counted >= 0 && !stored) {
+            // The reference taken for the count is not held by any entry
+            interner.release(key);
+        }
+        return cached;
+    }
+
+    /**
+     * Gets the number of cached plates the registration codec cannot pack, each interned while it is cached.
+     *
+     * @return The number of interned plates.
+     */
+    public int getInternedCount() {
+        return interner.getInternedCount();
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that had to go to the database.
+     *
+     * @return The miss count.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Segment segmentFor(long key) {
+        // High bits of the mixed key, the map slots use the low ones
+        return segments[LongObjectHashMap.mix(key) >>> 28];
+    }
+
+    private void endSave(int stripe) {
+        // Never below zero, should the cache be enabled while a save was in flight
+        savesInFlight.getAndUpdate(stripe, saves -> saves > 0 ? saves - 1 : 0);
+    }
+
+    private static int stripeOf(String vehicleRegNumber) {
+        return LongObjectHashMap.mix(vehicleRegNumber.hashCode()) & (VERSION_STRIPES - 1);
+    }
+
+    /**
+     * One slice of the cache, releasing the interned key of each entry it evicts.
+     */
+    private static final class Segment extends LongIntHashMap {
+
+        private final RegistrationInterner interner;
+        private final int maxSize;
+
+        private Segment(RegistrationInterner interner, int maxSize) {
+            super(maxSize + 1);
+            this.interner = interner;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected void evicted(long key) {
+            interner.release(key);
+        }
+    }
+}
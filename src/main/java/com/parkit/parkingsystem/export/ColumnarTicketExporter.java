@@ -0,0 +1,104 @@
+package com.parkit.parkingsystem.export;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Exports tickets to a compact binary file, column by column within blocks of tickets, so each column
+ * compresses well and can be read without the others. Layout, big-endian:
+ * <ul>
+ *     <li>the magic bytes "PKTC" and a format version byte;</li>
+ *     <li>blocks of at most {@link #BLOCK_SIZE} tickets, each starting with its ticket count as an int,
+ *     then its columns one after the other: IDs (int), parking numbers (int), parking type ordinals (byte),
+ *     prices (double), in times and out times (long, milliseconds since the epoch, out time
+ *     {@link Long#MIN_VALUE} for an open ticket), registration number lengths (short) then their UTF-8 bytes;</li>
+ *     <li>a block of 0 tickets, ending the file.</li>
+ * </ul>
+ * One block is held in memory at a time.
+ */
+final class ColumnarTicketExporter extends TicketExporter {
+
+    static final byte[] MAGIC = {'P', 'K', 'T', 'C'};
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 65_536;
+
+    private final int[] ids = new int[BLOCK_SIZE];
+    private final int[] parkingNumbers = new int[BLOCK_SIZE];
+    private final byte[] parkingTypes = new byte[BLOCK_SIZE];
+    private final double[] prices = new double[BLOCK_SIZE];
+    private final long[] inTimes = new long[BLOCK_SIZE];
+    private final long[] outTimes = new long[BLOCK_SIZE];
+    private final short[] regNumberLengths = new short[BLOCK_SIZE];
+    // Registration numbers of the block, end to end; grows to the largest block seen
+    private byte[] regNumberBytes = new byte[BLOCK_SIZE * 10];
+    private int regNumberBytesLength;
+    private int size;
+
+    ColumnarTicketExporter(ChannelOutput out) throws IOException {
+        super(out);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    @Override
+    void write(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber,
+               double price, long inTime, long outTime) throws IOException {
+        byte[] regNumber = vehicleRegNumber.getBytes(StandardCharsets.UTF_8);
+        if (regNumberBytesLength + regNumber.length > regNumberBytes.length) {
+            regNumberBytes = Arrays.copyOf(regNumberBytes, Math.max(2 * regNumberBytes.length,
+                    regNumberBytesLength + regNumber.length));
+        }
+        System.arraycopy(regNumber, 0, regNumberBytes, regNumberBytesLength, regNumber.length);
+        regNumberBytesLength += regNumber.length;
+        regNumberLengths[size] = (short) regNumber.length;
+        ids[size] = id;
+        parkingNumbers[size] = parkingNumber;
+        parkingTypes[size] = (byte) parkingType.ordinal();
+        prices[size] = price;
+        inTimes[size] = inTime;
+        outTimes[size] = outTime;
+        if (++size == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the last block and the end of the file.
+     */
+    @Override
+    public void finish() throws IOException {
+        if (size > 0) {
+            writeBlock();
+        }
+        out.writeInt(0);
+    }
+
+    private void writeBlock() throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(ids[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeInt(parkingNumbers[i]);
+        }
+        out.write(parkingTypes, 0, size);
+        for (int i = 0; i < size; i++) {
+            out.writeDouble(prices[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeLong(inTimes[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeLong(outTimes[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeShort(regNumberLengths[i]);
+        }
+        out.write(regNumberBytes, 0, regNumberBytesLength);
+        size = 0;
+        regNumberBytesLength = 0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.parkit.parkingsystem.export;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Exports tickets as CSV, one line per ticket. Times are written in UTC as yyyy-MM-dd HH:mm:ss,
+ * and the out time of an open ticket is left empty. Lines are encoded straight into the output buffer.
+ */
+final class CsvTicketExporter extends TicketExporter {
+
+    private static final byte[] HEADER =
+            "id,parking_number,type,vehicle_reg_number,price,in_time,out_time\n".getBytes(StandardCharsets.US_ASCII);
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private final byte[] digits = new byte[20];
+    // Tickets come in time order, so the date of the previous time is usually the right one
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private byte[] cachedDate;
+
+    CsvTicketExporter(ChannelOutput out) throws IOException {
+        super(out);
+        out.write(HEADER);
+    }
+
+    @Override
+    void write(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber,
+               double price, long inTime, long outTime) throws IOException {
+        writeNumber(id);
+        out.writeByte(',');
+        writeNumber(parkingNumber);
+        out.writeByte(',');
+        out.writeUtf8(parkingType.name());
+        out.writeByte(',');
+        writeText(vehicleRegNumber);
+        out.writeByte(',');
+        out.writeUtf8(Double.toString(price));
+        out.writeByte(',');
+        writeTime(inTime);
+        out.writeByte(',');
+        if (outTime != NO_OUT_TIME) {
+            writeTime(outTime);
+        }
+        out.writeByte('\n');
+    }
+
+    private void writeNumber(long value) throws IOException {
+        if (value < 0) {
+            out.writeByte('-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        out.write(digits, start, digits.length - start);
+    }
+
+    /**
+     * Writes a field, quoted if it contains a separator, a quote or a line break.
+     */
+    private void writeText(String value) throws IOException {
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            out.writeUtf8(value);
+            return;
+        }
+        out.writeByte('"');
+        out.writeUtf8(value.replace("\"", "\"\""));
+        out.writeByte('"');
+    }
+
+    private void writeTime(long millis) throws IOException {
+        long epochDay = Math.floorDiv(millis, MILLIS_PER_DAY);
+        if (epochDay != cachedEpochDay) {
+            cachedDate = LocalDate.ofEpochDay(epochDay).toString().getBytes(StandardCharsets.US_ASCII);
+            cachedEpochDay = epochDay;
+        }
+        out.write(cachedDate);
+        int secondOfDay = (int) (Math.floorMod(millis, MILLIS_PER_DAY) / 1000);
+        out.writeByte(' ');
+        writeTwoDigits(secondOfDay / 3600);
+        out.writeByte(':');
+        writeTwoDigits(secondOfDay / 60 % 60);
+        out.writeByte(':');
+        writeTwoDigits(secondOfDay % 60);
+    }
+
+    private void writeTwoDigits(int value) throws IOException {
+        out.writeByte('0' + value / 10);
+        out.writeByte('0' + value % 10);
+    }
+}
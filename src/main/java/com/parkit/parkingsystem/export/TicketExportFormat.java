@@ -0,0 +1,44 @@
+package com.parkit.parkingsystem.export;
+
+/**
+ * File formats of a ticket export.
+ */
+public enum TicketExportFormat {
+
+    // One line per ticket, with a header line; times in UTC as yyyy-MM-dd HH:mm:ss
+    CSV(".csv"),
+    // Blocks of tickets stored column by column, see ColumnarTicketExporter
+    COLUMNAR(".tcol");
+
+    private final String extension;
+
+    TicketExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Gets the file name extension of the format, without compression.
+     *
+     * @return The extension, starting with a dot.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Finds the format of a file from its name, ignoring a trailing ".gz".
+     *
+     * @param fileName The file name, e.g. "tickets.csv.gz".
+     * @return The format.
+     * @throws IllegalArgumentException if no format has this extension.
+     */
+    public static TicketExportFormat forFileName(String fileName) {
+        String name = fileName.endsWith(".gz") ? fileName.substring(0, fileName.length() - 3) : fileName;
+        for (TicketExportFormat format : values()) {
+            if (name.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown export format for file " + fileName);
+    }
+}
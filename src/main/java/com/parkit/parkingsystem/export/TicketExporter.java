@@ -0,0 +1,169 @@
+package com.parkit.parkingsystem.export;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes tickets to an export file as they are visited, e.g. streamed by {@link TicketDAO#forEachTicket},
+ * through a fixed buffer, so exporting any number of tickets takes the same memory.
+ * Progress and throughput are logged every {@link #PROGRESS_INTERVAL} tickets.
+ */
+public abstract class TicketExporter implements TicketDAO.TicketVisitor, Closeable {
+
+    private static final Logger logger = LogManager.getLogger("TicketExporter");
+
+    public static final int FETCH_SIZE = 10_000;
+    public static final long PROGRESS_INTERVAL = 1_000_000;
+
+    final ChannelOutput out;
+    private final long start = System.nanoTime();
+    private long ticketCount;
+    // First write error, kept because the DAO only reports that streaming failed
+    private IOException failure;
+
+    TicketExporter(ChannelOutput out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates or truncates an export file.
+     *
+     * @param path   The file.
+     * @param format The file format.
+     * @param gzip   Whether to compress the file.
+     * @return The exporter, to close once every ticket is visited.
+     * @throws IOException if the file cannot be written.
+     */
+    public static TicketExporter open(Path path, TicketExportFormat format, boolean gzip) throws IOException {
+        ChannelOutput out = ChannelOutput.open(path, gzip);
+        try {
+            return format == TicketExportFormat.CSV ? new CsvTicketExporter(out) : new ColumnarTicketExporter(out);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Exports the tickets that came in between two dates: the current ones, then the archived ones, each oldest first.
+     *
+     * @param ticketDAO The DAO streaming the tickets.
+     * @param from      The earliest in time, inclusive.
+     * @param to        The latest in time, exclusive.
+     * @param path      The export file, created or truncated.
+     * @param format    The file format.
+     * @param gzip      Whether to compress the file.
+     * @return The number of tickets exported.
+     * @throws IOException if the file cannot be written or the tickets cannot be read.
+     */
+    public static long export(TicketDAO ticketDAO, Date from, Date to, Path path, TicketExportFormat format,
+                              boolean gzip) throws IOException {
+        long ticketCount;
+        long bytes;
+        long elapsedNanos;
+        try (TicketExporter exporter = open(path, format, gzip)) {
+            ticketCount = ticketDAO.forEachTicket(from, to, FETCH_SIZE, exporter);
+            if (exporter.failure != null) {
+                throw exporter.failure;
+            }
+            if (ticketCount < 0) {
+                throw new IOException("Tickets could not be read from the database");
+            }
+            exporter.finish();
+            bytes = exporter.out.getBytesWritten();
+            elapsedNanos = System.nanoTime() - exporter.start;
+        }
+        logger.info("Exported {} tickets to {} in {} ms: {} tickets/s, {} MB/s, {} bytes on disk",
+                ticketCount, path, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), perSecond(ticketCount, elapsedNanos),
+                perSecond(bytes, elapsedNanos) / (1024 * 1024), Files.size(path));
+        return ticketCount;
+    }
+
+    /**
+     * Exports the tickets of the production database that came in between two days, UTC, to a file
+     * whose name gives the format and compression, e.g. "tickets.csv.gz".
+     *
+     * @param from The first day.
+     * @param to   The last day, inclusive.
+     * @param path The export file, created or truncated.
+     * @throws IOException if the file cannot be written or the tickets cannot be read.
+     */
+    public static void runExport(LocalDate from, LocalDate to, Path path) throws IOException {
+        String fileName = path.getFileName().toString();
+        export(new TicketDAO(new DataBaseConfig()),
+                Date.from(from.atStartOfDay().toInstant(ZoneOffset.UTC)),
+                Date.from(to.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC)),
+                path, TicketExportFormat.forFileName(fileName), fileName.endsWith(".gz"));
+    }
+
+    /**
+     * Writes one ticket.
+     *
+     * @throws UncheckedIOException if the ticket cannot be written, which stops the export.
+     */
+    @Override
+    public final void visit(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber,
+                            double price, long inTime, long outTime) {
+        try {
+            write(id, parkingNumber, parkingType, vehicleRegNumber, price, inTime, outTime);
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        }
+        if (++ticketCount % PROGRESS_INTERVAL == 0) {
+            long elapsedNanos = System.nanoTime() - start;
+            logger.info("Exported {} tickets: {} tickets/s, {} MB/s", ticketCount,
+                    perSecond(ticketCount, elapsedNanos), perSecond(out.getBytesWritten(), elapsedNanos) / (1024 * 1024));
+        }
+    }
+
+    /**
+     * Gets the number of tickets written so far.
+     *
+     * @return The number of tickets.
+     */
+    public long getTicketCount() {
+        return ticketCount;
+    }
+
+    /**
+     * Writes the end of the file, once every ticket is visited.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public void finish() throws IOException {
+    }
+
+    /**
+     * Flushes and closes the file. Call {@link #finish()} first for a complete file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Writes one ticket in the format of the file.
+     */
+    abstract void write(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber,
+                        double price, long inTime, long outTime) throws IOException;
+
+    private static long perSecond(long count, long elapsedNanos) {
+        return elapsedNanos > 0 ? (long) (count * 1e9 / elapsedNanos) : 0;
+    }
+}
@@ -0,0 +1,24 @@
+package com.parkit.parkingsystem.journal;
+
+/**
+ * When the {@link TicketJournal} forces its writes to the storage device.
+ * Appends always reach the OS page cache at once and survive a crash of the process;
+ * the policy decides what a crash of the machine can lose.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Leaves flushing to the OS. Fastest; a machine crash loses what the OS had not written yet.
+     */
+    NONE,
+
+    /**
+     * Flushes on a fixed interval from a background thread. A machine crash loses at most one interval of events.
+     */
+    INTERVAL,
+
+    /**
+     * Flushes before every append returns. Nothing acknowledged is lost, at the cost of a device flush per event.
+     */
+    EVERY_WRITE
+}
@@ -0,0 +1,215 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.CompactTicket;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * A ticket or parking spot state change, as recorded in the {@link TicketJournal}.
+ * Fields that do not apply to the event type are 0, null or false.
+ */
+public class JournalEvent {
+
+    /**
+     * The kinds of state change, with the code stored in the journal.
+     */
+    public enum Type {
+        TICKET_OPENED(1),
+        TICKET_CLOSED(2),
+        SPOT_CHANGED(3),
+        OPEN_TICKETS_RELOADED(4),
+        JOURNAL_CLOSED(5);
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        byte code() {
+            return code;
+        }
+
+        static Type fromCode(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Type type;
+    private final long sequence;
+    private final long timeMillis;
+    private final int ticketId;
+    private final int spotNumber;
+    private final ParkingType parkingType;
+    private final boolean available;
+    private final String vehicleRegNumber;
+    private final double price;
+
+    JournalEvent(Type type, long sequence, long timeMillis, int ticketId, int spotNumber, ParkingType parkingType,
+                 boolean available, String vehicleRegNumber, double price) {
+        this.type = type;
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.ticketId = ticketId;
+        this.spotNumber = spotNumber;
+        this.parkingType = parkingType;
+        this.available = available;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.price = price;
+    }
+
+    /**
+     * Creates the event of a ticket being saved.
+     *
+     * @param ticket The saved ticket, with its ID, parking spot and in time set.
+     * @return The TICKET_OPENED event.
+     */
+    public static JournalEvent ticketOpened(Ticket ticket) {
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        return new JournalEvent(Type.TICKET_OPENED, -1, ticket.getInTime().getTime(), ticket.getId(),
+                parkingSpot.getId(), parkingSpot.getParkingType(), false, ticket.getVehicleRegNumber(), ticket.getPrice());
+    }
+
+    /**
+     * Creates the event of a ticket being closed.
+     *
+     * @param ticket The closed ticket, with its ID, out time and price set.
+     * @return The TICKET_CLOSED event.
+     */
+    public static JournalEvent ticketClosed(Ticket ticket) {
+        return new JournalEvent(Type.TICKET_CLOSED, -1, ticket.getOutTime().getTime(), ticket.getId(),
+                0, null, false, ticket.getVehicleRegNumber(), ticket.getPrice());
+    }
+
+    /**
+     * Creates the event of a compact ticket being closed.
+     *
+     * @param vehicleRegNumber The vehicle registration number.
+     * @param ticket           The closed ticket, with its out time and price set.
+     * @return The TICKET_CLOSED event.
+     */
+    public static JournalEvent ticketClosed(String vehicleRegNumber, CompactTicket ticket) {
+        return new JournalEvent(Type.TICKET_CLOSED, -1, ticket.getOutTime(), ticket.getId(),
+                0, null, false, vehicleRegNumber, ticket.getPrice());
+    }
+
+    /**
+     * Creates the event of a parking spot being taken or freed.
+     *
+     * @param parkingSpot The spot, with its new availability.
+     * @return The SPOT_CHANGED event.
+     */
+    public static JournalEvent spotChanged(ParkingSpot parkingSpot) {
+        return new JournalEvent(Type.SPOT_CHANGED, -1, System.currentTimeMillis(), 0,
+                parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable(), null, 0);
+    }
+
+    /**
+     * Creates the event of the open tickets being reloaded from the database. It forgets every ticket
+     * opened before it, the reloaded ones follow as TICKET_OPENED events.
+     *
+     * @return The OPEN_TICKETS_RELOADED event.
+     */
+    public static JournalEvent openTicketsReloaded() {
+        return new JournalEvent(Type.OPEN_TICKETS_RELOADED, -1, System.currentTimeMillis(), 0,
+                0, null, false, null, 0);
+    }
+
+    /**
+     * Creates the event of the journal being closed once every change was recorded. A journal ending with it
+     * holds the whole state; one ending without it was cut short by a crash and may miss committed changes.
+     *
+     * @return The JOURNAL_CLOSED event.
+     */
+    public static JournalEvent journalClosed() {
+        return new JournalEvent(Type.JOURNAL_CLOSED, -1, System.currentTimeMillis(), 0,
+                0, null, false, null, 0);
+    }
+
+    /**
+     * Gets the kind of state change.
+     *
+     * @return The event type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the position of the event in the journal.
+     *
+     * @return The sequence number, or -1 for an event not read from a journal.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the in time of an opened ticket, the out time of a closed one, or when a spot changed.
+     *
+     * @return The event time in milliseconds since the epoch.
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Gets the ticket ID of a ticket event.
+     *
+     * @return The ticket ID.
+     */
+    public int getTicketId() {
+        return ticketId;
+    }
+
+    /**
+     * Gets the spot number of an opened ticket or a spot change.
+     *
+     * @return The spot number.
+     */
+    public int getSpotNumber() {
+        return spotNumber;
+    }
+
+    /**
+     * Gets the parking type of an opened ticket or a spot change.
+     *
+     * @return The parking type.
+     */
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    /**
+     * Gets the new availability of a spot change.
+     *
+     * @return true if the spot was freed; false if it was taken.
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Gets the vehicle registration number of a ticket event.
+     *
+     * @return The registration number.
+     */
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    /**
+     * Gets the price of a ticket event.
+     *
+     * @return The ticket price.
+     */
+    public double getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,125 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Spot and open ticket state rebuilt by replaying a {@link TicketJournal}.
+ */
+public class JournalState {
+
+    private final Map<Integer, ParkingSpot> parkingSpots = new TreeMap<>();
+    private final Map<String, Ticket> openTickets = new HashMap<>();
+    private long eventCount;
+    private boolean cleanlyClosed;
+
+    /**
+     * Applies one event on top of the state built so far.
+     *
+     * @param event The next event of the journal.
+     */
+    public void apply(JournalEvent event) {
+        eventCount++;
+        cleanlyClosed = event.getType() == JournalEvent.Type.JOURNAL_CLOSED;
+        switch (event.getType()) {
+            case TICKET_OPENED: {
+                Ticket ticket = new Ticket();
+                ticket.setId(event.getTicketId());
+                ticket.setParkingSpot(new ParkingSpot(event.getSpotNumber(), event.getParkingType(), false));
+                ticket.setVehicleRegNumber(event.getVehicleRegNumber());
+                ticket.setPrice(event.getPrice());
+                ticket.setInTime(new Date(event.getTimeMillis()));
+                openTickets.put(event.getVehicleRegNumber(), ticket);
+                break;
+            }
+            case TICKET_CLOSED: {
+                Ticket open = openTickets.get(event.getVehicleRegNumber());
+                if (open != null && open.getId() == event.getTicketId()) {
+                    openTickets.remove(event.getVehicleRegNumber());
+                }
+                break;
+            }
+            case OPEN_TICKETS_RELOADED:
+                openTickets.clear();
+                break;
+            case SPOT_CHANGED:
+                parkingSpots.put(event.getSpotNumber(),
+                        new ParkingSpot(event.getSpotNumber(), event.getParkingType(), event.isAvailable()));
+                break;
+            case JOURNAL_CLOSED:
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown journal event type: " + event.getType());
+        }
+    }
+
+    /**
+     * Indicates whether no event was replayed.
+     *
+     * @return true for an empty journal; false otherwise.
+     */
+    public boolean isEmpty() {
+        return eventCount == 0;
+    }
+
+    /**
+     * Indicates whether the journal ended with {@link JournalEvent.Type#JOURNAL_CLOSED}, in which case
+     * the state is complete. Otherwise the last run crashed and the state may miss changes it committed.
+     *
+     * @return true if the last event replayed closed the journal; false otherwise.
+     */
+    public boolean isCleanlyClosed() {
+        return cleanlyClosed;
+    }
+
+    /**
+     * Gets the number of events replayed.
+     *
+     * @return The event count.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Gets the last known state of every spot recorded in the journal, by spot number.
+     *
+     * @return A copy of the spots.
+     */
+    public List<ParkingSpot> getParkingSpots() {
+        return new ArrayList<>(parkingSpots.values());
+    }
+
+    /**
+     * Gets the tickets still open at the end of the journal.
+     *
+     * @return A copy of the open tickets.
+     */
+    public Collection<Ticket> getOpenTickets() {
+        return new ArrayList<>(openTickets.values());
+    }
+
+    /**
+     * Gets the events recreating this state in an empty journal: one per spot, then one per open ticket.
+     *
+     * @return The snapshot events.
+     */
+    public List<JournalEvent> snapshot() {
+        List<JournalEvent> events = new ArrayList<>(parkingSpots.size() + openTickets.size());
+        for (ParkingSpot parkingSpot : parkingSpots.values()) {
+            events.add(JournalEvent.spotChanged(parkingSpot));
+        }
+        for (Ticket ticket : openTickets.values()) {
+            events.add(JournalEvent.ticketOpened(ticket));
+        }
+        return events;
+    }
+}
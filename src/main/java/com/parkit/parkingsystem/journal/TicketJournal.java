@@ -0,0 +1,435 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of ticket and parking spot state changes, kept in a memory-mapped file.
+ * Every event is a fixed-size entry of {@link #ENTRY_SIZE} bytes, so appending reserves the next slot with
+ * an atomic increment and copies the entry into the mapping, without a system call. The only lock guards
+ * the list of mapped chunks, held just long enough to look up the chunk or map the next one as the file grows.
+ * Entries are appended once their change is committed, so a crash can lose the last ones: only a journal
+ * {@link #close() closed} after the last change, which ends with {@link JournalEvent.Type#JOURNAL_CLOSED},
+ * rebuilds the spot and open ticket state at startup without querying the database. {@link #compact(Path)}
+ * rewrites the file with that state alone before it is opened, so a replay reads one snapshot and one run of events.
+ *
+ * <p>Entry layout, big-endian: CRC32 of bytes 4 to 63 (int), event type (byte), parking type (byte, 0 for none),
+ * availability (byte), registration number length (byte), sequence (long), time in milliseconds (long),
+ * ticket ID (int), spot number (int), price (double) and the UTF-8 registration number (24 bytes).
+ * An entry cut short by a crash fails its CRC and is skipped on replay.
+ */
+public class TicketJournal implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("TicketJournal");
+
+    public static final int ENTRY_SIZE = 64;
+    public static final int MAX_REG_NUMBER_BYTES = 24;
+    public static final int DEFAULT_CHUNK_ENTRIES = 16_384;
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+    private static final int REG_NUMBER_OFFSET = 40;
+    // Entries read or written with one system call when replaying, looking for the end or compacting
+    private static final int ENTRIES_PER_READ = 1024;
+
+    private static final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(ENTRY_SIZE));
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final long chunkBytes;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final AtomicLong nextSequence;
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+    // Set once a change could not be appended, after which close() no longer marks the journal complete
+    private volatile boolean incomplete;
+
+    private TicketJournal(Path path, FileChannel channel, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+                          int chunkEntries, long nextSequence) {
+        this.path = path;
+        this.channel = channel;
+        this.fsyncPolicy = fsyncPolicy;
+        this.chunkBytes = (long) chunkEntries * ENTRY_SIZE;
+        this.nextSequence = new AtomicLong(nextSequence);
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ticket-journal-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::force, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Opens a journal with the default chunk size and fsync interval, creating the file if needed.
+     *
+     * @param path        The journal file.
+     * @param fsyncPolicy When appends are forced to the storage device.
+     * @return The journal, positioned after its last entry.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static TicketJournal open(Path path, FsyncPolicy fsyncPolicy) throws IOException {
+        return open(path, fsyncPolicy, DEFAULT_FSYNC_INTERVAL_MILLIS, DEFAULT_CHUNK_ENTRIES);
+    }
+
+    /**
+     * Opens a journal, creating the file if needed.
+     *
+     * @param path                The journal file.
+     * @param fsyncPolicy         When appends are forced to the storage device.
+     * @param fsyncIntervalMillis Time between two forces with {@link FsyncPolicy#INTERVAL}.
+     * @param chunkEntries        Number of entries mapped at once; the file grows by this many entries.
+     * @return The journal, positioned after its last entry.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static TicketJournal open(Path path, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, int chunkEntries)
+            throws IOException {
+        if (chunkEntries <= 0 || fsyncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Chunk entries and fsync interval must be positive");
+        }
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long nextSequence = findEnd(channel);
+            logger.info("Opened ticket journal {} with {} entries", path, nextSequence);
+            return new TicketJournal(path, channel, fsyncPolicy, fsyncIntervalMillis, chunkEntries, nextSequence);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the slot after the last written entry. Chunks are zero-filled when mapped, so
+     * the written part of the file is followed by empty entries up to the end of the last chunk.
+     */
+    private static long findEnd(FileChannel channel) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(ENTRIES_PER_READ * ENTRY_SIZE);
+        long end = channel.size() / ENTRY_SIZE;
+        while (end > 0) {
+            long start = Math.max(0, end - ENTRIES_PER_READ);
+            block.clear();
+            block.limit((int) (end - start) * ENTRY_SIZE);
+            readFully(channel, block, start * ENTRY_SIZE);
+            for (long slot = end - 1; slot >= start; slot--) {
+                if (!isEmpty(block, (int) (slot - start) * ENTRY_SIZE)) {
+                    return slot + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    /**
+     * Replays a journal file, then replaces it with the state replayed, so the file never grows beyond
+     * the state at the start of a run plus the events of that run. Call it before {@link #open(Path, FsyncPolicy)}.
+     * A journal not closed cleanly is emptied instead: it may miss changes committed just before the crash,
+     * so that state must be loaded from the database, which journals it again.
+     *
+     * @param path The journal file; a missing file reads as an empty journal.
+     * @return The state replayed from the file as it was, see {@link JournalState#isCleanlyClosed()}.
+     * @throws IOException If the file cannot be read or replaced.
+     */
+    public static JournalState compact(Path path) throws IOException {
+        JournalState state = new JournalState();
+        if (Files.exists(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                replay(channel, findEnd(channel), path, state::apply);
+            }
+        }
+        List<JournalEvent> snapshot = state.isCleanlyClosed() ? state.snapshot() : new ArrayList<>();
+
+        // Write the snapshot beside the journal and move it over in one step, so a crash leaves either file whole
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer block = ByteBuffer.allocate(ENTRIES_PER_READ * ENTRY_SIZE);
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+            for (int sequence = 0; sequence < snapshot.size(); sequence++) {
+                encode(snapshot.get(sequence), sequence, entry);
+                block.put(entry.array());
+                if (!block.hasRemaining() || sequence == snapshot.size() - 1) {
+                    block.flip();
+                    while (block.hasRemaining()) {
+                        channel.write(block);
+                    }
+                    block.clear();
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Compacted ticket journal {} from {} events to {}", path, state.getEventCount(), snapshot.size());
+        return state;
+    }
+
+    /**
+     * Appends an event at the end of the journal.
+     *
+     * @param event The event to record.
+     * @return The sequence number of the entry.
+     */
+    public long append(JournalEvent event) {
+        if (closed) {
+            throw new IllegalStateException("Ticket journal " + path + " is closed");
+        }
+        try {
+            return write(event);
+        } catch (RuntimeException e) {
+            // The change is committed but missing here, so the journal no longer holds the whole state
+            incomplete = true;
+            throw e;
+        }
+    }
+
+    private long write(JournalEvent event) {
+        ByteBuffer entry = scratch.get();
+        // Refused before taking a sequence number, which would leave an empty slot
+        checkRegNumber(event);
+        long sequence = nextSequence.getAndIncrement();
+        encode(event, sequence, entry);
+
+        MappedByteBuffer chunk = chunkFor(sequence);
+        int offset = (int) (sequence * ENTRY_SIZE % chunkBytes);
+        // The first long, which holds the CRC, goes last so a reader never sees a valid CRC over missing data
+        for (int i = ENTRY_SIZE - 8; i >= 0; i -= 8) {
+            chunk.putLong(offset + i, entry.getLong(i));
+        }
+        if (fsyncPolicy == FsyncPolicy.EVERY_WRITE) {
+            chunk.force();
+        }
+        return sequence;
+    }
+
+    private static void checkRegNumber(JournalEvent event) {
+        String vehicleRegNumber = event.getVehicleRegNumber();
+        if (vehicleRegNumber != null && vehicleRegNumber.getBytes(StandardCharsets.UTF_8).length > MAX_REG_NUMBER_BYTES) {
+            throw new IllegalArgumentException("Registration number too long for the journal: " + vehicleRegNumber);
+        }
+    }
+
+    private static void encode(JournalEvent event, long sequence, ByteBuffer entry) {
+        String vehicleRegNumber = event.getVehicleRegNumber();
+        byte[] regNumber = vehicleRegNumber == null ? new byte[0] : vehicleRegNumber.getBytes(StandardCharsets.UTF_8);
+        ParkingType parkingType = event.getParkingType();
+
+        entry.clear();
+        entry.putInt(0)
+                .put(event.getType().code())
+                .put((byte) (parkingType == null ? 0 : parkingType.ordinal() + 1))
+                .put((byte) (event.isAvailable() ? 1 : 0))
+                .put((byte) regNumber.length)
+                .putLong(sequence)
+                .putLong(event.getTimeMillis())
+                .putInt(event.getTicketId())
+                .putInt(event.getSpotNumber())
+                .putDouble(event.getPrice())
+                .put(regNumber);
+        while (entry.hasRemaining()) {
+            entry.put((byte) 0);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(entry.array(), 4, ENTRY_SIZE - 4);
+        entry.putInt(0, (int) crc.getValue());
+    }
+
+    /**
+     * Decodes the entry starting at the given offset of the block, or returns null if it is damaged.
+     */
+    private static JournalEvent decode(ByteBuffer block, int offset, CRC32 crc) {
+        crc.reset();
+        crc.update(block.array(), offset + 4, ENTRY_SIZE - 4);
+        JournalEvent.Type type = JournalEvent.Type.fromCode(block.get(offset + 4));
+        if (block.getInt(offset) != (int) crc.getValue() || type == null) {
+            return null;
+        }
+        int parkingTypeCode = block.get(offset + 5);
+        ParkingType parkingType = parkingTypeCode == 0 ? null : ParkingType.values()[parkingTypeCode - 1];
+        int regNumberLength = block.get(offset + 7);
+        String vehicleRegNumber = type != JournalEvent.Type.TICKET_OPENED && type != JournalEvent.Type.TICKET_CLOSED ? null
+                : new String(block.array(), offset + REG_NUMBER_OFFSET, regNumberLength, StandardCharsets.UTF_8);
+        return new JournalEvent(type, block.getLong(offset + 8), block.getLong(offset + 16), block.getInt(offset + 24),
+                block.getInt(offset + 28), parkingType, block.get(offset + 6) != 0, vehicleRegNumber,
+                block.getDouble(offset + 32));
+    }
+
+    private MappedByteBuffer chunkFor(long sequence) {
+        int chunkIndex = (int) (sequence * ENTRY_SIZE / chunkBytes);
+        synchronized (chunks) {
+            while (chunks.size() <= chunkIndex) {
+                try {
+                    // Mapping past the end of the file grows it, zero-filled
+                    chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, chunks.size() * chunkBytes, chunkBytes));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot grow ticket journal " + path, e);
+                }
+            }
+            return chunks.get(chunkIndex);
+        }
+    }
+
+    /**
+     * Reads every entry of the journal, oldest first. Empty entries and entries whose CRC does not
+     * match, left by a crash in the middle of an append, are skipped.
+     *
+     * @param consumer Receives each event in sequence order.
+     * @return The number of events replayed.
+     * @throws IOException If the file cannot be read.
+     */
+    public long replay(Consumer<JournalEvent> consumer) throws IOException {
+        return replay(channel, nextSequence.get(), path, consumer);
+    }
+
+    private static long replay(FileChannel channel, long end, Path path, Consumer<JournalEvent> consumer)
+            throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(ENTRIES_PER_READ * ENTRY_SIZE);
+        CRC32 crc = new CRC32();
+        long replayed = 0;
+        long skipped = 0;
+        for (long start = 0; start < end; start += ENTRIES_PER_READ) {
+            int entries = (int) Math.min(ENTRIES_PER_READ, end - start);
+            block.clear();
+            block.limit(entries * ENTRY_SIZE);
+            readFully(channel, block, start * ENTRY_SIZE);
+            for (int offset = 0; offset < entries * ENTRY_SIZE; offset += ENTRY_SIZE) {
+                if (isEmpty(block, offset)) {
+                    continue;
+                }
+                JournalEvent event = decode(block, offset, crc);
+                if (event == null) {
+                    skipped++;
+                    continue;
+                }
+                consumer.accept(event);
+                replayed++;
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} damaged entries replaying ticket journal {}", skipped, path);
+        }
+        return replayed;
+    }
+
+    /**
+     * Replays the journal into a new state.
+     *
+     * @return The spot and open ticket state at the end of the journal.
+     * @throws IOException If the file cannot be read.
+     */
+    public JournalState replayState() throws IOException {
+        JournalState state = new JournalState();
+        replay(state::apply);
+        return state;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer block, long position) throws IOException {
+        while (block.hasRemaining()) {
+            if (channel.read(block, position + block.position()) < 0) {
+                // Past the end of the file: the rest of the block reads as zeros
+                while (block.hasRemaining()) {
+                    block.put((byte) 0);
+                }
+            }
+        }
+    }
+
+    private static boolean isEmpty(ByteBuffer block, int offset) {
+        for (int i = offset; i < offset + ENTRY_SIZE; i += 8) {
+            if (block.getLong(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of entries appended, including any from before the journal was opened.
+     *
+     * @return The sequence number of the next entry.
+     */
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Gets the fsync policy.
+     *
+     * @return The policy given when the journal was opened.
+     */
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Forces every appended entry to the storage device, whatever the fsync policy.
+     */
+    public void force() {
+        List<MappedByteBuffer> mapped;
+        synchronized (chunks) {
+            mapped = new ArrayList<>(chunks);
+        }
+        for (MappedByteBuffer chunk : mapped) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Records that a committed change could not be journaled, e.g. because loading the state to journal failed,
+     * so that {@link #close()} does not mark the journal complete and the next start loads the database.
+     */
+    public void markIncomplete() {
+        incomplete = true;
+    }
+
+    /**
+     * Forces the journal to the storage device and closes it. Appending afterwards fails.
+     * Unless a change could not be appended, the journal ends with {@link JournalEvent.Type#JOURNAL_CLOSED},
+     * vouching for the state it holds: call it only once no spot or ticket changes any more.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        try {
+            if (!incomplete) {
+                // Every entry reaches the device before the one vouching for them
+                force();
+                append(JournalEvent.journalClosed());
+            }
+        } finally {
+            closed = true;
+            force();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.util.RegistrationCodec;
+
+import java.util.Date;
+
+/**
+ * Immutable ticket made of primitives only: epoch millisecond times, spot number, parking type ordinal
+ * and registration number encoded by {@link RegistrationCodec}. One object per ticket, instead of a
+ * {@link Ticket} with its {@link ParkingSpot} and two {@link Date}s, so in-memory indexes and pricing
+ * read it without copies or conversions. {@link #of(Ticket)} and {@link #toTicket(String)} convert
+ * at the boundaries that still use {@link Ticket}.
+ */
+public final class CompactTicket {
+
+    // Out time of a ticket still open
+    public static final long NO_OUT_TIME = Long.MIN_VALUE;
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final int id;
+    private final int parkingNumber;
+    private final byte parkingType;
+    private final long vehicleRegNumber;
+    private final long inTime;
+    private final long outTime;
+    private final double price;
+    private final boolean discounted;
+
+    /**
+     * Constructor for CompactTicket.
+     *
+     * @param id               The ticket ID.
+     * @param parkingNumber    The spot number.
+     * @param parkingType      The {@link ParkingType} ordinal of the spot.
+     * @param vehicleRegNumber The encoded registration number, or {@link RegistrationCodec#NOT_ENCODABLE}.
+     * @param inTime           The in time, in milliseconds since the epoch.
+     * @param outTime          The out time, in milliseconds since the epoch, or {@link #NO_OUT_TIME}.
+     * @param price            The price.
+     * @param discounted       Whether the price includes the recurring user discount.
+     */
+    public CompactTicket(int id, int parkingNumber, byte parkingType, long vehicleRegNumber, long inTime,
+                         long outTime, double price, boolean discounted) {
+        this.id = id;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.inTime = inTime;
+        this.outTime = outTime;
+        this.price = price;
+        this.discounted = discounted;
+    }
+
+    /**
+     * Converts a ticket.
+     *
+     * @param ticket The ticket, with its parking spot and in time set.
+     * @return The compact ticket.
+     */
+    public static CompactTicket of(Ticket ticket) {
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        return new CompactTicket(ticket.getId(), parkingSpot.getId(), (byte) parkingSpot.getParkingType().ordinal(),
+                ticket.getVehicleRegNumber() == null ? RegistrationCodec.NOT_ENCODABLE
+                        : RegistrationCodec.encode(ticket.getVehicleRegNumber()),
+                ticket.getInTime().getTime(), ticket.getOutTime() == null ? NO_OUT_TIME : ticket.getOutTime().getTime(),
+                ticket.getPrice(), ticket.isDiscounted());
+    }
+
+    /**
+     * Converts back to a ticket, with a spot that is not available.
+     *
+     * @param vehicleRegNumber The registration number, which callers looking a ticket up already have.
+     * @return A new ticket.
+     */
+    public Ticket toTicket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, getParkingType(), false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(price);
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(outTime == NO_OUT_TIME ? null : new Date(outTime));
+        ticket.setDiscounted(discounted);
+        return ticket;
+    }
+
+    /**
+     * Closes the ticket.
+     *
+     * @param outTime    The out time, in milliseconds since the epoch.
+     * @param price      The price.
+     * @param discounted Whether the price includes the recurring user discount.
+     * @return The closed ticket.
+     */
+    public CompactTicket close(long outTime, double price, boolean discounted) {
+        return new CompactTicket(id, parkingNumber, parkingType, vehicleRegNumber, inTime, outTime, price, discounted);
+    }
+
+    /**
+     * Gets the ticket ID.
+     *
+     * @return The ticket ID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the number of the parking spot.
+     *
+     * @return The spot number.
+     */
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    /**
+     * Gets the parking type ordinal, for code working on ordinals such as the tariffs.
+     *
+     * @return The {@link ParkingType} ordinal.
+     */
+    public byte getParkingTypeOrdinal() {
+        return parkingType;
+    }
+
+    /**
+     * Gets the parking type of the spot.
+     *
+     * @return The parking type.
+     */
+    public ParkingType getParkingType() {
+        return PARKING_TYPES[parkingType];
+    }
+
+    /**
+     * Gets the registration number, as encoded by {@link RegistrationCodec#encode(CharSequence)}.
+     *
+     * @return The encoded registration number, or {@link RegistrationCodec#NOT_ENCODABLE}.
+     */
+    public long getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    /**
+     * Gets the in time.
+     *
+     * @return The in time, in milliseconds since the epoch.
+     */
+    public long getInTime() {
+        return inTime;
+    }
+
+    /**
+     * Gets the out time.
+     *
+     * @return The out time, in milliseconds since the epoch, or {@link #NO_OUT_TIME} while the ticket is open.
+     */
+    public long getOutTime() {
+        return outTime;
+    }
+
+    /**
+     * Indicates whether the ticket is still open.
+     *
+     * @return true if the ticket has no out time.
+     */
+    public boolean isOpen() {
+        return outTime == NO_OUT_TIME;
+    }
+
+    /**
+     * Gets the price.
+     *
+     * @return The price.
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Indicates whether the price includes the recurring user discount.
+     *
+     * @return true if the discount was applied.
+     */
+    public boolean isDiscounted() {
+        return discounted;
+    }
+}
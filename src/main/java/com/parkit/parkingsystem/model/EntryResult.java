@@ -0,0 +1,116 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Date;
+
+/**
+ * Outcome of a vehicle entry, as returned by {@code ParkingService.enter}.
+ * Holds the assigned parking spot, the entry time and how long the entry took to process.
+ */
+public class EntryResult {
+
+    /**
+     * How an entry ended.
+     */
+    public enum Status {
+        PARKED,
+        NO_SPOT_AVAILABLE,
+        FAILED
+    }
+
+    private final Status status;
+    private final String vehicleRegNumber;
+    private final ParkingSpot parkingSpot;
+    private final Date inTime;
+    private final boolean recurringUser;
+    private final long processingNanos;
+
+    /**
+     * Constructor for EntryResult.
+     *
+     * @param status           How the entry ended.
+     * @param vehicleRegNumber The registration number of the vehicle.
+     * @param parkingSpot      The spot assigned to the vehicle, or null unless parked.
+     * @param inTime           The entry time, or null unless parked.
+     * @param recurringUser    Whether the vehicle had already parked here before.
+     * @param processingNanos  How long the entry took to process, in nanoseconds.
+     */
+    public EntryResult(Status status, String vehicleRegNumber, ParkingSpot parkingSpot, Date inTime,
+                       boolean recurringUser, long processingNanos) {
+        this.status = status;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingSpot = parkingSpot;
+        this.inTime = inTime == null ? null : new Date(inTime.getTime());
+        this.recurringUser = recurringUser;
+        this.processingNanos = processingNanos;
+    }
+
+    /**
+     * Gets how the entry ended.
+     *
+     * @return The entry status.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Indicates whether the vehicle was parked.
+     *
+     * @return true if the status is {@link Status#PARKED}; false otherwise.
+     */
+    public boolean isParked() {
+        return status == Status.PARKED;
+    }
+
+    /**
+     * Gets the vehicle registration number.
+     *
+     * @return The vehicle's registration number.
+     */
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    /**
+     * Gets the spot assigned to the vehicle.
+     *
+     * @return The parking spot, or null unless parked.
+     */
+    public ParkingSpot getParkingSpot() {
+        return parkingSpot;
+    }
+
+    /**
+     * Gets the entry time.
+     *
+     * @return The entry timestamp, or null unless parked.
+     */
+    public Date getInTime() {
+        return inTime == null ? null : new Date(inTime.getTime());
+    }
+
+    /**
+     * Indicates whether the vehicle had already parked here, and gets the discount on exit.
+     *
+     * @return true for a recurring user; false otherwise.
+     */
+    public boolean isRecurringUser() {
+        return recurringUser;
+    }
+
+    /**
+     * Gets how long the entry took to process.
+     *
+     * @return The processing time, in nanoseconds.
+     */
+    public long getProcessingNanos() {
+        return processingNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "EntryResult{status=" + status + ", vehicleRegNumber=" + vehicleRegNumber
+                + ", parkingSpot=" + (parkingSpot == null ? null : parkingSpot.getId())
+                + ", inTime=" + inTime + ", recurringUser=" + recurringUser + "}";
+    }
+}
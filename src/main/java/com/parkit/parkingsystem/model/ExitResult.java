@@ -0,0 +1,149 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Date;
+
+/**
+ * Outcome of a vehicle exit, as returned by {@code ParkingService.exit}.
+ * Holds the fare, the entry and exit times and how long the exit took to process.
+ */
+public class ExitResult {
+
+    /**
+     * How an exit ended.
+     */
+    public enum Status {
+        EXITED,
+        NO_OPEN_TICKET,
+        FAILED
+    }
+
+    private final Status status;
+    private final String vehicleRegNumber;
+    private final ParkingSpot parkingSpot;
+    private final Date inTime;
+    private final Date outTime;
+    private final double price;
+    private final boolean discounted;
+    private final long processingNanos;
+
+    /**
+     * Constructor for ExitResult.
+     *
+     * @param status           How the exit ended.
+     * @param vehicleRegNumber The registration number of the vehicle.
+     * @param parkingSpot      The spot freed by the vehicle, or null unless exited.
+     * @param inTime           The entry time, or null unless exited.
+     * @param outTime          The exit time, or null unless exited.
+     * @param price            The fare to pay.
+     * @param discounted       Whether the recurring user discount was applied.
+     * @param processingNanos  How long the exit took to process, in nanoseconds.
+     */
+    public ExitResult(Status status, String vehicleRegNumber, ParkingSpot parkingSpot, Date inTime, Date outTime,
+                      double price, boolean discounted, long processingNanos) {
+        this.status = status;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingSpot = parkingSpot;
+        this.inTime = inTime == null ? null : new Date(inTime.getTime());
+        this.outTime = outTime == null ? null : new Date(outTime.getTime());
+        this.price = price;
+        this.discounted = discounted;
+        this.processingNanos = processingNanos;
+    }
+
+    /**
+     * Gets how the exit ended.
+     *
+     * @return The exit status.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Indicates whether the vehicle left and its ticket was closed.
+     *
+     * @return true if the status is {@link Status#EXITED}; false otherwise.
+     */
+    public boolean isExited() {
+        return status == Status.EXITED;
+    }
+
+    /**
+     * Gets the vehicle registration number.
+     *
+     * @return The vehicle's registration number.
+     */
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    /**
+     * Gets the spot freed by the vehicle.
+     *
+     * @return The parking spot, or null unless exited.
+     */
+    public ParkingSpot getParkingSpot() {
+        return parkingSpot;
+    }
+
+    /**
+     * Gets the entry time.
+     *
+     * @return The entry timestamp, or null unless exited.
+     */
+    public Date getInTime() {
+        return inTime == null ? null : new Date(inTime.getTime());
+    }
+
+    /**
+     * Gets the exit time.
+     *
+     * @return The exit timestamp, or null unless exited.
+     */
+    public Date getOutTime() {
+        return outTime == null ? null : new Date(outTime.getTime());
+    }
+
+    /**
+     * Gets how long the vehicle stayed.
+     *
+     * @return The parking duration in milliseconds, or 0 unless exited.
+     */
+    public long getParkingDurationMillis() {
+        return inTime == null || outTime == null ? 0 : outTime.getTime() - inTime.getTime();
+    }
+
+    /**
+     * Gets the fare to pay.
+     *
+     * @return The ticket price.
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Indicates whether the recurring user discount was applied.
+     *
+     * @return true if the fare is discounted; false otherwise.
+     */
+    public boolean isDiscounted() {
+        return discounted;
+    }
+
+    /**
+     * Gets how long the exit took to process.
+     *
+     * @return The processing time, in nanoseconds.
+     */
+    public long getProcessingNanos() {
+        return processingNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ExitResult{status=" + status + ", vehicleRegNumber=" + vehicleRegNumber
+                + ", parkingSpot=" + (parkingSpot == null ? null : parkingSpot.getId())
+                + ", price=" + price + ", discounted=" + discounted + "}";
+    }
+}
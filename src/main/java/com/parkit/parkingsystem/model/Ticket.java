@@ -15,6 +15,7 @@ public class Ticket {
     private double price;
     private Date inTime;
     private Date outTime;
+    private boolean discounted;
 
     /**
      * Gets the unique identifier for the ticket.
@@ -123,4 +124,22 @@ public class Ticket {
     public void setOutTime(Date outTime) {
         this.outTime = outTime;
     }
+
+    /**
+     * Indicates whether the price includes the recurring user discount.
+     *
+     * @return true if the discount was applied.
+     */
+    public boolean isDiscounted() {
+        return discounted;
+    }
+
+    /**
+     * Sets whether the price includes the recurring user discount.
+     *
+     * @param discounted true if the discount was applied.
+     */
+    public void setDiscounted(boolean discounted) {
+        this.discounted = discounted;
+    }
 }
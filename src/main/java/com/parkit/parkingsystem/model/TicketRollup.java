@@ -0,0 +1,127 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.constants.RollupGranularity;
+
+import java.util.Date;
+
+/**
+ * Totals of the tickets of one parking type closed during one hour or day.
+ * Instances are immutable; {@link #plus(TicketRollup)} adds two rollups of the same bucket.
+ */
+public class TicketRollup {
+
+    private final RollupGranularity granularity;
+    private final long bucketStart;
+    private final ParkingType parkingType;
+    private final long ticketCount;
+    private final double totalPrice;
+    private final long totalDurationMillis;
+    private final long discountCount;
+
+    /**
+     * Constructor for TicketRollup.
+     *
+     * @param granularity         The size of the bucket.
+     * @param bucketStart         The start of the bucket, in milliseconds since the epoch.
+     * @param parkingType         The parking type of the tickets.
+     * @param ticketCount         The number of tickets closed in the bucket.
+     * @param totalPrice          The sum of their prices.
+     * @param totalDurationMillis The sum of their parking durations, in milliseconds.
+     * @param discountCount       The number of them priced with the recurring user discount.
+     */
+    public TicketRollup(RollupGranularity granularity, long bucketStart, ParkingType parkingType, long ticketCount,
+                        double totalPrice, long totalDurationMillis, long discountCount) {
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+        this.parkingType = parkingType;
+        this.ticketCount = ticketCount;
+        this.totalPrice = totalPrice;
+        this.totalDurationMillis = totalDurationMillis;
+        this.discountCount = discountCount;
+    }
+
+    /**
+     * Adds the totals of another rollup of the same bucket.
+     *
+     * @param other The other rollup.
+     * @return A rollup holding the sums of both.
+     */
+    public TicketRollup plus(TicketRollup other) {
+        return new TicketRollup(granularity, bucketStart, parkingType, ticketCount + other.ticketCount,
+                totalPrice + other.totalPrice, totalDurationMillis + other.totalDurationMillis,
+                discountCount + other.discountCount);
+    }
+
+    /**
+     * Gets the size of the bucket.
+     *
+     * @return The granularity.
+     */
+    public RollupGranularity getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Gets the start of the bucket.
+     *
+     * @return The start time.
+     */
+    public Date getBucketStart() {
+        return new Date(bucketStart);
+    }
+
+    /**
+     * Gets the parking type of the tickets.
+     *
+     * @return The parking type.
+     */
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    /**
+     * Gets the number of tickets closed in the bucket.
+     *
+     * @return The ticket count.
+     */
+    public long getTicketCount() {
+        return ticketCount;
+    }
+
+    /**
+     * Gets the revenue of the bucket.
+     *
+     * @return The sum of the ticket prices.
+     */
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+
+    /**
+     * Gets the total parking duration of the tickets.
+     *
+     * @return The sum of the durations, in milliseconds.
+     */
+    public long getTotalDurationMillis() {
+        return totalDurationMillis;
+    }
+
+    /**
+     * Gets the average parking duration of the tickets.
+     *
+     * @return The average duration, in milliseconds, or 0 without tickets.
+     */
+    public long getAverageDurationMillis() {
+        return ticketCount == 0 ? 0 : totalDurationMillis / ticketCount;
+    }
+
+    /**
+     * Gets the number of tickets priced with the recurring user discount.
+     *
+     * @return The discount count.
+     */
+    public long getDiscountCount() {
+        return discountCount;
+    }
+}
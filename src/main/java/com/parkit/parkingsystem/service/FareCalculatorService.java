@@ -1,85 +1,167 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.CompactTicket;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.tariff.Tariff;
+
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 
 /**
  * Service responsible for calculating the fare of a parking ticket.
- * It supports calculating normal fares and applying discounts for recurring users.
+ * It supports calculating normal fares and applying discounts for recurring users,
+ * one ticket at a time or for whole batches of tickets held in primitive arrays.
+ * Rates, free time and discount come from a {@link Tariff}, read anew for each ticket or batch
+ * so that a reloaded tariff applies at once.
  */
 public class FareCalculatorService {
 
+    // Batches larger than this are split across the cores of the common fork-join pool
+    public static final int PARALLEL_BATCH_THRESHOLD = 16_384;
+
+    private final Supplier<Tariff> tariffs;
+
+    /**
+     * Constructor for a FareCalculatorService charging the {@link Tariff#DEFAULT} tariff.
+     */
+    public FareCalculatorService() {
+        this(() -> Tariff.DEFAULT);
+    }
+
+    /**
+     * Constructor for a FareCalculatorService charging the tariff in force, e.g. one kept up to date
+     * by a {@link com.parkit.parkingsystem.tariff.TariffReloader}.
+     *
+     * @param tariffs Supplies the tariff in force.
+     */
+    public FareCalculatorService(Supplier<Tariff> tariffs) {
+        this.tariffs = tariffs;
+    }
+
     /**
      * Calculates the fare for a given ticket, with an optional discount applied.
-     * If the parking duration is 30 minutes or less, parking is free.
+     * Stays up to the free time of the tariff (30 minutes by default) are free.
      *
      * @param ticket   The ticket for which to calculate the fare. Must have inTime and outTime set.
-     * @param discount If true, applies a 5% discount to the total fare.
+     * @param discount If true, applies the recurring user discount of the tariff (5% by default).
      * @throws IllegalArgumentException if outTime is null or before inTime, or if parking type is unknown.
      */
     public void calculateFare(Ticket ticket, Boolean discount) {
         if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
             throw new IllegalArgumentException("Out time provided is incorrect: " + ticket.getOutTime());
         }
+        ticket.setPrice(tariffs.get().price(ticket.getParkingSpot().getParkingType(),
+                ticket.getInTime().getTime(), ticket.getOutTime().getTime(), Boolean.TRUE.equals(discount)));
+    }
 
-        // Convert timestamps to milliseconds, then compute duration in hours
-        double inHour = ticket.getInTime().getTime();
-        double outHour = ticket.getOutTime().getTime();
-        double durationHours = (outHour - inHour) / (1000 * 60 * 60);
-
-        // Free if parked for 30 minutes or less
-        if (durationHours <= 0.5) {
-            ticket.setPrice(0);
-            return;
-        }
-
-        // Apply discount if applicable
-        double reduction = Boolean.TRUE.equals(discount) ? 0.95 : 1.0;
-
-        // Calculate fare based on parking type
-        switch (ticket.getParkingSpot().getParkingType()) {
-            case CAR:
-                ticket.setPrice(durationHours * Fare.CAR_RATE_PER_HOUR * reduction);
-                break;
-            case BIKE:
-                ticket.setPrice(durationHours * Fare.BIKE_RATE_PER_HOUR * reduction);
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown Parking Type");
+    /**
+     * Closes a compact ticket and calculates its fare, with the same rules as {@link #calculateFare(Ticket, Boolean)},
+     * straight from its epoch millisecond times and parking type ordinal.
+     *
+     * @param ticket   The open ticket.
+     * @param outTime  The out time, in milliseconds since the epoch.
+     * @param discount If true, applies the recurring user discount of the tariff.
+     * @return The closed ticket, with its out time, fare and discount set.
+     * @throws IllegalArgumentException if the out time is before the in time.
+     */
+    public CompactTicket calculateFare(CompactTicket ticket, long outTime, boolean discount) {
+        if (outTime < ticket.getInTime()) {
+            throw new IllegalArgumentException("Out time provided is incorrect: " + new Date(outTime));
         }
+        return ticket.close(outTime, tariffs.get().price(ticket.getParkingTypeOrdinal(), ticket.getInTime(), outTime,
+                discount), discount);
     }
 
     /**
      * Calculates the fare for a given ticket without any discount.
-     * If the parking duration is 30 minutes or less, parking is free.
+     * Stays up to the free time of the tariff (30 minutes by default) are free.
      *
      * @param ticket The ticket for which to calculate the fare. Must have inTime and outTime set.
      * @throws IllegalArgumentException if outTime is null or before inTime, or if parking type is unknown.
      */
     public void calculateFare(Ticket ticket) {
-        if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
-            throw new IllegalArgumentException("Out time provided is incorrect: " + ticket.getOutTime());
+        calculateFare(ticket, false);
+    }
+
+    /**
+     * Calculates the fares of a batch of tickets given as columns, with the same rules as
+     * {@link #calculateFare(Ticket, Boolean)}, and without allocating anything per ticket.
+     * The whole batch is priced with the tariff in force when it starts.
+     * Ticket {@code i} is described by element {@code i} of every array. Batches larger than
+     * {@link #PARALLEL_BATCH_THRESHOLD} are split across cores.
+     *
+     * @param inTimes      In times, in milliseconds since the epoch.
+     * @param outTimes     Out times, in milliseconds since the epoch.
+     * @param parkingTypes {@link ParkingType} ordinals.
+     * @param discounts    Whether each ticket gets the recurring user discount, or null for no discount at all.
+     * @param fares        Receives the fares.
+     * @throws IllegalArgumentException if the arrays differ in length, or if a ticket has its out time
+     *                                  before its in time or an unknown parking type. Fares before the
+     *                                  faulty ticket may have been written.
+     */
+    public void calculateFares(long[] inTimes, long[] outTimes, byte[] parkingTypes, boolean[] discounts, double[] fares) {
+        int size = inTimes.length;
+        if (outTimes.length != size || parkingTypes.length != size || fares.length != size
+                || (discounts != null && discounts.length != size)) {
+            throw new IllegalArgumentException("Fare batch columns differ in length");
         }
+        FareBatch batch = new FareBatch(tariffs.get(), inTimes, outTimes, parkingTypes, discounts, fares, 0, size);
+        if (size > PARALLEL_BATCH_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(batch);
+        } else {
+            batch.compute();
+        }
+    }
+
+    /**
+     * Prices a slice of a fare batch, splitting it in halves while it is larger than the threshold.
+     */
+    private static final class FareBatch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
 
-        double inHour = ticket.getInTime().getTime();
-        double outHour = ticket.getOutTime().getTime();
-        double durationHours = (outHour - inHour) / (1000 * 60 * 60);
+        private final Tariff tariff;
+        private final long[] inTimes;
+        private final long[] outTimes;
+        private final byte[] parkingTypes;
+        private final boolean[] discounts;
+        private final double[] fares;
+        private final int from;
+        private final int to;
 
-        // Free if parked for 30 minutes or less
-        if (durationHours <= 0.5) {
-            ticket.setPrice(0);
-            return;
+        private FareBatch(Tariff tariff, long[] inTimes, long[] outTimes, byte[] parkingTypes, boolean[] discounts,
+                          double[] fares, int from, int to) {
+            this.tariff = tariff;
+            this.inTimes = inTimes;
+            this.outTimes = outTimes;
+            this.parkingTypes = parkingTypes;
+            this.discounts = discounts;
+            this.fares = fares;
+            this.from = from;
+            this.to = to;
         }
 
-        switch (ticket.getParkingSpot().getParkingType()) {
-            case CAR:
-                ticket.setPrice(durationHours * Fare.CAR_RATE_PER_HOUR);
-                break;
-            case BIKE:
-                ticket.setPrice(durationHours * Fare.BIKE_RATE_PER_HOUR);
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown Parking Type");
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_BATCH_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FareBatch(tariff, inTimes, outTimes, parkingTypes, discounts, fares, from, middle),
+                        new FareBatch(tariff, inTimes, outTimes, parkingTypes, discounts, fares, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (outTimes[i] < inTimes[i]) {
+                    throw new IllegalArgumentException("Out time provided is incorrect for ticket " + i + ": " + outTimes[i]);
+                }
+                try {
+                    fares[i] = tariff.price(parkingTypes[i], inTimes[i], outTimes[i], discounts != null && discounts[i]);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown Parking Type for ticket " + i + ": " + parkingTypes[i], e);
+                }
+            }
         }
     }
 }
@@ -0,0 +1,114 @@
+package com.parkit.parkingsystem.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue depth and latency counters of one gate of the {@link GateServer}.
+ * Latency runs from the moment the server receives an event to the moment it answers it,
+ * so time spent waiting for a worker is included.
+ */
+public class GateMetrics {
+
+    private final String gate;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * Constructor for GateMetrics.
+     *
+     * @param gate The gate identifier.
+     */
+    public GateMetrics(String gate) {
+        this.gate = gate;
+    }
+
+    void eventQueued() {
+        queued.incrementAndGet();
+    }
+
+    void eventStarted() {
+        queued.decrementAndGet();
+        active.incrementAndGet();
+    }
+
+    void eventRejected() {
+        queued.decrementAndGet();
+        rejected.incrementAndGet();
+    }
+
+    void eventCompleted(long latencyNanos) {
+        active.decrementAndGet();
+        completed.incrementAndGet();
+        totalLatencyNanos.addAndGet(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    /**
+     * Gets the gate identifier.
+     *
+     * @return The gate.
+     */
+    public String getGate() {
+        return gate;
+    }
+
+    /**
+     * Gets the number of events of this gate waiting for a worker.
+     *
+     * @return The queue depth.
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Gets the number of events of this gate being processed.
+     *
+     * @return The number of active events.
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * Gets the number of events of this gate answered.
+     *
+     * @return The completed count.
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Gets the number of events of this gate turned away because the server queue was full.
+     *
+     * @return The rejected count.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Gets the average latency of the completed events of this gate.
+     *
+     * @return The average latency in nanoseconds, or 0 if none completed.
+     */
+    public long getAverageLatencyNanos() {
+        long count = completed.get();
+        return count == 0 ? 0 : totalLatencyNanos.get() / count;
+    }
+
+    /**
+     * Gets the highest latency of the completed events of this gate.
+     *
+     * @return The maximum latency in nanoseconds.
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+}
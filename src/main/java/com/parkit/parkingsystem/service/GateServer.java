@@ -0,0 +1,365 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Serves several entry and exit gates from one process over HTTP.
+ * Gates send their events to {@code /entry?gate=G&reg=AB123&type=CAR} and {@code /exit?gate=G&reg=AB123};
+ * the answer is the outcome as JSON. {@code /metrics} returns the queue depth and latency of every gate.
+ * <p>
+ * Events are processed through {@link ParkingService#enter} and {@link ParkingService#exit} by at most
+ * {@code concurrency} workers at once. On a runtime with virtual threads each event gets its own virtual
+ * thread, a semaphore bounding how many run; otherwise a fixed pool of platform threads is used.
+ * Spot leases set on the service are shared by every worker, so per-event threads leave no block half used.
+ */
+public class GateServer {
+
+    private static final Logger logger = LogManager.getLogger("GateServer");
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1_000;
+
+    private final ParkingService parkingService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final int queueCapacity;
+
+    // Null with the platform pool, whose size already bounds the concurrency
+    private final Semaphore permits;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ConcurrentMap<String, GateMetrics> gates = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for GateServer. The server does not accept events until {@link #start()} is called.
+     *
+     * @param parkingService    The service recording entries and exits.
+     * @param address           The address to listen on.
+     * @param concurrency       Maximum number of events processed at once.
+     * @param queueCapacity     Maximum number of events waiting for a worker, beyond which events are refused.
+     * @param useVirtualThreads Whether to run events on virtual threads when the runtime supports them.
+     * @throws IOException if the server cannot listen on the address.
+     */
+    public GateServer(ParkingService parkingService, InetSocketAddress address, int concurrency, int queueCapacity,
+                      boolean useVirtualThreads) throws IOException {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.parkingService = parkingService;
+        this.queueCapacity = queueCapacity;
+
+        ExecutorService virtualExecutor = useVirtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtualExecutor != null;
+        if (virtualThreads) {
+            this.executor = virtualExecutor;
+            this.permits = new Semaphore(concurrency, true);
+        } else {
+            AtomicInteger workers = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "gate-worker-" + workers.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.permits = null;
+        }
+
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/entry", this::handleEntry);
+        server.createContext("/exit", this::handleExit);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Runs the gate server on the production database until the process is stopped.
+     *
+     * @param port        The local port to listen on.
+     * @param concurrency Maximum number of events processed at once.
+     * @throws IOException if the server cannot listen on the port.
+     */
+    public static void runServer(int port, int concurrency) throws IOException {
+        DataBaseConfig dataBaseConfig = new DataBaseConfig();
+        ParkingService parkingService = InteractiveShell.createParkingService(dataBaseConfig, null);
+        GateServer gateServer = new GateServer(parkingService, new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                concurrency, DEFAULT_QUEUE_CAPACITY, true);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.info("Stopping gate server");
+            gateServer.stop(10);
+            parkingService.shutdown();  // Commit pending ticket writes and totals, stop the archiver, close the journal
+            dataBaseConfig.shutdown();  // Release pooled DB connections
+        }, "gate-server-shutdown"));
+        gateServer.start();
+    }
+
+    /**
+     * Starts accepting gate events.
+     */
+    public void start() {
+        server.start();
+        logger.info("Gate server listening on {} with {} threads", server.getAddress(),
+                virtualThreads ? "virtual" : "platform");
+    }
+
+    /**
+     * Stops accepting gate events and waits for the events already accepted to be answered.
+     *
+     * @param timeoutSeconds Maximum time to wait for the accepted events.
+     */
+    public void stop(int timeoutSeconds) {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Gate events still running after {} seconds", timeoutSeconds);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the address the server listens on, with the actual port if port 0 was requested.
+     *
+     * @return The listening address.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Indicates whether events run on virtual threads.
+     *
+     * @return true for virtual threads; false for the platform thread pool.
+     */
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Gets the metrics of every gate that has sent an event, keyed by gate.
+     *
+     * @return A sorted, unmodifiable view of the gate metrics.
+     */
+    public Map<String, GateMetrics> getGateMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<>(gates));
+    }
+
+    private void handleEntry(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parseQuery(exchange);
+        String gate = params.get("gate");
+        String vehicleRegNumber = params.get("reg");
+        String type = params.get("type");
+        if (gate == null || vehicleRegNumber == null || type == null) {
+            respond(exchange, 400, error("gate, reg and type are required"));
+            return;
+        }
+        dispatch(exchange, gate, () -> {
+            EntryResult result = parkingService.enter(vehicleRegNumber, ParkingType.valueOf(type.toUpperCase()));
+            return "{\"status\":\"" + result.getStatus() + "\",\"reg\":" + json(vehicleRegNumber)
+                    + ",\"spot\":" + (result.getParkingSpot() == null ? 0 : result.getParkingSpot().getId())
+                    + ",\"inTime\":" + (result.getInTime() == null ? 0 : result.getInTime().getTime())
+                    + ",\"recurringUser\":" + result.isRecurringUser()
+                    + ",\"processingMicros\":" + TimeUnit.NANOSECONDS.toMicros(result.getProcessingNanos()) + "}";
+        });
+    }
+
+    private void handleExit(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parseQuery(exchange);
+        String gate = params.get("gate");
+        String vehicleRegNumber = params.get("reg");
+        if (gate == null || vehicleRegNumber == null) {
+            respond(exchange, 400, error("gate and reg are required"));
+            return;
+        }
+        dispatch(exchange, gate, () -> {
+            ExitResult result = parkingService.exit(vehicleRegNumber);
+            return "{\"status\":\"" + result.getStatus() + "\",\"reg\":" + json(vehicleRegNumber)
+                    + ",\"spot\":" + (result.getParkingSpot() == null ? 0 : result.getParkingSpot().getId())
+                    + ",\"price\":" + result.getPrice() + ",\"discounted\":" + result.isDiscounted()
+                    + ",\"durationMillis\":" + result.getParkingDurationMillis()
+                    + ",\"processingMicros\":" + TimeUnit.NANOSECONDS.toMicros(result.getProcessingNanos()) + "}";
+        });
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        StringBuilder body = new StringBuilder("{\"virtualThreads\":").append(virtualThreads)
+                .append(",\"pending\":").append(pending.get()).append(",\"gates\":{");
+        String separator = "";
+        for (GateMetrics metrics : getGateMetrics().values()) {
+            body.append(separator).append(json(metrics.getGate()))
+                    .append(":{\"queueDepth\":").append(metrics.getQueueDepth())
+                    .append(",\"active\":").append(metrics.getActive())
+                    .append(",\"completed\":").append(metrics.getCompleted())
+                    .append(",\"rejected\":").append(metrics.getRejected())
+                    .append(",\"avgLatencyMicros\":").append(TimeUnit.NANOSECONDS.toMicros(metrics.getAverageLatencyNanos()))
+                    .append(",\"maxLatencyMicros\":").append(TimeUnit.NANOSECONDS.toMicros(metrics.getMaxLatencyNanos()))
+                    .append('}');
+            separator = ",";
+        }
+        respond(exchange, 200, body.append("}}").toString());
+    }
+
+    /**
+     * Hands an event over to a worker and returns at once, freeing the HTTP dispatcher thread.
+     * The worker answers the exchange when the event is processed.
+     */
+    private void dispatch(HttpExchange exchange, String gate, Supplier<String> event) throws IOException {
+        long received = System.nanoTime();
+        GateMetrics metrics = gates.computeIfAbsent(gate, GateMetrics::new);
+        metrics.eventQueued();
+        if (pending.incrementAndGet() > queueCapacity) {
+            pending.decrementAndGet();
+            metrics.eventRejected();
+            respond(exchange, 503, error("gate server is overloaded"));
+            return;
+        }
+        try {
+            executor.execute(() -> process(exchange, metrics, event, received));
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            metrics.eventRejected();
+            respond(exchange, 503, error("gate server is stopping"));
+        }
+    }
+
+    private void process(HttpExchange exchange, GateMetrics metrics, Supplier<String> event, long received) {
+        boolean acquired = false;
+        int status;
+        String body;
+        try {
+            if (permits != null) {
+                permits.acquire();
+                acquired = true;
+            }
+            pending.decrementAndGet();
+            metrics.eventStarted();
+            try {
+                body = event.get();
+                status = 200;
+            } catch (IllegalArgumentException e) {
+                body = error(e.getMessage());
+                status = 400;
+            } catch (RuntimeException e) {
+                logger.error("Unable to process gate event", e);
+                body = error("internal error");
+                status = 500;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.decrementAndGet();
+            metrics.eventStarted();
+            body = error("gate server is stopping");
+            status = 503;
+        } finally {
+            if (acquired) {
+                permits.release();
+            }
+        }
+
+        // Counted before answering, so a gate reading the metrics after its answer sees its event
+        metrics.eventCompleted(System.nanoTime() - received);
+        try {
+            respond(exchange, status, body);
+        } catch (IOException e) {
+            logger.warn("Unable to answer gate {}", metrics.getGate(), e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        try {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Malformed escapes: answered like missing parameters
+            params.clear();
+        }
+        return params;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + json(message) + "}";
+    }
+
+    private static String json(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task, looked up reflectively so the
+     * project still builds and runs on Java 8.
+     *
+     * @return The executor, or null if the runtime has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Missing before Java 19, behind --enable-preview on 19 and 20
+            logger.info("Virtual threads are not available, using a platform thread pool");
+            return null;
+        }
+    }
+}
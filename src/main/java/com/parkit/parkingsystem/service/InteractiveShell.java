@@ -1,12 +1,28 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotStore;
+import com.parkit.parkingsystem.dao.InMemoryTicketStore;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketArchiver;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketIdAllocator;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.dao.VisitCountCache;
+import com.parkit.parkingsystem.journal.FsyncPolicy;
+import com.parkit.parkingsystem.journal.JournalState;
+import com.parkit.parkingsystem.journal.TicketJournal;
+import com.parkit.parkingsystem.tariff.TariffReloader;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
 /**
  * InteractiveShell is the entry point of the Parking System CLI (Command Line Interface).
  */
@@ -14,6 +30,18 @@ public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
+    // System properties turning on the ticket journal: its file, and FsyncPolicy name (INTERVAL by default)
+    public static final String JOURNAL_PATH_PROPERTY = "parkit.journal.path";
+    public static final String JOURNAL_FSYNC_PROPERTY = "parkit.journal.fsync";
+    // System property naming a tariff file, watched for changes; the default flat tariff applies without it
+    public static final String TARIFF_PATH_PROPERTY = "parkit.tariff.path";
+    // System properties choosing the storage backend, "jdbc" (the default) or "memory", and the in-memory parking size
+    public static final String STORAGE_PROPERTY = "parkit.storage";
+    public static final String MEMORY_CAR_SPOTS_PROPERTY = "parkit.memory.carSpots";
+    public static final String MEMORY_BIKE_SPOTS_PROPERTY = "parkit.memory.bikeSpots";
+    // System property turning on the archival of tickets closed for more than this many days
+    public static final String ARCHIVE_AFTER_DAYS_PROPERTY = "parkit.archive.afterDays";
+
     /**
      * Starts the Parking System application and loads the interactive menu.
      * Initializes the required services and handles user input to perform operations.
@@ -24,14 +52,10 @@ public class InteractiveShell {
 
         boolean continueApp = true;
 
-        // Initialize configuration and DAO objects
+        // Initialize configuration and service objects
         DataBaseConfig dataBaseConfig = new DataBaseConfig();
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO(dataBaseConfig);
-        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
-
-        // Service layer responsible for business logic
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingService parkingService = createParkingService(dataBaseConfig, inputReaderUtil);
 
         // Main loop that keeps the application running until the user exits
         while (continueApp) {
@@ -49,6 +73,8 @@ public class InteractiveShell {
                 case 3: {
                     logger.info("Exiting from the system!");
                     continueApp = false;  // Exit the loop and stop the application
+                    parkingService.shutdown();  // Commit pending ticket writes and totals, stop the archiver, close the journal
+                    dataBaseConfig.shutdown();  // Release pooled DB connections
                     break;
                 }
                 default:
@@ -57,6 +83,112 @@ public class InteractiveShell {
         }
     }
 
+    /**
+     * Creates the DAOs on the given configuration and the service using them,
+     * or in-memory stores when {@link #STORAGE_PROPERTY} is "memory".
+     * Exits are priced with the tariff file named by {@link #TARIFF_PATH_PROPERTY}, if any.
+     *
+     * @param dataBaseConfig  The database configuration.
+     * @param inputReaderUtil The console input reader, or null for a headless service.
+     * @return The parking service.
+     * @throws IllegalStateException if the database schema could not be brought up to date.
+     */
+    static ParkingService createParkingService(DataBaseConfig dataBaseConfig, InputReaderUtil inputReaderUtil) {
+        ParkingService parkingService = createStorage(dataBaseConfig, inputReaderUtil);
+
+        String tariffPath = System.getProperty(TARIFF_PATH_PROPERTY);
+        if (tariffPath != null && !tariffPath.isEmpty()) {
+            try {
+                TariffReloader tariffs = new TariffReloader(Paths.get(tariffPath), TariffReloader.DEFAULT_POLL_INTERVAL_MILLIS);
+                parkingService.setFareCalculatorService(new FareCalculatorService(tariffs));
+            } catch (Exception ex) {
+                logger.error("Error loading tariff {}, using the default tariff", tariffPath, ex);
+            }
+        }
+        return parkingService;
+    }
+
+    private static ParkingService createStorage(DataBaseConfig dataBaseConfig, InputReaderUtil inputReaderUtil) {
+        if ("memory".equals(System.getProperty(STORAGE_PROPERTY))) {
+            // Keep spots and tickets in memory only: nothing is written to the database, nothing survives a restart
+            InMemoryParkingSpotStore parkingSpotStore = InMemoryParkingSpotStore.withFreeSpots(
+                    Integer.getInteger(MEMORY_CAR_SPOTS_PROPERTY, 3), Integer.getInteger(MEMORY_BIKE_SPOTS_PROPERTY, 2));
+            logger.info("Using in-memory storage");
+            return new ParkingService(inputReaderUtil, parkingSpotStore, new InMemoryTicketStore());
+        }
+
+        // Create or upgrade the tables and indexes before anything reads them; the DAOs need the latest schema
+        if (!new SchemaMigrator(dataBaseConfig).migrate()) {
+            throw new IllegalStateException("The database schema could not be migrated, see the migration error above");
+        }
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO(dataBaseConfig);
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+
+        // Rebuild the in-memory indexes from the journal when there is one, from the database otherwise
+        if (!restoreFromJournal(parkingSpotDAO, ticketDAO)) {
+            // Answer free spot lookups from memory instead of scanning the parking table
+            parkingSpotDAO.loadAvailabilityIndex();
+            // Resolve exiting vehicles from memory instead of joining ticket and parking
+            ticketDAO.loadOpenTicketIndex();
+        }
+        // Number tickets from reserved ID ranges so inserts need no generated key round trip
+        ticketDAO.enableIdAllocator(TicketIdAllocator.DEFAULT_BLOCK_SIZE);
+        // Recognize recurring customers without counting their tickets on every entry and exit
+        ticketDAO.enableVisitCountCache(VisitCountCache.DEFAULT_MAX_SIZE);
+        // Keep hourly and daily revenue totals so reports do not scan the ticket table
+        ticketDAO.enableRollups(TicketRollups.DEFAULT_FLUSH_INTERVAL_MILLIS, TicketRollups.DEFAULT_QUEUE_CAPACITY);
+        // Move old closed tickets out of the ticket table so gate queries stay as fast as the years go by
+        Integer archiveAfterDays = Integer.getInteger(ARCHIVE_AFTER_DAYS_PROPERTY);
+        if (archiveAfterDays != null) {
+            ticketDAO.enableArchiver(TimeUnit.DAYS.toMillis(archiveAfterDays), TicketArchiver.DEFAULT_BATCH_SIZE,
+                    TicketArchiver.DEFAULT_BATCH_PAUSE_MILLIS, TicketArchiver.DEFAULT_RUN_INTERVAL_MILLIS);
+        }
+
+        // Record each entry and exit in one transaction instead of separate auto-committed statements
+        ParkingTransactionDAO parkingTransactionDAO = new ParkingTransactionDAO(dataBaseConfig, parkingSpotDAO, ticketDAO);
+
+        // Service layer responsible for business logic
+        return new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, parkingTransactionDAO);
+    }
+
+    /**
+     * Opens the journal named by {@link #JOURNAL_PATH_PROPERTY}, if set, and enables it on both DAOs.
+     * A journal closed cleanly by the last run holds the whole state, which is restored into the DAO indexes
+     * without querying the database. Otherwise the last run crashed and may have committed changes it did not
+     * journal, so the journal is emptied and filled again when the indexes are loaded from the database.
+     * Either way the file is compacted to that state first. {@link ParkingService#shutdown()} closes the journal.
+     *
+     * @return true if the indexes were restored from the journal; false if they must be loaded from the database.
+     */
+    private static boolean restoreFromJournal(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        String journalPath = System.getProperty(JOURNAL_PATH_PROPERTY);
+        if (journalPath == null || journalPath.isEmpty()) {
+            return false;
+        }
+        try {
+            FsyncPolicy fsyncPolicy = FsyncPolicy.valueOf(System.getProperty(JOURNAL_FSYNC_PROPERTY, FsyncPolicy.INTERVAL.name()));
+            Path path = Paths.get(journalPath);
+            JournalState state = TicketJournal.compact(path);
+            TicketJournal journal = TicketJournal.open(path, fsyncPolicy);
+            parkingSpotDAO.enableJournal(journal);
+            ticketDAO.enableJournal(journal);
+            if (!state.isCleanlyClosed()) {
+                if (!state.isEmpty()) {
+                    logger.warn("Ticket journal {} was not closed cleanly, loading state from the database", journalPath);
+                }
+                return false;
+            }
+            logger.info("Replayed {} journal events", state.getEventCount());
+            parkingSpotDAO.restoreAvailabilityIndex(state.getParkingSpots());
+            ticketDAO.restoreOpenTicketIndex(state.getOpenTickets());
+            return true;
+
+        } catch (Exception ex) {
+            logger.error("Error opening ticket journal {}, loading state from the database", journalPath, ex);
+            return false;
+        }
+    }
+
     /**
      * Displays the interactive menu with available actions.
      */
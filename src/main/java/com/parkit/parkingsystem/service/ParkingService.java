@@ -1,8 +1,12 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.model.CompactTicket;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
@@ -14,63 +18,195 @@ import java.util.Date;
 /**
  * ParkingService is responsible for the core business logic of the parking system.
  * It manages vehicle entry and exit, ticket creation, fare calculation, and parking spot updates.
+ * {@link #enter(String, ParkingType)} and {@link #exit(String)} take their input as arguments and may be
+ * called from many threads at once; {@link #processIncomingVehicle()} and {@link #processExitingVehicle()}
+ * are their console front end, reading the input from {@link InputReaderUtil}.
  */
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
-    // Responsible for fare calculation logic
-    private static final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    // Number of tickets, the current one included, from which a user gets the recurring user discount
+    public static final int RECURRING_USER_MIN_TICKETS = 2;
 
     private final InputReaderUtil inputReaderUtil;
-    private final ParkingSpotDAO parkingSpotDAO;
-    private final TicketDAO ticketDAO;
+    private final ParkingSpotStore parkingSpotDAO;
+    private final TicketStore ticketDAO;
+
+    // Null when entries and exits go through the DAOs one auto-committed statement at a time
+    private final ParkingTransactionDAO parkingTransactionDAO;
+
+    // Optional: when set, entries take spots from leased blocks of spots instead of claiming them one by one.
+    // Volatile so gate threads already running see a manager set afterwards
+    private volatile SpotLeaseManager spotLeaseManager;
+
+    // Responsible for fare calculation logic, with the default tariff unless another one is set.
+    // Volatile so gate threads already running see a calculator set afterwards
+    private volatile FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+    /**
+     * Constructor to initialize the ParkingService with required utilities and storage, which may be
+     * the database DAOs or the in-memory stores.
+     */
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotStore parkingSpotDAO, TicketStore ticketDAO) {
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, null);
+    }
 
     /**
-     * Constructor to initialize the ParkingService with required utilities and DAOs.
+     * Constructor to initialize the ParkingService with required utilities and DAOs,
+     * recording each entry and exit in a single transaction.
      */
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotStore parkingSpotDAO, TicketStore ticketDAO,
+                          ParkingTransactionDAO parkingTransactionDAO) {
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
+        this.parkingTransactionDAO = parkingTransactionDAO;
     }
 
     /**
-     * Processes the entry of a new vehicle:
-     * - Gets the next available parking spot
-     * - Asks user for registration number
+     * Constructor for a headless ParkingService, driven only through {@link #enter(String, ParkingType)}
+     * and {@link #exit(String)}. The transaction DAO must be null unless the stores are the database DAOs it wraps.
+     */
+    public ParkingService(ParkingSpotStore parkingSpotDAO, TicketStore ticketDAO, ParkingTransactionDAO parkingTransactionDAO) {
+        this(null, parkingSpotDAO, ticketDAO, parkingTransactionDAO);
+    }
+
+    /**
+     * Makes entries take their spots from the given lease manager.
+     * Must be called before the service starts processing vehicles.
+     *
+     * @param spotLeaseManager the lease manager to use, or null to claim spots directly
+     */
+    public void setSpotLeaseManager(SpotLeaseManager spotLeaseManager) {
+        this.spotLeaseManager = spotLeaseManager;
+    }
+
+    /**
+     * Makes exits priced by the given fare calculator, e.g. one charging a tariff loaded from a file.
+     * Must be called before the service starts processing vehicles.
+     *
+     * @param fareCalculatorService the fare calculator to use
+     */
+    public void setFareCalculatorService(FareCalculatorService fareCalculatorService) {
+        this.fareCalculatorService = fareCalculatorService;
+    }
+
+    /**
+     * Commits the ticket changes still pending in the ticket store, stops its background threads and closes
+     * its journal. Call it once the service stops processing vehicles, before the database connections are released.
+     */
+    public void shutdown() {
+        ticketDAO.shutdown();
+    }
+
+    /**
+     * Records the entry of a vehicle:
+     * - Claims the next available parking spot of the given type, marking it as unavailable
      * - Creates and saves a new ticket
-     * - Marks the parking spot as unavailable
+     * - Checks whether the vehicle is a recurring user
+     *
+     * @param vehicleRegNumber the vehicle registration number
+     * @param parkingType      the type of spot the vehicle needs
+     * @return the outcome of the entry, with the assigned spot if the vehicle was parked
+     * @throws IllegalArgumentException if the registration number is empty or the parking type is null
      */
-    public void processIncomingVehicle() {
+    public EntryResult enter(String vehicleRegNumber, ParkingType parkingType) {
+        long start = System.nanoTime();
+        if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Vehicle registration number is empty");
+        }
+        if (parkingType == null) {
+            throw new IllegalArgumentException("Parking type is null");
+        }
+
+        // Spot ID 0 lets the entry transaction claim the spot itself
+        ParkingSpot parkingSpot = new ParkingSpot(0, parkingType, false);
+        boolean claimedBeforehand = false;
+        SpotLeaseManager leases = spotLeaseManager;
         try {
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-            if (parkingSpot != null && parkingSpot.getId() > 0) {
-                String vehicleRegNumber = getVehichleRegNumber();
-
-                // Mark the parking spot as occupied
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);
-
-                // Create and store the ticket
-                Date inTime = new Date();
-                Ticket ticket = new Ticket();
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                ticketDAO.saveTicket(ticket);
-
-                logger.info("Generated Ticket and saved in DB");
-
-                // Check for recurring user
-                if (ticketDAO.getNbTicket(vehicleRegNumber) >= 2) {
-                    logger.info("Welcome back! As a regular user of our parking, you will receive a {} discount.", "5%");
+            if (leases != null || parkingTransactionDAO == null) {
+                int parkingNumber = (leases != null)
+                        ? leases.takeSlot(parkingType)
+                        : parkingSpotDAO.claimNextAvailableSlot(parkingType);
+                if (parkingNumber <= 0) {
+                    return entryResult(EntryResult.Status.NO_SPOT_AVAILABLE, vehicleRegNumber, start);
                 }
+                parkingSpot.setId(parkingNumber);
+                claimedBeforehand = true;
+            }
 
-                logger.info("Please park your vehicle in spot number: {}", parkingSpot.getId());
-                logger.info("Recorded in-time for vehicle number: {} is: {}", vehicleRegNumber, inTime);
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(parkingSpot);
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(0);
+            ticket.setInTime(new Date());
+            ticket.setOutTime(null);
+
+            int nbTicket;
+            if (parkingTransactionDAO != null) {
+                nbTicket = parkingTransactionDAO.enterVehicle(ticket);
+                if (nbTicket == 0) {
+                    return entryResult(EntryResult.Status.NO_SPOT_AVAILABLE, vehicleRegNumber, start);
+                }
+            } else {
+                nbTicket = ticketDAO.saveTicket(ticket) ? ticketDAO.getNbTicket(vehicleRegNumber) : -1;
+            }
+            if (nbTicket < 0) {
+                if (claimedBeforehand) {
+                    // Give the claimed spot back, no ticket holds it
+                    releaseParkingSpot(parkingSpot);
+                }
+                return entryResult(EntryResult.Status.FAILED, vehicleRegNumber, start);
+            }
+
+            return new EntryResult(EntryResult.Status.PARKED, vehicleRegNumber, parkingSpot, ticket.getInTime(),
+                    nbTicket >= RECURRING_USER_MIN_TICKETS, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            logger.error("Unable to record entry of vehicle {}", vehicleRegNumber, e);
+            if (claimedBeforehand) {
+                releaseParkingSpot(parkingSpot);
+            }
+            return entryResult(EntryResult.Status.FAILED, vehicleRegNumber, start);
+        }
+    }
+
+    private static EntryResult entryResult(EntryResult.Status status, String vehicleRegNumber, long start) {
+        return new EntryResult(status, vehicleRegNumber, null, null, false, System.nanoTime() - start);
+    }
+
+    /**
+     * Processes the entry of a new vehicle:
+     * - Asks user for vehicle type and registration number
+     * - Records the entry and tells the driver where to park
+     */
+    public void processIncomingVehicle() {
+        ParkingType parkingType;
+        try {
+            parkingType = getVehichleType();
+        } catch (IllegalArgumentException ie) {
+            logger.error("Error parsing user input for type of vehicle", ie);
+            return;
+        }
+        try {
+            String vehicleRegNumber = getVehichleRegNumber();
+
+            EntryResult result = enter(vehicleRegNumber, parkingType);
+            switch (result.getStatus()) {
+                case PARKED:
+                    logger.info("Generated Ticket and saved in DB");
+                    // Check for recurring user
+                    if (result.isRecurringUser()) {
+                        logger.info("Welcome back! As a regular user of our parking, you will receive a {} discount.", "5%");
+                    }
+                    logger.info("Please park your vehicle in spot number: {}", result.getParkingSpot().getId());
+                    logger.info("Recorded in-time for vehicle number: {} is: {}", vehicleRegNumber, result.getInTime());
+                    break;
+                case NO_SPOT_AVAILABLE:
+                    logger.error("Error fetching parking number from DB. Parking slots might be full");
+                    break;
+                default:
+                    logger.error("Unable to process incoming vehicle");
             }
         } catch (Exception e) {
             logger.error("Unable to process incoming vehicle", e);
@@ -112,6 +248,16 @@ public class ParkingService {
         return parkingSpot;
     }
 
+    /**
+     * Marks a claimed parking spot as available again.
+     *
+     * @param parkingSpot the spot to release
+     */
+    private void releaseParkingSpot(ParkingSpot parkingSpot) {
+        parkingSpot.setAvailable(true);
+        parkingSpotDAO.updateParking(parkingSpot);
+    }
+
     /**
      * Prompts the user to choose the type of vehicle and returns the corresponding ParkingType.
      *
@@ -135,35 +281,99 @@ public class ParkingService {
     }
 
     /**
-     * Processes the exit of a vehicle:
+     * Records the exit of a vehicle:
      * - Retrieves the vehicle ticket
-     * - Sets out time and calculates fare
-     * - Applies discount if user is a regular
+     * - Sets out time and calculates fare, with the discount if the user is a regular
      * - Updates the ticket and frees the parking spot
+     *
+     * @param vehicleRegNumber the vehicle registration number
+     * @return the outcome of the exit, with the fare if the vehicle exited
+     * @throws IllegalArgumentException if the registration number is empty
      */
-    public void processExitingVehicle() {
+    public ExitResult exit(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Vehicle registration number is empty");
+        }
+
         try {
-            String vehicleRegNumber = getVehichleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
+            long outTime = System.currentTimeMillis();
+            if (parkingTransactionDAO != null) {
+                return exitInTransaction(vehicleRegNumber, outTime, start);
+            }
 
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
+            Ticket ticket = ticketDAO.getOpenTicket(vehicleRegNumber);
+            if (ticket == null) {
+                return new ExitResult(ExitResult.Status.NO_OPEN_TICKET, vehicleRegNumber, null, null, null, 0, false,
+                        System.nanoTime() - start);
+            }
+            ticket.setOutTime(new Date(outTime));
+            boolean discounted = priceTicket(ticket, ticketDAO.getNbTicket(vehicleRegNumber));
+            // Update ticket and make the parking spot available again
+            if (!ticketDAO.updateTicket(ticket)) {
+                return new ExitResult(ExitResult.Status.FAILED, vehicleRegNumber, null, null, null, 0, false,
+                        System.nanoTime() - start);
+            }
+            releaseParkingSpot(ticket.getParkingSpot());
+            return new ExitResult(ExitResult.Status.EXITED, vehicleRegNumber, ticket.getParkingSpot(),
+                    ticket.getInTime(), ticket.getOutTime(), ticket.getPrice(), discounted, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            logger.error("Unable to record exit of vehicle {}", vehicleRegNumber, e);
+            return new ExitResult(ExitResult.Status.FAILED, vehicleRegNumber, null, null, null, 0, false,
+                    System.nanoTime() - start);
+        }
+    }
 
+    /**
+     * Records an exit in one transaction, pricing the compact ticket of the open ticket index
+     * without converting it to a Ticket.
+     */
+    private ExitResult exitInTransaction(String vehicleRegNumber, long outTime, long start) {
+        // Set by the pricing step, which only runs once the open ticket is found
+        boolean[] found = new boolean[1];
+        CompactTicket ticket = parkingTransactionDAO.exitVehicle(vehicleRegNumber, outTime, (openTicket, nbTicket) -> {
+            found[0] = true;
             // Check if user is a regular to apply discount
-            if (ticketDAO.getNbTicket(vehicleRegNumber) >= 2) {
-                fareCalculatorService.calculateFare(ticket, true);
-            } else {
-                fareCalculatorService.calculateFare(ticket);
-            }
+            return fareCalculatorService.calculateFare(openTicket, outTime, nbTicket >= RECURRING_USER_MIN_TICKETS);
+        });
+        if (ticket == null) {
+            ExitResult.Status status = found[0] ? ExitResult.Status.FAILED : ExitResult.Status.NO_OPEN_TICKET;
+            return new ExitResult(status, vehicleRegNumber, null, null, null, 0, false, System.nanoTime() - start);
+        }
+        return new ExitResult(ExitResult.Status.EXITED, vehicleRegNumber,
+                new ParkingSpot(ticket.getParkingNumber(), ticket.getParkingType(), true),
+                new Date(ticket.getInTime()), new Date(ticket.getOutTime()), ticket.getPrice(), ticket.isDiscounted(),
+                System.nanoTime() - start);
+    }
 
-            // Update ticket and make the parking spot available again
-            if (ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
+    /**
+     * Sets the fare of a ticket, with the discount for recurring users.
+     *
+     * @param ticket   the ticket, with its out time set
+     * @param nbTicket the number of tickets of the vehicle
+     * @return true if the discount was applied
+     */
+    private boolean priceTicket(Ticket ticket, int nbTicket) {
+        // Check if user is a regular to apply discount
+        boolean discount = nbTicket >= RECURRING_USER_MIN_TICKETS;
+        fareCalculatorService.calculateFare(ticket, discount);
+        ticket.setDiscounted(discount);
+        return discount;
+    }
+
+    /**
+     * Processes the exit of a vehicle:
+     * - Asks user for registration number
+     * - Records the exit and tells the driver the fare to pay
+     */
+    public void processExitingVehicle() {
+        try {
+            String vehicleRegNumber = getVehichleRegNumber();
 
-                logger.info("Please pay the parking fare: {}", ticket.getPrice());
-                logger.info("Recorded out-time for vehicle number: {} is: {}", ticket.getVehicleRegNumber(), outTime);
+            ExitResult result = exit(vehicleRegNumber);
+            if (result.isExited()) {
+                logger.info("Please pay the parking fare: {}", result.getPrice());
+                logger.info("Recorded out-time for vehicle number: {} is: {}", vehicleRegNumber, result.getOutTime());
             } else {
                 logger.info("Unable to update ticket information. Error occurred");
             }
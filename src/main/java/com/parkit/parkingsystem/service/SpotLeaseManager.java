@@ -0,0 +1,171 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hands out parking spots from blocks leased up front for all the gates of the process.
+ * One block of spots per {@link ParkingType} is claimed from the store in a single call, then entries
+ * take their spots from it with a compare-and-set, whichever thread runs them; only the thread that finds
+ * the block used up claims the next one. Since leases belong to the pool rather than to a thread, gates
+ * running each event on its own thread leave no half-used block behind. A block left idle for longer than
+ * the lease timeout, and every block still open at {@link #shutdown()}, gives its unused spots back.
+ */
+public class SpotLeaseManager {
+
+    private static final Logger logger = LogManager.getLogger("SpotLeaseManager");
+
+    private final ParkingSpotStore parkingSpotDAO;
+    private final int blockSize;
+    private final long leaseTimeoutMillis;
+
+    // Current lease of each parking type, by ordinal; null until the first entry of that type
+    private final AtomicReferenceArray<SpotLease> leases = new AtomicReferenceArray<>(ParkingType.values().length);
+    // Serialize the claim of a new block, per parking type
+    private final Object[] leaseLocks = new Object[ParkingType.values().length];
+    private final ScheduledExecutorService reaper;
+
+    /**
+     * Constructor for SpotLeaseManager.
+     *
+     * @param parkingSpotDAO     DAO used to claim and release spots.
+     * @param blockSize          Number of spots leased at once for each parking type.
+     * @param leaseTimeoutMillis Unused spots of a lease idle for longer than this are given back.
+     */
+    public SpotLeaseManager(ParkingSpotStore parkingSpotDAO, int blockSize, long leaseTimeoutMillis) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Lease block size must be positive: " + blockSize);
+        }
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.blockSize = blockSize;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        for (int i = 0; i < leaseLocks.length; i++) {
+            leaseLocks[i] = new Object();
+        }
+
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spot-lease-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(100L, leaseTimeoutMillis / 2);
+        reaper.scheduleWithFixedDelay(this::releaseExpiredLeases, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a spot from the current lease, leasing a new block when the current one is used up.
+     * The returned spot is already marked as unavailable in the store.
+     *
+     * @param parkingType The type of parking (e.g., CAR or BIKE).
+     * @return The spot number, or -1 if no spot is available.
+     */
+    public int takeSlot(ParkingType parkingType) {
+        int type = parkingType.ordinal();
+        while (true) {
+            SpotLease lease = leases.get(type);
+            if (lease != null) {
+                int spot = lease.take();
+                if (spot > 0) {
+                    return spot;
+                }
+            }
+            synchronized (leaseLocks[type]) {
+                if (leases.get(type) != lease) {
+                    // Another thread leased a new block while this one waited
+                    continue;
+                }
+                SpotLease next = leaseBlock(parkingType);
+                leases.set(type, next);
+                if (next == null) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives back the unused spots of every lease that has been idle for longer than the lease timeout.
+     */
+    public void releaseExpiredLeases() {
+        long expiredBefore = System.currentTimeMillis() - leaseTimeoutMillis;
+        for (int type = 0; type < leases.length(); type++) {
+            SpotLease lease = leases.get(type);
+            if (lease != null && lease.lastUsedMillis < expiredBefore) {
+                revoke(lease);
+            }
+        }
+    }
+
+    /**
+     * Stops the lease reaper and gives back the unused spots of every open lease.
+     */
+    public void shutdown() {
+        reaper.shutdownNow();
+        for (int type = 0; type < leases.length(); type++) {
+            SpotLease lease = leases.get(type);
+            if (lease != null) {
+                revoke(lease);
+            }
+        }
+    }
+
+    private SpotLease leaseBlock(ParkingType parkingType) {
+        int[] spots = parkingSpotDAO.claimAvailableSlots(parkingType, blockSize);
+        if (spots.length == 0) {
+            return null;
+        }
+        logger.debug("Leased {} {} spots", spots.length, parkingType);
+        return new SpotLease(parkingType, spots);
+    }
+
+    private void revoke(SpotLease lease) {
+        int[] unused = lease.revoke();
+        for (int spot : unused) {
+            parkingSpotDAO.updateParking(new ParkingSpot(spot, lease.parkingType, true));
+        }
+        if (unused.length > 0) {
+            logger.debug("Released {} unused {} spots", unused.length, lease.parkingType);
+        }
+    }
+
+    /**
+     * A block of leased spots. The atomic cursor lets any number of threads take spots from it, and the
+     * reaper revoke it, without ever handing out the same entry twice.
+     */
+    private static final class SpotLease {
+
+        private final ParkingType parkingType;
+        private final int[] spots;
+        private final AtomicInteger next = new AtomicInteger();
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+
+        private SpotLease(ParkingType parkingType, int[] spots) {
+            this.parkingType = parkingType;
+            this.spots = spots;
+        }
+
+        private int take() {
+            int index = next.getAndIncrement();
+            if (index >= spots.length) {
+                return -1;
+            }
+            lastUsedMillis = System.currentTimeMillis();
+            return spots[index];
+        }
+
+        private int[] revoke() {
+            int from = next.getAndSet(spots.length);
+            return from < spots.length ? Arrays.copyOfRange(spots, from, spots.length) : new int[0];
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.parkit.parkingsystem.tariff;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Parking tariff, compiled into lookup tables so that pricing a ticket takes constant time and allocates nothing.
+ * For each {@link ParkingType}, the hourly rate of each of the 168 hours of the week is expanded into a table,
+ * along with the running total of that table: the cost of any stay is then two table lookups, whatever its length.
+ * An optional daily cap limits the price of each 24 hours of a stay.
+ *
+ * <p>Tariffs are read from properties:
+ * <pre>
+ * zone=Europe/Paris              # time zone of the hours of the rules; the system zone by default
+ * freeMinutes=30                 # stays up to this long are free
+ * discountPercent=5              # recurring user discount
+ * CAR.ratePerHour=1.5            # rate of the hours no rule covers, required for every parking type
+ * CAR.dailyCap=20                # maximum price of each 24 hours of a stay; none by default
+ * CAR.rule.1=MON-FRI 08-19 2.0   # days, hours (from inclusive, to exclusive) and rate; later rules win
+ * CAR.rule.2=SAT,SUN 00-24 1.0
+ * BIKE.ratePerHour=1.0
+ * </pre>
+ * A stay is priced on the clock in force when it starts, so a daylight saving change during a stay is ignored.
+ */
+public final class Tariff {
+
+    public static final int HOURS_PER_WEEK = 7 * 24;
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    private static final long MILLIS_PER_WEEK = 7 * MILLIS_PER_DAY;
+    private static final double HOUR = MILLIS_PER_HOUR;
+    // 1970-01-01 was a Thursday: shifting by three days makes weeks start on Monday at midnight
+    private static final long EPOCH_TO_MONDAY = 3 * MILLIS_PER_DAY;
+    private static final String[] DAYS = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+
+    /**
+     * The flat tariff of {@link Fare}: free up to 30 minutes, 5% recurring user discount, no cap.
+     */
+    public static final Tariff DEFAULT = flat(Fare.CAR_RATE_PER_HOUR, Fare.BIKE_RATE_PER_HOUR);
+
+    private final TimeZone timeZone;
+    private final long freeMillis;
+    private final double discountFactor;
+    // Per parking type ordinal: the rate of each hour of the week, and the cost from Monday 00:00 to the start of each hour
+    private final double[][] hourRates;
+    private final double[][] cumulativeCosts;
+    private final double[] weekCosts;
+    // Per parking type ordinal: the single rate when every hour costs the same, NaN otherwise
+    private final double[] flatRates;
+    // Per parking type ordinal: the daily cap, 0 for none
+    private final double[] dailyCaps;
+
+    private Tariff(TimeZone timeZone, long freeMillis, double discountFactor, double[][] hourRates, double[] dailyCaps) {
+        this.timeZone = timeZone;
+        this.freeMillis = freeMillis;
+        this.discountFactor = discountFactor;
+        this.hourRates = hourRates;
+        this.dailyCaps = dailyCaps;
+        this.cumulativeCosts = new double[hourRates.length][];
+        this.weekCosts = new double[hourRates.length];
+        this.flatRates = new double[hourRates.length];
+        for (int type = 0; type < hourRates.length; type++) {
+            double[] rates = hourRates[type];
+            double[] cumulative = new double[HOURS_PER_WEEK + 1];
+            boolean flat = true;
+            for (int hour = 0; hour < HOURS_PER_WEEK; hour++) {
+                cumulative[hour + 1] = cumulative[hour] + rates[hour];
+                flat &= rates[hour] == rates[0];
+            }
+            cumulativeCosts[type] = cumulative;
+            weekCosts[type] = cumulative[HOURS_PER_WEEK];
+            flatRates[type] = flat ? rates[0] : Double.NaN;
+        }
+    }
+
+    /**
+     * Creates a tariff charging the same rate at any hour, free up to 30 minutes, with a 5% recurring user discount.
+     *
+     * @param carRatePerHour  The hourly rate of cars.
+     * @param bikeRatePerHour The hourly rate of bikes.
+     * @return The tariff.
+     */
+    public static Tariff flat(double carRatePerHour, double bikeRatePerHour) {
+        double[][] hourRates = new double[ParkingType.values().length][HOURS_PER_WEEK];
+        Arrays.fill(hourRates[ParkingType.CAR.ordinal()], carRatePerHour);
+        Arrays.fill(hourRates[ParkingType.BIKE.ordinal()], bikeRatePerHour);
+        return new Tariff(TimeZone.getTimeZone("UTC"), 30 * 60 * 1000L, 1 - 5 / 100.0,
+                hourRates, new double[hourRates.length]);
+    }
+
+    /**
+     * Reads and compiles a tariff file, in the format described on this class.
+     *
+     * @param path The properties file.
+     * @return The tariff.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if the file is not a valid tariff.
+     */
+    public static Tariff load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        }
+        return parse(properties);
+    }
+
+    /**
+     * Compiles a tariff from properties, in the format described on this class.
+     *
+     * @param properties The tariff definition.
+     * @return The tariff.
+     * @throws IllegalArgumentException if the properties are not a valid tariff.
+     */
+    public static Tariff parse(Properties properties) {
+        String zone = properties.getProperty("zone");
+        TimeZone timeZone = zone == null ? TimeZone.getDefault() : TimeZone.getTimeZone(zone);
+        if (zone != null && !timeZone.getID().equals(zone)) {
+            throw new IllegalArgumentException("Unknown tariff time zone: " + zone);
+        }
+        long freeMillis = (long) (number(properties, "freeMinutes", "30") * 60 * 1000);
+        double discountFactor = 1 - number(properties, "discountPercent", "5") / 100.0;
+
+        ParkingType[] parkingTypes = ParkingType.values();
+        double[][] hourRates = new double[parkingTypes.length][HOURS_PER_WEEK];
+        double[] dailyCaps = new double[parkingTypes.length];
+        for (ParkingType parkingType : parkingTypes) {
+            String prefix = parkingType.name() + ".";
+            if (properties.getProperty(prefix + "ratePerHour") == null) {
+                throw new IllegalArgumentException("Tariff has no " + prefix + "ratePerHour");
+            }
+            double[] rates = hourRates[parkingType.ordinal()];
+            Arrays.fill(rates, number(properties, prefix + "ratePerHour", null));
+            dailyCaps[parkingType.ordinal()] = number(properties, prefix + "dailyCap", "0");
+
+            // Rules apply in the order of their numbers, so later rules override earlier ones
+            TreeMap<Integer, String> rules = new TreeMap<>();
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith(prefix + "rule.")) {
+                    try {
+                        rules.put(Integer.parseInt(key.substring(prefix.length() + 5)), properties.getProperty(key));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Tariff rule without a number: " + key, e);
+                    }
+                }
+            }
+            for (String rule : rules.values()) {
+                applyRule(rates, rule);
+            }
+        }
+        return new Tariff(timeZone, freeMillis, discountFactor, hourRates, dailyCaps);
+    }
+
+    private static double number(Properties properties, String key, String defaultValue) {
+        String value = properties.getProperty(key, defaultValue);
+        try {
+            double number = Double.parseDouble(value.trim());
+            if (number < 0 || Double.isNaN(number) || Double.isInfinite(number)) {
+                throw new IllegalArgumentException("Tariff " + key + " must not be negative: " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Tariff " + key + " is not a number: " + value, e);
+        }
+    }
+
+    /**
+     * Applies a rule such as {@code MON-FRI 08-19 2.0} to the hours of the week it covers.
+     */
+    private static void applyRule(double[] rates, String rule) {
+        String[] parts = rule.trim().split("\\s+");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Tariff rule is not 'days hours rate': " + rule);
+        }
+        boolean[] days = parseDays(parts[0], rule);
+        String[] hours = parts[1].split("-");
+        int from;
+        int to;
+        double rate;
+        try {
+            from = Integer.parseInt(hours[0]);
+            to = hours.length == 2 ? Integer.parseInt(hours[1]) : -1;
+            rate = Double.parseDouble(parts[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Tariff rule has an invalid number: " + rule, e);
+        }
+        if (from < 0 || to > 24 || from >= to || rate < 0 || Double.isNaN(rate) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("Tariff rule has invalid hours or rate: " + rule);
+        }
+        for (int day = 0; day < DAYS.length; day++) {
+            if (days[day]) {
+                Arrays.fill(rates, day * 24 + from, day * 24 + to, rate);
+            }
+        }
+    }
+
+    private static boolean[] parseDays(String spec, String rule) {
+        boolean[] days = new boolean[DAYS.length];
+        if ("ALL".equals(spec) || "*".equals(spec)) {
+            Arrays.fill(days, true);
+            return days;
+        }
+        for (String item : spec.split(",")) {
+            String[] range = item.split("-");
+            int first = dayIndex(range[0], rule);
+            int last = range.length == 2 ? dayIndex(range[1], rule) : first;
+            if (range.length > 2 || last < first) {
+                throw new IllegalArgumentException("Tariff rule has invalid days: " + rule);
+            }
+            Arrays.fill(days, first, last + 1, true);
+        }
+        return days;
+    }
+
+    private static int dayIndex(String day, String rule) {
+        int index = Arrays.asList(DAYS).indexOf(day);
+        if (index < 0) {
+            throw new IllegalArgumentException("Tariff rule has an unknown day '" + day + "': " + rule);
+        }
+        return index;
+    }
+
+    /**
+     * Prices a stay.
+     *
+     * @param parkingType The type of the spot.
+     * @param inMillis    The start of the stay, in milliseconds since the epoch.
+     * @param outMillis   The end of the stay, not before its start.
+     * @param discount    If true, applies the recurring user discount.
+     * @return The price.
+     */
+    public double price(ParkingType parkingType, long inMillis, long outMillis, boolean discount) {
+        // Free stays are free whatever the spot
+        if (outMillis - inMillis <= freeMillis) {
+            return 0;
+        }
+        return price(parkingType.ordinal(), inMillis, outMillis, discount);
+    }
+
+    /**
+     * Prices a stay, given the ordinal of its parking type.
+     *
+     * @param parkingType The {@link ParkingType} ordinal of the spot.
+     * @param inMillis    The start of the stay, in milliseconds since the epoch.
+     * @param outMillis   The end of the stay, not before its start.
+     * @param discount    If true, applies the recurring user discount.
+     * @return The price.
+     * @throws IllegalArgumentException if the ordinal is not a parking type.
+     */
+    public double price(int parkingType, long inMillis, long outMillis, boolean discount) {
+        if (parkingType < 0 || parkingType >= hourRates.length) {
+            throw new IllegalArgumentException("Unknown Parking Type");
+        }
+        if (outMillis - inMillis <= freeMillis) {
+            return 0;
+        }
+        long offset = timeZone.getOffset(inMillis);
+        double cap = dailyCaps[parkingType];
+        double price = cap > 0
+                ? cappedCost(parkingType, inMillis, outMillis, offset, cap)
+                : cost(parkingType, inMillis, outMillis, offset);
+        return discount ? price * discountFactor : price;
+    }
+
+    /**
+     * Sums the capped cost of each 24 hours of a stay. The rates repeat every week, and so do the costs
+     * of days starting at the same time: at most seven days are priced, whatever the length of the stay.
+     */
+    private double cappedCost(int parkingType, long inMillis, long outMillis, long offset, double cap) {
+        long days = (outMillis - inMillis) / MILLIS_PER_DAY;
+        double total = 0;
+        double week = 0;
+        for (int day = 0; day < Math.min(days, 7); day++) {
+            long dayStart = inMillis + day * MILLIS_PER_DAY;
+            double dayCost = Math.min(cost(parkingType, dayStart, dayStart + MILLIS_PER_DAY, offset), cap);
+            week += dayCost;
+            if (day < days % 7) {
+                total += dayCost;
+            }
+        }
+        total += (days / 7) * week;
+        long lastDayStart = inMillis + days * MILLIS_PER_DAY;
+        return total + Math.min(cost(parkingType, lastDayStart, outMillis, offset), cap);
+    }
+
+    /**
+     * Integrates the hourly rates between two instants, read on a clock at the given offset from UTC.
+     */
+    private double cost(int parkingType, long fromMillis, long toMillis, long offset) {
+        double flatRate = flatRates[parkingType];
+        if (!Double.isNaN(flatRate)) {
+            // Same formula as the former hardcoded fares, so flat tariffs give the same prices to the last bit
+            return ((double) toMillis - (double) fromMillis) / HOUR * flatRate;
+        }
+        long from = fromMillis + offset + EPOCH_TO_MONDAY;
+        long to = toMillis + offset + EPOCH_TO_MONDAY;
+        long weeks = Math.floorDiv(to, MILLIS_PER_WEEK) - Math.floorDiv(from, MILLIS_PER_WEEK);
+        return weeks * weekCosts[parkingType]
+                + costSinceMonday(parkingType, Math.floorMod(to, MILLIS_PER_WEEK))
+                - costSinceMonday(parkingType, Math.floorMod(from, MILLIS_PER_WEEK));
+    }
+
+    private double costSinceMonday(int parkingType, long millisOfWeek) {
+        int hour = (int) (millisOfWeek / MILLIS_PER_HOUR);
+        return cumulativeCosts[parkingType][hour]
+                + (millisOfWeek - hour * MILLIS_PER_HOUR) / HOUR * hourRates[parkingType][hour];
+    }
+
+    /**
+     * Gets the hourly rate of a parking type at a given hour of the week.
+     *
+     * @param parkingType The type of the spot.
+     * @param hourOfWeek  The hour, 0 being Monday from midnight to 1 am.
+     * @return The rate per hour.
+     */
+    public double getRatePerHour(ParkingType parkingType, int hourOfWeek) {
+        return hourRates[parkingType.ordinal()][hourOfWeek];
+    }
+
+    /**
+     * Gets the time zone the hours of the rules are read in.
+     *
+     * @return The time zone.
+     */
+    public TimeZone getTimeZone() {
+        return (TimeZone) timeZone.clone();
+    }
+}
@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem.tariff;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Supplies the tariff of a file, compiled again whenever the file changes, so tariffs can be updated without a restart.
+ * The file is checked on a fixed interval from a background thread. A file that fails to load is logged
+ * and the previous tariff stays in force. Tickets being priced during a reload use either tariff, never a mix.
+ */
+public class TariffReloader implements Supplier<Tariff>, Closeable {
+
+    private static final Logger logger = LogManager.getLogger("TariffReloader");
+
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 5000;
+
+    private final Path path;
+    private final ScheduledExecutorService poller;
+    private volatile Tariff tariff;
+    private volatile FileTime loadedModifiedTime;
+
+    /**
+     * Loads the tariff file and starts watching it for changes.
+     *
+     * @param path               The tariff properties file.
+     * @param pollIntervalMillis Time between two checks of the file.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if the file is not a valid tariff.
+     */
+    public TariffReloader(Path path, long pollIntervalMillis) throws IOException {
+        this.path = path;
+        this.loadedModifiedTime = Files.getLastModifiedTime(path);
+        this.tariff = Tariff.load(path);
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tariff-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::reloadIfModified, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Loaded tariff {}", path);
+    }
+
+    /**
+     * Gets the tariff in force.
+     *
+     * @return The last tariff loaded successfully.
+     */
+    @Override
+    public Tariff get() {
+        return tariff;
+    }
+
+    /**
+     * Loads the tariff file again, whether it changed or not.
+     *
+     * @return true if the new tariff is in force; false if it failed to load and the previous one is kept.
+     */
+    public boolean reload() {
+        try {
+            FileTime modifiedTime = Files.getLastModifiedTime(path);
+            tariff = Tariff.load(path);
+            loadedModifiedTime = modifiedTime;
+            logger.info("Reloaded tariff {}", path);
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error reloading tariff {}, keeping the previous one", path, ex);
+            return false;
+        }
+    }
+
+    private void reloadIfModified() {
+        try {
+            FileTime modifiedTime = Files.getLastModifiedTime(path);
+            if (!modifiedTime.equals(loadedModifiedTime)) {
+                // Remember the attempt even if it fails, so a broken file is not reported on every check
+                if (!reload()) {
+                    loadedModifiedTime = modifiedTime;
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error checking tariff {}", path, ex);
+        }
+    }
+
+    /**
+     * Stops watching the file. The tariff in force stays available.
+     */
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+}
@@ -0,0 +1,263 @@
+package com.parkit.parkingsystem.tariff;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replays closed tickets through the current and a candidate tariff to compare their revenue.
+ * Tickets are visited one at a time, e.g. streamed by {@link TicketDAO#forEachClosedTicket}, and gathered into
+ * columnar batches priced by worker threads with {@link FareCalculatorService#calculateFares}. Batches come from
+ * a fixed pool: when every batch is waiting for a worker, visiting blocks, so memory stays bounded whatever
+ * the size of the history. Tickets from the {@link ParkingService#RECURRING_USER_MIN_TICKETS}th visit of their
+ * vehicle on are priced with the recurring user discount, as at the exit gate.
+ */
+public class TariffReplay implements TicketDAO.ClosedTicketVisitor {
+
+    private static final Logger logger = LogManager.getLogger("TariffReplay");
+
+    public static final int BATCH_SIZE = 8192;
+    public static final int FETCH_SIZE = 10_000;
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private final FareCalculatorService currentFares;
+    private final FareCalculatorService candidateFares;
+    private final TimeZone timeZone;
+    private final ExecutorService workers;
+    private final BlockingQueue<Batch> freeBatches;
+    private final TariffReplayReport report = new TariffReplayReport();
+    // First error of a worker, rethrown to the visiting thread
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    // Batch being filled by the visiting thread, null until the next ticket
+    private Batch batch;
+    private long skippedTickets;
+
+    /**
+     * Starts the workers of a replay.
+     *
+     * @param current   The tariff in force.
+     * @param candidate The tariff to compare it with. Hours of day in the report are in its time zone.
+     * @param threads   The number of worker threads pricing batches.
+     */
+    public TariffReplay(Tariff current, Tariff candidate, int threads) {
+        this.currentFares = new FareCalculatorService(() -> current);
+        this.candidateFares = new FareCalculatorService(() -> candidate);
+        this.timeZone = candidate.getTimeZone();
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tariff-replay-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One batch being filled and one being priced per worker keep every worker busy
+        this.freeBatches = new ArrayBlockingQueue<>(2 * threads);
+        for (int i = 0; i < 2 * threads; i++) {
+            freeBatches.add(new Batch());
+        }
+    }
+
+    /**
+     * Replays the closed tickets of the database through both tariffs, on every core.
+     *
+     * @param ticketDAO The DAO streaming the ticket history.
+     * @param current   The tariff in force.
+     * @param candidate The tariff to compare it with.
+     * @return The report of the replay.
+     * @throws InterruptedException  if interrupted while waiting for the workers.
+     * @throws IllegalStateException if the ticket history could not be read.
+     */
+    public static TariffReplayReport replay(TicketDAO ticketDAO, Tariff current, Tariff candidate)
+            throws InterruptedException {
+        TariffReplay replay = new TariffReplay(current, candidate, Runtime.getRuntime().availableProcessors());
+        long visited = ticketDAO.forEachClosedTicket(FETCH_SIZE, replay);
+        TariffReplayReport report = replay.finish();
+        if (visited < 0) {
+            throw new IllegalStateException("The ticket history could not be read");
+        }
+        return report;
+    }
+
+    /**
+     * Replays the production ticket history through a candidate tariff file and logs the report as CSV.
+     *
+     * @param candidatePath The candidate tariff file.
+     * @param currentPath   The current tariff file, or null for the tariff the gates charge, see {@link #loadCurrentTariff}.
+     * @throws IOException          if a tariff file cannot be read.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public static void runReplay(Path candidatePath, Path currentPath) throws IOException, InterruptedException {
+        Tariff candidate = Tariff.load(candidatePath);
+        Tariff current = loadCurrentTariff(currentPath);
+        long start = System.nanoTime();
+        TariffReplayReport report = replay(new TicketDAO(new DataBaseConfig()), current, candidate);
+        logger.info("Replayed {} tickets in {} ms ({} skipped): current revenue {}, candidate revenue {}, delta {}",
+                report.getTicketCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                report.getSkippedTicketCount(), report.getCurrentRevenue(), report.getCandidateRevenue(),
+                report.getRevenueDelta());
+        logger.info("\n{}", report.toCsv());
+    }
+
+    /**
+     * Loads the tariff a replay compares the candidate with.
+     *
+     * @param currentPath The current tariff file, or null for the tariff the gates charge: the file named by
+     *                    {@link InteractiveShell#TARIFF_PATH_PROPERTY} if set, {@link Tariff#DEFAULT} otherwise.
+     * @return The current tariff.
+     * @throws IOException if the tariff file cannot be read.
+     */
+    public static Tariff loadCurrentTariff(Path currentPath) throws IOException {
+        if (currentPath == null) {
+            String tariffPath = System.getProperty(InteractiveShell.TARIFF_PATH_PROPERTY);
+            currentPath = tariffPath != null && !tariffPath.isEmpty() ? Paths.get(tariffPath) : null;
+        }
+        logger.info("Replaying against the current tariff {}", currentPath != null ? currentPath : "default");
+        return currentPath != null ? Tariff.load(currentPath) : Tariff.DEFAULT;
+    }
+
+    /**
+     * Adds one ticket to the replay. Blocks while every batch is waiting for a worker.
+     * Tickets with their out time before their in time are skipped and counted in the report.
+     *
+     * @throws RuntimeException the error of a worker, once one failed.
+     */
+    @Override
+    public void visit(ParkingType parkingType, long inTime, long outTime, int visitNumber) {
+        RuntimeException error = failure.get();
+        if (error != null) {
+            throw error;
+        }
+        if (outTime < inTime) {
+            skippedTickets++;
+            return;
+        }
+        if (batch == null) {
+            batch = takeFreeBatch();
+        }
+        Batch filling = batch;
+        int hour = (int) (Math.floorMod(inTime + timeZone.getOffset(inTime), MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+        boolean recurring = visitNumber >= ParkingService.RECURRING_USER_MIN_TICKETS;
+        filling.add(parkingType, inTime, outTime, recurring,
+                TariffReplayReport.cell(parkingType.ordinal(), hour, recurring ? 1 : 0));
+        if (filling.size == BATCH_SIZE) {
+            batch = null;
+            workers.execute(() -> price(filling));
+        }
+    }
+
+    /**
+     * Prices the last tickets, waits for the workers and stops them.
+     *
+     * @return The report of the replay.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     * @throws RuntimeException     the error of a worker, if one failed.
+     */
+    public TariffReplayReport finish() throws InterruptedException {
+        Batch last = batch;
+        batch = null;
+        if (last != null && failure.get() == null) {
+            workers.execute(() -> price(last));
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        RuntimeException error = failure.get();
+        if (error != null) {
+            throw error;
+        }
+        report.addSkippedTickets(skippedTickets);
+        return report;
+    }
+
+    private Batch takeFreeBatch() {
+        try {
+            return freeBatches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a free batch", e);
+        }
+    }
+
+    /**
+     * Prices a batch with both tariffs and adds it to the report, then gives it back to the visiting thread.
+     */
+    private void price(Batch priced) {
+        try {
+            priced.price(currentFares, candidateFares);
+            report.add(priced.tickets, priced.currentRevenue, priced.candidateRevenue);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            priced.clear();
+            freeBatches.add(priced);
+        }
+    }
+
+    /**
+     * Tickets of one batch as columns, with the totals by report cell they add up to once priced.
+     */
+    private static final class Batch {
+
+        private final long[] inTimes = new long[BATCH_SIZE];
+        private final long[] outTimes = new long[BATCH_SIZE];
+        private final byte[] parkingTypes = new byte[BATCH_SIZE];
+        private final boolean[] discounts = new boolean[BATCH_SIZE];
+        private final int[] cells = new int[BATCH_SIZE];
+        private final double[] currentFares = new double[BATCH_SIZE];
+        private final double[] candidateFares = new double[BATCH_SIZE];
+        private final long[] tickets = new long[TariffReplayReport.CELLS];
+        private final double[] currentRevenue = new double[TariffReplayReport.CELLS];
+        private final double[] candidateRevenue = new double[TariffReplayReport.CELLS];
+        private int size;
+
+        private void add(ParkingType parkingType, long inTime, long outTime, boolean discount, int cell) {
+            inTimes[size] = inTime;
+            outTimes[size] = outTime;
+            parkingTypes[size] = (byte) parkingType.ordinal();
+            discounts[size] = discount;
+            cells[size] = cell;
+            size++;
+        }
+
+        private void price(FareCalculatorService currentFareCalculator, FareCalculatorService candidateFareCalculator) {
+            if (size < BATCH_SIZE) {
+                // The last batch of a replay: empty slots are priced as free stays, then ignored
+                Arrays.fill(inTimes, size, BATCH_SIZE, 0);
+                Arrays.fill(outTimes, size, BATCH_SIZE, 0);
+            }
+            currentFareCalculator.calculateFares(inTimes, outTimes, parkingTypes, discounts, currentFares);
+            candidateFareCalculator.calculateFares(inTimes, outTimes, parkingTypes, discounts, candidateFares);
+            for (int i = 0; i < size; i++) {
+                int cell = cells[i];
+                tickets[cell]++;
+                currentRevenue[cell] += currentFares[i];
+                candidateRevenue[cell] += candidateFares[i];
+            }
+        }
+
+        private void clear() {
+            size = 0;
+            Arrays.fill(tickets, 0);
+            Arrays.fill(currentRevenue, 0);
+            Arrays.fill(candidateRevenue, 0);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.parkit.parkingsystem.tariff;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Locale;
+
+/**
+ * Revenue of the ticket history under the current and the candidate tariffs, as computed by {@link TariffReplay},
+ * broken down by parking type, hour of day of the in time and customer segment.
+ */
+public class TariffReplayReport {
+
+    /**
+     * Customer segment of a ticket, from the number of visits of its vehicle so far.
+     */
+    public enum Segment {
+        // Below the recurring user threshold: priced without discount
+        OCCASIONAL,
+        // At or above the recurring user threshold: priced with the discount
+        RECURRING
+    }
+
+    static final int HOURS = 24;
+    static final int SEGMENTS = Segment.values().length;
+    static final int CELLS = ParkingType.values().length * HOURS * SEGMENTS;
+
+    private final long[] tickets = new long[CELLS];
+    private final double[] currentRevenue = new double[CELLS];
+    private final double[] candidateRevenue = new double[CELLS];
+    private long skippedTickets;
+
+    /**
+     * Gets the index of the cell of a parking type, hour and segment.
+     */
+    static int cell(int parkingType, int hour, int segment) {
+        return (parkingType * HOURS + hour) * SEGMENTS + segment;
+    }
+
+    /**
+     * Adds the totals of one batch, indexed by {@link #cell(int, int, int)}.
+     */
+    synchronized void add(long[] batchTickets, double[] batchCurrentRevenue, double[] batchCandidateRevenue) {
+        for (int cell = 0; cell < CELLS; cell++) {
+            tickets[cell] += batchTickets[cell];
+            currentRevenue[cell] += batchCurrentRevenue[cell];
+            candidateRevenue[cell] += batchCandidateRevenue[cell];
+        }
+    }
+
+    synchronized void addSkippedTickets(long count) {
+        skippedTickets += count;
+    }
+
+    /**
+     * Gets the number of tickets replayed for a parking type, hour and segment.
+     *
+     * @param parkingType The parking type.
+     * @param hour        The hour of day of the in time, from 0 to 23, in the candidate tariff's time zone.
+     * @param segment     The customer segment.
+     * @return The number of tickets.
+     */
+    public synchronized long getTicketCount(ParkingType parkingType, int hour, Segment segment) {
+        return tickets[cell(parkingType.ordinal(), hour, segment.ordinal())];
+    }
+
+    /**
+     * Gets the revenue of the current tariff for a parking type, hour and segment.
+     *
+     * @param parkingType The parking type.
+     * @param hour        The hour of day of the in time, from 0 to 23, in the candidate tariff's time zone.
+     * @param segment     The customer segment.
+     * @return The sum of the fares.
+     */
+    public synchronized double getCurrentRevenue(ParkingType parkingType, int hour, Segment segment) {
+        return currentRevenue[cell(parkingType.ordinal(), hour, segment.ordinal())];
+    }
+
+    /**
+     * Gets the revenue of the candidate tariff for a parking type, hour and segment.
+     *
+     * @param parkingType The parking type.
+     * @param hour        The hour of day of the in time, from 0 to 23, in the candidate tariff's time zone.
+     * @param segment     The customer segment.
+     * @return The sum of the fares.
+     */
+    public synchronized double getCandidateRevenue(ParkingType parkingType, int hour, Segment segment) {
+        return candidateRevenue[cell(parkingType.ordinal(), hour, segment.ordinal())];
+    }
+
+    /**
+     * Gets the number of tickets replayed.
+     *
+     * @return The number of tickets, skipped tickets excluded.
+     */
+    public synchronized long getTicketCount() {
+        long total = 0;
+        for (long count : tickets) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of tickets left out of the replay because their out time is before their in time.
+     *
+     * @return The number of skipped tickets.
+     */
+    public synchronized long getSkippedTicketCount() {
+        return skippedTickets;
+    }
+
+    /**
+     * Gets the revenue of the current tariff over the whole history.
+     *
+     * @return The sum of the fares.
+     */
+    public synchronized double getCurrentRevenue() {
+        return sum(currentRevenue);
+    }
+
+    /**
+     * Gets the revenue of the candidate tariff over the whole history.
+     *
+     * @return The sum of the fares.
+     */
+    public synchronized double getCandidateRevenue() {
+        return sum(candidateRevenue);
+    }
+
+    /**
+     * Gets the revenue the candidate tariff would have made over the current one.
+     *
+     * @return The candidate revenue minus the current revenue; negative if the candidate makes less.
+     */
+    public synchronized double getRevenueDelta() {
+        return getCandidateRevenue() - getCurrentRevenue();
+    }
+
+    /**
+     * Formats the report as CSV, one line per parking type, hour and segment with at least one ticket.
+     *
+     * @return The CSV text, with a header line.
+     */
+    public synchronized String toCsv() {
+        StringBuilder csv = new StringBuilder("type,hour,segment,tickets,current,candidate,delta\n");
+        for (ParkingType parkingType : ParkingType.values()) {
+            for (int hour = 0; hour < HOURS; hour++) {
+                for (Segment segment : Segment.values()) {
+                    int cell = cell(parkingType.ordinal(), hour, segment.ordinal());
+                    if (tickets[cell] == 0) {
+                        continue;
+                    }
+                    csv.append(String.format(Locale.ROOT, "%s,%d,%s,%d,%.2f,%.2f,%.2f\n", parkingType, hour, segment,
+                            tickets[cell], currentRevenue[cell], candidateRevenue[cell],
+                            candidateRevenue[cell] - currentRevenue[cell]));
+                }
+            }
+        }
+        return csv.toString();
+    }
+
+    private static double sum(double[] values) {
+        double total = 0;
+        for (double value : values) {
+            total += value;
+        }
+        return total;
+    }
+}
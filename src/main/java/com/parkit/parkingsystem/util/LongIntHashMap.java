@@ -0,0 +1,206 @@
+package com.parkit.parkingsystem.util;
+
+/**
+ * Hash map from {@code long} keys to {@code int} values, with open addressing and linear probing over
+ * primitive arrays, so neither keys, values nor entries are objects. Lookups mark their entry as
+ * recently used, and {@link #evictOne()} removes an entry not looked up since the last eviction sweep
+ * (the CLOCK approximation of least recently used). Not thread-safe: callers lock around it.
+ */
+public class LongIntHashMap {
+
+    // Value returned by get for absent keys
+    public static final int NO_VALUE = -1;
+
+    private static final byte FREE = 0;
+    private static final byte USED = 1;
+    private static final byte REFERENCED = 2;
+
+    private long[] keys;
+    private int[] values;
+    private byte[] states;
+    private int size;
+    private int mask;
+    // Next slot looked at by the eviction sweep
+    private int hand;
+
+    /**
+     * Constructor for LongIntHashMap.
+     *
+     * @param expectedSize Number of entries the map holds without resizing.
+     */
+    public LongIntHashMap(int expectedSize) {
+        allocate(LongObjectHashMap.capacityFor(expectedSize));
+    }
+
+    /**
+     * Gets the value of a key and marks the entry as recently used.
+     *
+     * @param key The key.
+     * @return The value, or {@link #NO_VALUE} if the key is absent.
+     */
+    public int get(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return NO_VALUE;
+        }
+        states[slot] = REFERENCED;
+        return values[slot];
+    }
+
+    /**
+     * Sets the value of a key, unless the key is present.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @return true if the entry was added.
+     */
+    public boolean putIfAbsent(long key, int value) {
+        int slot = slotOf(key);
+        for (; states[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return false;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        states[slot] = USED;
+        if (++size > (mask + 1) / 2) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * Adds to the value of a key, if the key is present.
+     *
+     * @param key   The key.
+     * @param delta The amount to add.
+     * @return true if the key was present.
+     */
+    public boolean addIfPresent(long key, int delta) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        values[slot] += delta;
+        return true;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key.
+     * @return true if the key was present.
+     */
+    public boolean remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes one entry, preferring entries not looked up since the sweep last passed them.
+     *
+     * @return true if an entry was removed; false if the map is empty.
+     */
+    public boolean evictOne() {
+        if (size == 0) {
+            return false;
+        }
+        while (true) {
+            int slot = hand;
+            hand = (hand + 1) & mask;
+            if (states[slot] == REFERENCED) {
+                states[slot] = USED;
+            } else if (states[slot] == USED) {
+                long key = keys[slot];
+                shiftBack(slot);
+                size--;
+                evicted(key);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Called after {@link #evictOne()} removed an entry, e.g. to release resources held for its key.
+     *
+     * @param key The key of the evicted entry.
+     */
+    protected void evicted(long key) {
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return The size.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int find(long key) {
+        for (int slot = slotOf(key); states[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Frees a slot, moving back the entries of the probe sequence behind it so lookups never stop
+     * at the freed slot early.
+     */
+    private void shiftBack(int free) {
+        int slot = free;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (states[slot] == FREE) {
+                break;
+            }
+            int home = slotOf(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                keys[free] = keys[slot];
+                values[free] = values[slot];
+                states[free] = states[slot];
+                free = slot;
+            }
+        }
+        states[free] = FREE;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        byte[] oldStates = states;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStates[i] != FREE) {
+                int slot = slotOf(oldKeys[i]);
+                while (states[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                states[slot] = oldStates[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        states = new byte[capacity];
+        mask = capacity - 1;
+        hand = 0;
+    }
+
+    private int slotOf(long key) {
+        return LongObjectHashMap.mix(key) & mask;
+    }
+}
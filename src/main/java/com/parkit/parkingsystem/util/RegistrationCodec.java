@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.util;
+
+/**
+ * Packs vehicle registration numbers into a single {@code long}, so they can be stored and compared
+ * without a String. Plates are at most 10 characters (VEHICLE_REG_NUMBER is varchar(10)); each character
+ * takes 6 bits from a 63 character alphabet: digits, upper and lower case letters, and '-'.
+ * Code 0 marks the end of a shorter plate, so every encoded plate is a distinct non-negative value
+ * and decoding gives back the exact plate.
+ */
+public final class RegistrationCodec {
+
+    public static final int MAX_LENGTH = 10;
+    // Returned for plates too long or with characters outside the alphabet
+    public static final long NOT_ENCODABLE = -1L;
+
+    private static final int BITS_PER_CHAR = 6;
+    private static final char[] ALPHABET =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-".toCharArray();
+    // Character to code, 0 for characters outside the alphabet
+    private static final byte[] CODES = new byte[128];
+
+    static {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            CODES[ALPHABET[i]] = (byte) (i + 1);
+        }
+    }
+
+    private RegistrationCodec() {
+    }
+
+    /**
+     * Encodes a registration number.
+     *
+     * @param vehicleRegNumber The registration number.
+     * @return The encoded registration number, or {@link #NOT_ENCODABLE} if it cannot be encoded.
+     */
+    public static long encode(CharSequence vehicleRegNumber) {
+        int length = vehicleRegNumber.length();
+        if (length > MAX_LENGTH) {
+            return NOT_ENCODABLE;
+        }
+        long encoded = 0;
+        for (int i = 0; i < length; i++) {
+            char c = vehicleRegNumber.charAt(i);
+            int code = c < CODES.length ? CODES[c] : 0;
+            if (code == 0) {
+                return NOT_ENCODABLE;
+            }
+            // First character in the high bits, so shorter plates never collide with longer ones
+            encoded |= (long) code << (BITS_PER_CHAR * (MAX_LENGTH - 1 - i));
+        }
+        return encoded;
+    }
+
+    /**
+     * Decodes a registration number encoded by {@link #encode(CharSequence)}.
+     *
+     * @param encoded The encoded registration number.
+     * @return The registration number.
+     * @throws IllegalArgumentException if the value is not an encoded registration number.
+     */
+    public static String decode(long encoded) {
+        if (encoded < 0 || encoded >>> (BITS_PER_CHAR * MAX_LENGTH) != 0) {
+            throw new IllegalArgumentException("Not an encoded registration number: " + encoded);
+        }
+        char[] chars = new char[MAX_LENGTH];
+        int length = 0;
+        while (length < MAX_LENGTH) {
+            int code = (int) (encoded >>> (BITS_PER_CHAR * (MAX_LENGTH - 1 - length))) & 0x3F;
+            if (code == 0) {
+                break;
+            }
+            chars[length++] = ALPHABET[code - 1];
+        }
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,108 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gives every registration number a {@code long} key, for maps keyed by primitives. Plates the
+ * {@link RegistrationCodec} can pack are their own key, computed without any table or allocation.
+ * The few others, with spaces, accents or other characters outside the codec alphabet, are interned:
+ * {@link #key(String)} gives them the next negative key and takes a reference to it, and the plate is
+ * forgotten once {@link #release(long)} has given back every reference, so maps release the key of each
+ * entry they drop and the interner never holds more plates than they do. Keys are never reused.
+ * Keys of both kinds never collide, since packed plates are non-negative. Thread-safe.
+ */
+public class RegistrationInterner {
+
+    // Interned keys count down from here; -1 is RegistrationCodec.NOT_ENCODABLE
+    private static final long FIRST_INTERNED_KEY = -2L;
+
+    private final ConcurrentMap<String, Interned> interned = new ConcurrentHashMap<>();
+    // Plate of each interned key, to release keys of entries a map drops without knowing their plate
+    private final ConcurrentMap<Long, String> plates = new ConcurrentHashMap<>();
+    private final AtomicLong nextKey = new AtomicLong(FIRST_INTERNED_KEY);
+
+    /**
+     * Gets the key of a registration number, interning it if the codec cannot pack it.
+     * The key of an interned plate must be given back with {@link #release(long)} once it is no longer used.
+     *
+     * @param vehicleRegNumber The registration number.
+     * @return The key.
+     */
+    public long key(String vehicleRegNumber) {
+        long encoded = RegistrationCodec.encode(vehicleRegNumber);
+        if (encoded != RegistrationCodec.NOT_ENCODABLE) {
+            return encoded;
+        }
+        return interned.compute(vehicleRegNumber, (plate, entry) -> {
+            if (entry == null) {
+                entry = new Interned(nextKey.getAndDecrement());
+                plates.put(entry.key, plate);
+            }
+            entry.references++;
+            return entry;
+        }).key;
+    }
+
+    /**
+     * Gets the key of a registration number without interning it, for lookups.
+     * The key is not referenced: once its plate is released, maps no longer hold any entry under it.
+     *
+     * @param vehicleRegNumber The registration number.
+     * @return The key, or {@link RegistrationCodec#NOT_ENCODABLE} if the plate is not interned.
+     */
+    public long find(String vehicleRegNumber) {
+        long encoded = RegistrationCodec.encode(vehicleRegNumber);
+        if (encoded != RegistrationCodec.NOT_ENCODABLE) {
+            return encoded;
+        }
+        Interned entry = interned.get(vehicleRegNumber);
+        return entry == null ? RegistrationCodec.NOT_ENCODABLE : entry.key;
+    }
+
+    /**
+     * Gives back a reference taken by {@link #key(String)}, forgetting the plate after its last one.
+     * Does nothing for the key of a packed plate.
+     *
+     * @param key The key.
+     */
+    public void release(long key) {
+        if (key >= 0) {
+            return;
+        }
+        String plate = plates.get(key);
+        if (plate == null) {
+            return;
+        }
+        interned.computeIfPresent(plate, (p, entry) -> {
+            if (entry.key != key || --entry.references > 0) {
+                return entry;
+            }
+            plates.remove(key);
+            return null;
+        });
+    }
+
+    /**
+     * Gets the number of interned registration numbers.
+     *
+     * @return The number of plates the codec could not pack with a key in use.
+     */
+    public int getInternedCount() {
+        return interned.size();
+    }
+
+    /**
+     * Key of an interned plate and the number of references to it, only changed within the map's compute.
+     */
+    private static final class Interned {
+
+        private final long key;
+        private int references;
+
+        private Interned(long key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+-- Tables, indexes and parking spots created by Data.sql before migrations, left as they are where it already ran
+create table if not exists parking(
+ PARKING_NUMBER int PRIMARY KEY,
+ AVAILABLE bool NOT NULL,
+ TYPE varchar(10) NOT NULL
+);
+
+create table if not exists ticket(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME,
+ INDEX TICKET_IN_TIME (IN_TIME),
+ INDEX TICKET_VEHICLE (VEHICLE_REG_NUMBER),
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+insert ignore into parking(PARKING_NUMBER,AVAILABLE,TYPE) values
+ (1,true,'CAR'),
+ (2,true,'CAR'),
+ (3,true,'CAR'),
+ (4,true,'BIKE'),
+ (5,true,'BIKE');
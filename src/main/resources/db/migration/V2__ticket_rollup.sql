@@ -0,0 +1,10 @@
+-- Hourly and daily totals of closed tickets, see TicketRollups
+create table if not exists ticket_rollup(
+ GRANULARITY varchar(5) NOT NULL,
+ BUCKET_START DATETIME NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ TICKET_COUNT bigint NOT NULL,
+ TOTAL_PRICE double NOT NULL,
+ TOTAL_DURATION_MILLIS bigint NOT NULL,
+ DISCOUNT_COUNT bigint NOT NULL,
+ PRIMARY KEY (GRANULARITY, BUCKET_START, TYPE));
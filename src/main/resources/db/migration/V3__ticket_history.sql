@@ -0,0 +1,15 @@
+-- Archived tickets and per-vehicle totals of archived tickets, see TicketArchiver
+create table if not exists ticket_history(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ INDEX TICKET_HISTORY_IN_TIME (IN_TIME),
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+create table if not exists vehicle_history(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ TICKET_COUNT int NOT NULL);
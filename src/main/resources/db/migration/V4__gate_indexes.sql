@@ -0,0 +1,18 @@
+-- Indexes of the DBConstants queries, built online: reads and writes go on while they are built
+
+-- GET_NEXT_PARKING_SPOT: min(PARKING_NUMBER) of the free spots of a type, read from the index alone
+-- @unless index PARKING_TYPE_AVAILABLE on parking
+create index PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER) algorithm=inplace lock=none;
+
+-- GET_TICKET and GET_NB_TICKET: the tickets of a vehicle in in-time order, without a sort
+-- @unless index TICKET_VEHICLE_IN_TIME on ticket
+create index TICKET_VEHICLE_IN_TIME on ticket(VEHICLE_REG_NUMBER, IN_TIME) algorithm=inplace lock=none;
+
+-- GET_OPEN_TICKETS and GET_ARCHIVABLE_TICKETS: open tickets by in time, closed tickets by out time
+-- @unless index TICKET_OUT_TIME_IN_TIME on ticket
+create index TICKET_OUT_TIME_IN_TIME on ticket(OUT_TIME, IN_TIME) algorithm=inplace lock=none;
+
+-- TICKET_VEHICLE is a prefix of TICKET_VEHICLE_IN_TIME, so it only slows down writes.
+-- Only tables created by V1 have it: tables created by an older Data.sql never did
+-- @if index TICKET_VEHICLE on ticket
+drop index TICKET_VEHICLE on ticket algorithm=inplace lock=none;
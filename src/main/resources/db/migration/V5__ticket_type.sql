@@ -0,0 +1,19 @@
+-- Parking type of the spot, stored on the ticket so exit lookups read the ticket table alone.
+-- Every statement can run again, so a backfill cut short by a restart resumes where it stopped
+
+-- Instant: only the table metadata changes, whatever the table size
+-- @unless column TYPE on ticket
+alter table ticket add column TYPE varchar(10), algorithm=instant;
+
+-- Temporary index so each backfill batch finds the rows left to fill without scanning the filled ones
+-- @unless index TICKET_TYPE_BACKFILL on ticket
+create index TICKET_TYPE_BACKFILL on ticket(TYPE) algorithm=inplace lock=none;
+
+-- @batch
+update ticket set TYPE = (select p.TYPE from parking p where p.PARKING_NUMBER = ticket.PARKING_NUMBER) where TYPE is null limit 1000;
+
+-- @if index TICKET_TYPE_BACKFILL on ticket
+drop index TICKET_TYPE_BACKFILL on ticket algorithm=inplace lock=none;
+
+-- Changes nothing if the column is already NOT NULL
+alter table ticket modify TYPE varchar(10) NOT NULL, algorithm=inplace, lock=none;
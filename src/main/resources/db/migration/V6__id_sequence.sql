@@ -0,0 +1,8 @@
+-- Ranges of ticket IDs reserved by the application, see TicketIdAllocator
+create table if not exists id_sequence(
+ NAME varchar(30) PRIMARY KEY,
+ NEXT_ID bigint NOT NULL);
+
+-- Starts after every ID already given by AUTO_INCREMENT, archived tickets included
+insert ignore into id_sequence(NAME, NEXT_ID)
+ select 'ticket', greatest(coalesce((select max(ID) from ticket), 0), coalesce((select max(ID) from ticket_history), 0)) + 1;
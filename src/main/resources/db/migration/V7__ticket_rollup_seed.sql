@@ -0,0 +1,17 @@
+-- Adds the tickets closed before ticket_rollup was filled, archived ones included, to its hourly and daily totals.
+-- Only tickets closed before the first hour already in the table are added: tickets closed since were rolled up
+-- as they closed, and once the seed has run its first hour excludes every ticket, so running it again adds nothing.
+-- Ticket times are stored in UTC, like the buckets. Tickets do not store the discount, so none is counted
+insert into ticket_rollup(GRANULARITY, BUCKET_START, TYPE, TICKET_COUNT, TOTAL_PRICE, TOTAL_DURATION_MILLIS, DISCOUNT_COUNT)
+ select b.GRANULARITY, b.BUCKET_START, b.TYPE, count(*), coalesce(sum(b.PRICE), 0), coalesce(sum(b.DURATION_MILLIS), 0), 0
+ from (select g.GRANULARITY,
+   timestampadd(hour, case when g.GRANULARITY = 'HOUR' then hour(c.OUT_TIME) else 0 end,
+    cast(cast(c.OUT_TIME as date) as datetime)) as BUCKET_START,
+   c.TYPE, c.PRICE, floor(timestampdiff(microsecond, c.IN_TIME, c.OUT_TIME) / 1000) as DURATION_MILLIS
+  from (select t.TYPE, t.PRICE, t.IN_TIME, t.OUT_TIME from ticket t where t.OUT_TIME is not null
+   union all
+   select p.TYPE, h.PRICE, h.IN_TIME, h.OUT_TIME from ticket_history h join parking p on p.PARKING_NUMBER = h.PARKING_NUMBER) c
+  cross join (select 'HOUR' as GRANULARITY union all select 'DAY') g
+  where c.OUT_TIME < coalesce((select min(r.BUCKET_START) from ticket_rollup r where r.GRANULARITY = 'HOUR'), '9999-12-31')) b
+ group by b.GRANULARITY, b.BUCKET_START, b.TYPE
+ on duplicate key update TICKET_COUNT = TICKET_COUNT + values(TICKET_COUNT), TOTAL_PRICE = TOTAL_PRICE + values(TOTAL_PRICE), TOTAL_DURATION_MILLIS = TOTAL_DURATION_MILLIS + values(TOTAL_DURATION_MILLIS), DISCOUNT_COUNT = DISCOUNT_COUNT + values(DISCOUNT_COUNT);
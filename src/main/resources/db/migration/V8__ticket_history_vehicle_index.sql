@@ -0,0 +1,3 @@
+-- GET_ARCHIVED_CLOSED_TICKETS: archived tickets per vehicle in in-time order, streamed without a sort
+-- @unless index TICKET_HISTORY_VEHICLE_IN_TIME on ticket_history
+create index TICKET_HISTORY_VEHICLE_IN_TIME on ticket_history(VEHICLE_REG_NUMBER, IN_TIME) algorithm=inplace lock=none;
@@ -0,0 +1,19 @@
+-- Parking type of the spot, stored on archived tickets too so history reads need no join with parking.
+-- Every statement can run again, so a backfill cut short by a restart resumes where it stopped
+
+-- Instant: only the table metadata changes, whatever the table size
+-- @unless column TYPE on ticket_history
+alter table ticket_history add column TYPE varchar(10), algorithm=instant;
+
+-- Temporary index so each backfill batch finds the rows left to fill without scanning the filled ones
+-- @unless index TICKET_HISTORY_TYPE_BACKFILL on ticket_history
+create index TICKET_HISTORY_TYPE_BACKFILL on ticket_history(TYPE) algorithm=inplace lock=none;
+
+-- @batch
+update ticket_history set TYPE = (select p.TYPE from parking p where p.PARKING_NUMBER = ticket_history.PARKING_NUMBER) where TYPE is null limit 1000;
+
+-- @if index TICKET_HISTORY_TYPE_BACKFILL on ticket_history
+drop index TICKET_HISTORY_TYPE_BACKFILL on ticket_history algorithm=inplace lock=none;
+
+-- Changes nothing if the column is already NOT NULL
+alter table ticket_history modify TYPE varchar(10) NOT NULL, algorithm=inplace, lock=none;
@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
+import com.parkit.parkingsystem.model.CompactTicket;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.util.RegistrationCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CompactTicket} and {@link RegistrationCodec}.
+ */
+class CompactTicketTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    /**
+     * Test that plates of the alphabet round-trip through the codec and stay distinct, and that
+     * other plates are reported as not encodable.
+     */
+    @Test
+    void registrationNumbersRoundTrip() {
+        for (String plate : new String[]{"", "0", "AB-123-CD", "zzzzzzzzzz", "Ab0", "Ab00"}) {
+            long encoded = RegistrationCodec.encode(plate);
+            assertTrue(encoded >= 0);
+            assertEquals(plate, RegistrationCodec.decode(encoded));
+        }
+        assertNotEquals(RegistrationCodec.encode("Ab0"), RegistrationCodec.encode("Ab00"));
+        assertNotEquals(RegistrationCodec.encode("AB"), RegistrationCodec.encode("ab"));
+
+        assertEquals(RegistrationCodec.NOT_ENCODABLE, RegistrationCodec.encode("ABCDEFGHIJK"));
+        assertEquals(RegistrationCodec.NOT_ENCODABLE, RegistrationCodec.encode("AB 123"));
+        assertEquals(RegistrationCodec.NOT_ENCODABLE, RegistrationCodec.encode("ÉCOLE"));
+        assertThrows(IllegalArgumentException.class, () -> RegistrationCodec.decode(-1));
+    }
+
+    /**
+     * Test that a ticket converts to its compact form and back, and that the compact form is priced
+     * like the ticket.
+     */
+    @Test
+    void compactTicketConvertsAndPricesLikeTicket() {
+        long inTime = 1_700_000_000_000L;
+        Ticket ticket = new Ticket();
+        ticket.setId(42);
+        ticket.setParkingSpot(new ParkingSpot(4, ParkingType.BIKE, false));
+        ticket.setVehicleRegNumber("XY-987");
+        ticket.setInTime(new Date(inTime));
+
+        CompactTicket compact = CompactTicket.of(ticket);
+        assertTrue(compact.isOpen());
+        assertEquals(ParkingType.BIKE, compact.getParkingType());
+        assertEquals("XY-987", RegistrationCodec.decode(compact.getVehicleRegNumber()));
+
+        FareCalculatorService fareCalculatorService = new FareCalculatorService();
+        CompactTicket closed = fareCalculatorService.calculateFare(compact, inTime + 3 * HOUR, true);
+        ticket.setOutTime(new Date(inTime + 3 * HOUR));
+        fareCalculatorService.calculateFare(ticket, true);
+        assertEquals(ticket.getPrice(), closed.getPrice(), 1e-9);
+        assertTrue(closed.isDiscounted());
+        assertTrue(compact.isOpen());
+
+        Ticket back = closed.toTicket("XY-987");
+        assertEquals(42, back.getId());
+        assertEquals(new ParkingSpot(4, ParkingType.BIKE, false), back.getParkingSpot());
+        assertEquals(ticket.getOutTime(), back.getOutTime());
+        assertThrows(IllegalArgumentException.class,
+                () -> fareCalculatorService.calculateFare(compact, inTime - 1, false));
+    }
+
+    /**
+     * Test that the open ticket index hands out its compact ticket as is, and builds a new ticket on each get.
+     */
+    @Test
+    void openTicketIndexHoldsCompactTickets() {
+        Ticket ticket = new Ticket();
+        ticket.setId(7);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AB-123");
+        ticket.setInTime(new Date());
+
+        OpenTicketIndex index = new OpenTicketIndex();
+        index.put(ticket);
+
+        assertSame(index.getCompact("AB-123"), index.getCompact("AB-123"));
+        Ticket first = index.get("AB-123");
+        first.setOutTime(new Date());
+        assertNull(index.get("AB-123").getOutTime());
+        assertTrue(index.remove(first));
+        assertNull(index.getCompact("AB-123"));
+    }
+}
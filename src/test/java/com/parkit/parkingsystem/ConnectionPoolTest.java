@@ -0,0 +1,188 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ConnectionPool}.
+ * Physical connections are Mockito mocks so no database is needed.
+ */
+class ConnectionPoolTest {
+
+    private List<Connection> opened;
+    private ConnectionPool connectionPool;
+
+    /**
+     * Create a pool of two connections with a short max wait before each test.
+     */
+    @BeforeEach
+    void setUpPerTest() {
+        opened = new ArrayList<>();
+        connectionPool = new ConnectionPool(() -> {
+            Connection connection = mock(Connection.class);
+            when(connection.getAutoCommit()).thenReturn(true);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.prepareStatement(anyString())).thenAnswer(invocation -> mock(PreparedStatement.class));
+            opened.add(connection);
+            return connection;
+        }, 2, 50, 60_000, 0, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionPool.close();
+    }
+
+    /**
+     * Test that a connection given back to the pool is reused by the next borrower.
+     */
+    @Test
+    void borrowReusesReturnedConnection() throws Exception {
+        connectionPool.borrow().close();
+        connectionPool.borrow().close();
+
+        assertEquals(1, opened.size());
+        assertEquals(2, connectionPool.getMetrics().getBorrows());
+        assertEquals(1, connectionPool.getMetrics().getIdle());
+        assertEquals(0, connectionPool.getMetrics().getActive());
+    }
+
+    /**
+     * Test that borrowing from an exhausted pool fails after the max wait time.
+     */
+    @Test
+    void borrowTimesOutWhenPoolIsExhausted() throws Exception {
+        Connection first = connectionPool.borrow();
+        Connection second = connectionPool.borrow();
+
+        assertThrows(SQLTimeoutException.class, () -> connectionPool.borrow());
+        assertEquals(1, connectionPool.getMetrics().getTimeouts());
+        assertEquals(2, connectionPool.getMetrics().getActive());
+
+        first.close();
+        second.close();
+    }
+
+    /**
+     * Test that a connection failing validation is discarded and replaced.
+     */
+    @Test
+    void borrowDiscardsInvalidConnection() throws Exception {
+        connectionPool.borrow().close();
+        when(opened.get(0).isValid(anyInt())).thenReturn(false);
+
+        connectionPool.borrow().close();
+
+        assertEquals(2, opened.size());
+        verify(opened.get(0)).close();
+        assertEquals(1, connectionPool.getMetrics().getDestroyed());
+    }
+
+    /**
+     * Test that a closed handle can no longer be used and that closing twice is harmless.
+     */
+    @Test
+    void closedHandleIsUnusable() throws Exception {
+        Connection pooled = connectionPool.borrow();
+        pooled.close();
+        pooled.close();
+
+        assertTrue(pooled.isClosed());
+        assertThrows(SQLException.class, () -> pooled.prepareStatement("select 1"));
+        assertEquals(1, connectionPool.getMetrics().getIdle());
+    }
+
+    /**
+     * Test that a statement closed by its caller is served again from the connection's cache,
+     * and that the least recently used statement is closed when the cache is full.
+     */
+    @Test
+    void prepareStatementIsCachedPerConnection() throws Exception {
+        try (Connection con = connectionPool.borrow()) {
+            con.prepareStatement("select 1").close();
+            con.prepareStatement("select 1").close();
+            con.prepareStatement("select 2").close();
+        }
+
+        verify(opened.get(0), times(1)).prepareStatement("select 1");
+        assertEquals(1, connectionPool.getMetrics().getStatementHits());
+        assertEquals(2, connectionPool.getMetrics().getStatementMisses());
+        assertEquals(1, connectionPool.getMetrics().getStatementEvictions());
+    }
+
+    /**
+     * Test that a connection given back while the pool is being closed is closed rather than
+     * left behind in the idle deque.
+     */
+    @Test
+    void connectionGivenBackDuringCloseIsClosed() throws Exception {
+        Connection pooled = connectionPool.borrow();
+        // giveBack reads the auto-commit flag after checking closed, so close the pool right there
+        when(opened.get(0).getAutoCommit()).thenAnswer(invocation -> {
+            connectionPool.close();
+            return true;
+        });
+
+        pooled.close();
+
+        verify(opened.get(0)).close();
+        assertEquals(0, connectionPool.getMetrics().getIdle());
+        assertEquals(1, connectionPool.getMetrics().getDestroyed());
+    }
+
+    /**
+     * Test that a batch abandoned halfway and a changed fetch size are reset before the cached
+     * statement is handed to the next caller.
+     */
+    @Test
+    void abandonedBatchIsClearedOnCheckin() throws Exception {
+        PreparedStatement physical = mock(PreparedStatement.class);
+        try (Connection con = connectionPool.borrow()) {
+            when(opened.get(0).prepareStatement("insert into ticket values (?)")).thenReturn(physical);
+            PreparedStatement ps = con.prepareStatement("insert into ticket values (?)");
+            ps.setFetchSize(500);
+            ps.setInt(1, 1);
+            ps.addBatch();
+            ps.setInt(1, 2);
+            ps.addBatch();
+            // The caller fails before executeBatch and only closes the statement
+            ps.close();
+
+            con.prepareStatement("insert into ticket values (?)").close();
+        }
+
+        verify(physical, times(2)).clearBatch();
+        verify(physical, times(2)).clearWarnings();
+        verify(physical).setFetchSize(0);
+        assertEquals(1, connectionPool.getMetrics().getStatementHits());
+    }
+
+    /**
+     * Test that a statement that cannot be reset is dropped and prepared again on the next call.
+     */
+    @Test
+    void statementFailingResetIsPreparedAgain() throws Exception {
+        PreparedStatement broken = mock(PreparedStatement.class);
+        doThrow(new SQLException("Communications link failure")).when(broken).clearBatch();
+        try (Connection con = connectionPool.borrow()) {
+            when(opened.get(0).prepareStatement("select 1")).thenReturn(broken, mock(PreparedStatement.class));
+            con.prepareStatement("select 1").close();
+            con.prepareStatement("select 1").close();
+        }
+
+        verify(broken).close();
+        verify(opened.get(0), times(2)).prepareStatement("select 1");
+    }
+}
@@ -241,4 +241,54 @@ class FareCalculatorServiceTest {
 
         assertEquals(0.95 * Fare.BIKE_RATE_PER_HOUR, ticket.getPrice());
     }
+
+    /**
+     * Test that a batch is priced exactly as the same tickets priced one by one,
+     * including free short stays and discounts, on a batch large enough to be split across cores.
+     */
+    @Test
+    void calculateFaresMatchesSingleTicketFares() {
+        int size = FareCalculatorService.PARALLEL_BATCH_THRESHOLD * 4 + 3;
+        long[] inTimes = new long[size];
+        long[] outTimes = new long[size];
+        byte[] parkingTypes = new byte[size];
+        boolean[] discounts = new boolean[size];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            inTimes[i] = now - (i % 500) * 61_000L;
+            outTimes[i] = now;
+            parkingTypes[i] = (byte) (i % 2 == 0 ? ParkingType.CAR.ordinal() : ParkingType.BIKE.ordinal());
+            discounts[i] = i % 3 == 0;
+        }
+        double[] fares = new double[size];
+
+        fareCalculatorService.calculateFares(inTimes, outTimes, parkingTypes, discounts, fares);
+
+        for (int i = 0; i < size; i++) {
+            ticket.setInTime(new Date(inTimes[i]));
+            ticket.setOutTime(new Date(outTimes[i]));
+            ticket.setParkingSpot(new ParkingSpot(1, ParkingType.values()[parkingTypes[i]], false));
+            fareCalculatorService.calculateFare(ticket, discounts[i]);
+            assertEquals(ticket.getPrice(), fares[i], "ticket " + i);
+        }
+    }
+
+    /**
+     * Test that a batch holding a ticket with its out time before its in time is refused,
+     * and that the discount column may be left out.
+     */
+    @Test
+    void calculateFaresWithIncorrectOutTime() {
+        long now = System.currentTimeMillis();
+        long[] inTimes = {now - 2 * 60 * 60 * 1000, now};
+        long[] outTimes = {now, now - 1000};
+        byte[] parkingTypes = {(byte) ParkingType.CAR.ordinal(), (byte) ParkingType.CAR.ordinal()};
+        double[] fares = new double[2];
+
+        assertThrows(IllegalArgumentException.class,
+                () -> fareCalculatorService.calculateFares(inTimes, outTimes, parkingTypes, null, fares));
+        assertEquals(2 * Fare.CAR_RATE_PER_HOUR, fares[0]);
+        assertThrows(IllegalArgumentException.class,
+                () -> fareCalculatorService.calculateFares(inTimes, outTimes, parkingTypes, null, new double[1]));
+    }
 }
@@ -0,0 +1,142 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.GateMetrics;
+import com.parkit.parkingsystem.service.GateServer;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link GateServer}, sending gate events over a loopback socket to a mocked {@link ParkingService}.
+ */
+@ExtendWith(MockitoExtension.class)
+class GateServerTest {
+
+    @Mock
+    private ParkingService parkingService;
+
+    private GateServer gateServer;
+
+    /**
+     * Start a server on a free port with two workers.
+     */
+    @BeforeEach
+    void setUpPerTest() throws IOException {
+        gateServer = new GateServer(parkingService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                2, GateServer.DEFAULT_QUEUE_CAPACITY, true);
+        gateServer.start();
+    }
+
+    /**
+     * Stop the server.
+     */
+    @AfterEach
+    void tearDownPerTest() {
+        gateServer.stop(5);
+    }
+
+    /**
+     * Test that an entry event is answered with the assigned spot and counted for its gate.
+     */
+    @Test
+    void entryEventIsAnsweredAndCounted() throws IOException {
+        when(parkingService.enter("AB-123", ParkingType.CAR)).thenReturn(new EntryResult(EntryResult.Status.PARKED,
+                "AB-123", new ParkingSpot(2, ParkingType.CAR, false), new Date(), false, 1_000));
+
+        String body = get("/entry?gate=north&reg=AB-123&type=car", 200);
+
+        assertTrue(body.contains("\"status\":\"PARKED\""), body);
+        assertTrue(body.contains("\"spot\":2"), body);
+        GateMetrics metrics = gateServer.getGateMetrics().get("north");
+        assertEquals(1, metrics.getCompleted());
+        assertEquals(0, metrics.getQueueDepth());
+        assertTrue(metrics.getMaxLatencyNanos() > 0);
+    }
+
+    /**
+     * Test that an event missing its parameters is refused without reaching the service.
+     */
+    @Test
+    void eventWithoutRegNumberIsRefused() throws IOException {
+        get("/exit?gate=south", 400);
+
+        assertTrue(gateServer.getGateMetrics().isEmpty());
+    }
+
+    /**
+     * Test that events from several gates sent at once are all answered and show up in the metrics.
+     */
+    @Test
+    void concurrentExitEventsFromSeveralGates() throws Exception {
+        when(parkingService.exit(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return new ExitResult(ExitResult.Status.EXITED, invocation.getArgument(0),
+                    new ParkingSpot(1, ParkingType.CAR, true), new Date(0), new Date(3_600_000), 1.5, false, 20_000_000);
+        });
+        ExecutorService gates = Executors.newFixedThreadPool(4);
+        List<Future<String>> answers = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String path = "/exit?gate=gate" + (i % 3) + "&reg=V" + i;
+            Callable<String> event = () -> get(path, 200);
+            answers.add(gates.submit(event));
+        }
+        for (Future<String> answer : answers) {
+            assertTrue(answer.get(10, TimeUnit.SECONDS).contains("\"status\":\"EXITED\""));
+        }
+        gates.shutdown();
+
+        assertEquals(3, gateServer.getGateMetrics().size());
+        for (GateMetrics metrics : gateServer.getGateMetrics().values()) {
+            assertEquals(4, metrics.getCompleted());
+            assertTrue(metrics.getAverageLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        }
+        String body = get("/metrics", 200);
+        assertTrue(body.contains("\"gate1\":{\"queueDepth\":0"), body);
+    }
+
+    private String get(String path, int expectedStatus) throws IOException {
+        URL url = new URL("http", gateServer.getAddress().getHostString(), gateServer.getAddress().getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            assertEquals(expectedStatus, connection.getResponseCode());
+            InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
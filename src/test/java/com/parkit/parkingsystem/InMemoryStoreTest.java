@@ -0,0 +1,119 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotStore;
+import com.parkit.parkingsystem.dao.InMemoryTicketStore;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the in-memory storage backend, {@link InMemoryParkingSpotStore} and {@link InMemoryTicketStore},
+ * alone and behind a {@link ParkingService}.
+ */
+class InMemoryStoreTest {
+
+    /**
+     * Test that spots are claimed lowest first, per type, until none is left, and can be released.
+     */
+    @Test
+    void claimAndReleaseSpots() {
+        InMemoryParkingSpotStore store = InMemoryParkingSpotStore.withFreeSpots(2, 1);
+
+        assertEquals(1, store.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(2, store.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(-1, store.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(3, store.getNextAvailableSlot(ParkingType.BIKE));
+
+        assertTrue(store.updateParking(new ParkingSpot(1, ParkingType.CAR, true)));
+        assertEquals(1, store.getNextAvailableSlot(ParkingType.CAR));
+        assertFalse(store.updateParking(new ParkingSpot(9, ParkingType.CAR, true)));
+    }
+
+    /**
+     * Test that the latest ticket, its closing and the ticket count are kept per vehicle.
+     */
+    @Test
+    void ticketsAreTrackedPerVehicle() {
+        InMemoryTicketStore store = new InMemoryTicketStore();
+        Ticket first = ticket("AB-123");
+        assertTrue(store.saveTicket(first));
+        assertTrue(first.getId() > 0);
+
+        Ticket open = store.getOpenTicket("AB-123");
+        Ticket concurrent = store.getOpenTicket("AB-123");
+        open.setOutTime(new Date());
+        open.setPrice(2.5);
+        assertTrue(store.updateTicket(open));
+        assertNull(store.getOpenTicket("AB-123"));
+        // A second exit that read the ticket while it was open finds it already closed
+        concurrent.setOutTime(new Date());
+        concurrent.setPrice(4);
+        assertFalse(store.updateTicket(concurrent));
+        assertEquals(2.5, store.getTicket("AB-123").getPrice());
+
+        Ticket second = ticket("AB-123");
+        assertTrue(store.saveTicket(second));
+        assertEquals(2, store.getNbTicket("AB-123"));
+        assertEquals(second.getId(), store.getOpenTicket("AB-123").getId());
+        // Closing the older ticket again no longer touches the vehicle
+        assertFalse(store.updateTicket(open));
+        assertEquals(0, store.getNbTicket("XY-987"));
+    }
+
+    /**
+     * Test that concurrent entries through the service never share a spot, and exits free them all.
+     */
+    @Test
+    void concurrentEntriesAndExitsThroughTheService() throws Exception {
+        InMemoryParkingSpotStore spots = InMemoryParkingSpotStore.withFreeSpots(100, 0);
+        ParkingService parkingService = new ParkingService(spots, new InMemoryTicketStore(), null);
+        ExecutorService gates = Executors.newFixedThreadPool(4);
+        List<Future<EntryResult>> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String vehicleRegNumber = "V" + i;
+            entries.add(gates.submit(() -> parkingService.enter(vehicleRegNumber, ParkingType.CAR)));
+        }
+        Set<Integer> taken = new HashSet<>();
+        for (Future<EntryResult> entry : entries) {
+            EntryResult result = entry.get(10, TimeUnit.SECONDS);
+            assertTrue(result.isParked());
+            assertTrue(taken.add(result.getParkingSpot().getId()));
+        }
+        assertEquals(EntryResult.Status.NO_SPOT_AVAILABLE, parkingService.enter("LATE", ParkingType.CAR).getStatus());
+
+        List<Future<ExitResult>> exits = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String vehicleRegNumber = "V" + i;
+            exits.add(gates.submit(() -> parkingService.exit(vehicleRegNumber)));
+        }
+        for (Future<ExitResult> exit : exits) {
+            assertTrue(exit.get(10, TimeUnit.SECONDS).isExited());
+        }
+        gates.shutdown();
+        assertEquals(100, spots.countAvailable(ParkingType.CAR));
+    }
+
+    private static Ticket ticket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(System.currentTimeMillis() - 3_600_000));
+        return ticket;
+    }
+}
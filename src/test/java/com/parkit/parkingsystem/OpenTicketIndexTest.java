@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OpenTicketIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link OpenTicketIndex}.
+ */
+class OpenTicketIndexTest {
+
+    private static final long IN_TIME = 1_700_000_000_000L;
+
+    /**
+     * Test that a ticket put in the index comes back with every field, and unknown vehicles have none.
+     */
+    @Test
+    void putThenGet() {
+        OpenTicketIndex index = new OpenTicketIndex();
+        index.put(ticket(3, "AB-123", 2, ParkingType.CAR, IN_TIME));
+
+        Ticket ticket = index.get("AB-123");
+        assertEquals(3, ticket.getId());
+        assertEquals("AB-123", ticket.getVehicleRegNumber());
+        assertEquals(new ParkingSpot(2, ParkingType.CAR, false), ticket.getParkingSpot());
+        assertEquals(new Date(IN_TIME), ticket.getInTime());
+        assertNull(ticket.getOutTime());
+        assertNull(index.get("CD-456"));
+        assertEquals(1, index.size());
+    }
+
+    /**
+     * Test that a newer ticket of a vehicle replaces its previous one, and that only the ticket in the index
+     * is removed, so closing a stale ticket does not drop the open one.
+     */
+    @Test
+    void newerTicketReplacesAndOnlyItIsRemoved() {
+        OpenTicketIndex index = new OpenTicketIndex();
+        Ticket first = ticket(3, "AB-123", 2, ParkingType.CAR, IN_TIME);
+        Ticket second = ticket(8, "AB-123", 4, ParkingType.BIKE, IN_TIME + 1000);
+        index.put(first);
+        index.put(second);
+
+        assertEquals(1, index.size());
+        assertEquals(8, index.get("AB-123").getId());
+        assertFalse(index.remove(first));
+        assertEquals(8, index.get("AB-123").getId());
+        assertTrue(index.remove(second));
+        assertFalse(index.remove(second));
+        assertNull(index.get("AB-123"));
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Test that plates the registration codec cannot pack are indexed too, and only interned while
+     * their vehicle has an open ticket.
+     */
+    @Test
+    void platesOutsideCodecAlphabet() {
+        OpenTicketIndex index = new OpenTicketIndex();
+        Ticket ticket = ticket(5, "AB 123 CD", 1, ParkingType.CAR, IN_TIME);
+        index.put(ticket);
+        Ticket newer = ticket(6, "AB 123 CD", 2, ParkingType.CAR, IN_TIME + 1000);
+        index.put(newer);
+
+        assertEquals(6, index.get("AB 123 CD").getId());
+        assertEquals("AB 123 CD", index.get("AB 123 CD").getVehicleRegNumber());
+        assertNull(index.get("AB-123-CD"));
+        assertEquals(1, index.getInternedCount());
+        assertFalse(index.remove(ticket));
+        assertTrue(index.remove(newer));
+        assertNull(index.get("AB 123 CD"));
+        assertEquals(0, index.getInternedCount());
+    }
+
+    /**
+     * Test that many vehicles spread over the segments are all found, and removed independently.
+     */
+    @Test
+    void manyVehicles() {
+        OpenTicketIndex index = new OpenTicketIndex();
+        for (int i = 1; i <= 20_000; i++) {
+            index.put(ticket(i, "V" + i, i % 5 + 1, ParkingType.CAR, IN_TIME + i));
+        }
+        assertEquals(20_000, index.size());
+        for (int i = 1; i <= 20_000; i += 2) {
+            assertTrue(index.remove(ticket(i, "V" + i, i % 5 + 1, ParkingType.CAR, IN_TIME + i)));
+        }
+        assertEquals(10_000, index.size());
+        for (int i = 1; i <= 20_000; i++) {
+            Ticket ticket = index.get("V" + i);
+            if (i % 2 == 1) {
+                assertNull(ticket);
+            } else {
+                assertEquals(i, ticket.getId());
+                assertEquals(IN_TIME + i, ticket.getInTime().getTime());
+            }
+        }
+    }
+
+    private static Ticket ticket(int id, String vehicleRegNumber, int parkingNumber, ParkingType parkingType, long inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        ticket.setInTime(new Date(inTime));
+        return ticket;
+    }
+}
@@ -1,12 +1,19 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.CompactTicket;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.SpotLeaseManager;
 import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.RegistrationCodec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,6 +24,7 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Date;
+import java.util.function.BiFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -51,8 +59,9 @@ class ParkingServiceTest {
             ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
             ticket.setParkingSpot(parkingSpot);
             ticket.setVehicleRegNumber("ABCDEF");
-            lenient().when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+            lenient().when(ticketDAO.getOpenTicket(anyString())).thenReturn(ticket);
             lenient().when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
+            lenient().when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
 
             lenient().when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
 
@@ -73,7 +82,7 @@ class ParkingServiceTest {
 
         parkingService.processExitingVehicle();
 
-        verify(ticketDAO, times(1)).getTicket("ABCDEF");
+        verify(ticketDAO, times(1)).getOpenTicket("ABCDEF");
         verify(ticketDAO, Mockito.times(1)).getNbTicket("ABCDEF");
         verify(ticketDAO, Mockito.times(1)).updateTicket(any(Ticket.class));
         verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
@@ -89,7 +98,7 @@ class ParkingServiceTest {
 
         parkingService.processExitingVehicle();
 
-        verify(ticketDAO, times(1)).getTicket("ABCDEF");
+        verify(ticketDAO, times(1)).getOpenTicket("ABCDEF");
         verify(ticketDAO, Mockito.times(1)).getNbTicket("ABCDEF");
         verify(ticketDAO, Mockito.times(1)).updateTicket(any(Ticket.class));
         verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
@@ -101,16 +110,16 @@ class ParkingServiceTest {
      */
     @Test
     void testProcessIncomingVehicle() {
-        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(0);
         when(inputReaderUtil.readSelection()).thenReturn(1);
 
         parkingService.processIncomingVehicle();
 
-        verify(parkingSpotDAO, Mockito.times(1)).getNextAvailableSlot(ParkingType.CAR);
+        verify(parkingSpotDAO, Mockito.times(1)).claimNextAvailableSlot(ParkingType.CAR);
         verify(ticketDAO, Mockito.times(1)).getNbTicket("ABCDEF");
         verify(ticketDAO, Mockito.times(1)).saveTicket(any(Ticket.class));
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
     }
 
     /**
@@ -119,16 +128,15 @@ class ParkingServiceTest {
      */
     @Test
     void testProcessIncomingVehicleRegularUser() {
-        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(2);
         when(inputReaderUtil.readSelection()).thenReturn(1);
 
         parkingService.processIncomingVehicle();
 
-        verify(parkingSpotDAO, Mockito.times(1)).getNextAvailableSlot(ParkingType.CAR);
+        verify(parkingSpotDAO, Mockito.times(1)).claimNextAvailableSlot(ParkingType.CAR);
         verify(ticketDAO, Mockito.times(1)).getNbTicket("ABCDEF");
         verify(ticketDAO, Mockito.times(1)).saveTicket(any(Ticket.class));
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
     }
 
     /**
@@ -137,15 +145,147 @@ class ParkingServiceTest {
      */
     @Test
     void testProcessIncomingVehicleNoSlot() {
-        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(0);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(-1);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+
+        parkingService.processIncomingVehicle();
+
+        verify(parkingSpotDAO, Mockito.times(1)).claimNextAvailableSlot(ParkingType.CAR);
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
+    /**
+     * Test processIncomingVehicle with spot leasing enabled.
+     * Verifies the spot comes from the lease manager rather than from a direct claim.
+     */
+    @Test
+    void testProcessIncomingVehicleWithSpotLease() {
+        SpotLeaseManager spotLeaseManager = mock(SpotLeaseManager.class);
+        when(spotLeaseManager.takeSlot(ParkingType.CAR)).thenReturn(2);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        parkingService.setSpotLeaseManager(spotLeaseManager);
+
+        parkingService.processIncomingVehicle();
+
+        verify(spotLeaseManager, Mockito.times(1)).takeSlot(ParkingType.CAR);
+        verify(parkingSpotDAO, never()).claimNextAvailableSlot(any(ParkingType.class));
+        verify(ticketDAO, Mockito.times(1)).saveTicket(argThat(saved -> saved.getParkingSpot().getId() == 2));
+    }
+
+    /**
+     * Test processIncomingVehicle when the registration number cannot be read.
+     * Verifies no spot is claimed and no ticket is saved.
+     */
+    @Test
+    void testProcessIncomingVehicleInvalidRegNumberClaimsNoSpot() {
         when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenThrow(new IllegalArgumentException("Invalid input provided"));
 
         parkingService.processIncomingVehicle();
 
-        verify(parkingSpotDAO, Mockito.times(1)).getNextAvailableSlot(ParkingType.CAR);
+        verify(parkingSpotDAO, never()).claimNextAvailableSlot(any(ParkingType.class));
         verify(ticketDAO, never()).saveTicket(any(Ticket.class));
     }
 
+    /**
+     * Test enter when the ticket cannot be saved.
+     * Verifies the claimed spot is released and the entry is reported as failed.
+     */
+    @Test
+    void testEnterReleasesSpotWhenTicketNotSaved() {
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.BIKE)).thenReturn(4);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(false);
+
+        EntryResult result = parkingService.enter("ABCDEF", ParkingType.BIKE);
+
+        assertEquals(EntryResult.Status.FAILED, result.getStatus());
+        verify(parkingSpotDAO, Mockito.times(1)).updateParking(argThat(spot -> spot.getId() == 4 && spot.isAvailable()));
+    }
+
+    /**
+     * Test the headless enter and exit of a regular user, without any console input.
+     * Verifies the results carry the spot, the discounted fare and the timings.
+     */
+    @Test
+    void testEnterThenExitRegularUser() {
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(2);
+
+        EntryResult entry = parkingService.enter("ABCDEF", ParkingType.CAR);
+        ExitResult exit = parkingService.exit("ABCDEF");
+
+        assertTrue(entry.isParked());
+        assertEquals(1, entry.getParkingSpot().getId());
+        assertTrue(entry.isRecurringUser());
+        assertNotNull(entry.getInTime());
+        assertTrue(exit.isExited());
+        assertTrue(exit.isDiscounted());
+        assertEquals(Fare.CAR_RATE_PER_HOUR * 0.95, exit.getPrice(), 0.01);
+        assertEquals(60 * 60 * 1000, exit.getParkingDurationMillis(), 1000);
+        assertTrue(exit.getParkingSpot().isAvailable());
+        verifyZeroInteractions(inputReaderUtil);
+    }
+
+    /**
+     * Test the headless exit of a vehicle without an open ticket.
+     */
+    @Test
+    void testExitWithoutOpenTicket() {
+        when(ticketDAO.getOpenTicket("GHIJKL")).thenReturn(null);
+
+        ExitResult result = parkingService.exit("GHIJKL");
+
+        assertEquals(ExitResult.Status.NO_OPEN_TICKET, result.getStatus());
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+    }
+
+    /**
+     * Test processIncomingVehicle with transactional entries.
+     * Verifies the spot is left to the transaction to claim and the separate DAO calls are skipped.
+     */
+    @Test
+    void testProcessIncomingVehicleInTransaction() {
+        ParkingTransactionDAO parkingTransactionDAO = mock(ParkingTransactionDAO.class);
+        when(parkingTransactionDAO.enterVehicle(any(Ticket.class))).thenReturn(1);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, parkingTransactionDAO);
+
+        parkingService.processIncomingVehicle();
+
+        verify(parkingTransactionDAO, Mockito.times(1)).enterVehicle(argThat(ticket ->
+                ticket.getParkingSpot().getId() == 0 && ticket.getParkingSpot().getParkingType() == ParkingType.CAR
+                        && "ABCDEF".equals(ticket.getVehicleRegNumber())));
+        verify(parkingSpotDAO, never()).claimNextAvailableSlot(any(ParkingType.class));
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+        verify(ticketDAO, never()).getNbTicket(anyString());
+    }
+
+    /**
+     * Test processExitingVehicle with transactional exits.
+     * Verifies the discounted fare is applied for a regular user inside the transaction.
+     */
+    @Test
+    void processExitingVehicleInTransactionRegularUser() {
+        CompactTicket openTicket = new CompactTicket(1, 1, (byte) ParkingType.CAR.ordinal(),
+                RegistrationCodec.encode("ABCDEF"), System.currentTimeMillis() - (60 * 60 * 1000),
+                CompactTicket.NO_OUT_TIME, 0, false);
+        CompactTicket[] closed = new CompactTicket[1];
+        ParkingTransactionDAO parkingTransactionDAO = mock(ParkingTransactionDAO.class);
+        when(parkingTransactionDAO.exitVehicle(eq("ABCDEF"), anyLong(), any())).thenAnswer(invocation -> {
+            closed[0] = invocation.<BiFunction<CompactTicket, Integer, CompactTicket>>getArgument(2).apply(openTicket, 2);
+            return closed[0];
+        });
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, parkingTransactionDAO);
+
+        parkingService.processExitingVehicle();
+
+        assertEquals(Fare.CAR_RATE_PER_HOUR * 0.95, closed[0].getPrice(), 0.01);
+        assertTrue(closed[0].isDiscounted());
+        verify(ticketDAO, never()).getOpenTicket(anyString());
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+    }
+
     /**
      * Test processExitingVehicle behavior when updateTicket returns false (unable to update).
      * Checks if updateTicket is still called.
@@ -236,11 +376,11 @@ class ParkingServiceTest {
      */
     @Test
     void testProcessExitingVehicleWithNullTicket() {
-        when(ticketDAO.getTicket("ABCDEF")).thenReturn(null);
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenReturn(null);
 
         parkingService.processExitingVehicle();
 
-        verify(ticketDAO, times(1)).getTicket("ABCDEF");
+        verify(ticketDAO, times(1)).getOpenTicket("ABCDEF");
         verify(ticketDAO, never()).updateTicket(any(Ticket.class));
         verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
     }
@@ -0,0 +1,107 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotAvailabilityIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ParkingSpotAvailabilityIndex}.
+ */
+class ParkingSpotAvailabilityIndexTest {
+
+    private ParkingSpotAvailabilityIndex index;
+
+    /**
+     * Create an index with spots 1 to 3 as cars and 4 to 5 as bikes, all available,
+     * matching the rows inserted by Data.sql.
+     */
+    @BeforeEach
+    void setUpPerTest() {
+        index = new ParkingSpotAvailabilityIndex(5);
+        for (int spot = 1; spot <= 3; spot++) {
+            index.setAvailable(ParkingType.CAR, spot, true);
+        }
+        index.setAvailable(ParkingType.BIKE, 4, true);
+        index.setAvailable(ParkingType.BIKE, 5, true);
+    }
+
+    /**
+     * Test that the lowest free spot of each type is returned.
+     */
+    @Test
+    void lowestAvailablePerType() {
+        assertEquals(1, index.lowestAvailable(ParkingType.CAR));
+        assertEquals(4, index.lowestAvailable(ParkingType.BIKE));
+    }
+
+    /**
+     * Test that taking and freeing spots moves the lowest free spot accordingly.
+     */
+    @Test
+    void setAvailableUpdatesLowestAvailable() {
+        index.setAvailable(ParkingType.CAR, 1, false);
+        index.setAvailable(ParkingType.CAR, 2, false);
+        assertEquals(3, index.lowestAvailable(ParkingType.CAR));
+        assertEquals(1, index.countAvailable(ParkingType.CAR));
+
+        index.setAvailable(ParkingType.CAR, 1, true);
+        assertEquals(1, index.lowestAvailable(ParkingType.CAR));
+        assertTrue(index.isAvailable(ParkingType.CAR, 1));
+    }
+
+    /**
+     * Test that -1 is returned once every spot of a type is taken.
+     */
+    @Test
+    void lowestAvailableWhenFull() {
+        index.setAvailable(ParkingType.BIKE, 4, false);
+        index.setAvailable(ParkingType.BIKE, 5, false);
+
+        assertEquals(-1, index.lowestAvailable(ParkingType.BIKE));
+        assertEquals(0, index.countAvailable(ParkingType.BIKE));
+    }
+
+    /**
+     * Test that spots spread over several bitmap words are found.
+     */
+    @Test
+    void lowestAvailableAcrossWords() {
+        ParkingSpotAvailabilityIndex large = new ParkingSpotAvailabilityIndex(50_000);
+        large.setAvailable(ParkingType.CAR, 49_999, true);
+        large.setAvailable(ParkingType.CAR, 130, true);
+
+        assertEquals(130, large.lowestAvailable(ParkingType.CAR));
+        assertEquals(-1, large.lowestAvailable(ParkingType.BIKE));
+        assertThrows(IllegalArgumentException.class, () -> large.setAvailable(ParkingType.CAR, 50_001, true));
+    }
+
+    /**
+     * Test that concurrent claims never hand out the same spot twice.
+     */
+    @Test
+    void claimLowestAvailableIsExclusive() throws Exception {
+        ParkingSpotAvailabilityIndex large = new ParkingSpotAvailabilityIndex(1000);
+        for (int spot = 1; spot <= 1000; spot++) {
+            large.setAvailable(ParkingType.CAR, spot, true);
+        }
+        Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> claimed.add(large.claimLowestAvailable(ParkingType.CAR)));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1000, claimed.size());
+        assertEquals(-1, large.claimLowestAvailable(ParkingType.CAR));
+    }
+}
@@ -0,0 +1,231 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.VisitCountCache;
+import com.parkit.parkingsystem.util.LongIntHashMap;
+import com.parkit.parkingsystem.util.LongObjectHashMap;
+import com.parkit.parkingsystem.util.RegistrationCodec;
+import com.parkit.parkingsystem.util.RegistrationInterner;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link RegistrationInterner} and the primitive maps keyed by it.
+ */
+class RegistrationKeysTest {
+
+    /**
+     * Test that packed plates are their own key, that other plates get stable negative keys,
+     * and that lookups never intern.
+     */
+    @Test
+    void internerKeysEveryPlate() {
+        RegistrationInterner interner = new RegistrationInterner();
+        assertEquals(RegistrationCodec.encode("AB-123"), interner.key("AB-123"));
+        assertEquals(RegistrationCodec.NOT_ENCODABLE, interner.find("AB 123"));
+        assertEquals(0, interner.getInternedCount());
+
+        long key = interner.key("AB 123");
+        assertTrue(key < RegistrationCodec.NOT_ENCODABLE);
+        assertEquals(key, interner.key("AB 123"));
+        assertEquals(key, interner.find("AB 123"));
+        assertNotEquals(key, interner.key("ÉCOLE"));
+        assertEquals(2, interner.getInternedCount());
+    }
+
+    /**
+     * Test that an interned plate is forgotten once every reference to its key is released,
+     * and interned again under a new key, while packed plates hold nothing to release.
+     */
+    @Test
+    void internerForgetsReleasedPlates() {
+        RegistrationInterner interner = new RegistrationInterner();
+        long key = interner.key("AB 123");
+        assertEquals(key, interner.key("AB 123"));
+
+        interner.release(key);
+        assertEquals(key, interner.find("AB 123"));
+        interner.release(key);
+        assertEquals(RegistrationCodec.NOT_ENCODABLE, interner.find("AB 123"));
+        assertEquals(0, interner.getInternedCount());
+        // Released twice already: a stale release changes nothing
+        interner.release(key);
+
+        long again = interner.key("AB 123");
+        assertNotEquals(key, again);
+        interner.release(key);
+        assertEquals(again, interner.find("AB 123"));
+        interner.release(interner.key("AB-123"));
+        assertEquals(1, interner.getInternedCount());
+    }
+
+    /**
+     * Test that the object map keeps every entry through resizes and removals.
+     */
+    @Test
+    void longObjectMapPutsAndRemoves() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(4);
+        for (long key = -500; key < 500; key++) {
+            assertNull(map.put(key << 40, Long.toString(key)));
+        }
+        for (long key = -500; key < 500; key += 2) {
+            assertEquals(Long.toString(key), map.remove(key << 40));
+        }
+        assertEquals(500, map.size());
+        for (long key = -500; key < 500; key++) {
+            assertEquals(key % 2 == 0 ? null : Long.toString(key), map.get(key << 40));
+        }
+        assertEquals("1", map.put(1L << 40, "one"));
+        assertNull(map.remove(0));
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, null));
+    }
+
+    /**
+     * Test that the int map only updates present keys, and that eviction spares entries looked up
+     * since the sweep last passed them.
+     */
+    @Test
+    void longIntMapEvictsEntriesNotLookedUp() {
+        LongIntHashMap map = new LongIntHashMap(8);
+        assertFalse(map.addIfPresent(1, 1));
+        for (int key = 0; key < 8; key++) {
+            assertTrue(map.putIfAbsent(key, key));
+        }
+        assertFalse(map.putIfAbsent(3, 30));
+        assertTrue(map.addIfPresent(3, 10));
+        assertEquals(13, map.get(3));
+
+        for (int i = 0; i < 7; i++) {
+            map.get(3);
+            assertTrue(map.evictOne());
+        }
+        assertEquals(1, map.size());
+        assertEquals(13, map.get(3));
+        assertTrue(map.evictOne());
+        assertFalse(map.evictOne());
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(3));
+    }
+
+    /**
+     * Test that the visit count cache counts plates of any kind and stays within its size.
+     */
+    @Test
+    void visitCountCacheStaysBounded() {
+        VisitCountCache cache = new VisitCountCache(64);
+        cache.put("AB 123", 2, cache.stamp("AB 123"));
+        assertEquals(2, cache.get("AB 123"));
+        cache.beginSave("AB 123");
+        assertEquals(3, cache.increment("AB 123"));
+        assertEquals(3, cache.get("AB 123"));
+        assertEquals(-1, cache.get("CD 456"));
+
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("P" + i, i, cache.stamp("P" + i));
+        }
+        int cached = 0;
+        for (int i = 0; i < 10_000; i++) {
+            int count = cache.get("P" + i);
+            if (count != -1) {
+                assertEquals(i, count);
+                cached++;
+            }
+        }
+        assertTrue(cached > 0 && cached <= 64, "cached " + cached);
+    }
+
+    /**
+     * Test that plates the codec cannot pack stay interned only while their count is cached:
+     * evicted counts release their plate, and so do counts read with a save that are not cached.
+     */
+    @Test
+    void visitCountCacheReleasesInternedPlates() {
+        VisitCountCache cache = new VisitCountCache(64);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("P " + i, i, cache.stamp("P " + i));
+        }
+        assertTrue(cache.getInternedCount() <= 64, "interned " + cache.getInternedCount());
+
+        cache.put("AB 123", 2, cache.stamp("AB 123"));
+        cache.put("AB 123", 4, cache.stamp("AB 123"));
+        assertEquals(2, cache.get("AB 123"));
+        int interned = cache.getInternedCount();
+        // The vehicle is cached, so the count read with the save is dropped and the cached one incremented
+        cache.beginSave("AB 123");
+        assertEquals(3, cache.increment("AB 123", 5, cache.stamp("AB 123")));
+        assertEquals(interned, cache.getInternedCount());
+
+        // Counts read before a save are dropped, whether they come with another save or not
+        long stamp = cache.stamp("CD 456");
+        cache.beginSave("CD 456");
+        cache.abortSave("CD 456");
+        cache.beginSave("CD 456");
+        assertEquals(-1, cache.increment("CD 456", 1, stamp));
+        cache.put("CD 456", 1, stamp);
+        assertEquals(interned, cache.getInternedCount());
+        assertEquals(-1, cache.get("CD 456"));
+    }
+
+    /**
+     * Test that a count read before or while a ticket of the vehicle is saved is not cached, since it may miss
+     * that ticket or count it before the save adds it, and that a saved ticket is added to the cached count.
+     */
+    @Test
+    void visitCountCacheSkipsCountsReadDuringSave() {
+        VisitCountCache cache = new VisitCountCache(64);
+        long stamp = cache.stamp("AB-123");
+        cache.beginSave("AB-123");
+        cache.put("AB-123", 2, cache.stamp("AB-123"));
+        assertEquals(-1, cache.get("AB-123"));
+        assertEquals(-1, cache.increment("AB-123"));
+        cache.put("AB-123", 2, stamp);
+        assertEquals(-1, cache.get("AB-123"));
+
+        cache.put("AB-123", 3, cache.stamp("AB-123"));
+        assertEquals(3, cache.get("AB-123"));
+        cache.beginSave("AB-123");
+        assertEquals(4, cache.increment("AB-123"));
+        assertEquals(4, cache.get("AB-123"));
+    }
+
+    /**
+     * Test that, with counts read from a table while tickets are saved to it, the cache never holds
+     * a count lower than the number of tickets of the vehicle, and ends with the exact number.
+     */
+    @Test
+    void visitCountCacheNeverLagsConcurrentSaves() throws Exception {
+        VisitCountCache cache = new VisitCountCache(64);
+        AtomicInteger table = new AtomicInteger();
+        AtomicInteger lagging = new AtomicInteger();
+        int saves = 20_000;
+        Thread saver = new Thread(() -> {
+            for (int i = 1; i <= saves; i++) {
+                cache.beginSave("AB-123");
+                table.incrementAndGet();
+                cache.increment("AB-123");
+                // Once a save is done, a cached count must include its ticket
+                int cached = cache.get("AB-123");
+                if (cached >= 0 && cached < i) {
+                    lagging.incrementAndGet();
+                }
+            }
+        });
+        Thread reader = new Thread(() -> {
+            while (table.get() < saves) {
+                if (cache.get("AB-123") < 0) {
+                    long stamp = cache.stamp("AB-123");
+                    cache.put("AB-123", table.get(), stamp);
+                }
+            }
+        });
+        saver.start();
+        reader.start();
+        saver.join();
+        reader.join();
+
+        assertEquals(0, lagging.get());
+        int cached = cache.get("AB-123");
+        assertTrue(cached == -1 || cached == saves, "cached " + cached);
+    }
+}
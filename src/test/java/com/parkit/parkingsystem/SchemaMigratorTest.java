@@ -0,0 +1,209 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.Migration;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link SchemaMigrator} and {@link Migration}.
+ * Connections are Mockito mocks so no database is needed.
+ */
+class SchemaMigratorTest {
+
+    private static final String SCRIPT = "-- Adds a column\n"
+            + "alter table ticket add column NOTE varchar(20),\n"
+            + " algorithm=inplace, lock=none;\n"
+            + "\n"
+            + "-- @batch\n"
+            + "update ticket set NOTE = '' where NOTE is null limit 1000;\n";
+
+    /**
+     * Test that a script is split into statements, with the batch directive, and that its checksum
+     * ignores line endings but not content.
+     */
+    @Test
+    void parseSplitsStatementsAndChecksumsScript() {
+        Migration migration = Migration.parse("V7__ticket_note.sql", SCRIPT);
+
+        assertEquals(7, migration.getVersion());
+        assertEquals("ticket note", migration.getDescription());
+        assertEquals(2, migration.getStatements().size());
+        assertEquals("alter table ticket add column NOTE varchar(20),\n algorithm=inplace, lock=none",
+                migration.getStatements().get(0).getSql());
+        assertFalse(migration.getStatements().get(0).isBatched());
+        assertTrue(migration.getStatements().get(1).isBatched());
+
+        assertEquals(migration.getChecksum(),
+                Migration.parse("V7__ticket_note.sql", SCRIPT.replace("\n", "\r\n")).getChecksum());
+        assertNotEquals(migration.getChecksum(),
+                Migration.parse("V7__ticket_note.sql", SCRIPT.replace("1000", "500")).getChecksum());
+        assertThrows(IllegalArgumentException.class, () -> Migration.parse("ticket_note.sql", SCRIPT));
+        assertThrows(IllegalArgumentException.class, () -> Migration.parse("V7__ticket_note.sql", "drop table ticket"));
+    }
+
+    /**
+     * Test that condition directives are parsed onto the statement they precede.
+     */
+    @Test
+    void parseReadsConditions() {
+        Migration migration = Migration.parse("V7__ticket_note.sql", "-- @unless column NOTE on ticket\n"
+                + "alter table ticket add column NOTE varchar(20);\n"
+                + "-- @batch\n"
+                + "-- @if index TICKET_NOTE on ticket\n"
+                + "drop index TICKET_NOTE on ticket;\n"
+                + "update ticket set NOTE = '';\n");
+
+        Migration.Condition column = migration.getStatements().get(0).getCondition();
+        assertFalse(column.isIndex());
+        assertFalse(column.isIfExists());
+        assertEquals("NOTE", column.getName());
+        assertEquals("ticket", column.getTable());
+        Migration.Condition index = migration.getStatements().get(1).getCondition();
+        assertTrue(index.isIndex());
+        assertTrue(index.isIfExists());
+        assertTrue(migration.getStatements().get(1).isBatched());
+        assertNull(migration.getStatements().get(2).getCondition());
+        assertThrows(IllegalArgumentException.class,
+                () -> Migration.parse("V7__ticket_note.sql", "drop table ticket;\n-- @if index I on ticket\n"));
+    }
+
+    /**
+     * Test that the bundled migrations load in version order, with online gate indexes and a batched backfill.
+     */
+    @Test
+    void bundledMigrationsLoadInOrder() throws Exception {
+        List<Migration> migrations = SchemaMigrator.loadMigrations();
+
+        assertEquals(9, migrations.size());
+        for (int i = 0; i < migrations.size(); i++) {
+            assertEquals(i + 1, migrations.get(i).getVersion());
+        }
+        assertTrue(migrations.get(3).getStatements().stream()
+                .allMatch(statement -> statement.getSql().endsWith("algorithm=inplace lock=none")));
+        // Index DDL has no "if not exists" in MySQL, so every statement of V4 is conditional
+        assertTrue(migrations.get(3).getStatements().stream().allMatch(statement -> statement.getCondition() != null));
+        // The ticket type backfill runs in batches, and its DDL is skipped when it runs again
+        assertTrue(migrations.get(4).getStatements().stream().anyMatch(Migration.Statement::isBatched));
+        assertEquals(3, migrations.get(4).getStatements().stream()
+                .filter(statement -> statement.getCondition() != null).count());
+        // The rollup seed is one statement, so a seed cut short by a restart is rolled back rather than counted twice
+        assertEquals(1, migrations.get(6).getStatements().size());
+        // The history index the closed ticket stream reads in order is built online too
+        assertTrue(migrations.get(7).getStatements().stream().allMatch(statement -> statement.getCondition() != null
+                && statement.getSql().endsWith("algorithm=inplace lock=none")));
+        // The archived ticket type backfill runs in batches like the ticket one
+        assertTrue(migrations.get(8).getStatements().stream().anyMatch(Migration.Statement::isBatched));
+        assertEquals(3, migrations.get(8).getStatements().stream()
+                .filter(statement -> statement.getCondition() != null).count());
+    }
+
+    /**
+     * Test that applied versions are skipped, new ones are run and recorded, batched statements repeat
+     * until they change no row, and a changed script stops the migration.
+     */
+    @Test
+    void migrateAppliesOnlyNewVersions() throws Exception {
+        Migration applied = Migration.parse("V1__baseline.sql", "create table t(ID int);\n");
+        Migration next = Migration.parse("V2__ticket_note.sql", SCRIPT);
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet lock = mock(ResultSet.class);
+        ResultSet versions = mock(ResultSet.class);
+        Statement statement = mock(Statement.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(ps);
+        when(connection.createStatement()).thenReturn(statement);
+        when(ps.executeQuery()).thenReturn(lock);
+        when(lock.next()).thenReturn(true);
+        when(lock.getInt(1)).thenReturn(1);
+        when(statement.executeQuery(DBConstants.GET_SCHEMA_VERSIONS)).thenReturn(versions);
+        when(versions.next()).thenReturn(true, false);
+        when(versions.getInt(1)).thenReturn(1);
+        when(versions.getLong(2)).thenReturn(applied.getChecksum());
+        String batched = next.getStatements().get(1).getSql();
+        when(statement.executeUpdate(batched)).thenReturn(1000, 1000, 12, 0);
+
+        SchemaMigrator migrator = new SchemaMigrator(dataBaseConfig);
+        assertTrue(migrator.migrate(Arrays.asList(applied, next)));
+
+        verify(statement, never()).execute("create table t(ID int)");
+        verify(statement).execute(next.getStatements().get(0).getSql());
+        verify(statement, times(4)).executeUpdate(batched);
+        verify(ps).setInt(1, 2);
+        verify(ps).setLong(3, next.getChecksum());
+        verify(ps).execute();
+
+        when(versions.next()).thenReturn(true, false);
+        when(versions.getLong(2)).thenReturn(applied.getChecksum() + 1);
+        assertFalse(migrator.migrate(Arrays.asList(applied, next)));
+        verify(connection, times(2)).prepareStatement(DBConstants.RELEASE_SCHEMA_LOCK);
+    }
+
+    /**
+     * Test that a migration that failed halfway runs again from its first statement, skipping the
+     * conditional DDL that already ran, and is recorded once it completes.
+     */
+    @Test
+    void migrateResumesHalfAppliedMigration() throws Exception {
+        Migration migration = Migration.parse("V7__ticket_note.sql", "-- @unless index TICKET_NOTE on ticket\n"
+                + "create index TICKET_NOTE on ticket(IN_TIME);\n"
+                + "-- @unless column NOTE on ticket\n"
+                + "alter table ticket add column NOTE varchar(20);\n");
+        String createIndex = migration.getStatements().get(0).getSql();
+        String addColumn = migration.getStatements().get(1).getSql();
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet lock = mock(ResultSet.class);
+        ResultSet versions = mock(ResultSet.class);
+        Statement statement = mock(Statement.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        ResultSet noIndex = mock(ResultSet.class);
+        ResultSet index = mock(ResultSet.class);
+        ResultSet noColumn = mock(ResultSet.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(ps);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(ps.executeQuery()).thenReturn(lock);
+        when(lock.next()).thenReturn(true);
+        when(lock.getInt(1)).thenReturn(1);
+        when(statement.executeQuery(DBConstants.GET_SCHEMA_VERSIONS)).thenReturn(versions);
+        // The index is missing on the first run and exists on the second, the column never does
+        when(metaData.getIndexInfo(any(), any(), eq("ticket"), eq(false), eq(true))).thenReturn(noIndex, index);
+        when(index.next()).thenReturn(true, false);
+        when(index.getString("INDEX_NAME")).thenReturn("TICKET_NOTE");
+        when(metaData.getColumns(any(), any(), eq("ticket"), any())).thenReturn(noColumn);
+        // The first run stops at the column, e.g. killed by a deploy
+        when(statement.execute(addColumn)).thenThrow(new SQLException("Connection lost")).thenReturn(false);
+
+        SchemaMigrator migrator = new SchemaMigrator(dataBaseConfig);
+        assertFalse(migrator.migrate(Collections.singletonList(migration)));
+        verify(statement).execute(createIndex);
+        verify(ps, never()).execute();
+
+        assertTrue(migrator.migrate(Collections.singletonList(migration)));
+        verify(statement).execute(createIndex);
+        verify(statement, times(2)).execute(addColumn);
+        verify(ps).setInt(1, 7);
+        verify(ps).execute();
+    }
+}
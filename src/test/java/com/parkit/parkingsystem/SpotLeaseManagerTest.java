@@ -0,0 +1,161 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotStore;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.service.SpotLeaseManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link SpotLeaseManager}: leased blocks, expiry, sharing between threads and shutdown,
+ * against an {@link InMemoryParkingSpotStore} so spots given back can be checked.
+ */
+class SpotLeaseManagerTest {
+
+    private SpotLeaseManager spotLeaseManager;
+
+    /**
+     * Stops the lease reaper of the test.
+     */
+    @AfterEach
+    void tearDown() {
+        if (spotLeaseManager != null) {
+            spotLeaseManager.shutdown();
+        }
+    }
+
+    /**
+     * Test that spots are taken from a leased block, claimed from the store up front,
+     * and that the next block is leased once the first is used up.
+     */
+    @Test
+    void spotsAreTakenFromLeasedBlock() {
+        InMemoryParkingSpotStore store = InMemoryParkingSpotStore.withFreeSpots(10, 2);
+        spotLeaseManager = new SpotLeaseManager(store, 3, TimeUnit.MINUTES.toMillis(1));
+
+        assertEquals(1, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(7, store.countAvailable(ParkingType.CAR));
+        assertEquals(2, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(3, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(7, store.countAvailable(ParkingType.CAR));
+
+        assertEquals(4, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(4, store.countAvailable(ParkingType.CAR));
+        assertEquals(11, spotLeaseManager.takeSlot(ParkingType.BIKE));
+    }
+
+    /**
+     * Test that the unused spots of a lease idle for longer than the timeout are given back,
+     * and that a new block is leased afterwards.
+     */
+    @Test
+    void expiredLeaseGivesBackUnusedSpots() throws Exception {
+        InMemoryParkingSpotStore store = InMemoryParkingSpotStore.withFreeSpots(10, 0);
+        spotLeaseManager = new SpotLeaseManager(store, 3, 20);
+
+        assertEquals(1, spotLeaseManager.takeSlot(ParkingType.CAR));
+        Thread.sleep(50);
+        spotLeaseManager.releaseExpiredLeases();
+
+        assertEquals(9, store.countAvailable(ParkingType.CAR));
+        assertEquals(2, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(6, store.countAvailable(ParkingType.CAR));
+    }
+
+    /**
+     * Test that gates running on different threads take their spots from the same leased block,
+     * so a thread that goes away leaves no spot stranded in a lease of its own.
+     */
+    @Test
+    void leaseIsSharedAcrossThreads() throws Exception {
+        InMemoryParkingSpotStore store = InMemoryParkingSpotStore.withFreeSpots(4, 0);
+        spotLeaseManager = new SpotLeaseManager(store, 3, TimeUnit.MINUTES.toMillis(1));
+        ExecutorService otherGate = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(1, (int) otherGate.submit(() -> spotLeaseManager.takeSlot(ParkingType.CAR)).get());
+        } finally {
+            otherGate.shutdown();
+        }
+
+        assertEquals(2, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(3, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(4, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(-1, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(0, store.countAvailable(ParkingType.CAR));
+    }
+
+    /**
+     * Test that shutting down gives back the unused spots of the open lease, whichever threads took from it.
+     */
+    @Test
+    void shutdownGivesBackEveryLease() throws Exception {
+        InMemoryParkingSpotStore store = InMemoryParkingSpotStore.withFreeSpots(10, 2);
+        spotLeaseManager = new SpotLeaseManager(store, 3, TimeUnit.MINUTES.toMillis(1));
+        ExecutorService otherGate = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(1, (int) otherGate.submit(() -> spotLeaseManager.takeSlot(ParkingType.CAR)).get());
+        } finally {
+            otherGate.shutdown();
+        }
+        assertEquals(2, spotLeaseManager.takeSlot(ParkingType.CAR));
+        assertEquals(11, spotLeaseManager.takeSlot(ParkingType.BIKE));
+        assertEquals(7, store.countAvailable(ParkingType.CAR));
+
+        spotLeaseManager.shutdown();
+
+        assertEquals(8, store.countAvailable(ParkingType.CAR));
+        assertEquals(3, store.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(1, store.countAvailable(ParkingType.BIKE));
+    }
+
+    /**
+     * Test that the database DAO claims a whole block on one connection, locking the candidates with one
+     * query and taking them with one batch, and leaves out a spot another process took first.
+     */
+    @Test
+    void databaseBlockIsClaimedInOneTransaction() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement lock = mock(PreparedStatement.class);
+        PreparedStatement claim = mock(PreparedStatement.class);
+        ResultSet candidates = mock(ResultSet.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.LOCK_AVAILABLE_PARKING_SPOTS)).thenReturn(lock);
+        when(connection.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)).thenReturn(claim);
+        when(lock.executeQuery()).thenReturn(candidates);
+        when(candidates.next()).thenReturn(true, true, true, false);
+        when(candidates.getInt(1)).thenReturn(1, 2, 3);
+        when(claim.executeBatch()).thenReturn(new int[]{1, 0, 1});
+
+        int[] claimed = new ParkingSpotDAO(dataBaseConfig).claimAvailableSlots(ParkingType.CAR, 3);
+
+        assertArrayEquals(new int[]{1, 3}, claimed);
+        verify(dataBaseConfig, times(1)).getConnection();
+        verify(lock).setInt(2, 3);
+        verify(claim, times(3)).addBatch();
+        verify(claim, never()).executeUpdate();
+        verify(connection).commit();
+    }
+
+    /**
+     * Test that a lease block must hold at least one spot.
+     */
+    @Test
+    void blockSizeMustBePositive() {
+        InMemoryParkingSpotStore store = InMemoryParkingSpotStore.withFreeSpots(1, 0);
+        assertThrows(IllegalArgumentException.class, () -> new SpotLeaseManager(store, 0, 1000));
+    }
+}
@@ -0,0 +1,114 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.tariff.Tariff;
+import com.parkit.parkingsystem.tariff.TariffReplay;
+import com.parkit.parkingsystem.tariff.TariffReplayReport;
+import com.parkit.parkingsystem.tariff.TariffReplayReport.Segment;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TariffReplay}.
+ */
+class TariffReplayTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    // Monday 2024-01-01 at midnight, UTC
+    private static final long MONDAY = LocalDateTime.of(2024, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    /**
+     * Test that the replay adds up, per type, hour and segment, the same fares as pricing each ticket on its own,
+     * over several batches and a partial last batch.
+     */
+    @Test
+    void replayMatchesTicketByTicketPricing() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("zone", "UTC");
+        properties.setProperty("CAR.ratePerHour", "2");
+        properties.setProperty("CAR.rule.1", "MON-FRI 08-19 3");
+        properties.setProperty("BIKE.ratePerHour", "0.5");
+        Tariff candidate = Tariff.parse(properties);
+
+        int size = 3 * TariffReplay.BATCH_SIZE + 123;
+        long[] expectedTickets = new long[2 * 24 * 2];
+        double[] expectedCurrent = new double[expectedTickets.length];
+        double[] expectedCandidate = new double[expectedTickets.length];
+        TariffReplay replay = new TariffReplay(Tariff.DEFAULT, candidate, 3);
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            ParkingType parkingType = random.nextBoolean() ? ParkingType.CAR : ParkingType.BIKE;
+            long in = MONDAY + (long) (random.nextDouble() * 14 * 24 * HOUR);
+            long out = in + (long) (random.nextDouble() * 30 * HOUR);
+            int visitNumber = 1 + random.nextInt(3);
+            replay.visit(parkingType, in, out, visitNumber);
+
+            boolean recurring = visitNumber >= 2;
+            int cell = ((parkingType.ordinal() * 24) + (int) ((in - MONDAY) / HOUR % 24)) * 2 + (recurring ? 1 : 0);
+            expectedTickets[cell]++;
+            expectedCurrent[cell] += Tariff.DEFAULT.price(parkingType, in, out, recurring);
+            expectedCandidate[cell] += candidate.price(parkingType, in, out, recurring);
+        }
+        replay.visit(ParkingType.CAR, MONDAY + HOUR, MONDAY, 1);
+        TariffReplayReport report = replay.finish();
+
+        assertEquals(size, report.getTicketCount());
+        assertEquals(1, report.getSkippedTicketCount());
+        double expectedDelta = 0;
+        for (ParkingType parkingType : ParkingType.values()) {
+            for (int hour = 0; hour < 24; hour++) {
+                for (Segment segment : Segment.values()) {
+                    int cell = ((parkingType.ordinal() * 24) + hour) * 2 + segment.ordinal();
+                    assertEquals(expectedTickets[cell], report.getTicketCount(parkingType, hour, segment));
+                    assertEquals(expectedCurrent[cell], report.getCurrentRevenue(parkingType, hour, segment), 1e-6);
+                    assertEquals(expectedCandidate[cell], report.getCandidateRevenue(parkingType, hour, segment), 1e-6);
+                    expectedDelta += expectedCandidate[cell] - expectedCurrent[cell];
+                }
+            }
+        }
+        assertEquals(expectedDelta, report.getRevenueDelta(), 1e-6);
+        assertTrue(report.toCsv().startsWith("type,hour,segment,tickets,current,candidate,delta\nCAR,0,OCCASIONAL,"));
+    }
+
+    /**
+     * Test that, without a current tariff file, the replay compares with the tariff file the gates charge,
+     * named by {@link InteractiveShell#TARIFF_PATH_PROPERTY}, and with the default tariff when none is set.
+     */
+    @Test
+    void currentTariffDefaultsToGateTariff() throws IOException {
+        Path gates = Files.createTempFile("gates", ".properties");
+        Path current = Files.createTempFile("current", ".properties");
+        String previous = System.getProperty(InteractiveShell.TARIFF_PATH_PROPERTY);
+        try {
+            Files.write(gates, "CAR.ratePerHour=4\nBIKE.ratePerHour=1\n".getBytes(StandardCharsets.ISO_8859_1));
+            Files.write(current, "CAR.ratePerHour=6\nBIKE.ratePerHour=1\n".getBytes(StandardCharsets.ISO_8859_1));
+
+            System.clearProperty(InteractiveShell.TARIFF_PATH_PROPERTY);
+            assertSame(Tariff.DEFAULT, TariffReplay.loadCurrentTariff(null));
+
+            System.setProperty(InteractiveShell.TARIFF_PATH_PROPERTY, gates.toString());
+            assertEquals(4, TariffReplay.loadCurrentTariff(null).getRatePerHour(ParkingType.CAR, 0), 1e-9);
+            assertEquals(6, TariffReplay.loadCurrentTariff(current).getRatePerHour(ParkingType.CAR, 0), 1e-9);
+        } finally {
+            if (previous != null) {
+                System.setProperty(InteractiveShell.TARIFF_PATH_PROPERTY, previous);
+            } else {
+                System.clearProperty(InteractiveShell.TARIFF_PATH_PROPERTY);
+            }
+            Files.deleteIfExists(gates);
+            Files.deleteIfExists(current);
+        }
+    }
+}
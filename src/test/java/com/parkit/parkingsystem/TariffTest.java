@@ -0,0 +1,161 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.tariff.Tariff;
+import com.parkit.parkingsystem.tariff.TariffReloader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Tariff} and {@link TariffReloader}.
+ */
+class TariffTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    // Monday 2024-01-01 at midnight, UTC
+    private static final long MONDAY = LocalDateTime.of(2024, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    /**
+     * Test that the default tariff gives the same prices, to the last bit, as the former hardcoded fares.
+     */
+    @Test
+    void defaultTariffMatchesFormerFares() {
+        for (long duration = 0; duration < 50 * HOUR; duration += 7_919) {
+            long in = MONDAY + duration * 3;
+            long out = in + duration;
+            double hours = ((double) out - (double) in) / (1000 * 60 * 60);
+            double car = hours <= 0.5 ? 0 : hours * Fare.CAR_RATE_PER_HOUR;
+            double bikeDiscounted = hours <= 0.5 ? 0 : hours * Fare.BIKE_RATE_PER_HOUR * 0.95;
+
+            assertEquals(car, Tariff.DEFAULT.price(ParkingType.CAR, in, out, false));
+            assertEquals(bikeDiscounted, Tariff.DEFAULT.price(ParkingType.BIKE, in, out, true));
+        }
+    }
+
+    /**
+     * Test that rules by day and hour apply to the hours they cover, later rules overriding earlier ones.
+     */
+    @Test
+    void rulesByDayAndHour() {
+        Tariff tariff = Tariff.parse(properties(
+                "zone=UTC",
+                "CAR.ratePerHour=1",
+                "CAR.rule.1=MON-FRI 08-19 2",
+                "CAR.rule.2=FRI 18-19 4",
+                "CAR.rule.3=SAT,SUN 00-24 0.5",
+                "BIKE.ratePerHour=1"));
+
+        // Monday 18:00 to 20:00: one peak hour, one base hour
+        assertEquals(3.0, tariff.price(ParkingType.CAR, MONDAY + 18 * HOUR, MONDAY + 20 * HOUR, false), 1e-9);
+        // Friday 18:30 to Saturday 01:00: half an hour at 4, five hours at 1, one hour at 0.5
+        long friday = MONDAY + 4 * 24 * HOUR;
+        assertEquals(2 + 5 + 0.5, tariff.price(ParkingType.CAR, friday + 18 * HOUR + HOUR / 2, friday + 25 * HOUR, false), 1e-9);
+        // Sunday 23:00 to the next Monday 09:00 crosses the end of the week
+        long sunday = MONDAY + 6 * 24 * HOUR;
+        assertEquals(0.5 + 8 + 2, tariff.price(ParkingType.CAR, sunday + 23 * HOUR, sunday + 33 * HOUR, false), 1e-9);
+        // Two whole weeks cost two times the week
+        double week = 5 * (11 * 2 + 13) - 2 + 4 + 2 * 24 * 0.5;
+        assertEquals(2 * week, tariff.price(ParkingType.CAR, MONDAY, MONDAY + 14 * 24 * HOUR, false), 1e-9);
+        assertEquals(4, tariff.getRatePerHour(ParkingType.CAR, 4 * 24 + 18));
+    }
+
+    /**
+     * Test that the daily cap limits each 24 hours of a stay, and that free time and discount are configurable.
+     */
+    @Test
+    void dailyCapFreeTimeAndDiscount() {
+        Tariff tariff = Tariff.parse(properties(
+                "zone=UTC",
+                "freeMinutes=60",
+                "discountPercent=10",
+                "CAR.ratePerHour=2",
+                "CAR.dailyCap=20",
+                "BIKE.ratePerHour=1"));
+
+        assertEquals(0, tariff.price(ParkingType.CAR, MONDAY, MONDAY + HOUR, false));
+        assertEquals(8, tariff.price(ParkingType.CAR, MONDAY, MONDAY + 4 * HOUR, false), 1e-9);
+        // 9 days and 5 hours: nine capped days and 10 for the last hours
+        assertEquals(9 * 20 + 10, tariff.price(ParkingType.CAR, MONDAY, MONDAY + (9 * 24 + 5) * HOUR, false), 1e-9);
+        assertEquals((9 * 20 + 10) * 0.9, tariff.price(ParkingType.CAR, MONDAY, MONDAY + (9 * 24 + 5) * HOUR, true), 1e-9);
+        assertEquals(30, tariff.price(ParkingType.BIKE, MONDAY, MONDAY + 30 * HOUR, false), 1e-9);
+    }
+
+    /**
+     * Test that invalid tariffs are refused.
+     */
+    @Test
+    void invalidTariffIsRefused() {
+        assertThrows(IllegalArgumentException.class, () -> Tariff.parse(properties("CAR.ratePerHour=1")));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.parse(properties(
+                "CAR.ratePerHour=1", "BIKE.ratePerHour=1", "CAR.rule.1=MON 10-08 2")));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.parse(properties(
+                "CAR.ratePerHour=1", "BIKE.ratePerHour=1", "CAR.rule.1=MUN 08-10 2")));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.parse(properties(
+                "zone=Mars/Olympus", "CAR.ratePerHour=1", "BIKE.ratePerHour=1")));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.DEFAULT.price(7, MONDAY, MONDAY + 2 * HOUR, false));
+        IllegalArgumentException negative = assertThrows(IllegalArgumentException.class, () -> Tariff.parse(properties(
+                "CAR.ratePerHour=-1", "BIKE.ratePerHour=1")));
+        assertEquals("Tariff CAR.ratePerHour must not be negative: -1", negative.getMessage());
+        // A zero rate is valid: parking is free at that rate
+        assertEquals(0, Tariff.parse(properties("CAR.ratePerHour=0", "BIKE.ratePerHour=1"))
+                .price(ParkingType.CAR, MONDAY, MONDAY + 4 * HOUR, false));
+    }
+
+    /**
+     * Test that a fare calculator backed by a reloader prices with the new tariff once the file changes,
+     * and keeps the previous tariff when the new file is invalid.
+     */
+    @Test
+    void reloadedTariffAppliesWithoutRestart() throws IOException {
+        Path file = Files.createTempFile("tariff", ".properties");
+        try {
+            Files.write(file, "CAR.ratePerHour=2\nBIKE.ratePerHour=1\n".getBytes(StandardCharsets.ISO_8859_1));
+            try (TariffReloader tariffs = new TariffReloader(file, 60_000)) {
+                FareCalculatorService fareCalculatorService = new FareCalculatorService(tariffs);
+                Ticket ticket = new Ticket();
+                ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+                ticket.setInTime(new Date(MONDAY));
+                ticket.setOutTime(new Date(MONDAY + 2 * HOUR));
+
+                fareCalculatorService.calculateFare(ticket);
+                assertEquals(4, ticket.getPrice(), 1e-9);
+
+                Files.write(file, "CAR.ratePerHour=3\nBIKE.ratePerHour=1\n".getBytes(StandardCharsets.ISO_8859_1));
+                assertTrue(tariffs.reload());
+                fareCalculatorService.calculateFare(ticket);
+                assertEquals(6, ticket.getPrice(), 1e-9);
+
+                Files.write(file, "CAR.ratePerHour=oops\n".getBytes(StandardCharsets.ISO_8859_1));
+                assertFalse(tariffs.reload());
+                fareCalculatorService.calculateFare(ticket);
+                assertEquals(6, ticket.getPrice(), 1e-9);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Properties properties(String... lines) {
+        Properties properties = new Properties();
+        for (String line : lines) {
+            int equals = line.indexOf('=');
+            properties.setProperty(line.substring(0, equals), line.substring(equals + 1));
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,398 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.CompactTicket;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the open ticket lookups of {@link TicketDAO}.
+ * Connections are Mockito mocks answering each query of {@link DBConstants}.
+ */
+class TicketDAOTest {
+
+    private static final long IN_TIME = 1_700_000_000_000L;
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+
+    /**
+     * Gives every test a fresh mocked connection.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+    }
+
+    /**
+     * Test that, without the index, the open ticket of a vehicle is its latest ticket without an out time,
+     * read with {@link DBConstants#GET_OPEN_TICKET} rather than {@link DBConstants#GET_TICKET}.
+     */
+    @Test
+    void openTicketIsLatestTicketWithoutOutTime() throws Exception {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = openTicketRow(7, 3);
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKET)).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+
+        Ticket ticket = new TicketDAO(dataBaseConfig).getOpenTicket("AB-123");
+
+        assertEquals(7, ticket.getId());
+        assertEquals(new ParkingSpot(3, ParkingType.CAR, false), ticket.getParkingSpot());
+        assertEquals(IN_TIME, ticket.getInTime().getTime());
+        assertNull(ticket.getOutTime());
+        verify(ps).setString(1, "AB-123");
+        verify(connection, never()).prepareStatement(DBConstants.GET_TICKET);
+        assertTrue(DBConstants.GET_OPEN_TICKET.contains("OUT_TIME is null order by IN_TIME desc"));
+        assertTrue(DBConstants.GET_TICKET.contains("order by IN_TIME desc"));
+    }
+
+    /**
+     * Test that an exit without the index closes the open ticket found by the open ticket query, and frees its spot.
+     */
+    @Test
+    void exitClosesOpenTicket() throws Exception {
+        PreparedStatement read = mock(PreparedStatement.class);
+        PreparedStatement count = mock(PreparedStatement.class);
+        PreparedStatement update = mock(PreparedStatement.class);
+        PreparedStatement release = mock(PreparedStatement.class);
+        ResultSet openTicket = openTicketRow(7, 3);
+        ResultSet nbTicket = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKET)).thenReturn(read);
+        when(read.executeQuery()).thenReturn(openTicket);
+        when(connection.prepareStatement(DBConstants.GET_NB_TICKET)).thenReturn(count);
+        when(count.executeQuery()).thenReturn(nbTicket);
+        when(nbTicket.next()).thenReturn(true);
+        when(nbTicket.getInt(1)).thenReturn(2);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(1);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(release);
+        when(release.executeUpdate()).thenReturn(1);
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+        ParkingTransactionDAO parkingTransactionDAO =
+                new ParkingTransactionDAO(dataBaseConfig, new ParkingSpotDAO(dataBaseConfig), ticketDAO);
+
+        long outTime = IN_TIME + 60 * 60 * 1000;
+        CompactTicket ticket = parkingTransactionDAO.exitVehicle("AB-123", outTime,
+                (open, nb) -> open.close(outTime, nb, false));
+
+        assertEquals(7, ticket.getId());
+        assertEquals(outTime, ticket.getOutTime());
+        assertEquals(2, ticket.getPrice());
+        verify(update).setDouble(1, 2);
+        verify(update).setTimestamp(2, new Timestamp(outTime));
+        verify(update).setInt(3, 7);
+        verify(release).setInt(2, 3);
+        verify(connection).commit();
+        verify(connection, never()).prepareStatement(DBConstants.GET_TICKET);
+    }
+
+    /**
+     * Test that an exit whose ticket was closed by a concurrent exit of the same vehicle writes nothing:
+     * the update only matches an open ticket, so the spot is not freed twice.
+     */
+    @Test
+    void exitOfTicketAlreadyClosedWritesNothing() throws Exception {
+        PreparedStatement read = mock(PreparedStatement.class);
+        PreparedStatement count = mock(PreparedStatement.class);
+        PreparedStatement update = mock(PreparedStatement.class);
+        ResultSet openTicket = openTicketRow(7, 3);
+        ResultSet nbTicket = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKET)).thenReturn(read);
+        when(read.executeQuery()).thenReturn(openTicket);
+        when(connection.prepareStatement(DBConstants.GET_NB_TICKET)).thenReturn(count);
+        when(count.executeQuery()).thenReturn(nbTicket);
+        when(nbTicket.next()).thenReturn(true);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(0);
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+        ParkingTransactionDAO parkingTransactionDAO =
+                new ParkingTransactionDAO(dataBaseConfig, new ParkingSpotDAO(dataBaseConfig), ticketDAO);
+
+        long outTime = IN_TIME + 60 * 60 * 1000;
+        assertNull(parkingTransactionDAO.exitVehicle("AB-123", outTime, (open, nb) -> open.close(outTime, 1, false)));
+
+        assertTrue(DBConstants.UPDATE_TICKET.endsWith("where ID=? and OUT_TIME is null"));
+        verify(connection, never()).prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+        verify(connection, never()).commit();
+        verify(connection).rollback();
+    }
+
+    /**
+     * Test that the open ticket index loaded at startup follows saved and closed tickets,
+     * so exits find them without querying the database.
+     */
+    @Test
+    void openTicketIndexFollowsSaveAndUpdate() throws Exception {
+        PreparedStatement load = mock(PreparedStatement.class);
+        ResultSet loaded = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKETS)).thenReturn(load);
+        when(load.executeQuery()).thenReturn(loaded);
+        when(loaded.next()).thenReturn(true, false);
+        when(loaded.getInt(1)).thenReturn(4);
+        when(loaded.getInt(2)).thenReturn(5);
+        when(loaded.getTimestamp(4)).thenReturn(new Timestamp(IN_TIME));
+        when(loaded.getString(5)).thenReturn("CD-456");
+        when(loaded.getString(6)).thenReturn("BIKE");
+        PreparedStatement insert = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insert);
+        when(insert.executeUpdate()).thenReturn(1);
+        when(insert.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenReturn(11);
+        PreparedStatement update = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(1);
+
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+        assertTrue(ticketDAO.loadOpenTicketIndex());
+        assertEquals(5, ticketDAO.getOpenTicket("CD-456").getId());
+        assertEquals(ParkingType.BIKE, ticketDAO.getOpenTicket("CD-456").getParkingSpot().getParkingType());
+
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber("AB-123");
+        ticket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        ticket.setInTime(new Date(IN_TIME));
+        assertTrue(ticketDAO.saveTicket(ticket));
+        Ticket open = ticketDAO.getOpenTicket("AB-123");
+        assertEquals(11, open.getId());
+        assertEquals(2, open.getParkingSpot().getId());
+
+        open.setOutTime(new Date(IN_TIME + 60 * 60 * 1000));
+        assertTrue(ticketDAO.updateTicket(open));
+        assertNull(ticketDAO.getOpenTicket("AB-123"));
+        assertEquals(5, ticketDAO.getOpenTicket("CD-456").getId());
+        verify(connection, never()).prepareStatement(DBConstants.GET_OPEN_TICKET);
+    }
+
+    /**
+     * Test that saved tickets are written through to the cached count of their vehicle,
+     * so counting after two saves runs no COUNT query beyond the one that filled the cache.
+     */
+    @Test
+    void savesAreWrittenThroughToVisitCount() throws Exception {
+        PreparedStatement count = mock(PreparedStatement.class);
+        ResultSet nbTicket = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.GET_NB_TICKET)).thenReturn(count);
+        when(count.executeQuery()).thenReturn(nbTicket);
+        when(nbTicket.next()).thenReturn(true);
+        when(nbTicket.getInt(1)).thenReturn(1);
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insert);
+        when(insert.executeUpdate()).thenReturn(1);
+        when(insert.getGeneratedKeys()).thenReturn(mock(ResultSet.class));
+
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+        ticketDAO.enableVisitCountCache(64);
+        assertEquals(1, ticketDAO.getNbTicket("AB-123"));
+        assertTrue(ticketDAO.saveTicket(openTicket(0, "AB-123", 2)));
+        assertTrue(ticketDAO.saveTicket(openTicket(0, "AB-123", 2)));
+        // A vehicle not cached yet stays uncached until it is counted
+        assertTrue(ticketDAO.saveTicket(openTicket(0, "CD-456", 3)));
+
+        assertEquals(3, ticketDAO.getNbTicket("AB-123"));
+        verify(count, times(1)).executeQuery();
+        assertEquals(-1, ticketDAO.getVisitCountCache().get("CD-456"));
+    }
+
+    /**
+     * Test that two entries of the same vehicle running at once each add their ticket to the cached count,
+     * rather than both computing the same count from the value they read.
+     */
+    @Test
+    void concurrentEntriesEachAddToCachedCount() throws Exception {
+        PreparedStatement count = mock(PreparedStatement.class);
+        ResultSet nbTicket = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.GET_NB_TICKET)).thenReturn(count);
+        when(count.executeQuery()).thenReturn(nbTicket);
+        when(nbTicket.next()).thenReturn(true);
+        when(nbTicket.getInt(1)).thenReturn(1);
+        // Both inserts wait for each other, so both entries read the cache before either commits
+        CyclicBarrier bothInserted = new CyclicBarrier(2);
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insert);
+        when(insert.executeUpdate()).thenAnswer(invocation -> {
+            bothInserted.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+        when(insert.getGeneratedKeys()).thenReturn(mock(ResultSet.class));
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+        ticketDAO.enableVisitCountCache(64);
+        ParkingTransactionDAO parkingTransactionDAO =
+                new ParkingTransactionDAO(dataBaseConfig, new ParkingSpotDAO(dataBaseConfig), ticketDAO);
+        assertEquals(1, ticketDAO.getNbTicket("AB-123"));
+
+        ExecutorService gates = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = gates.submit(() -> parkingTransactionDAO.enterVehicle(openTicket(0, "AB-123", 2)));
+            Future<Integer> second = gates.submit(() -> parkingTransactionDAO.enterVehicle(openTicket(0, "AB-123", 3)));
+            assertEquals(new HashSet<>(Arrays.asList(2, 3)),
+                    new HashSet<>(Arrays.asList(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS))));
+        } finally {
+            gates.shutdown();
+        }
+        assertEquals(3, ticketDAO.getNbTicket("AB-123"));
+        verify(count, times(1)).executeQuery();
+    }
+
+    /**
+     * Test that an index restored from a journal is trusted as it is: exits are answered from it, a vehicle
+     * missing from it has no open ticket, and the database is not queried.
+     */
+    @Test
+    void restoredIndexAnswersWithoutQueries() throws Exception {
+        TicketDAO ticketDAO = new TicketDAO(dataBaseConfig);
+        ticketDAO.restoreOpenTicketIndex(Collections.singletonList(openTicket(5, "CD-456", 2)));
+
+        assertEquals(5, ticketDAO.getOpenTicket("CD-456").getId());
+        assertNull(ticketDAO.getOpenTicket("AB-123"));
+        verify(dataBaseConfig, never()).getConnection();
+    }
+
+    /**
+     * Test that tickets are streamed from the ticket table, then from the history table, one query each,
+     * so the range is never sorted as a whole.
+     */
+    @Test
+    void ticketsAreStreamedTableByTable() throws Exception {
+        PreparedStatement current = mock(PreparedStatement.class);
+        ResultSet currentRows = ticketRow(11, "CAR", IN_TIME + 60_000, null);
+        when(connection.prepareStatement(DBConstants.GET_TICKETS_BETWEEN,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(current);
+        when(current.executeQuery()).thenReturn(currentRows);
+        PreparedStatement archived = mock(PreparedStatement.class);
+        ResultSet archivedRows = ticketRow(2, "BIKE", IN_TIME, new Timestamp(IN_TIME + 3_600_000));
+        when(connection.prepareStatement(DBConstants.GET_ARCHIVED_TICKETS_BETWEEN,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(archived);
+        when(archived.executeQuery()).thenReturn(archivedRows);
+
+        List<Integer> ids = new ArrayList<>();
+        long count = new TicketDAO(dataBaseConfig).forEachTicket(new Date(0), new Date(IN_TIME * 2), 100,
+                (id, parkingNumber, parkingType, vehicleRegNumber, price, inTime, outTime) -> ids.add(id));
+
+        assertEquals(2, count);
+        assertEquals(Arrays.asList(11, 2), ids);
+        verify(current).setFetchSize(100);
+        verify(archived).setTimestamp(2, new Timestamp(IN_TIME * 2));
+        assertFalse(DBConstants.GET_TICKETS_BETWEEN.contains("union"));
+        assertFalse(DBConstants.GET_ARCHIVED_TICKETS_BETWEEN.contains("union"));
+        // Archived tickets carry their parking type, so the history is read without a join
+        assertFalse(DBConstants.GET_ARCHIVED_TICKETS_BETWEEN.contains("join"));
+        assertTrue(DBConstants.ARCHIVE_TICKETS.contains("TYPE"));
+    }
+
+    /**
+     * Test that closed tickets are streamed from the history table, then from the ticket table, each in vehicle order,
+     * with visit numbers counted per vehicle and continuing from the vehicle's archived tickets, so no query ranks
+     * the union of both tables.
+     */
+    @Test
+    void closedTicketsAreNumberedWhileStreaming() throws Exception {
+        PreparedStatement archived = mock(PreparedStatement.class);
+        ResultSet archivedRows = closedTicketRows(new String[]{"AB-123", "AB-123", "CD-456"}, new int[]{0, 0, 0});
+        when(connection.prepareStatement(DBConstants.GET_ARCHIVED_CLOSED_TICKETS,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(archived);
+        when(archived.executeQuery()).thenReturn(archivedRows);
+        PreparedStatement current = mock(PreparedStatement.class);
+        ResultSet currentRows = closedTicketRows(new String[]{"AB-123", "EF-789", "EF-789"}, new int[]{2, 0, 0});
+        when(connection.prepareStatement(DBConstants.GET_CLOSED_TICKETS,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(current);
+        when(current.executeQuery()).thenReturn(currentRows);
+
+        List<Integer> visitNumbers = new ArrayList<>();
+        long count = new TicketDAO(dataBaseConfig).forEachClosedTicket(100,
+                (parkingType, inTime, outTime, visitNumber) -> visitNumbers.add(visitNumber));
+
+        assertEquals(6, count);
+        assertEquals(Arrays.asList(1, 2, 1, 3, 1, 2), visitNumbers);
+        verify(archived).setFetchSize(100);
+        verify(current).setFetchSize(100);
+        assertFalse(DBConstants.GET_CLOSED_TICKETS.contains("over ("));
+        assertFalse(DBConstants.GET_CLOSED_TICKETS.contains("union"));
+        assertFalse(DBConstants.GET_ARCHIVED_CLOSED_TICKETS.contains("union"));
+        assertFalse(DBConstants.GET_ARCHIVED_CLOSED_TICKETS.contains("join"));
+    }
+
+    /**
+     * Mocks closed car ticket rows, as read by {@link DBConstants#GET_CLOSED_TICKETS}, with the archived ticket count
+     * of their vehicle.
+     */
+    private static ResultSet closedTicketRows(String[] vehicleRegNumbers, int[] archivedCounts) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        AtomicInteger row = new AtomicInteger(-1);
+        when(rs.next()).thenAnswer(invocation -> row.incrementAndGet() < vehicleRegNumbers.length);
+        when(rs.getString(1)).thenReturn("CAR");
+        when(rs.getTimestamp(2)).thenReturn(new Timestamp(IN_TIME));
+        when(rs.getTimestamp(3)).thenReturn(new Timestamp(IN_TIME + 3_600_000));
+        when(rs.getString(4)).thenAnswer(invocation -> vehicleRegNumbers[row.get()]);
+        when(rs.getInt(5)).thenAnswer(invocation -> archivedCounts[row.get()]);
+        return rs;
+    }
+
+    /**
+     * Mocks one ticket row, as read by {@link DBConstants#GET_TICKETS_BETWEEN}.
+     */
+    private static ResultSet ticketRow(int id, String type, long inTime, Timestamp outTime) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getInt(1)).thenReturn(id);
+        when(rs.getString(3)).thenReturn(type);
+        when(rs.getTimestamp(6)).thenReturn(new Timestamp(inTime));
+        when(rs.getTimestamp(7)).thenReturn(outTime);
+        return rs;
+    }
+
+    private static Ticket openTicket(int id, String vehicleRegNumber, int parkingNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+        ticket.setInTime(new Date(IN_TIME));
+        return ticket;
+    }
+
+    /**
+     * Mocks the row of an open car ticket, as read by {@link DBConstants#GET_OPEN_TICKET}.
+     */
+    private static ResultSet openTicketRow(int id, int parkingNumber) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getInt(1)).thenReturn(parkingNumber);
+        when(rs.getInt(2)).thenReturn(id);
+        when(rs.getTimestamp(4)).thenReturn(new Timestamp(IN_TIME));
+        when(rs.getString(6)).thenReturn("CAR");
+        return rs;
+    }
+}
@@ -0,0 +1,166 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.export.TicketExportFormat;
+import com.parkit.parkingsystem.export.TicketExporter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link TicketExporter}.
+ */
+@ExtendWith(MockitoExtension.class)
+class TicketExporterTest {
+
+    private static final long IN_TIME = LocalDateTime.of(2024, 3, 5, 9, 7, 3).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    @Mock
+    private TicketDAO ticketDAO;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("export");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Test that a gzip compressed CSV export holds one line per ticket, with quoted text and empty open out times.
+     */
+    @Test
+    void exportCsvGzip() throws IOException {
+        streamTickets(3);
+        Path file = directory.resolve("tickets.csv.gz");
+
+        long count = TicketExporter.export(ticketDAO, new Date(0), new Date(), file, TicketExportFormat.CSV, true);
+
+        assertEquals(3, count);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            assertEquals("id,parking_number,type,vehicle_reg_number,price,in_time,out_time", reader.readLine());
+            assertEquals("1,1,CAR,REG-0,1.5,2024-03-05 09:07:03,2024-03-05 10:07:03", reader.readLine());
+            assertEquals("2,2,BIKE,\"REG,1\",0.0,2024-03-05 10:07:03,", reader.readLine());
+            assertEquals("3,3,CAR,RÉG-2,1.5,2024-03-05 11:07:03,2024-03-05 12:07:03", reader.readLine());
+            assertNull(reader.readLine());
+        }
+    }
+
+    /**
+     * Test that a columnar export spanning several blocks reads back column by column.
+     */
+    @Test
+    void exportColumnar() throws IOException {
+        int size = 70_000;
+        streamTickets(size);
+        Path file = directory.resolve("tickets.tcol");
+
+        assertEquals(size, TicketExporter.export(ticketDAO, new Date(0), new Date(), file,
+                TicketExportFormat.COLUMNAR, false));
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] magic = new byte[4];
+            in.readFully(magic);
+            assertEquals("PKTC", new String(magic, StandardCharsets.US_ASCII));
+            assertEquals(1, in.readByte());
+            int first = 0;
+            for (int blockSize = in.readInt(); blockSize > 0; blockSize = in.readInt()) {
+                readBlock(in, first, blockSize);
+                first += blockSize;
+            }
+            assertEquals(size, first);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    /**
+     * Test that the export fails when the tickets cannot be read.
+     */
+    @Test
+    void exportFailsWhenTicketsCannotBeRead() {
+        when(ticketDAO.forEachTicket(any(Date.class), any(Date.class), anyInt(), any())).thenReturn(-1L);
+
+        assertThrows(IOException.class, () -> TicketExporter.export(ticketDAO, new Date(0), new Date(),
+                directory.resolve("tickets.csv"), TicketExportFormat.CSV, false));
+    }
+
+    private void streamTickets(int count) {
+        when(ticketDAO.forEachTicket(any(Date.class), any(Date.class), anyInt(), any())).thenAnswer(invocation -> {
+            TicketDAO.TicketVisitor visitor = invocation.getArgument(3);
+            for (int i = 0; i < count; i++) {
+                boolean open = i % 2 == 1;
+                visitor.visit(i + 1, i % 5 + 1, open ? ParkingType.BIKE : ParkingType.CAR, regNumber(i),
+                        open ? 0 : 1.5, IN_TIME + i * 3_600_000L,
+                        open ? TicketDAO.TicketVisitor.NO_OUT_TIME : IN_TIME + (i + 1) * 3_600_000L);
+            }
+            return (long) count;
+        });
+    }
+
+    private static String regNumber(int i) {
+        return i == 1 ? "REG,1" : i == 2 ? "RÉG-2" : "REG-" + i;
+    }
+
+    private static void readBlock(DataInputStream in, int first, int size) throws IOException {
+        for (int i = first; i < first + size; i++) {
+            assertEquals(i + 1, in.readInt());
+        }
+        for (int i = first; i < first + size; i++) {
+            assertEquals(i % 5 + 1, in.readInt());
+        }
+        for (int i = first; i < first + size; i++) {
+            assertEquals(i % 2 == 1 ? ParkingType.BIKE.ordinal() : ParkingType.CAR.ordinal(), in.readByte());
+        }
+        for (int i = first; i < first + size; i++) {
+            assertEquals(i % 2 == 1 ? 0 : 1.5, in.readDouble());
+        }
+        for (int i = first; i < first + size; i++) {
+            assertEquals(IN_TIME + i * 3_600_000L, in.readLong());
+        }
+        for (int i = first; i < first + size; i++) {
+            assertEquals(i % 2 == 1 ? Long.MIN_VALUE : IN_TIME + (i + 1) * 3_600_000L, in.readLong());
+        }
+        int[] lengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            lengths[i] = in.readShort();
+        }
+        for (int i = 0; i < size; i++) {
+            byte[] regNumber = new byte[lengths[i]];
+            in.readFully(regNumber);
+            assertEquals(regNumber(first + i), new String(regNumber, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.dao.TicketIdAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TicketIdAllocator}.
+ * Connections are Mockito mocks standing in for the id_sequence table.
+ */
+class TicketIdAllocatorTest {
+
+    /**
+     * Test that IDs come from consecutive blocks, with one reservation per block.
+     */
+    @Test
+    void idsComeFromReservedBlocks() throws Exception {
+        AtomicLong sequence = new AtomicLong(101);
+        Connection connection = sequenceConnection(sequence);
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+
+        TicketIdAllocator allocator = new TicketIdAllocator(dataBaseConfig, 10);
+        for (int id = 101; id <= 125; id++) {
+            assertEquals(id, allocator.nextId());
+        }
+
+        assertEquals(131, sequence.get());
+        verify(connection, times(3)).commit();
+    }
+
+    /**
+     * Test that threads sharing an allocator never get the same ID.
+     */
+    @Test
+    void concurrentCallersGetDistinctIds() throws Exception {
+        AtomicLong sequence = new AtomicLong(1);
+        Connection connection = sequenceConnection(sequence);
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        TicketIdAllocator allocator = new TicketIdAllocator(dataBaseConfig, 7);
+
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    ids.add(allocator.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(4000, ids.size());
+        assertFalse(ids.contains(-1));
+    }
+
+    /**
+     * Test that a failed reservation is reported, and retried on the next call.
+     */
+    @Test
+    void failedReservationReturnsMinusOne() throws Exception {
+        AtomicLong sequence = new AtomicLong(1);
+        Connection connection = sequenceConnection(sequence);
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        when(dataBaseConfig.getConnection()).thenThrow(new SQLException("database down")).thenReturn(connection);
+
+        TicketIdAllocator allocator = new TicketIdAllocator(dataBaseConfig, 5);
+        assertEquals(-1, allocator.nextId());
+        assertEquals(1, allocator.nextId());
+    }
+
+    /**
+     * Mocks a connection whose reservation statements move the given sequence forward.
+     */
+    private static Connection sequenceConnection(AtomicLong sequence) throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement reserve = mock(PreparedStatement.class);
+        PreparedStatement read = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        AtomicLong blockSize = new AtomicLong();
+        when(connection.prepareStatement(DBConstants.RESERVE_ID_BLOCK)).thenReturn(reserve);
+        when(connection.prepareStatement(DBConstants.GET_ID_SEQUENCE)).thenReturn(read);
+        doAnswer(invocation -> {
+            blockSize.set((Integer) invocation.getArgument(1));
+            return null;
+        }).when(reserve).setInt(eq(1), anyInt());
+        when(reserve.executeUpdate()).thenAnswer(invocation -> {
+            sequence.addAndGet(blockSize.get());
+            return 1;
+        });
+        when(read.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getLong(1)).thenAnswer(invocation -> sequence.get());
+        return connection;
+    }
+}
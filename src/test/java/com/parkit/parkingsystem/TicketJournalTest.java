@@ -0,0 +1,273 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.journal.FsyncPolicy;
+import com.parkit.parkingsystem.journal.JournalEvent;
+import com.parkit.parkingsystem.journal.JournalState;
+import com.parkit.parkingsystem.journal.TicketJournal;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TicketJournal} and the {@link JournalState} rebuilt from it.
+ */
+class TicketJournalTest {
+
+    private Path tempDir;
+
+    /**
+     * Create a directory for the journal files of the test.
+     */
+    @BeforeEach
+    void setUpPerTest() throws IOException {
+        tempDir = Files.createTempDirectory("journal-test");
+    }
+
+    /**
+     * Delete the journal files.
+     */
+    @AfterEach
+    void tearDownPerTest() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(tempDir);
+    }
+
+    /**
+     * Test that events survive closing and reopening the journal, and replay into the latest spot and ticket state.
+     */
+    @Test
+    void replayAfterReopenRebuildsState() throws IOException {
+        Path file = tempDir.resolve("tickets.journal");
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.EVERY_WRITE, 1000, 4)) {
+            journal.append(JournalEvent.spotChanged(new ParkingSpot(1, ParkingType.CAR, true)));
+            journal.append(JournalEvent.spotChanged(new ParkingSpot(4, ParkingType.BIKE, true)));
+            journal.append(JournalEvent.spotChanged(new ParkingSpot(1, ParkingType.CAR, false)));
+            journal.append(JournalEvent.ticketOpened(ticket(7, "AB-123", 1, ParkingType.CAR)));
+            journal.append(JournalEvent.spotChanged(new ParkingSpot(4, ParkingType.BIKE, false)));
+            journal.append(JournalEvent.ticketOpened(ticket(8, "XY-987", 4, ParkingType.BIKE)));
+            Ticket closed = ticket(8, "XY-987", 4, ParkingType.BIKE);
+            closed.setOutTime(new Date());
+            closed.setPrice(1.5);
+            journal.append(JournalEvent.ticketClosed(closed));
+            journal.append(JournalEvent.spotChanged(new ParkingSpot(4, ParkingType.BIKE, true)));
+        }
+
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE)) {
+            assertEquals(9, journal.getNextSequence());
+            JournalState state = journal.replayState();
+
+            assertEquals(9, state.getEventCount());
+            assertTrue(state.isCleanlyClosed());
+            List<ParkingSpot> spots = state.getParkingSpots();
+            assertEquals(2, spots.size());
+            assertFalse(spots.get(0).isAvailable());
+            assertEquals(ParkingType.BIKE, spots.get(1).getParkingType());
+            assertTrue(spots.get(1).isAvailable());
+            assertEquals(1, state.getOpenTickets().size());
+            Ticket open = state.getOpenTickets().iterator().next();
+            assertEquals(7, open.getId());
+            assertEquals("AB-123", open.getVehicleRegNumber());
+            assertEquals(1, open.getParkingSpot().getId());
+            assertNull(open.getOutTime());
+        }
+    }
+
+    /**
+     * Test that an entry damaged by a crash is skipped while the entries around it are replayed.
+     */
+    @Test
+    void damagedEntryIsSkipped() throws IOException {
+        Path file = tempDir.resolve("torn.journal");
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE)) {
+            for (int spot = 1; spot <= 3; spot++) {
+                journal.append(JournalEvent.spotChanged(new ParkingSpot(spot, ParkingType.CAR, true)));
+            }
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(TicketJournal.ENTRY_SIZE + 28);
+            raw.writeInt(99);
+        }
+
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE)) {
+            List<JournalEvent> events = new ArrayList<>();
+            assertEquals(3, journal.replay(events::add));
+            assertEquals(1, events.get(0).getSpotNumber());
+            assertEquals(3, events.get(1).getSpotNumber());
+            assertEquals(2, events.get(1).getSequence());
+            assertEquals(JournalEvent.Type.JOURNAL_CLOSED, events.get(2).getType());
+        }
+    }
+
+    /**
+     * Test that compacting a cleanly closed journal keeps its state in one entry per spot and open ticket.
+     */
+    @Test
+    void compactKeepsTheStateOfACleanJournal() throws IOException {
+        Path file = tempDir.resolve("compact.journal");
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(JournalEvent.spotChanged(new ParkingSpot(1, ParkingType.CAR, i % 2 == 0)));
+            }
+            journal.append(JournalEvent.spotChanged(new ParkingSpot(2, ParkingType.BIKE, false)));
+            journal.append(JournalEvent.ticketOpened(ticket(7, "AB-123", 2, ParkingType.BIKE)));
+        }
+
+        JournalState replayed = TicketJournal.compact(file);
+
+        assertTrue(replayed.isCleanlyClosed());
+        assertEquals(8, replayed.getEventCount());
+        assertEquals(3 * TicketJournal.ENTRY_SIZE, Files.size(file));
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE)) {
+            assertEquals(3, journal.getNextSequence());
+            JournalState state = journal.replayState();
+            // A compacted journal is reopened for a new run, which must close it again to be trusted
+            assertFalse(state.isCleanlyClosed());
+            assertTrue(state.getParkingSpots().get(0).isAvailable());
+            assertFalse(state.getParkingSpots().get(1).isAvailable());
+            assertEquals("AB-123", state.getOpenTickets().iterator().next().getVehicleRegNumber());
+        }
+    }
+
+    /**
+     * Test that a journal not closed, as after a crash, is emptied by compacting it.
+     */
+    @Test
+    void compactEmptiesAJournalCutShort() throws IOException {
+        Path file = tempDir.resolve("crashed.journal");
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE)) {
+            journal.append(JournalEvent.spotChanged(new ParkingSpot(1, ParkingType.CAR, true)));
+            journal.markIncomplete();
+        }
+
+        JournalState replayed = TicketJournal.compact(file);
+
+        assertFalse(replayed.isCleanlyClosed());
+        assertEquals(1, replayed.getEventCount());
+        assertEquals(0, Files.size(file));
+        assertTrue(TicketJournal.compact(tempDir.resolve("missing.journal")).isEmpty());
+    }
+
+    /**
+     * Test that entries spanning several read blocks are all found and replayed in order.
+     */
+    @Test
+    void replayReadsEveryBlock() throws IOException {
+        Path file = tempDir.resolve("long.journal");
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE, 1000, 700)) {
+            for (int spot = 1; spot <= 2500; spot++) {
+                journal.append(JournalEvent.spotChanged(new ParkingSpot(spot, ParkingType.CAR, true)));
+            }
+        }
+
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE)) {
+            assertEquals(2501, journal.getNextSequence());
+            List<JournalEvent> events = new ArrayList<>();
+            assertEquals(2501, journal.replay(events::add));
+            for (int i = 0; i < 2500; i++) {
+                assertEquals(i + 1, events.get(i).getSpotNumber());
+                assertEquals(i, events.get(i).getSequence());
+            }
+        }
+    }
+
+    /**
+     * Test that a reload of the open tickets forgets the ones journaled before it, even if their close was lost.
+     */
+    @Test
+    void openTicketsReloadForgetsEarlierTickets() throws IOException {
+        try (TicketJournal journal = TicketJournal.open(tempDir.resolve("reload.journal"), FsyncPolicy.NONE)) {
+            journal.append(JournalEvent.ticketOpened(ticket(7, "AB-123", 1, ParkingType.CAR)));
+            journal.append(JournalEvent.ticketOpened(ticket(8, "XY-987", 2, ParkingType.CAR)));
+            journal.append(JournalEvent.openTicketsReloaded());
+            journal.append(JournalEvent.ticketOpened(ticket(8, "XY-987", 2, ParkingType.CAR)));
+
+            JournalState state = journal.replayState();
+
+            assertEquals(4, state.getEventCount());
+            assertEquals(1, state.getOpenTickets().size());
+            assertEquals(8, state.getOpenTickets().iterator().next().getId());
+        }
+    }
+
+    /**
+     * Test that appends from several threads across chunk boundaries all get distinct entries.
+     */
+    @Test
+    void concurrentAppendsGrowTheFile() throws Exception {
+        Path file = tempDir.resolve("concurrent.journal");
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.INTERVAL, 10, 8)) {
+            ExecutorService gates = Executors.newFixedThreadPool(4);
+            for (int i = 1; i <= 200; i++) {
+                int spot = i;
+                gates.submit(() -> journal.append(JournalEvent.spotChanged(new ParkingSpot(spot, ParkingType.CAR, false))));
+            }
+            gates.shutdown();
+            assertTrue(gates.awaitTermination(10, TimeUnit.SECONDS));
+
+            JournalState state = journal.replayState();
+            assertEquals(200, state.getEventCount());
+            assertEquals(200, state.getParkingSpots().size());
+        }
+    }
+
+    /**
+     * Test that a registration number too long for an entry is refused.
+     */
+    @Test
+    void tooLongRegNumberIsRefused() throws IOException {
+        try (TicketJournal journal = TicketJournal.open(tempDir.resolve("long.journal"), FsyncPolicy.NONE)) {
+            JournalEvent event = JournalEvent.ticketOpened(ticket(1, "ABCDEFGHIJKLMNOPQRSTUVWXYZ", 1, ParkingType.CAR));
+
+            assertThrows(IllegalArgumentException.class, () -> journal.append(event));
+            assertEquals(0, journal.getNextSequence());
+        }
+    }
+
+    /**
+     * Test that a journal which missed a change is not closed as complete.
+     */
+    @Test
+    void refusedAppendLeavesJournalIncomplete() throws IOException {
+        Path file = tempDir.resolve("incomplete.journal");
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE)) {
+            journal.append(JournalEvent.spotChanged(new ParkingSpot(1, ParkingType.CAR, true)));
+            JournalEvent event = JournalEvent.ticketOpened(ticket(1, "ABCDEFGHIJKLMNOPQRSTUVWXYZ", 1, ParkingType.CAR));
+            assertThrows(IllegalArgumentException.class, () -> journal.append(event));
+        }
+
+        try (TicketJournal journal = TicketJournal.open(file, FsyncPolicy.NONE)) {
+            assertFalse(journal.replayState().isCleanlyClosed());
+            journal.markIncomplete();
+        }
+    }
+
+    private static Ticket ticket(int id, String vehicleRegNumber, int spot, ParkingType parkingType) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(spot, parkingType, false));
+        ticket.setInTime(new Date(System.currentTimeMillis() - 3_600_000));
+        return ticket;
+    }
+}
@@ -0,0 +1,112 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.constants.RollupGranularity;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRollup;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TicketRollups}.
+ * Connections are Mockito mocks so no database is needed.
+ */
+class TicketRollupsTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    // Tuesday 2024-01-02 at midnight, UTC
+    private static final long DAY = LocalDateTime.of(2024, 1, 2, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    /**
+     * Test that closed tickets add up in their hour and day, and that the totals of each bucket
+     * are committed to the table in one batch.
+     */
+    @Test
+    void closedTicketsAddUpByHourAndDay() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.UPSERT_TICKET_ROLLUP)).thenReturn(ps);
+
+        TicketRollups rollups = new TicketRollups(dataBaseConfig, 60_000, 100);
+        assertTrue(rollups.record(ticket(ParkingType.CAR, DAY + 9 * HOUR, DAY + 10 * HOUR + 5, 1.5, false)));
+        assertTrue(rollups.record(ticket(ParkingType.CAR, DAY + 8 * HOUR, DAY + 10 * HOUR + 30 * 60_000, 3.5, true)));
+        assertTrue(rollups.record(ticket(ParkingType.CAR, DAY + 20 * HOUR, DAY + 26 * HOUR, 9, false)));
+        assertTrue(rollups.record(ticket(ParkingType.BIKE, DAY, DAY + 2 * HOUR, 2, false)));
+        rollups.shutdown();
+
+        TicketRollup tenOClock = rollups.getRollup(RollupGranularity.HOUR, ParkingType.CAR, new Date(DAY + 10 * HOUR + 1));
+        assertEquals(2, tenOClock.getTicketCount());
+        assertEquals(5.0, tenOClock.getTotalPrice(), 1e-9);
+        assertEquals((HOUR + 5 + 2 * HOUR + 30 * 60_000) / 2, tenOClock.getAverageDurationMillis());
+        assertEquals(1, tenOClock.getDiscountCount());
+
+        List<TicketRollup> days = rollups.getRollups(RollupGranularity.DAY, ParkingType.CAR,
+                new Date(DAY), new Date(DAY + 48 * HOUR));
+        assertEquals(2, days.size());
+        assertEquals(new Date(DAY), days.get(0).getBucketStart());
+        assertEquals(5.0, days.get(0).getTotalPrice(), 1e-9);
+        assertEquals(9.0, days.get(1).getTotalPrice(), 1e-9);
+        assertEquals(1, rollups.getRollup(RollupGranularity.DAY, ParkingType.BIKE, new Date(DAY)).getTicketCount());
+        assertEquals(0, rollups.getRollup(RollupGranularity.HOUR, ParkingType.BIKE, new Date(DAY)).getTicketCount());
+
+        // Bucket starts are bound as UTC wall-clock times, whatever the time zone of the JVM
+        ArgumentCaptor<Calendar> calendar = ArgumentCaptor.forClass(Calendar.class);
+        // The car day and the bike day
+        verify(ps, times(2)).setTimestamp(eq(2), eq(new Timestamp(DAY)), calendar.capture());
+        assertEquals(TimeZone.getTimeZone("UTC"), calendar.getValue().getTimeZone());
+        verify(ps, never()).setTimestamp(anyInt(), any(Timestamp.class));
+        // Two car hours, two car days, one bike hour and one bike day
+        verify(ps, times(6)).addBatch();
+        verify(ps).executeBatch();
+        verify(connection).commit();
+    }
+
+    /**
+     * Test that the totals stay in the cache when they cannot be committed, and that a full queue
+     * drops tickets instead of blocking.
+     */
+    @Test
+    void totalsSurviveCommitFailureAndFullQueueDoesNotBlock() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        when(dataBaseConfig.getConnection()).thenThrow(new SQLException("database down"));
+
+        TicketRollups rollups = new TicketRollups(dataBaseConfig, 60_000, 1);
+        assertTrue(rollups.record(ticket(ParkingType.CAR, DAY, DAY + HOUR, 1.5, false)));
+        assertFalse(rollups.record(ticket(ParkingType.CAR, DAY, DAY + HOUR, 1.5, false)));
+        rollups.shutdown();
+
+        assertEquals(1, rollups.getDroppedTicketCount());
+        assertEquals(1, rollups.getRollup(RollupGranularity.DAY, ParkingType.CAR, new Date(DAY)).getTicketCount());
+    }
+
+    private static Ticket ticket(ParkingType parkingType, long inTime, long outTime, double price, boolean discounted) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, true));
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(new Date(outTime));
+        ticket.setPrice(price);
+        ticket.setDiscounted(discounted);
+        return ticket;
+    }
+}
@@ -0,0 +1,347 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.constants.RollupGranularity;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketRollups;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketRollup;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the write-behind queue of {@link TicketDAO}: batching, flushes, failures and shutdown.
+ * Connections are Mockito mocks whose batches succeed row by row unless a test says otherwise.
+ */
+class TicketWriteBehindTest {
+
+    private static final long IN_TIME = 1_700_000_000_000L;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement update;
+    private TicketDAO ticketDAO;
+
+    /**
+     * Gives every test a DAO on a fresh mocked connection, whose batches report one row per statement.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+
+        insert = batchStatement();
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insert);
+        ResultSet keys = mock(ResultSet.class);
+        AtomicInteger lastId = new AtomicInteger();
+        when(insert.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenAnswer(invocation -> lastId.incrementAndGet());
+
+        update = batchStatement();
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(1);
+
+        PreparedStatement read = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKET)).thenReturn(read);
+        when(read.executeQuery()).thenReturn(mock(ResultSet.class));
+
+        ticketDAO = new TicketDAO(dataBaseConfig);
+    }
+
+    /**
+     * Stops the flusher thread of the test.
+     */
+    @AfterEach
+    void tearDown() {
+        ticketDAO.disableWriteBehind();
+    }
+
+    /**
+     * Test that writes submitted together are committed in one JDBC batch and one transaction,
+     * with the generated IDs set before the futures complete.
+     */
+    @Test
+    void writesAreCommittedInBatches() throws Exception {
+        ticketDAO.enableWriteBehind(3, TimeUnit.MINUTES.toMillis(1), 10);
+        List<Ticket> tickets = new ArrayList<>();
+        List<CompletableFuture<Boolean>> saved = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Ticket ticket = ticket("AB-12" + i);
+            tickets.add(ticket);
+            saved.add(ticketDAO.saveTicketAsync(ticket));
+        }
+
+        for (CompletableFuture<Boolean> done : saved) {
+            assertTrue(done.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Arrays.asList(1, 2, 3), Arrays.asList(tickets.get(0).getId(), tickets.get(1).getId(),
+                tickets.get(2).getId()));
+        verify(insert, times(3)).addBatch();
+        verify(insert).executeBatch();
+        verify(connection).commit();
+    }
+
+    /**
+     * Test that looking up an open ticket flushes the writes still waiting for their batch,
+     * so a vehicle that just entered is found.
+     */
+    @Test
+    void lookupFlushesPendingWrites() throws Exception {
+        ticketDAO.enableWriteBehind(100, TimeUnit.MINUTES.toMillis(1), 10);
+        CompletableFuture<Boolean> saved = ticketDAO.saveTicketAsync(ticket("AB-123"));
+
+        ticketDAO.getOpenTicket("AB-123");
+
+        assertTrue(saved.isDone());
+        assertTrue(saved.get());
+        verify(connection).commit();
+    }
+
+    /**
+     * Test that counting the tickets of a vehicle commits its queued insert first and then reads the count,
+     * written through on commit, from the cache rather than counting before the insert lands.
+     */
+    @Test
+    void countWaitsForQueuedSaveOfVehicle() throws Exception {
+        PreparedStatement count = mock(PreparedStatement.class);
+        ResultSet nbTicket = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.GET_NB_TICKET)).thenReturn(count);
+        when(count.executeQuery()).thenReturn(nbTicket);
+        when(nbTicket.next()).thenReturn(true);
+        when(nbTicket.getInt(1)).thenReturn(1);
+        ticketDAO.enableVisitCountCache(64);
+        ticketDAO.enableWriteBehind(100, TimeUnit.MINUTES.toMillis(1), 10);
+        assertEquals(1, ticketDAO.getNbTicket("AB-123"));
+
+        CompletableFuture<Boolean> saved = ticketDAO.saveTicketAsync(ticket("AB-123"));
+
+        assertEquals(2, ticketDAO.getNbTicket("AB-123"));
+        assertTrue(saved.isDone());
+        verify(count, times(1)).executeQuery();
+    }
+
+    /**
+     * Test that a failing batch is rolled back and completes every future of the batch with false.
+     */
+    @Test
+    void failedBatchCompletesWithFalse() throws Exception {
+        when(insert.executeBatch()).thenThrow(new SQLException("Deadlock"));
+        ticketDAO.enableWriteBehind(2, TimeUnit.MINUTES.toMillis(1), 10);
+
+        CompletableFuture<Boolean> first = ticketDAO.saveTicketAsync(ticket("AB-123"));
+        CompletableFuture<Boolean> second = ticketDAO.saveTicketAsync(ticket("CD-456"));
+
+        assertFalse(first.get(5, TimeUnit.SECONDS));
+        assertFalse(second.get(5, TimeUnit.SECONDS));
+        // The batch, then each write retried alone
+        verify(connection, times(3)).rollback();
+        verify(connection, never()).commit();
+    }
+
+    /**
+     * Test that one failing write of a batch does not fail the others: the batch is retried write by write,
+     * and tickets of the rolled back batch do not keep the IDs it generated.
+     */
+    @Test
+    void failingWriteDoesNotFailItsBatch() throws Exception {
+        // The bad ticket is inserted, but its transaction fails to commit, after the batch read its generated key
+        List<String> bound = new ArrayList<>();
+        doAnswer(invocation -> bound.add(invocation.getArgument(1))).when(insert).setString(eq(2), anyString());
+        doAnswer(invocation -> {
+            boolean bad = bound.contains("BAD-1");
+            bound.clear();
+            if (bad) {
+                throw new SQLException("Deadlock found when trying to get lock");
+            }
+            return null;
+        }).when(connection).commit();
+        doAnswer(invocation -> {
+            bound.clear();
+            return null;
+        }).when(connection).rollback();
+        ticketDAO.enableWriteBehind(3, TimeUnit.MINUTES.toMillis(1), 10);
+
+        Ticket good = ticket("AB-123");
+        Ticket failing = ticket("BAD-1");
+        CompletableFuture<Boolean> first = ticketDAO.saveTicketAsync(good);
+        CompletableFuture<Boolean> bad = ticketDAO.saveTicketAsync(failing);
+        CompletableFuture<Boolean> second = ticketDAO.saveTicketAsync(ticket("CD-456"));
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertFalse(bad.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        verify(connection, times(2)).rollback();
+        // The batch and the bad ticket failed to commit, the good tickets were committed alone
+        verify(connection, times(4)).commit();
+        // Numbered from the keys of its own insert, not from the rolled back batch
+        assertEquals(4, good.getId());
+        assertEquals(0, failing.getId());
+    }
+
+    /**
+     * Test that, with write-behind enabled, saves and updates only report success once committed:
+     * an entry whose batch fails gives its spot back and fails, and an exit whose update finds the ticket
+     * already closed by another exit keeps its spot taken.
+     */
+    @Test
+    void gatesWaitForTheirWriteToCommit() throws Exception {
+        ParkingSpotStore parkingSpotStore = mock(ParkingSpotStore.class);
+        when(parkingSpotStore.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(5);
+        ParkingService parkingService = new ParkingService(parkingSpotStore, ticketDAO, null);
+        when(insert.executeBatch()).thenThrow(new SQLException("Deadlock"));
+        ticketDAO.enableWriteBehind(100, 10, 10);
+
+        EntryResult entry = parkingService.enter("AB-123", ParkingType.CAR);
+
+        assertEquals(EntryResult.Status.FAILED, entry.getStatus());
+        verify(parkingSpotStore).updateParking(new ParkingSpot(5, ParkingType.CAR, true));
+
+        when(update.executeBatch()).thenReturn(new int[]{0});
+        Ticket closed = submittedTicket();
+        assertFalse(ticketDAO.updateTicket(closed));
+    }
+
+    /**
+     * Test that write-behind and entry and exit transactions are not used on the same DAO,
+     * since transactions write around the queue.
+     */
+    @Test
+    void writeBehindAndTransactionsExcludeEachOther() {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        ticketDAO.enableWriteBehind(100, TimeUnit.MINUTES.toMillis(1), 10);
+        assertThrows(IllegalStateException.class,
+                () -> new ParkingTransactionDAO(dataBaseConfig, new ParkingSpotDAO(dataBaseConfig), ticketDAO));
+
+        TicketDAO transactional = new TicketDAO(dataBaseConfig);
+        new ParkingTransactionDAO(dataBaseConfig, new ParkingSpotDAO(dataBaseConfig), transactional);
+        assertThrows(IllegalStateException.class,
+                () -> transactional.enableWriteBehind(100, TimeUnit.MINUTES.toMillis(1), 10));
+    }
+
+    /**
+     * Test that shutting down commits the queued writes, and that every write submitted while
+     * the queue shuts down gets a completed future rather than one nobody completes.
+     */
+    @Test
+    void shutdownCompletesEveryWrite() throws Exception {
+        ticketDAO.enableWriteBehind(100, TimeUnit.MINUTES.toMillis(1), 1000);
+        CompletableFuture<Boolean> queued = ticketDAO.saveTicketAsync(ticket("AB-123"));
+
+        ExecutorService gates = Executors.newFixedThreadPool(4);
+        List<Future<CompletableFuture<Boolean>>> submitted = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            Ticket ticket = ticket("EX-" + i);
+            ticket.setId(i + 1);
+            ticket.setOutTime(new Date(IN_TIME + 3_600_000));
+            submitted.add(gates.submit(() -> ticketDAO.updateTicketAsync(ticket)));
+        }
+        ticketDAO.disableWriteBehind();
+        gates.shutdown();
+        assertTrue(gates.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        for (Future<CompletableFuture<Boolean>> done : submitted) {
+            assertNotNull(done.get().get(5, TimeUnit.SECONDS));
+        }
+        // Back to one by one writes
+        CompletableFuture<Boolean> direct = ticketDAO.updateTicketAsync(submittedTicket());
+        assertTrue(direct.isDone());
+    }
+
+    /**
+     * Test that shutting the DAO down commits a ticket closed while its update waits in the queue,
+     * then adds it to the totals and commits them, with the archiver running.
+     */
+    @Test
+    void shutdownCommitsClosedTicketAndItsTotals() throws Exception {
+        PreparedStatement loadRollups = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.GET_TICKET_ROLLUPS)).thenReturn(loadRollups);
+        when(loadRollups.executeQuery()).thenReturn(mock(ResultSet.class));
+        PreparedStatement upsertRollups = batchStatement();
+        when(connection.prepareStatement(DBConstants.UPSERT_TICKET_ROLLUP)).thenReturn(upsertRollups);
+        PreparedStatement archivable = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKETS)).thenReturn(archivable);
+        when(archivable.executeQuery()).thenReturn(mock(ResultSet.class));
+        assertTrue(ticketDAO.enableRollups(TimeUnit.MINUTES.toMillis(1), 10));
+        ticketDAO.enableWriteBehind(100, TimeUnit.MINUTES.toMillis(1), 10);
+        ticketDAO.enableArchiver(TimeUnit.DAYS.toMillis(30), 10, 0, TimeUnit.HOURS.toMillis(1));
+        TicketRollups rollups = ticketDAO.getRollups();
+
+        Ticket closed = submittedTicket();
+        closed.setPrice(1.5);
+        CompletableFuture<Boolean> updated = ticketDAO.updateTicketAsync(closed);
+        verify(update, never()).executeBatch();
+        ticketDAO.shutdown();
+
+        assertTrue(updated.get(5, TimeUnit.SECONDS));
+
+        verify(update).addBatch();
+        verify(update).executeBatch();
+        verify(upsertRollups, times(2)).addBatch();
+        verify(upsertRollups).executeBatch();
+        TicketRollup day = rollups.getRollup(RollupGranularity.DAY, ParkingType.CAR, closed.getOutTime());
+        assertEquals(1, day.getTicketCount());
+        assertEquals(1.5, day.getTotalPrice(), 1e-9);
+        assertNull(ticketDAO.getRollups());
+    }
+
+    /**
+     * Mocks a prepared statement whose batches report one updated row per statement added.
+     */
+    private static PreparedStatement batchStatement() throws SQLException {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        AtomicInteger added = new AtomicInteger();
+        doAnswer(invocation -> added.incrementAndGet()).when(ps).addBatch();
+        when(ps.executeBatch()).thenAnswer(invocation -> {
+            int[] counts = new int[added.getAndSet(0)];
+            Arrays.fill(counts, 1);
+            return counts;
+        });
+        return ps;
+    }
+
+    private static Ticket submittedTicket() {
+        Ticket ticket = ticket("AB-123");
+        ticket.setId(1);
+        ticket.setOutTime(new Date(IN_TIME + 3_600_000));
+        return ticket;
+    }
+
+    private static Ticket ticket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(IN_TIME));
+        return ticket;
+    }
+}
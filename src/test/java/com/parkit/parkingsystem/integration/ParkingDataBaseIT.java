@@ -1,8 +1,10 @@
 package com.parkit.parkingsystem.integration;
 
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketArchiver;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
@@ -39,10 +41,11 @@ class ParkingDataBaseIT {
     private static InputReaderUtil inputReaderUtil;
 
     /**
-     * Setup database DAOs and prepare service before all tests.
+     * Migrate the test database schema, then setup database DAOs and prepare service before all tests.
      */
     @BeforeAll
     static void setUp() {
+        assertTrue(new SchemaMigrator(dataBaseTestConfig).migrate());
         parkingSpotDAO = new ParkingSpotDAO(dataBaseTestConfig);
         ticketDAO = new TicketDAO(dataBaseTestConfig);
         dataBasePrepareService = new DataBasePrepareService();
@@ -114,6 +117,14 @@ class ParkingDataBaseIT {
      */
     @Test
     void testParkingLotExitRecurringUser() {
+        // A first passage, closed yesterday, makes the second one get the reduction
+        Ticket previous = new Ticket();
+        previous.setInTime(new Date(System.currentTimeMillis() - (25 * 60 * 60 * 1000)));
+        previous.setOutTime(new Date(System.currentTimeMillis() - (24 * 60 * 60 * 1000)));
+        previous.setVehicleRegNumber("ABCDEF");
+        previous.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        ticketDAO.saveTicket(previous);
+
         Ticket ticket = new Ticket();
         Date inTime = new Date();
         inTime.setTime(System.currentTimeMillis() - (60 * 60 * 1000));
@@ -124,15 +135,12 @@ class ParkingDataBaseIT {
         ticketDAO.saveTicket(ticket);
 
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
-        // We make two enter to simulate the second passage for the reduction
-        parkingService.processIncomingVehicle();
-        parkingService.processExitingVehicle();
-        parkingService.processIncomingVehicle();
         parkingService.processExitingVehicle();
 
         Ticket ticketExit = ticketDAO.getTicket("ABCDEF");
 
         assertNotNull(ticketExit);
+        assertEquals(ticket.getId(), ticketExit.getId());
         assertNotNull(ticketExit.getOutTime());
         assertEquals(0.95 * Fare.CAR_RATE_PER_HOUR, ticketExit.getPrice(), 0.01);
         assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
@@ -164,4 +172,28 @@ class ParkingDataBaseIT {
 
         assertEquals(2, nbTickets);
     }
+
+    /**
+     * Test that archived tickets leave the ticket table but still count as visits of their vehicle.
+     */
+    @Test
+    void testArchivedTicketsStillCountAsVisits() {
+        String vehicleRegNumber = "OLD123";
+        long tenDaysAgo = System.currentTimeMillis() - 10L * 24 * 60 * 60 * 1000;
+        for (int visit = 0; visit < 3; visit++) {
+            Ticket ticket = new Ticket();
+            ticket.setInTime(new Date(tenDaysAgo - 60 * 60 * 1000));
+            ticket.setOutTime(new Date(tenDaysAgo));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+            ticketDAO.saveTicket(ticket);
+        }
+
+        TicketArchiver ticketArchiver = new TicketArchiver(dataBaseTestConfig, 24 * 60 * 60 * 1000L, 2, 0);
+        assertEquals(3, ticketArchiver.archive());
+        ticketArchiver.close();
+
+        assertNull(ticketDAO.getTicket(vehicleRegNumber));
+        assertEquals(3, ticketDAO.getNbTicket(vehicleRegNumber));
+    }
 }
@@ -11,11 +11,11 @@ public class DataBaseTestConfig extends DataBaseConfig {
     private static final Logger logger = LogManager.getLogger("DataBaseTestConfig");
 
     @Override
-    public Connection getConnection() throws ClassNotFoundException, SQLException {
+    protected Connection openConnection() throws ClassNotFoundException, SQLException {
         logger.info("Create DB connection");
         Class.forName("com.mysql.cj.jdbc.Driver");
         return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/test?serverTimezone=UTC", "parkit", "OpenClassRoomIlyace");
+                "jdbc:mysql://localhost:3306/test?serverTimezone=UTC&useServerPrepStmts=true&useCursorFetch=true", "parkit", "OpenClassRoomIlyace");
     }
 
     @Override
@@ -15,6 +15,9 @@ public class DataBasePrepareService {
 
             connection.prepareStatement("update parking set available = true").execute();
             connection.prepareStatement("truncate table ticket").execute();
+            connection.prepareStatement("truncate table ticket_history").execute();
+            connection.prepareStatement("truncate table vehicle_history").execute();
+            connection.prepareStatement("truncate table ticket_rollup").execute();
 
         } catch (Exception e) {
             e.printStackTrace();